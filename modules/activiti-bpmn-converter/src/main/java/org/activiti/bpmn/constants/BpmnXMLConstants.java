@@ -95,6 +95,7 @@ public interface BpmnXMLConstants {
   
   public static final String ATTRIBUTE_ACTIVITY_ASYNCHRONOUS = "async";
   public static final String ATTRIBUTE_ACTIVITY_EXCLUSIVE = "exclusive";
+  public static final String ATTRIBUTE_ACTIVITY_JOB_PRIORITY = "jobPriority";
   public static final String ATTRIBUTE_ACTIVITY_ISFORCOMPENSATION = "isForCompensation";
   
   public static final String ELEMENT_IMPORT = "import";
@@ -13,7 +13,6 @@
 package org.activiti.bpmn.converter;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -75,6 +74,7 @@ public abstract class BaseBpmnXMLConverter implements BpmnXMLConstants {
   protected static final List<ExtensionAttribute> defaultActivityAttributes = Arrays.asList(
       new ExtensionAttribute(ACTIVITI_EXTENSIONS_NAMESPACE, ATTRIBUTE_ACTIVITY_ASYNCHRONOUS), 
       new ExtensionAttribute(ACTIVITI_EXTENSIONS_NAMESPACE, ATTRIBUTE_ACTIVITY_EXCLUSIVE), 
+      new ExtensionAttribute(ACTIVITI_EXTENSIONS_NAMESPACE, ATTRIBUTE_ACTIVITY_JOB_PRIORITY), 
       new ExtensionAttribute(ATTRIBUTE_DEFAULT), 
       new ExtensionAttribute(ACTIVITI_EXTENSIONS_NAMESPACE, ATTRIBUTE_ACTIVITY_ISFORCOMPENSATION)
   );
@@ -96,6 +96,7 @@ public abstract class BaseBpmnXMLConverter implements BpmnXMLConstants {
     String elementName = xtr.getAttributeValue(null, ATTRIBUTE_NAME);//name值
     boolean async = parseAsync(xtr);//activiti:async 的值
     boolean notExclusive = parseNotExclusive(xtr);//activiti:exclusive的值
+    String jobPriority = xtr.getAttributeValue(ACTIVITI_EXTENSIONS_NAMESPACE, ATTRIBUTE_ACTIVITY_JOB_PRIORITY);
     String defaultFlow = xtr.getAttributeValue(null, ATTRIBUTE_DEFAULT); //获取default中的值
     boolean isForCompensation = parseForCompensation(xtr);//isForCompensation中的值
     /*
@@ -137,6 +138,7 @@ public abstract class BaseBpmnXMLConverter implements BpmnXMLConstants {
         FlowNode flowNode = (FlowNode) currentFlowElement;
         flowNode.setAsynchronous(async);//是否异步
         flowNode.setNotExclusive(notExclusive);//是否排他
+        flowNode.setJobPriority(jobPriority);
         
         if (currentFlowElement instanceof Activity) {//是否是活动节点
           
@@ -195,6 +197,7 @@ public abstract class BaseBpmnXMLConverter implements BpmnXMLConstants {
         if (flowNode.isNotExclusive()) {
           writeQualifiedAttribute(ATTRIBUTE_ACTIVITY_EXCLUSIVE, ATTRIBUTE_VALUE_FALSE, xtw);
         }
+        writeQualifiedAttribute(ATTRIBUTE_ACTIVITY_JOB_PRIORITY, flowNode.getJobPriority(), xtw);
       }
       
       if (baseElement instanceof Activity) {
@@ -290,13 +293,8 @@ public abstract class BaseBpmnXMLConverter implements BpmnXMLConstants {
   protected void parseChildElements(String elementName, BaseElement parentElement, Map<String, BaseChildElementParser> additionalParsers, 
       BpmnModel model, XMLStreamReader xtr) throws Exception {
     
-    Map<String, BaseChildElementParser> childParsers = new HashMap<String, BaseChildElementParser>();
-    if (additionalParsers != null) { //判断是否为空??
-      //如果不为空  将用户自定义的子元素 解析器集合 添加到  childParsers 中
-      childParsers.putAll(additionalParsers);
-    }
-    //委托 BpmnXMLUtil.parseChildElements解析子元素
-    BpmnXMLUtil.parseChildElements(elementName, parentElement, xtr, childParsers, model);
+    //委托 BpmnXMLUtil.parseChildElements解析子元素, 用户自定义的子元素解析器 (可以为空) 优先于内置的解析器
+    BpmnXMLUtil.parseChildElements(elementName, parentElement, xtr, additionalParsers, model);
   }
   
   @SuppressWarnings("unchecked")
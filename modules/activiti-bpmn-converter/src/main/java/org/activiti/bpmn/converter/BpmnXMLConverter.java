@@ -17,11 +17,13 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import javax.xml.XMLConstants;
 import javax.xml.stream.XMLInputFactory;
@@ -154,6 +156,14 @@ public class BpmnXMLConverter implements BpmnXMLConstants {
 	protected static Map<Class<? extends BaseElement>, BaseBpmnXMLConverter> convertersToXMLMap = 
 	    new HashMap<Class<? extends BaseElement>, BaseBpmnXMLConverter>();
 	
+	/**
+	 * Configured input factories per context class loader, which {@link XMLInputFactory#newInstance()} uses to look up
+	 * the StAX implementation: that lookup is costly to do for every conversion. Softly referenced, so a factory loaded
+	 * by the context class loader (like in a web application) doesn't keep that class loader from being collected.
+	 */
+	protected static Map<ClassLoader, SoftReference<XMLInputFactory>> xmlInputFactories = 
+	    new WeakHashMap<ClassLoader, SoftReference<XMLInputFactory>>();
+	
 	protected ClassLoader classloader;
 	protected List<String> userTaskFormTypes;
 	protected List<String> startEventFormTypes;
@@ -350,24 +360,12 @@ public class BpmnXMLConverter implements BpmnXMLConstants {
   }
   
   public BpmnModel convertToBpmnModel(InputStreamProvider inputStreamProvider, boolean validateSchema, boolean enableSafeBpmnXml, String encoding) {
-    XMLInputFactory xif = XMLInputFactory.newInstance(); //实例化工厂
-    //为 此对象 添加防护措施, 防止外部DTD 或者XSD入侵
-    if (xif.isPropertySupported(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES)) {
-      xif.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
-    }
-
-    if (xif.isPropertySupported(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES)) {
-      xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
-    }
-
-    if (xif.isPropertySupported(XMLInputFactory.SUPPORT_DTD)) {
-      xif.setProperty(XMLInputFactory.SUPPORT_DTD, false);
-    }
+    XMLInputFactory xif = getXMLInputFactory();
         // 初始化此类
     InputStreamReader in = null;
     try {
       in = new InputStreamReader(inputStreamProvider.getInputStream(), encoding);
-      XMLStreamReader xtr = xif.createXMLStreamReader(in); // 创建此类
+      XMLStreamReader xtr = createXMLStreamReader(xif, in); // 创建此类
   
       try {
         if (validateSchema) { //判断是否 开启了Schema验证,  如果开启了 则需要验证流程文档中定义的元素是否符合XSD 文件约束要求
@@ -380,7 +378,7 @@ public class BpmnXMLConverter implements BpmnXMLConstants {
             // 验证完成之后  需要重新打开  InputStreamReader 并且实例化 XMLStreamReader类
           in = new InputStreamReader(inputStreamProvider.getInputStream(), encoding);
           //因为Schema文件验证完毕之后该流已经被关闭了, 因此需要重新打开该流
-          xtr = xif.createXMLStreamReader(in);
+          xtr = createXMLStreamReader(xif, in);
         }
   
       } catch (Exception e) {
@@ -403,6 +401,46 @@ public class BpmnXMLConverter implements BpmnXMLConstants {
       }
     }
   }
+  
+  protected XMLInputFactory getXMLInputFactory() {
+    ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+    synchronized (xmlInputFactories) {
+      SoftReference<XMLInputFactory> reference = xmlInputFactories.get(contextClassLoader);
+      XMLInputFactory xif = reference != null ? reference.get() : null;
+      if (xif == null) {
+        xif = createXMLInputFactory();
+        xmlInputFactories.put(contextClassLoader, new SoftReference<XMLInputFactory>(xif));
+      }
+      return xif;
+    }
+  }
+  
+  protected XMLInputFactory createXMLInputFactory() {
+    XMLInputFactory xif = XMLInputFactory.newInstance(); //实例化工厂
+    //为 此对象 添加防护措施, 防止外部DTD 或者XSD入侵
+    if (xif.isPropertySupported(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES)) {
+      xif.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
+    }
+
+    if (xif.isPropertySupported(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES)) {
+      xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    if (xif.isPropertySupported(XMLInputFactory.SUPPORT_DTD)) {
+      xif.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    }
+    return xif;
+  }
+  
+  /**
+   * StAX doesn't require a factory to be thread-safe, so a shared factory creates one reader at a time.
+   * The readers themselves are not shared.
+   */
+  protected XMLStreamReader createXMLStreamReader(XMLInputFactory xif, InputStreamReader in) throws XMLStreamException {
+    synchronized (xif) {
+      return xif.createXMLStreamReader(in);
+    }
+  }
     /*
         当元素解析的运行环境(加载 和验证 流程文档信息) 准备完毕
         开始调用此()
@@ -760,6 +798,7 @@ public class BpmnXMLConverter implements BpmnXMLConstants {
           if (subProcess.isNotExclusive()) {
             BpmnXMLUtil.writeQualifiedAttribute(ATTRIBUTE_ACTIVITY_EXCLUSIVE, ATTRIBUTE_VALUE_FALSE, xtw);
           }
+          BpmnXMLUtil.writeQualifiedAttribute(ATTRIBUTE_ACTIVITY_JOB_PRIORITY, subProcess.getJobPriority(), xtw);
         }
       }
       
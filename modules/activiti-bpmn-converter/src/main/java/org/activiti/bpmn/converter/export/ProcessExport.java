@@ -32,7 +32,8 @@ public class ProcessExport implements BpmnXMLConstants {
       new ExtensionAttribute(ATTRIBUTE_NAME),
       new ExtensionAttribute(ATTRIBUTE_PROCESS_EXECUTABLE),
       new ExtensionAttribute(ACTIVITI_EXTENSIONS_NAMESPACE, ATTRIBUTE_PROCESS_CANDIDATE_USERS),
-      new ExtensionAttribute(ACTIVITI_EXTENSIONS_NAMESPACE, ATTRIBUTE_PROCESS_CANDIDATE_GROUPS)
+      new ExtensionAttribute(ACTIVITI_EXTENSIONS_NAMESPACE, ATTRIBUTE_PROCESS_CANDIDATE_GROUPS),
+      new ExtensionAttribute(ACTIVITI_EXTENSIONS_NAMESPACE, ATTRIBUTE_ACTIVITY_JOB_PRIORITY)
   );
 
   @SuppressWarnings("unchecked")
@@ -57,6 +58,10 @@ public class ProcessExport implements BpmnXMLConstants {
           BpmnXMLUtil.convertToDelimitedString(process.getCandidateStarterGroups()));
     }
 
+    if (StringUtils.isNotEmpty(process.getJobPriority())) {
+      xtw.writeAttribute(ACTIVITI_EXTENSIONS_PREFIX, ACTIVITI_EXTENSIONS_NAMESPACE, ATTRIBUTE_ACTIVITY_JOB_PRIORITY, process.getJobPriority());
+    }
+
     // write custom attributes
     BpmnXMLUtil.writeCustomAttributes(process.getAttributes().values(), xtw, defaultProcessAttributes);
 
@@ -50,6 +50,8 @@ public class ProcessParser implements BpmnXMLConstants {
         process.setCandidateStarterGroups(candidateGroups);
       }
 
+      process.setJobPriority(xtr.getAttributeValue(ACTIVITI_EXTENSIONS_NAMESPACE, ATTRIBUTE_ACTIVITY_JOB_PRIORITY));
+
       BpmnXMLUtil.addCustomAttributes(xtr, process, ProcessExport.defaultProcessAttributes);
 
       model.getProcesses().add(process);
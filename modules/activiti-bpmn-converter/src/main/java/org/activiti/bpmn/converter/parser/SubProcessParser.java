@@ -64,6 +64,7 @@ public class SubProcessParser implements BpmnXMLConstants {
 		
 		subProcess.setAsynchronous(async);
 		subProcess.setNotExclusive(notExclusive);
+    subProcess.setJobPriority(xtr.getAttributeValue(ACTIVITI_EXTENSIONS_NAMESPACE, ATTRIBUTE_ACTIVITY_JOB_PRIORITY));
     subProcess.setForCompensation(forCompensation);
     if(StringUtils.isNotEmpty(xtr.getAttributeValue(null, ATTRIBUTE_DEFAULT))) {
       subProcess.setDefaultFlow(xtr.getAttributeValue(null, ATTRIBUTE_DEFAULT));
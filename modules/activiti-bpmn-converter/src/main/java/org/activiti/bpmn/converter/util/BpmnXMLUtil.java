@@ -133,31 +133,19 @@ public class BpmnXMLUtil implements BpmnXMLConstants {
   public static void parseChildElements(String elementName, BaseElement parentElement, XMLStreamReader xtr, 
       Map<String, BaseChildElementParser> childParsers, BpmnModel model) throws Exception {
     /*
-    该集合的初始化工作 分为两步
-    1)获取内置子元素 解析器 集合
-    genericChildParserMap 的值 添加到 localParserMap 中
-    genericChildParserMap 集合的初始化过程 可以参考该类的静态代码块
-    2)获取childParsers  参数值 ,如果该参数值 不为空 ,则将该值 添加到子元素解析器 集合  localarserMap中
-     因为 是Map 结构
-     所以 用户自定义的子元素解析器, 可以覆盖, Activiti 默认的子元素解析器
-     该参数值的 有无非常重要
-     直接影响 子元素解析 时 所需要使用的解析器
+    子元素解析器: childParsers 参数中的解析器优先, 其次是内置的 genericChildParserMap (参考该类的静态代码块)
+    所以 用户自定义的子元素解析器, 可以覆盖, Activiti 默认的子元素解析器
+    不再为每个元素复制这两个集合, 见 getChildParser()
      */
-    Map<String, BaseChildElementParser> localParserMap =
-        new HashMap<String, BaseChildElementParser>(genericChildParserMap);  //初始化  子元素解析器 集合
-    if (childParsers != null) {
-      localParserMap.putAll(childParsers);
-    }
-
     boolean inExtensionElements = false;
     boolean readyWithChildElements = false;
     while (readyWithChildElements == false && xtr.hasNext()) {
       xtr.next(); //移动读取器游标
       if (xtr.isStartElement()) { //开始元素
+        BaseChildElementParser childParser = getChildParser(xtr.getLocalName(), childParsers); //从子元素解析器集合中获取查找
         if (ELEMENT_EXTENSIONS.equals(xtr.getLocalName())) {
           inExtensionElements = true;//如果是扩展元素 设置该变量值为true
-        } else if (localParserMap.containsKey(xtr.getLocalName())) {
-          BaseChildElementParser childParser = localParserMap.get(xtr.getLocalName()); //从通用子元素集合中获取查找
+        } else if (childParser != null) {
           //if we're into an extension element but the current element is not accepted by this parentElement then is read as a custom extension element
           /*
            如果当前元素是 extensionElememnt 元素的子元素      &&  扩展元素的判断
@@ -182,7 +170,7 @@ public class BpmnXMLUtil implements BpmnXMLConstants {
             continue;
           }
           //开始解析 通用子元素   根据子元素的名称 获取子元素解析器进行子元素的解析工作
-          localParserMap.get(xtr.getLocalName()).parseChildElement(xtr, parentElement, model);
+          childParser.parseChildElement(xtr, parentElement, model);
         } else if (inExtensionElements) { //如果是用户自定义扩展元素
           ExtensionElement extensionElement = BpmnXMLUtil.parseExtensionElement(xtr);
           /*
@@ -207,6 +195,18 @@ public class BpmnXMLUtil implements BpmnXMLConstants {
       }
     }
   }
+  
+  /** The parser of the given child element: one of the given child parsers, or else a generic one */
+  protected static BaseChildElementParser getChildParser(String elementName, Map<String, BaseChildElementParser> childParsers) {
+    if (childParsers != null) {
+      BaseChildElementParser childParser = childParsers.get(elementName);
+      if (childParser != null) {
+        return childParser;
+      }
+    }
+    return genericChildParserMap.get(elementName);
+  }
+  
   /*
   自定义元素解析原理
   自定义元素的属性个数不限, 定义多少个 就解析多少个
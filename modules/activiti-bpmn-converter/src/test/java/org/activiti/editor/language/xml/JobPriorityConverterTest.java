@@ -0,0 +1,47 @@
+package org.activiti.editor.language.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.activiti.bpmn.model.BpmnModel;
+import org.activiti.bpmn.model.EndEvent;
+import org.activiti.bpmn.model.ServiceTask;
+import org.activiti.bpmn.model.SubProcess;
+import org.junit.Test;
+
+public class JobPriorityConverterTest extends AbstractConverterTest {
+
+  @Test
+  public void convertXMLToModel() throws Exception {
+    BpmnModel bpmnModel = readXMLFile();
+    validateModel(bpmnModel);
+  }
+  
+  @Test
+  public void convertModelToXML() throws Exception {
+    BpmnModel bpmnModel = readXMLFile();
+    BpmnModel parsedModel = exportAndReadXMLFile(bpmnModel);
+    validateModel(parsedModel);
+    deployProcess(parsedModel);
+  }
+  
+  protected String getResource() {
+    return "jobprioritymodel.bpmn";
+  }
+  
+  private void validateModel(BpmnModel model) {
+    assertEquals("20", model.getMainProcess().getJobPriority());
+    assertTrue(model.getMainProcess().getAttributes().isEmpty());
+    
+    ServiceTask serviceTask = (ServiceTask) model.getMainProcess().getFlowElement("servicetask");
+    assertTrue(serviceTask.isAsynchronous());
+    assertEquals("${priority}", serviceTask.getJobPriority());
+    
+    SubProcess subProcess = (SubProcess) model.getMainProcess().getFlowElement("subProcess");
+    assertEquals("80", subProcess.getJobPriority());
+    
+    EndEvent endEvent = (EndEvent) model.getMainProcess().getFlowElement("endEvent");
+    assertNull(endEvent.getJobPriority());
+  }
+}
@@ -0,0 +1,73 @@
+package org.activiti.editor.language.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLInputFactory;
+
+import org.activiti.bpmn.converter.BpmnXMLConverter;
+import org.activiti.bpmn.converter.util.InputStreamProvider;
+import org.activiti.bpmn.model.BpmnModel;
+import org.junit.Test;
+
+public class XMLInputFactoryCacheTest {
+
+  @Test
+  public void factoryPerContextClassLoader() throws Exception {
+    XMLInputFactory factory = new TestBpmnXMLConverter().getXMLInputFactory();
+    assertSame(factory, new TestBpmnXMLConverter().getXMLInputFactory());
+
+    Thread thread = Thread.currentThread();
+    ClassLoader contextClassLoader = thread.getContextClassLoader();
+    thread.setContextClassLoader(new URLClassLoader(new URL[0], contextClassLoader));
+    try {
+      assertNotSame(factory, new TestBpmnXMLConverter().getXMLInputFactory());
+    } finally {
+      thread.setContextClassLoader(contextClassLoader);
+    }
+    assertSame(factory, new TestBpmnXMLConverter().getXMLInputFactory());
+  }
+
+  @Test
+  public void concurrentConversions() throws Exception {
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<BpmnModel>> models = new ArrayList<Future<BpmnModel>>();
+      for (int i = 0; i < 40; i++) {
+        models.add(executorService.submit(new Callable<BpmnModel>() {
+          public BpmnModel call() throws Exception {
+            return new BpmnXMLConverter().convertToBpmnModel(new InputStreamProvider() {
+              public InputStream getInputStream() {
+                return XMLInputFactoryCacheTest.class.getClassLoader().getResourceAsStream("jobprioritymodel.bpmn");
+              }
+            }, false, false);
+          }
+        }));
+      }
+      for (Future<BpmnModel> model : models) {
+        assertEquals("20", model.get().getMainProcess().getJobPriority());
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  protected static class TestBpmnXMLConverter extends BpmnXMLConverter {
+
+    @Override
+    public XMLInputFactory getXMLInputFactory() {
+      return super.getXMLInputFactory();
+    }
+  }
+}
@@ -25,6 +25,7 @@ public abstract class FlowNode extends FlowElement {
 
   protected boolean asynchronous;
   protected boolean notExclusive;
+  protected String jobPriority;
   protected List<SequenceFlow> incomingFlows = new ArrayList<SequenceFlow>();
   protected List<SequenceFlow> outgoingFlows = new ArrayList<SequenceFlow>();
 
@@ -42,6 +43,14 @@ public abstract class FlowNode extends FlowElement {
   public void setNotExclusive(boolean notExclusive) {
     this.notExclusive = notExclusive;
   }
+  
+  public String getJobPriority() {
+    return jobPriority;
+  }
+  
+  public void setJobPriority(String jobPriority) {
+    this.jobPriority = jobPriority;
+  }
 
   public List<SequenceFlow> getIncomingFlows() {
     return incomingFlows;
@@ -63,5 +72,6 @@ public abstract class FlowNode extends FlowElement {
     super.setValues(otherNode);
     setAsynchronous(otherNode.isAsynchronous());
     setNotExclusive(otherNode.isNotExclusive());
+    setJobPriority(otherNode.getJobPriority());
   }
 }
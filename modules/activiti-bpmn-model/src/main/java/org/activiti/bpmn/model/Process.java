@@ -33,6 +33,7 @@ public class Process extends BaseElement implements FlowElementsContainer, HasEx
   protected List<String> candidateStarterUsers = new ArrayList<String>();
   protected List<String> candidateStarterGroups = new ArrayList<String>();
   protected List<EventListener> eventListeners = new ArrayList<EventListener>();
+  protected String jobPriority;
   
   public Process() {
   	
@@ -198,6 +199,14 @@ public class Process extends BaseElement implements FlowElementsContainer, HasEx
     this.candidateStarterGroups = candidateStarterGroups;
   }
   
+  public String getJobPriority() {
+    return jobPriority;
+  }
+
+  public void setJobPriority(String jobPriority) {
+    this.jobPriority = jobPriority;
+  }
+  
   public List<EventListener> getEventListeners() {
 	  return eventListeners;
   }
@@ -278,6 +287,7 @@ public class Process extends BaseElement implements FlowElementsContainer, HasEx
     setName(otherElement.getName());
     setExecutable(otherElement.isExecutable());
     setDocumentation(otherElement.getDocumentation());
+    setJobPriority(otherElement.getJobPriority());
     if (otherElement.getIoSpecification() != null) {
       setIoSpecification(otherElement.getIoSpecification().clone());
     }
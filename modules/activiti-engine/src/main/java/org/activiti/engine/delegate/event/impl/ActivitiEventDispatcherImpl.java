@@ -125,6 +125,37 @@ public class ActivitiEventDispatcherImpl implements ActivitiEventDispatcher {
 		}
 	}
 
+	/**
+	 * Allows callers to skip building an event that no listener would receive.
+	 * @param type type of the event that is about to be dispatched.
+	 * @return true, if event dispatching is enabled and an event of the given type could reach at least one listener.
+	 */
+	public boolean hasListeners(ActivitiEventType type) {
+		if (!enabled) {
+			return false;
+		}
+		if (eventSupport.hasListeners(type)) {
+			return true;
+		}
+		if (Context.isExecutionContextActive()) {
+			ProcessDefinitionEntity definition = Context.getExecutionContext().getProcessDefinition();
+			return definition != null && definition.getEventSupport().hasListeners(type);
+		}
+		// the process definition is only known once the event itself is built
+		return Context.getCommandContext() != null;
+	}
+
+	/**
+	 * @return true, if an event of the given type could reach a listener of the given dispatcher. 
+	 * Other dispatcher implementations can't tell, so for those this is true whenever they are enabled.
+	 */
+	public static boolean hasListeners(ActivitiEventDispatcher eventDispatcher, ActivitiEventType type) {
+		if (eventDispatcher instanceof ActivitiEventDispatcherImpl) {
+			return ((ActivitiEventDispatcherImpl) eventDispatcher).hasListeners(type);
+		}
+		return eventDispatcher.isEnabled();
+	}
+
 	/**
 	 * In case no process-context is active, this method attempts to extract a
 	 * process-definition based on the event. In case it's an event related to an
@@ -12,6 +12,7 @@
  */
 package org.activiti.engine.delegate.event.impl;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -50,12 +51,22 @@ public class ActivitiEventSupport {
 
 	private static final Logger LOG = LoggerFactory.getLogger(ActivitiEventSupport.class);
 
+	protected static final ActivitiEventListener[] NO_LISTENERS = new ActivitiEventListener[0];
+
 	protected List<ActivitiEventListener> eventListeners;
 	protected Map<ActivitiEventType, List<ActivitiEventListener>> typedListeners;
 
+	/**
+	 * The listeners to notify for each event type, indexed by {@link ActivitiEventType#ordinal()}: the global 
+	 * listeners followed by the typed ones. Rebuilt on every registration change and replaced as a whole, 
+	 * so dispatching only needs a volatile read and never iterates the listener lists.
+	 */
+	protected volatile ActivitiEventListener[][] listenersByType;
+
 	public ActivitiEventSupport() {
 		eventListeners = new CopyOnWriteArrayList<ActivitiEventListener>();
 		typedListeners = new HashMap<ActivitiEventType, List<ActivitiEventListener>>();
+		rebuildListenersByType();
 	}
 	/*
 		用于注册 全局事件监听器
@@ -70,6 +81,7 @@ public class ActivitiEventSupport {
 		// 为了避免重复注册监听器
 		if (!eventListeners.contains(listenerToAdd)) {
 			eventListeners.add(listenerToAdd);
+			rebuildListenersByType();
 		}
 	}
 	/*
@@ -93,12 +105,20 @@ public class ActivitiEventSupport {
 		}
 	}
 
-	public void removeEventListener(ActivitiEventListener listenerToRemove) {
+	public synchronized void removeEventListener(ActivitiEventListener listenerToRemove) {
 		eventListeners.remove(listenerToRemove);
 
 		for (List<ActivitiEventListener> listeners : typedListeners.values()) {
 			listeners.remove(listenerToRemove);
 		}
+		rebuildListenersByType();
+	}
+
+	/**
+	 * @return true, if at least one listener is registered that is notified of events of the given type.
+	 */
+	public boolean hasListeners(ActivitiEventType type) {
+		return listenersByType[type.ordinal()].length > 0;
 	}
 	/*
 
@@ -121,28 +141,15 @@ public class ActivitiEventSupport {
 		if (event.getType() == null) {
 			throw new ActivitiIllegalArgumentException("Event type cannot be null.");
 		}
-		//如果不为空
-		if (!eventListeners.isEmpty()) {
-			//循环遍历
-			//1) 先执行 所有的全局事件监听器,
-			for (ActivitiEventListener listener : eventListeners) {
-				dispatchEvent(event, listener);
-			}
-		}
-		//2) 然后开始执行具体类型的监听器
-
 		/*
 		那么结论是
 		如果 开发人员定义了 一个 全局事件监听器 A   和 具体类型的事件监听器B   分别对TASK_CREATED 的事件进行监听处理
 		则首先执行全局事件监听器A 然后执行具体类型的事件监听器B
 		同一个事件 可以对应多个 事件监听器
 		 */
-		List<ActivitiEventListener> typed = typedListeners.get(event.getType());
-		//
-		if (typed != null && !typed.isEmpty()) {
-			for (ActivitiEventListener listener : typed) {
-				dispatchEvent(event, listener);
-			}
+		ActivitiEventListener[] listeners = listenersByType[event.getType().ordinal()];
+		for (int i = 0; i < listeners.length; i++) {
+			dispatchEvent(event, listeners[i]);
 		}
 	}
 	/*
@@ -192,7 +199,32 @@ public class ActivitiEventSupport {
 		 */
 		if (!listeners.contains(listener)) {
 			listeners.add(listener);
+			rebuildListenersByType();
+		}
+	}
+
+	/**
+	 * Recomputes the listeners to notify per event type. Only called while holding the lock of this 
+	 * instance, dispatching threads keep using the previous arrays until the new ones are published.
+	 */
+	protected void rebuildListenersByType() {
+		ActivitiEventType[] types = ActivitiEventType.values();
+		ActivitiEventListener[][] newListenersByType = new ActivitiEventListener[types.length][];
+		for (ActivitiEventType type : types) {
+			List<ActivitiEventListener> typed = typedListeners.get(type);
+			int nrOfListeners = eventListeners.size() + (typed != null ? typed.size() : 0);
+			if (nrOfListeners == 0) {
+				newListenersByType[type.ordinal()] = NO_LISTENERS;
+			} else {
+				List<ActivitiEventListener> listeners = new ArrayList<ActivitiEventListener>(nrOfListeners);
+				listeners.addAll(eventListeners);
+				if (typed != null) {
+					listeners.addAll(typed);
+				}
+				newListenersByType[type.ordinal()] = listeners.toArray(new ActivitiEventListener[listeners.size()]);
+			}
 		}
+		listenersByType = newListenersByType;
 	}
 }
 
@@ -639,12 +639,13 @@ public class HistoricProcessInstanceQueryImpl extends AbstractVariableQueryImpl<
   @Override
   protected void checkQueryOk() {
     super.checkQueryOk();
-    
-    if(includeProcessVariables) {
-    	this.orderBy(HistoricProcessInstanceQueryProperty.INCLUDED_VARIABLE_TIME).asc();
+
+    // the process instances are fetched before their variables, without an explicit order keep returning them in the order they were started
+    if(includeProcessVariables && orderBy == null) {
+    	this.orderBy(HistoricProcessInstanceQueryProperty.START_TIME).asc();
     }
   }
-  
+
   public String getBusinessKey() {
     return businessKey;
   }
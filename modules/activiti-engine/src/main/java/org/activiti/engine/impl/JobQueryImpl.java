@@ -41,6 +41,9 @@ public class JobQueryImpl extends AbstractQuery<JobQuery, Job> implements JobQue
   protected boolean executable;
   protected boolean onlyTimers;
   protected boolean onlyMessages;
+  protected Integer priority;
+  protected Integer minPriority;
+  protected Integer maxPriority;
   protected Date duedateHigherThan;
   protected Date duedateLowerThan;
   protected Date duedateHigherThanOrEqual;
@@ -122,6 +125,30 @@ public class JobQueryImpl extends AbstractQuery<JobQuery, Job> implements JobQue
     return this;
   }
   
+  public JobQuery jobPriority(Integer priority) {
+    if (priority == null) {
+      throw new ActivitiIllegalArgumentException("Priority is null");
+    }
+    this.priority = priority;
+    return this;
+  }
+  
+  public JobQuery jobMinPriority(Integer minPriority) {
+    if (minPriority == null) {
+      throw new ActivitiIllegalArgumentException("Min Priority is null");
+    }
+    this.minPriority = minPriority;
+    return this;
+  }
+  
+  public JobQuery jobMaxPriority(Integer maxPriority) {
+    if (maxPriority == null) {
+      throw new ActivitiIllegalArgumentException("Max Priority is null");
+    }
+    this.maxPriority = maxPriority;
+    return this;
+  }
+  
   public JobQuery duedateHigherThan(Date date) {
     if (date == null) {
       throw new ActivitiIllegalArgumentException("Provided date is null");
@@ -223,6 +250,10 @@ public class JobQueryImpl extends AbstractQuery<JobQuery, Job> implements JobQue
     return orderBy(JobQueryProperty.RETRIES);
   }
   
+  public JobQuery orderByJobPriority() {
+    return orderBy(JobQueryProperty.PRIORITY);
+  }
+  
   public JobQuery orderByTenantId() {
   	 return orderBy(JobQueryProperty.TENANT_ID);
   }
@@ -257,6 +288,15 @@ public class JobQueryImpl extends AbstractQuery<JobQuery, Job> implements JobQue
   public boolean getExecutable() {
     return executable;
   }
+  public Integer getPriority() {
+    return priority;
+  }
+  public Integer getMinPriority() {
+    return minPriority;
+  }
+  public Integer getMaxPriority() {
+    return maxPriority;
+  }
   public Date getNow() {
     return Context.getProcessEngineConfiguration().getClock().getCurrentTime();
   }
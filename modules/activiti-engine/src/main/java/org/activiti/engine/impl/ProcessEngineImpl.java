@@ -29,10 +29,12 @@ import org.activiti.engine.delegate.event.impl.ActivitiEventBuilder;
 import org.activiti.engine.impl.asyncexecutor.AsyncExecutor;
 import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
 import org.activiti.engine.impl.cfg.TransactionContextFactory;
+import org.activiti.engine.impl.db.StripedDbIdGenerator;
 import org.activiti.engine.impl.el.ExpressionManager;
 import org.activiti.engine.impl.interceptor.CommandExecutor;
 import org.activiti.engine.impl.interceptor.SessionFactory;
 import org.activiti.engine.impl.jobexecutor.JobExecutor;
+import org.activiti.engine.impl.persistence.deploy.ProcessDefinitionWarmUp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -109,6 +111,12 @@ public class ProcessEngineImpl implements ProcessEngine {
     注册流程引擎  此() 将 此类 注册到  ProcessEngines中
      */
     ProcessEngines.registerProcessEngine(this);
+    
+    // Resolve the configured process definitions before any job is executed
+    if (processEngineConfiguration.getProcessDefinitionWarmUpKeys() != null) {
+      new ProcessDefinitionWarmUp(commandExecutor, processEngineConfiguration.getProcessDefinitionWarmUpPoolSize())
+        .warmUp(processEngineConfiguration.getProcessDefinitionWarmUpKeys());
+    }
   /*
     作业执行器
    */
@@ -152,6 +160,10 @@ public class ProcessEngineImpl implements ProcessEngine {
     if (asyncExecutor != null && asyncExecutor.isActive()) {
       asyncExecutor.shutdown();
     }
+    
+    if (processEngineConfiguration.getIdGenerator() instanceof StripedDbIdGenerator) {
+      ((StripedDbIdGenerator) processEngineConfiguration.getIdGenerator()).shutdown();
+    }
   //执行SchemaOperationProcessEngineClose 命令
     commandExecutor.execute(processEngineConfiguration.getSchemaCommandConfig(), new SchemaOperationProcessEngineClose());
     //执行 流程引擎声明周期监听器,,,  onProcessEngineClosed()
@@ -12,7 +12,12 @@
  */
 package org.activiti.engine.impl.asyncexecutor;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.activiti.engine.impl.context.Context;
@@ -54,11 +59,59 @@ public abstract class AbstractAsyncJobExecutor implements AsyncExecutor {
   protected int defaultAsyncJobAcquireWaitTimeInMillis = 10 * 1000;
   protected int defaultQueueSizeFullWaitTime = 0; 
   
+  /** Optional channel that wakes up the async job acquisition when new jobs are available */
+  protected AsyncJobNotificationChannel jobNotificationChannel;
+  
+  /** Upper bound of the async job acquire wait time when backing off, only used with a {@link #jobNotificationChannel} */
+  protected int maxAsyncJobAcquireWaitTimeInMillis = 60 * 1000;
+  
   protected String lockOwner = UUID.randomUUID().toString();
   protected int timerLockTimeInMillis = 5 * 60 * 1000;
   protected int asyncJobLockTimeInMillis = 5 * 60 * 1000;
   protected int retryWaitTimeInMillis = 500;
   
+  /** Lock, execute and unlock exclusive jobs in one transaction (only used when no {@link #executeAsyncRunnableFactory} is set) */
+  protected boolean singleTransactionForExclusiveJobs = false;
+  
+  /** 
+   * Execute the exclusive jobs of a process instance one after another on this node, and acquire
+   * the due exclusive jobs of a process instance together (see {@link DefaultAsyncJobExecutor}).
+   */
+  protected boolean exclusiveJobAffinity = false;
+  
+  /** 
+   * The maximum number of non exclusive jobs of the same tenant (and priority) that are executed together in one transaction, 
+   * see {@link ExecuteAsyncJobsBulkRunnable}. The default of 1 executes every job in a transaction of its own.
+   * Only used when no {@link #executeAsyncRunnableFactory} is set.
+   */
+  protected int bulkJobExecutionSize = 1;
+  
+  /** 
+   * Fire the timers due within {@link #timerWheelHorizonInMillis} from an in-memory {@link TimerWheel}, 
+   * reconciled with the database every {@link #timerWheelReconciliationIntervalInMillis}, instead of polling for due timers.
+   */
+  protected boolean timerWheelEnabled = false;
+  protected int timerWheelHorizonInMillis = 60 * 1000;
+  protected int timerWheelReconciliationIntervalInMillis = 30 * 1000;
+  protected TimerWheel timerWheel;
+  
+  /** 
+   * Size every job acquisition from the free capacity of the executor, the recent job duration and the lock time 
+   * (see {@link AdaptiveJobAcquisitionSizer}), up to {@link #maxJobsPerAdaptiveAcquisition} jobs, 
+   * instead of using {@link #maxAsyncJobsDuePerAcquisition} and {@link #maxTimerJobsPerAcquisition}.
+   */
+  protected boolean adaptiveJobAcquisition = false;
+  protected int maxJobsPerAdaptiveAcquisition = 100;
+  protected AdaptiveJobAcquisitionSizer acquisitionSizer;
+  
+  /** 
+   * Only acquire the jobs in the partitions of this node, the partitions are divided over the nodes 
+   * with a lease renewed every third of {@link #jobPartitionLeaseTimeInMillis} (see {@link JobPartitionManager}).
+   */
+  protected boolean jobPartitioning = false;
+  protected long jobPartitionLeaseTimeInMillis = 60 * 1000;
+  protected JobPartitionManager partitionManager;
+  
   // Job queue used when async executor is not yet started and jobs are already added.
   // This is mainly used for testing purpose.
   protected LinkedList<JobEntity> temporaryJobQueue = new LinkedList<JobEntity>();
@@ -67,8 +120,8 @@ public abstract class AbstractAsyncJobExecutor implements AsyncExecutor {
   
   public boolean executeAsyncJob(JobEntity job) {
     if (isActive) {
-      Runnable runnable = createRunnableForJob(job);
-      boolean result = executeAsyncJob(runnable);
+      Runnable runnable = recordJobDuration(createRunnableForJob(job), 1);
+      boolean result = executeAsyncJob(job, runnable);
       if (!result) {
         doUnlockJob(job);
       }
@@ -79,8 +132,135 @@ public abstract class AbstractAsyncJobExecutor implements AsyncExecutor {
     }
   }
 
+  /**
+   * Executes the acquired jobs, in bulks of at most {@link #bulkJobExecutionSize} jobs when enabled.
+   * Returns false when one of the jobs was rejected.
+   */
+  public boolean executeAsyncJobs(Collection<JobEntity> jobs) {
+    boolean allJobsSuccessfullyOffered = true;
+    if (!isBulkJobExecutionEnabled()) {
+      for (JobEntity job : jobs) {
+        if (!executeAsyncJob(job)) {
+          allJobsSuccessfullyOffered = false;
+        }
+      }
+      return allJobsSuccessfullyOffered;
+    }
+    
+    // Jobs of the same tenant and priority are executed together, in the order they were acquired
+    Map<String, List<JobEntity>> bulks = new LinkedHashMap<String, List<JobEntity>>();
+    for (JobEntity job : jobs) {
+      if (job.isExclusive()) {
+        if (!executeAsyncJob(job)) {
+          allJobsSuccessfullyOffered = false;
+        }
+        continue;
+      }
+      
+      String bulkKey = (job.getTenantId() != null ? job.getTenantId() : "") + "|" + job.getPriority();
+      List<JobEntity> bulk = bulks.get(bulkKey);
+      if (bulk == null) {
+        bulk = new ArrayList<JobEntity>();
+        bulks.put(bulkKey, bulk);
+      }
+      bulk.add(job);
+      if (bulk.size() >= bulkJobExecutionSize) {
+        bulks.remove(bulkKey);
+        if (!executeAsyncJobBulk(bulk)) {
+          allJobsSuccessfullyOffered = false;
+        }
+      }
+    }
+    
+    for (List<JobEntity> bulk : bulks.values()) {
+      if (!executeAsyncJobBulk(bulk)) {
+        allJobsSuccessfullyOffered = false;
+      }
+    }
+    return allJobsSuccessfullyOffered;
+  }
+  
+  protected boolean isBulkJobExecutionEnabled() {
+    return bulkJobExecutionSize > 1 && executeAsyncRunnableFactory instanceof DefaultExecuteAsyncRunnableFactory;
+  }
+  
+  protected boolean executeAsyncJobBulk(List<JobEntity> jobs) {
+    if (jobs.size() == 1) {
+      return executeAsyncJob(jobs.get(0));
+    }
+    
+    if (isActive) {
+      Runnable runnable = recordJobDuration(new ExecuteAsyncJobsBulkRunnable(jobs, commandExecutor), jobs.size());
+      boolean result = executeAsyncJob(jobs.get(0), runnable);
+      if (!result) {
+        for (JobEntity job : jobs) {
+          doUnlockJob(job);
+        }
+      }
+      return result; // false indicates that the jobs were rejected.
+    } else {
+      temporaryJobQueue.addAll(jobs);
+      return true;
+    }
+  }
+
+  protected Runnable recordJobDuration(Runnable runnable, int jobCount) {
+    AdaptiveJobAcquisitionSizer sizer = acquisitionSizer;
+    return sizer != null ? new JobDurationRecordingRunnable(runnable, jobCount, sizer) : runnable;
+  }
+
   protected abstract boolean executeAsyncJob(Runnable runnable);
+  
+  /** 
+   * The number of jobs the executor can take right now without rejecting them, 
+   * or -1 when unknown. Used by the {@link AdaptiveJobAcquisitionSizer}. 
+   */
+  public int getRemainingCapacity() {
+    return -1;
+  }
+  
+  /** The number of jobs the executor executes at the same time, or -1 when unknown. */
+  public int getConcurrency() {
+    return -1;
+  }
+  
+  /** The number of jobs waiting for a thread. */
+  public int getQueuedJobCount() {
+    return 0;
+  }
+  
+  /** The number of jobs acquired before the executor was started, all executed at once when it starts. */
+  public int getTemporaryQueuedJobCount() {
+    return temporaryJobQueue.size();
+  }
+  
+  /** Executes the runnable of the given job, subclasses can use the job (like its priority) to decide where to run it */
+  protected boolean executeAsyncJob(JobEntity job, Runnable runnable) {
+    return executeAsyncJob(runnable);
+  }
 
+  /** Adds a timer that was created on this node to the timer wheel (when used) */
+  public void timerScheduled(JobEntity timer) {
+    TimerWheel wheel = timerWheel;
+    AcquireTimerJobsRunnable runnable = timerJobRunnable;
+    JobPartitionManager partitions = partitionManager;
+    if (partitions != null && !partitions.isOwned(timer.getPartition())) {
+      // fired by the node owning the partition of the timer
+      return;
+    }
+    if (wheel != null && wheel.add(timer.getId(), timer.getDuedate()) && runnable != null) {
+      runnable.onTimerAdded(timer.getDuedate());
+    }
+  }
+  
+  /** Removes a timer that was deleted on this node from the timer wheel (when used) */
+  public void timerDeleted(JobEntity timer) {
+    TimerWheel wheel = timerWheel;
+    if (wheel != null) {
+      wheel.remove(timer.getId());
+    }
+  }
+  
   protected void doUnlockJob(final JobEntity job) {
     // The job will now be 'unlocked', meaning that the lock owner/time is set to null,
     // so other executors can pick the job up (or this async executor, the next time the 
@@ -122,22 +302,44 @@ public abstract class AbstractAsyncJobExecutor implements AsyncExecutor {
     
     isActive = true;
         
-    while (temporaryJobQueue.isEmpty() == false) {
-      JobEntity job = temporaryJobQueue.pop();
-      executeAsyncJob(job);
+    if (temporaryJobQueue.isEmpty() == false) {
+      List<JobEntity> jobs = new ArrayList<JobEntity>(temporaryJobQueue);
+      temporaryJobQueue.clear();
+      executeAsyncJobs(jobs);
     }
     isActive = true;
   }
 
   protected void initialize() {
+    if (timerWheelEnabled && timerWheel == null) {
+      timerWheel = new TimerWheel();
+    }
+    if (adaptiveJobAcquisition && acquisitionSizer == null) {
+      acquisitionSizer = new AdaptiveJobAcquisitionSizer(this);
+      acquisitionSizer.setMaxJobsPerAcquisition(maxJobsPerAdaptiveAcquisition);
+    }
+    if (jobPartitioning && partitionManager == null) {
+      partitionManager = new JobPartitionManager();
+      partitionManager.setLeaseTimeInMillis(jobPartitionLeaseTimeInMillis);
+    }
     if (timerJobRunnable == null) {
       timerJobRunnable = new AcquireTimerJobsRunnable(this);
+      timerJobRunnable.setAcquisitionSizer(acquisitionSizer);
+      timerJobRunnable.setPartitionManager(partitionManager);
+      timerJobRunnable.setTimerWheel(timerWheel);
+      timerJobRunnable.setTimerWheelHorizonInMillis(timerWheelHorizonInMillis);
+      timerJobRunnable.setTimerWheelReconciliationIntervalInMillis(timerWheelReconciliationIntervalInMillis);
     }
     if (asyncJobsDueRunnable == null) {
       asyncJobsDueRunnable = new AcquireAsyncJobsDueRunnable(this);
+      asyncJobsDueRunnable.setJobNotificationChannel(jobNotificationChannel);
+      asyncJobsDueRunnable.setMaxAsyncJobAcquireWaitTimeInMillis(maxAsyncJobAcquireWaitTimeInMillis);
+      asyncJobsDueRunnable.setAcquireProcessInstanceJobsTogether(exclusiveJobAffinity);
+      asyncJobsDueRunnable.setAcquisitionSizer(acquisitionSizer);
+      asyncJobsDueRunnable.setPartitionManager(partitionManager);
     }
     if (executeAsyncRunnableFactory == null) {
-      executeAsyncRunnableFactory = new DefaultExecuteAsyncRunnableFactory();
+      executeAsyncRunnableFactory = new DefaultExecuteAsyncRunnableFactory(singleTransactionForExclusiveJobs);
     }
   }
   
@@ -151,6 +353,10 @@ public abstract class AbstractAsyncJobExecutor implements AsyncExecutor {
     asyncJobsDueRunnable.stop();
     stopExecutingAsyncJobs();
     
+    if (partitionManager != null) {
+      partitionManager.releaseLease(commandExecutor);
+    }
+    
     timerJobRunnable = null;
     asyncJobsDueRunnable = null;
     isActive = false;
@@ -289,9 +495,29 @@ public abstract class AbstractAsyncJobExecutor implements AsyncExecutor {
     this.timerJobRunnable = timerJobRunnable;
   }
 
+  public AcquireAsyncJobsDueRunnable getAsyncJobsDueRunnable() {
+    return asyncJobsDueRunnable;
+  }
+
   public void setAsyncJobsDueRunnable(AcquireAsyncJobsDueRunnable asyncJobsDueRunnable) {
     this.asyncJobsDueRunnable = asyncJobsDueRunnable;
   }
+  
+  public AsyncJobNotificationChannel getJobNotificationChannel() {
+    return jobNotificationChannel;
+  }
+
+  public void setJobNotificationChannel(AsyncJobNotificationChannel jobNotificationChannel) {
+    this.jobNotificationChannel = jobNotificationChannel;
+  }
+  
+  public int getMaxAsyncJobAcquireWaitTimeInMillis() {
+    return maxAsyncJobAcquireWaitTimeInMillis;
+  }
+
+  public void setMaxAsyncJobAcquireWaitTimeInMillis(int maxAsyncJobAcquireWaitTimeInMillis) {
+    this.maxAsyncJobAcquireWaitTimeInMillis = maxAsyncJobAcquireWaitTimeInMillis;
+  }
 
   public int getRetryWaitTimeInMillis() {
     return retryWaitTimeInMillis;
@@ -301,6 +527,113 @@ public abstract class AbstractAsyncJobExecutor implements AsyncExecutor {
     this.retryWaitTimeInMillis = retryWaitTimeInMillis;
   }
 
+  public boolean isSingleTransactionForExclusiveJobs() {
+    return singleTransactionForExclusiveJobs;
+  }
+
+  public void setSingleTransactionForExclusiveJobs(boolean singleTransactionForExclusiveJobs) {
+    this.singleTransactionForExclusiveJobs = singleTransactionForExclusiveJobs;
+  }
+
+  public boolean isExclusiveJobAffinity() {
+    return exclusiveJobAffinity;
+  }
+
+  public void setExclusiveJobAffinity(boolean exclusiveJobAffinity) {
+    this.exclusiveJobAffinity = exclusiveJobAffinity;
+  }
+
+  public int getBulkJobExecutionSize() {
+    return bulkJobExecutionSize;
+  }
+
+  public void setBulkJobExecutionSize(int bulkJobExecutionSize) {
+    this.bulkJobExecutionSize = bulkJobExecutionSize;
+  }
+
+  public boolean isTimerWheelEnabled() {
+    return timerWheelEnabled;
+  }
+
+  public void setTimerWheelEnabled(boolean timerWheelEnabled) {
+    this.timerWheelEnabled = timerWheelEnabled;
+  }
+
+  public int getTimerWheelHorizonInMillis() {
+    return timerWheelHorizonInMillis;
+  }
+
+  public void setTimerWheelHorizonInMillis(int timerWheelHorizonInMillis) {
+    this.timerWheelHorizonInMillis = timerWheelHorizonInMillis;
+  }
+
+  public int getTimerWheelReconciliationIntervalInMillis() {
+    return timerWheelReconciliationIntervalInMillis;
+  }
+
+  public void setTimerWheelReconciliationIntervalInMillis(int timerWheelReconciliationIntervalInMillis) {
+    this.timerWheelReconciliationIntervalInMillis = timerWheelReconciliationIntervalInMillis;
+  }
+
+  /** The timer wheel, only created when the async executor is started with {@link #timerWheelEnabled} */
+  public TimerWheel getTimerWheel() {
+    return timerWheel;
+  }
+
+  public void setTimerWheel(TimerWheel timerWheel) {
+    this.timerWheel = timerWheel;
+  }
+
+  public boolean isAdaptiveJobAcquisition() {
+    return adaptiveJobAcquisition;
+  }
+
+  public void setAdaptiveJobAcquisition(boolean adaptiveJobAcquisition) {
+    this.adaptiveJobAcquisition = adaptiveJobAcquisition;
+  }
+
+  public int getMaxJobsPerAdaptiveAcquisition() {
+    return maxJobsPerAdaptiveAcquisition;
+  }
+
+  public void setMaxJobsPerAdaptiveAcquisition(int maxJobsPerAdaptiveAcquisition) {
+    this.maxJobsPerAdaptiveAcquisition = maxJobsPerAdaptiveAcquisition;
+  }
+
+  public boolean isJobPartitioning() {
+    return jobPartitioning;
+  }
+
+  public void setJobPartitioning(boolean jobPartitioning) {
+    this.jobPartitioning = jobPartitioning;
+  }
+
+  public long getJobPartitionLeaseTimeInMillis() {
+    return jobPartitionLeaseTimeInMillis;
+  }
+
+  public void setJobPartitionLeaseTimeInMillis(long jobPartitionLeaseTimeInMillis) {
+    this.jobPartitionLeaseTimeInMillis = jobPartitionLeaseTimeInMillis;
+  }
+
+  /** The partitions of this node (with their metrics), only created when the async executor is started with {@link #jobPartitioning} */
+  public JobPartitionManager getPartitionManager() {
+    return partitionManager;
+  }
+
+  public void setPartitionManager(JobPartitionManager partitionManager) {
+    this.partitionManager = partitionManager;
+  }
+
+  /** The acquisition sizer (with its metrics), only created when the async executor is started with {@link #adaptiveJobAcquisition} */
+  public AdaptiveJobAcquisitionSizer getAcquisitionSizer() {
+    return acquisitionSizer;
+  }
+
+  public void setAcquisitionSizer(AdaptiveJobAcquisitionSizer acquisitionSizer) {
+    this.acquisitionSizer = acquisitionSizer;
+  }
+
   public ExecuteAsyncRunnableFactory getExecuteAsyncRunnableFactory() {
     return executeAsyncRunnableFactory;
   }
@@ -12,7 +12,9 @@
  */
 package org.activiti.engine.impl.asyncexecutor;
 
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.activiti.engine.ActivitiOptimisticLockingException;
 import org.activiti.engine.impl.cmd.AcquireAsyncJobsDueCmd;
@@ -25,7 +27,7 @@ import org.slf4j.LoggerFactory;
  * 
  * @author Tijs Rademakers
  */
-public class AcquireAsyncJobsDueRunnable implements Runnable {
+public class AcquireAsyncJobsDueRunnable implements Runnable, AsyncJobNotificationListener {
 
   private static Logger log = LoggerFactory.getLogger(AcquireAsyncJobsDueRunnable.class);
 
@@ -36,6 +38,33 @@ public class AcquireAsyncJobsDueRunnable implements Runnable {
   protected final AtomicBoolean isWaiting = new AtomicBoolean(false);
   
   protected long millisToWait = 0;
+  
+  /** 
+   * When set, the acquisition wakes up as soon as new jobs are notified, 
+   * and backs off (up to maxAsyncJobAcquireWaitTimeInMillis) when polling returns no jobs.
+   */
+  protected AsyncJobNotificationChannel jobNotificationChannel;
+  protected long maxAsyncJobAcquireWaitTimeInMillis = 60 * 1000L;
+  protected boolean jobsAvailable = false; // guarded by MONITOR
+  protected long jobsAvailableNotifiedTime = 0L; // guarded by MONITOR
+  protected int emptyAcquisitionsInARow = 0;
+  
+  /** When set, the other due exclusive jobs of the process instances of the acquired jobs are acquired too */
+  protected boolean acquireProcessInstanceJobsTogether = false;
+  
+  /** When set, every acquisition is sized by it instead of using the maxAsyncJobsDuePerAcquisition of the async executor */
+  protected AdaptiveJobAcquisitionSizer acquisitionSizer;
+  
+  /** When set, only the jobs in the partitions of this node are acquired */
+  protected JobPartitionManager partitionManager;
+  
+  protected AtomicLong acquisitionCount = new AtomicLong();
+  protected AtomicLong emptyAcquisitionCount = new AtomicLong();
+  protected AtomicLong acquiredJobCount = new AtomicLong();
+  protected AtomicLong collisionCount = new AtomicLong();
+  protected AtomicLong notificationCount = new AtomicLong();
+  protected AtomicLong notifiedAcquisitionCount = new AtomicLong();
+  protected AtomicLong totalNotificationLatency = new AtomicLong();
 
   public AcquireAsyncJobsDueRunnable(AsyncExecutor asyncExecutor) {
     this.asyncExecutor = asyncExecutor;
@@ -45,35 +74,68 @@ public class AcquireAsyncJobsDueRunnable implements Runnable {
     log.info("starting to acquire async jobs due");
 
     final CommandExecutor commandExecutor = asyncExecutor.getCommandExecutor();
+    
+    if (jobNotificationChannel != null) {
+      jobNotificationChannel.subscribe(this, commandExecutor);
+    }
 
     while (!isInterrupted) {
       
       try {
-        AcquiredJobEntities acquiredJobs = commandExecutor.execute(new AcquireAsyncJobsDueCmd(asyncExecutor));
+        consumeJobsAvailableNotification();
+        
+        List<JobPartitionRange> partitionRanges = partitionManager != null ? partitionManager.getPartitionRanges(commandExecutor) : null;
+        int jobsToAcquire = acquisitionSizer != null ? acquisitionSizer.getAsyncJobsAcquisitionSize() : asyncExecutor.getMaxAsyncJobsDuePerAcquisition();
+        if (jobsToAcquire == 0) {
+          // The executor can't take any job: don't lock jobs only to have them rejected, try again when a job is likely finished
+          millisToWait = acquisitionSizer.getFullExecutorWaitTime(asyncExecutor.getDefaultAsyncJobAcquireWaitTimeInMillis());
+          
+        } else {
+          AcquiredJobEntities acquiredJobs = commandExecutor.execute(new AcquireAsyncJobsDueCmd(asyncExecutor, acquireProcessInstanceJobsTogether, jobsToAcquire, partitionRanges));
 
-        boolean allJobsSuccessfullyOffered = true; 
-        for (JobEntity job : acquiredJobs.getJobs()) {
-          boolean jobSuccessFullyOffered = asyncExecutor.executeAsyncJob(job);
-          if (!jobSuccessFullyOffered) {
-            allJobsSuccessfullyOffered = false;
+          boolean allJobsSuccessfullyOffered = true; 
+          if (asyncExecutor instanceof AbstractAsyncJobExecutor) {
+            allJobsSuccessfullyOffered = ((AbstractAsyncJobExecutor) asyncExecutor).executeAsyncJobs(acquiredJobs.getJobs());
+          } else {
+            for (JobEntity job : acquiredJobs.getJobs()) {
+              boolean jobSuccessFullyOffered = asyncExecutor.executeAsyncJob(job);
+              if (!jobSuccessFullyOffered) {
+                allJobsSuccessfullyOffered = false;
+              }
+            }
           }
-        }
         
-        // If all jobs are executed, we check if we got back the amount we expected
-        // If not, we will wait, as to not query the database needlessly. 
-        // Otherwise, we set the wait time to 0, as to query again immediately.
-        millisToWait = asyncExecutor.getDefaultAsyncJobAcquireWaitTimeInMillis();
-        int jobsAcquired = acquiredJobs.size();
-        if (jobsAcquired >= asyncExecutor.getMaxAsyncJobsDuePerAcquisition()) {
-          millisToWait = 0; 
-        }
+          // If all jobs are executed, we check if we got back the amount we expected
+          // If not, we will wait, as to not query the database needlessly. 
+          // Otherwise, we set the wait time to 0, as to query again immediately.
+          millisToWait = asyncExecutor.getDefaultAsyncJobAcquireWaitTimeInMillis();
+          int jobsAcquired = acquiredJobs.size();
+          if (jobsAcquired >= jobsToAcquire) {
+            millisToWait = 0; 
+          }
+        
+          acquisitionCount.incrementAndGet();
+          acquiredJobCount.addAndGet(jobsAcquired);
+          if (jobsAcquired == 0) {
+            emptyAcquisitionCount.incrementAndGet();
+            emptyAcquisitionsInARow++;
+          } else {
+            emptyAcquisitionsInARow = 0;
+          }
+        
+          // When notified of new jobs, polling is only needed for jobs of which the lock expired: back off when idle
+          if (jobNotificationChannel != null && emptyAcquisitionsInARow > 1) {
+            millisToWait = calculateBackOffWaitTime(millisToWait);
+          }
         
-        // If the queue was full, we wait too (even if we got enough jobs back), as not overload the queue
-        if (millisToWait == 0 && !allJobsSuccessfullyOffered) {
-          millisToWait = asyncExecutor.getDefaultQueueSizeFullWaitTimeInMillis();
+          // If the queue was full, we wait too (even if we got enough jobs back), as not overload the queue
+          if (millisToWait == 0 && !allJobsSuccessfullyOffered) {
+            millisToWait = asyncExecutor.getDefaultQueueSizeFullWaitTimeInMillis();
+          }
         }
 
       } catch (ActivitiOptimisticLockingException optimisticLockingException) { 
+        collisionCount.incrementAndGet();
         if (log.isDebugEnabled()) {
           log.debug("Optimistic locking exception during async job acquisition. If you have multiple async executors running against the same database, " +
               "this exception means that this thread tried to acquire a due async job, which already was acquired by another async executor acquisition thread." +
@@ -85,6 +147,11 @@ public class AcquireAsyncJobsDueRunnable implements Runnable {
         log.error("exception during async job acquisition: {}", e.getMessage(), e);          
         millisToWait = asyncExecutor.getDefaultAsyncJobAcquireWaitTimeInMillis();
       }
+      
+      // The lease is renewed by the acquisition threads
+      if (partitionManager != null) {
+        millisToWait = Math.min(millisToWait, partitionManager.getMillisToNextRenewal());
+      }
 
       if (millisToWait > 0) {
         try {
@@ -92,7 +159,7 @@ public class AcquireAsyncJobsDueRunnable implements Runnable {
             log.debug("async job acquisition thread sleeping for {} millis", millisToWait);
           }
           synchronized (MONITOR) {
-            if(!isInterrupted) {
+            if(!isInterrupted && !jobsAvailable) {
               isWaiting.set(true);
               MONITOR.wait(millisToWait);
             }
@@ -111,8 +178,46 @@ public class AcquireAsyncJobsDueRunnable implements Runnable {
       }
     }
     
+    if (jobNotificationChannel != null) {
+      jobNotificationChannel.unsubscribe(this);
+    }
+    
     log.info("stopped async job due acquisition");
   }
+  
+  public void onJobsAvailable() {
+    notificationCount.incrementAndGet();
+    synchronized (MONITOR) {
+      if (!jobsAvailable) {
+        jobsAvailable = true;
+        jobsAvailableNotifiedTime = System.nanoTime();
+      }
+      MONITOR.notifyAll();
+    }
+  }
+  
+  /**
+   * Clears a pending notification before acquiring: notifications arriving during the acquisition
+   * will trigger a new acquisition right away.
+   */
+  protected void consumeJobsAvailableNotification() {
+    synchronized (MONITOR) {
+      if (jobsAvailable) {
+        jobsAvailable = false;
+        emptyAcquisitionsInARow = 0;
+        notifiedAcquisitionCount.incrementAndGet();
+        totalNotificationLatency.addAndGet(System.nanoTime() - jobsAvailableNotifiedTime);
+      }
+    }
+  }
+  
+  protected long calculateBackOffWaitTime(long waitTime) {
+    long backOffWaitTime = Math.max(waitTime, 1L);
+    for (int i = 1; i < emptyAcquisitionsInARow && backOffWaitTime < maxAsyncJobAcquireWaitTimeInMillis; i++) {
+      backOffWaitTime = backOffWaitTime * 2;
+    }
+    return Math.min(backOffWaitTime, Math.max(waitTime, maxAsyncJobAcquireWaitTimeInMillis));
+  }
 
   public void stop() {
     synchronized (MONITOR) {
@@ -130,4 +235,101 @@ public class AcquireAsyncJobsDueRunnable implements Runnable {
   public void setMillisToWait(long millisToWait) {
     this.millisToWait = millisToWait;
   }
+  
+  public AsyncJobNotificationChannel getJobNotificationChannel() {
+    return jobNotificationChannel;
+  }
+  
+  public void setJobNotificationChannel(AsyncJobNotificationChannel jobNotificationChannel) {
+    this.jobNotificationChannel = jobNotificationChannel;
+  }
+  
+  public long getMaxAsyncJobAcquireWaitTimeInMillis() {
+    return maxAsyncJobAcquireWaitTimeInMillis;
+  }
+  
+  public void setMaxAsyncJobAcquireWaitTimeInMillis(long maxAsyncJobAcquireWaitTimeInMillis) {
+    this.maxAsyncJobAcquireWaitTimeInMillis = maxAsyncJobAcquireWaitTimeInMillis;
+  }
+  
+  public boolean isAcquireProcessInstanceJobsTogether() {
+    return acquireProcessInstanceJobsTogether;
+  }
+  
+  public void setAcquireProcessInstanceJobsTogether(boolean acquireProcessInstanceJobsTogether) {
+    this.acquireProcessInstanceJobsTogether = acquireProcessInstanceJobsTogether;
+  }
+  
+  public JobPartitionManager getPartitionManager() {
+    return partitionManager;
+  }
+  
+  public void setPartitionManager(JobPartitionManager partitionManager) {
+    this.partitionManager = partitionManager;
+  }
+  
+  public AdaptiveJobAcquisitionSizer getAcquisitionSizer() {
+    return acquisitionSizer;
+  }
+  
+  public void setAcquisitionSizer(AdaptiveJobAcquisitionSizer acquisitionSizer) {
+    this.acquisitionSizer = acquisitionSizer;
+  }
+  
+  // Metrics //////////////////////////////////////////////////////////////////
+  
+  /** Number of acquisition queries executed by this node. */
+  public long getAcquisitionCount() {
+    return acquisitionCount.get();
+  }
+  
+  /** Number of acquisition queries that didn't return any job. */
+  public long getEmptyAcquisitionCount() {
+    return emptyAcquisitionCount.get();
+  }
+  
+  /** Fraction of the acquisition queries that didn't return any job. */
+  public double getEmptyAcquisitionRate() {
+    long acquisitions = acquisitionCount.get();
+    return acquisitions > 0 ? (double) emptyAcquisitionCount.get() / acquisitions : 0.0;
+  }
+  
+  /** Number of jobs acquired by this node. */
+  public long getAcquiredJobCount() {
+    return acquiredJobCount.get();
+  }
+  
+  /** Average number of jobs acquired per successful acquisition query. */
+  public double getAverageAcquiredJobsPerAcquisition() {
+    long acquisitions = acquisitionCount.get();
+    return acquisitions > 0 ? (double) acquiredJobCount.get() / acquisitions : 0.0;
+  }
+  
+  /** Number of acquisitions that failed because another node acquired (some of) the same jobs. */
+  public long getCollisionCount() {
+    return collisionCount.get();
+  }
+  
+  /** Fraction of the acquisition attempts that failed because another node acquired (some of) the same jobs. */
+  public double getCollisionRate() {
+    long collisions = collisionCount.get();
+    long attempts = acquisitionCount.get() + collisions;
+    return attempts > 0 ? (double) collisions / attempts : 0.0;
+  }
+  
+  /** Number of notifications received through the {@link AsyncJobNotificationChannel}. */
+  public long getNotificationCount() {
+    return notificationCount.get();
+  }
+  
+  /** Number of acquisitions that were triggered by a notification. */
+  public long getNotifiedAcquisitionCount() {
+    return notifiedAcquisitionCount.get();
+  }
+  
+  /** Average time between a notification and the start of the acquisition it triggered. */
+  public double getAverageNotificationLatencyInMillis() {
+    long notifiedAcquisitions = notifiedAcquisitionCount.get();
+    return notifiedAcquisitions > 0 ? totalNotificationLatency.get() / (notifiedAcquisitions * 1000000.0) : 0.0;
+  }
 }
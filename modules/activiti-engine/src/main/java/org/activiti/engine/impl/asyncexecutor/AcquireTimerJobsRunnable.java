@@ -12,10 +12,15 @@
  */
 package org.activiti.engine.impl.asyncexecutor;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.activiti.engine.ActivitiOptimisticLockingException;
 import org.activiti.engine.impl.cmd.AcquireTimerJobsCmd;
+import org.activiti.engine.impl.cmd.ReconcileTimerWheelCmd;
 import org.activiti.engine.impl.interceptor.CommandExecutor;
 import org.activiti.engine.impl.persistence.entity.JobEntity;
 import org.slf4j.Logger;
@@ -28,6 +33,9 @@ import org.slf4j.LoggerFactory;
 public class AcquireTimerJobsRunnable implements Runnable {
 
   private static Logger log = LoggerFactory.getLogger(AcquireTimerJobsRunnable.class);
+  
+  /** The timers fired by the wheel are acquired with one query per this many timers */
+  protected static final int MAX_TIMER_WHEEL_JOBS_PER_ACQUISITION = 100;
 
   protected final AsyncExecutor asyncExecutor;
 
@@ -36,6 +44,29 @@ public class AcquireTimerJobsRunnable implements Runnable {
   protected final AtomicBoolean isWaiting = new AtomicBoolean(false);
   
   protected long millisToWait = 0;
+  
+  /** When set, timers are fired from this wheel instead of polling for due timers */
+  protected TimerWheel timerWheel;
+  protected long timerWheelHorizonInMillis = 60 * 1000;
+  protected long timerWheelReconciliationIntervalInMillis = 30 * 1000;
+  protected long nextReconciliationTime;
+  
+  /** Difference between the engine clock and the system clock, measured on every reconciliation */
+  protected long clockOffset;
+  
+  /** Set when a timer was added to the wheel that is due before the acquisition thread wakes up */
+  protected boolean timerWheelChanged;
+
+  /** When set, every poll is sized by it instead of using the maxTimerJobsPerAcquisition of the async executor */
+  protected AdaptiveJobAcquisitionSizer acquisitionSizer;
+  
+  /** When set, only the timers in the partitions of this node are acquired */
+  protected JobPartitionManager partitionManager;
+  protected List<JobPartitionRange> partitionRanges;
+
+  protected AtomicLong acquisitionCount = new AtomicLong();
+  protected AtomicLong acquiredJobCount = new AtomicLong();
+  protected AtomicLong collisionCount = new AtomicLong();
 
   public AcquireTimerJobsRunnable(AsyncExecutor asyncExecutor) {
     this.asyncExecutor = asyncExecutor;
@@ -49,31 +80,60 @@ public class AcquireTimerJobsRunnable implements Runnable {
     while (!isInterrupted) {
       
       try {
-        AcquiredJobEntities acquiredJobs = commandExecutor.execute(new AcquireTimerJobsCmd(
-            asyncExecutor.getLockOwner(), asyncExecutor.getTimerLockTimeInMillis(), 
-            asyncExecutor.getMaxTimerJobsPerAcquisition()));
-        
-        boolean allJobsSuccessfullyOffered = true; 
-        for (JobEntity job : acquiredJobs.getJobs()) {
-          boolean jobSuccessFullyOffered = asyncExecutor.executeAsyncJob(job);
-          if (!jobSuccessFullyOffered) {
-            allJobsSuccessfullyOffered = false;
+        if (partitionManager != null) {
+          List<JobPartitionRange> currentPartitionRanges = partitionManager.getPartitionRanges(commandExecutor);
+          if (currentPartitionRanges != partitionRanges) {
+            // the wheel only holds the timers of the partitions of this node
+            nextReconciliationTime = 0;
           }
+          partitionRanges = currentPartitionRanges;
         }
         
-        // if all jobs were executed
-        millisToWait = asyncExecutor.getDefaultTimerJobAcquireWaitTimeInMillis();
-        int jobsAcquired = acquiredJobs.size();
-        if (jobsAcquired >= asyncExecutor.getMaxTimerJobsPerAcquisition()) {
-          millisToWait = 0; 
-        }
+        // The timer wheel fires the timers that are due, whatever their number
+        int jobsToAcquire = timerWheel != null ? 0 : getTimerJobsToAcquire();
+        
+        if (timerWheel != null) {
+          millisToWait = executeTimerJobsFromWheel(commandExecutor);
+          
+        } else if (jobsToAcquire == 0) {
+          // The executor can't take any job: don't lock timers only to have them rejected, try again when a job is likely finished
+          millisToWait = acquisitionSizer.getFullExecutorWaitTime(asyncExecutor.getDefaultTimerJobAcquireWaitTimeInMillis());
+          
+        } else {
+          AcquiredJobEntities acquiredJobs = commandExecutor.execute(new AcquireTimerJobsCmd(
+              asyncExecutor.getLockOwner(), asyncExecutor.getTimerLockTimeInMillis(), jobsToAcquire, partitionRanges));
+        
+          boolean allJobsSuccessfullyOffered = true; 
+          for (JobEntity job : acquiredJobs.getJobs()) {
+            boolean jobSuccessFullyOffered = asyncExecutor.executeAsyncJob(job);
+            if (!jobSuccessFullyOffered) {
+              allJobsSuccessfullyOffered = false;
+            }
+          }
+        
+          // if all jobs were executed
+          millisToWait = asyncExecutor.getDefaultTimerJobAcquireWaitTimeInMillis();
+          int jobsAcquired = acquiredJobs.size();
+          if (jobsAcquired >= jobsToAcquire) {
+            millisToWait = 0; 
+          }
+        
+          acquisitionCount.incrementAndGet();
+          acquiredJobCount.addAndGet(jobsAcquired);
         
-        // If the queue was full, we wait too (even if we got enough jobs back), as not overload the queue
-        if (millisToWait == 0 && !allJobsSuccessfullyOffered) {
-          millisToWait = asyncExecutor.getDefaultQueueSizeFullWaitTimeInMillis();
+          // If the queue was full, we wait too (even if we got enough jobs back), as not overload the queue
+          if (millisToWait == 0 && !allJobsSuccessfullyOffered) {
+            millisToWait = asyncExecutor.getDefaultQueueSizeFullWaitTimeInMillis();
+          }
         }
 
       } catch (ActivitiOptimisticLockingException optimisticLockingException) { 
+        collisionCount.incrementAndGet();
+        if (timerWheel != null) {
+          // the timers fired by the wheel that another node acquired first are found by reconciling right away
+          nextReconciliationTime = 0;
+          millisToWait = 0;
+        }
         if (log.isDebugEnabled()) {
           log.debug("Optimistic locking exception during timer job acquisition. If you have multiple timer executors running against the same database, " +
               "this exception means that this thread tried to acquire a timer job, which already was acquired by another timer executor acquisition thread." +
@@ -85,6 +145,11 @@ public class AcquireTimerJobsRunnable implements Runnable {
         log.error("exception during timer job acquisition: {}", e.getMessage(), e);          
         millisToWait = asyncExecutor.getDefaultTimerJobAcquireWaitTimeInMillis();
       }
+      
+      // The lease is renewed by the acquisition threads
+      if (partitionManager != null) {
+        millisToWait = Math.min(millisToWait, partitionManager.getMillisToNextRenewal());
+      }
 
       if (millisToWait > 0) {
         try {
@@ -92,10 +157,11 @@ public class AcquireTimerJobsRunnable implements Runnable {
             log.debug("timer job acquisition thread sleeping for {} millis", millisToWait);
           }
           synchronized (MONITOR) {
-            if(!isInterrupted) {
+            if(!isInterrupted && !timerWheelChanged) {
               isWaiting.set(true);
               MONITOR.wait(millisToWait);
             }
+            timerWheelChanged = false;
           }
           
           if (log.isDebugEnabled()) {
@@ -114,6 +180,63 @@ public class AcquireTimerJobsRunnable implements Runnable {
     log.info("stopped async job due acquisition");
   }
 
+  protected int getTimerJobsToAcquire() {
+    if (acquisitionSizer != null) {
+      return acquisitionSizer.getTimerJobsAcquisitionSize();
+    }
+    return asyncExecutor.getMaxTimerJobsPerAcquisition();
+  }
+  
+  /**
+   * Reconciles the timer wheel when due, acquires and executes the timers that are due now, 
+   * and returns the time to wait until the next timer is due (or the next reconciliation).
+   */
+  protected long executeTimerJobsFromWheel(CommandExecutor commandExecutor) {
+    long now = System.currentTimeMillis() + clockOffset;
+    if (now >= nextReconciliationTime) {
+      Date clockTime = commandExecutor.execute(new ReconcileTimerWheelCmd(timerWheel, timerWheelHorizonInMillis, partitionRanges));
+      now = clockTime.getTime();
+      clockOffset = now - System.currentTimeMillis();
+      nextReconciliationTime = now + timerWheelReconciliationIntervalInMillis;
+    }
+    
+    List<String> dueJobIds = timerWheel.pollDueJobIds(now);
+    boolean allJobsSuccessfullyOffered = true;
+    for (int i = 0; i < dueJobIds.size(); i += MAX_TIMER_WHEEL_JOBS_PER_ACQUISITION) {
+      List<String> jobIds = new ArrayList<String>(dueJobIds.subList(i, Math.min(i + MAX_TIMER_WHEEL_JOBS_PER_ACQUISITION, dueJobIds.size())));
+      AcquiredJobEntities acquiredJobs = commandExecutor.execute(new AcquireTimerJobsCmd(
+          asyncExecutor.getLockOwner(), asyncExecutor.getTimerLockTimeInMillis(), jobIds));
+      
+      for (JobEntity job : acquiredJobs.getJobs()) {
+        if (!asyncExecutor.executeAsyncJob(job)) {
+          allJobsSuccessfullyOffered = false;
+        }
+      }
+      acquisitionCount.incrementAndGet();
+      acquiredJobCount.addAndGet(acquiredJobs.size());
+    }
+    
+    // Rejected timers are unlocked, and put in the wheel again by the next reconciliation
+    if (!allJobsSuccessfullyOffered) {
+      nextReconciliationTime = now + asyncExecutor.getDefaultQueueSizeFullWaitTimeInMillis();
+    }
+    
+    long wakeUpTime = Math.min(timerWheel.getNextDueTime(), nextReconciliationTime);
+    return Math.max(wakeUpTime - now, 1L);
+  }
+  
+  /**
+   * Wakes up the acquisition thread when the timer added to the wheel is due before the acquisition thread wakes up.
+   */
+  public void onTimerAdded(Date duedate) {
+    synchronized (MONITOR) {
+      if (duedate.getTime() <= timerWheel.getNextDueTime()) {
+        timerWheelChanged = true;
+        MONITOR.notifyAll();
+      }
+    }
+  }
+
   public void stop() {
     synchronized (MONITOR) {
       isInterrupted = true; 
@@ -130,4 +253,74 @@ public class AcquireTimerJobsRunnable implements Runnable {
   public void setMillisToWait(long millisToWait) {
     this.millisToWait = millisToWait;
   }
+  
+  public TimerWheel getTimerWheel() {
+    return timerWheel;
+  }
+  
+  public void setTimerWheel(TimerWheel timerWheel) {
+    this.timerWheel = timerWheel;
+  }
+  
+  public JobPartitionManager getPartitionManager() {
+    return partitionManager;
+  }
+  
+  public void setPartitionManager(JobPartitionManager partitionManager) {
+    this.partitionManager = partitionManager;
+  }
+  
+  public AdaptiveJobAcquisitionSizer getAcquisitionSizer() {
+    return acquisitionSizer;
+  }
+  
+  public void setAcquisitionSizer(AdaptiveJobAcquisitionSizer acquisitionSizer) {
+    this.acquisitionSizer = acquisitionSizer;
+  }
+  
+  public long getTimerWheelHorizonInMillis() {
+    return timerWheelHorizonInMillis;
+  }
+  
+  public void setTimerWheelHorizonInMillis(long timerWheelHorizonInMillis) {
+    this.timerWheelHorizonInMillis = timerWheelHorizonInMillis;
+  }
+  
+  public long getTimerWheelReconciliationIntervalInMillis() {
+    return timerWheelReconciliationIntervalInMillis;
+  }
+  
+  public void setTimerWheelReconciliationIntervalInMillis(long timerWheelReconciliationIntervalInMillis) {
+    this.timerWheelReconciliationIntervalInMillis = timerWheelReconciliationIntervalInMillis;
+  }
+  
+  // Metrics //////////////////////////////////////////////////////////////////
+  
+  /** Number of timer acquisition queries executed by this node. */
+  public long getAcquisitionCount() {
+    return acquisitionCount.get();
+  }
+  
+  /** Number of timer jobs acquired by this node. */
+  public long getAcquiredJobCount() {
+    return acquiredJobCount.get();
+  }
+  
+  /** Average number of timer jobs acquired per successful acquisition query. */
+  public double getAverageAcquiredJobsPerAcquisition() {
+    long acquisitions = acquisitionCount.get();
+    return acquisitions > 0 ? (double) acquiredJobCount.get() / acquisitions : 0.0;
+  }
+  
+  /** Number of acquisitions that failed because another node acquired (some of) the same timer jobs. */
+  public long getCollisionCount() {
+    return collisionCount.get();
+  }
+  
+  /** Fraction of the acquisition attempts that failed because another node acquired (some of) the same timer jobs. */
+  public double getCollisionRate() {
+    long collisions = collisionCount.get();
+    long attempts = acquisitionCount.get() + collisions;
+    return attempts > 0 ? (double) collisions / attempts : 0.0;
+  }
 }
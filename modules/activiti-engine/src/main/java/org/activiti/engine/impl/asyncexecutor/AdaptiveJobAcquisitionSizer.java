@@ -0,0 +1,202 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.asyncexecutor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sizes every job acquisition of an {@link AbstractAsyncJobExecutor} from its load, instead of the static
+ * maxAsyncJobsDuePerAcquisition and maxTimerJobsPerAcquisition:
+ *
+ * <ul>
+ *   <li>no more jobs than the executor can take right now (free threads and free places in its queue),
+ *   so acquired jobs are not rejected and unlocked again;</li>
+ *   <li>no more jobs than the executor can start within a part ({@link #lockTimeHeadroom}) of the lock time,
+ *   given the jobs already queued and the recent (exponentially weighted average) job duration,
+ *   so acquired jobs don't wait in the queue until their lock expires and another node acquires them too;</li>
+ *   <li>and at most {@link #maxJobsPerAcquisition}, which can be a lot larger than the static sizes,
+ *   as an idle executor takes bigger batches.</li>
+ * </ul>
+ *
+ * When the executor can't take any job, the size is 0: the acquisition is skipped, and tried again
+ * after about the time it takes to execute a job ({@link #getFullExecutorWaitTime(long)}).
+ */
+public class AdaptiveJobAcquisitionSizer {
+
+  public static final String LIMITED_BY_MAX = "max";
+  public static final String LIMITED_BY_CAPACITY = "capacity";
+  public static final String LIMITED_BY_LOCK_EXPIRY = "lockExpiry";
+
+  /** Wait time when the executor is full before a job was executed */
+  protected static final long DEFAULT_FULL_EXECUTOR_WAIT_TIME = 100L;
+
+  /** Weight of the last job duration in the average job duration */
+  protected static final double JOB_DURATION_WEIGHT = 0.2;
+
+  protected final AbstractAsyncJobExecutor asyncExecutor;
+
+  /** The maximum number of jobs acquired at once */
+  protected int maxJobsPerAcquisition = 100;
+
+  /** The part of the lock time acquired jobs may wait in the queue and execute */
+  protected double lockTimeHeadroom = 0.5;
+
+  /** Average job duration in milliseconds, negative until a job was executed */
+  protected double averageJobDuration = -1;
+
+  protected volatile int lastAsyncJobsAcquisitionSize;
+  protected volatile String lastAsyncJobsLimitedBy;
+  protected volatile int lastTimerJobsAcquisitionSize;
+  protected volatile String lastTimerJobsLimitedBy;
+  protected AtomicLong capacityLimitedCount = new AtomicLong();
+  protected AtomicLong lockExpiryLimitedCount = new AtomicLong();
+  protected AtomicLong skippedAcquisitionCount = new AtomicLong();
+  protected AtomicLong executedJobCount = new AtomicLong();
+
+  public AdaptiveJobAcquisitionSizer(AbstractAsyncJobExecutor asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+  }
+
+  public int getAsyncJobsAcquisitionSize() {
+    String[] limitedBy = new String[1];
+    int size = calculateAcquisitionSize(asyncExecutor.getAsyncJobLockTimeInMillis(), limitedBy);
+    lastAsyncJobsAcquisitionSize = size;
+    lastAsyncJobsLimitedBy = limitedBy[0];
+    return size;
+  }
+
+  public int getTimerJobsAcquisitionSize() {
+    String[] limitedBy = new String[1];
+    int size = calculateAcquisitionSize(asyncExecutor.getTimerLockTimeInMillis(), limitedBy);
+    lastTimerJobsAcquisitionSize = size;
+    lastTimerJobsLimitedBy = limitedBy[0];
+    return size;
+  }
+
+  protected int calculateAcquisitionSize(int lockTimeInMillis, String[] limitedBy) {
+    long size = maxJobsPerAcquisition;
+    limitedBy[0] = LIMITED_BY_MAX;
+
+    int remainingCapacity = asyncExecutor.getRemainingCapacity();
+    if (remainingCapacity >= 0) {
+      // jobs acquired while the executor is starting up are handed to the threadpool together
+      remainingCapacity = Math.max(remainingCapacity - asyncExecutor.getTemporaryQueuedJobCount(), 0);
+    }
+    if (remainingCapacity >= 0 && remainingCapacity < size) {
+      size = remainingCapacity;
+      limitedBy[0] = LIMITED_BY_CAPACITY;
+      capacityLimitedCount.incrementAndGet();
+    }
+
+    // Every thread executes (lock time * headroom / job duration) jobs before the locks expire, including the queued ones
+    double jobDuration = getAverageJobDurationInMillis();
+    int concurrency = asyncExecutor.getConcurrency();
+    if (jobDuration > 0 && concurrency > 0) {
+      long jobsWithinLockTime = (long) (concurrency * (lockTimeInMillis * lockTimeHeadroom / jobDuration)) - asyncExecutor.getQueuedJobCount();
+      if (jobsWithinLockTime < size) {
+        size = jobsWithinLockTime;
+        limitedBy[0] = LIMITED_BY_LOCK_EXPIRY;
+        lockExpiryLimitedCount.incrementAndGet();
+      }
+    }
+
+    if (size <= 0) {
+      skippedAcquisitionCount.incrementAndGet();
+      return 0;
+    }
+    return (int) size;
+  }
+
+  /**
+   * The time to wait before acquiring again when the executor is full: the time it takes a thread to
+   * finish a job, at most the given wait time.
+   */
+  public long getFullExecutorWaitTime(long maxWaitTimeInMillis) {
+    double jobDuration = getAverageJobDurationInMillis();
+    long waitTime = jobDuration < 0 ? DEFAULT_FULL_EXECUTOR_WAIT_TIME : Math.max((long) Math.ceil(jobDuration), 1L);
+    return Math.min(waitTime, maxWaitTimeInMillis);
+  }
+
+  /** Called with the time it took to execute a job */
+  public synchronized void recordJobDuration(double durationInMillis) {
+    if (averageJobDuration < 0) {
+      averageJobDuration = durationInMillis;
+    } else {
+      averageJobDuration = JOB_DURATION_WEIGHT * durationInMillis + (1 - JOB_DURATION_WEIGHT) * averageJobDuration;
+    }
+    executedJobCount.incrementAndGet();
+  }
+
+  public int getMaxJobsPerAcquisition() {
+    return maxJobsPerAcquisition;
+  }
+
+  public void setMaxJobsPerAcquisition(int maxJobsPerAcquisition) {
+    this.maxJobsPerAcquisition = maxJobsPerAcquisition;
+  }
+
+  public double getLockTimeHeadroom() {
+    return lockTimeHeadroom;
+  }
+
+  public void setLockTimeHeadroom(double lockTimeHeadroom) {
+    this.lockTimeHeadroom = lockTimeHeadroom;
+  }
+
+  // Metrics //////////////////////////////////////////////////////////////////
+
+  /** Recent average job duration in milliseconds, negative when no job was executed yet. */
+  public synchronized double getAverageJobDurationInMillis() {
+    return averageJobDuration;
+  }
+
+  /** Number of jobs of which the duration was recorded. */
+  public long getExecutedJobCount() {
+    return executedJobCount.get();
+  }
+
+  /** Size of the last async job acquisition. */
+  public int getLastAsyncJobsAcquisitionSize() {
+    return lastAsyncJobsAcquisitionSize;
+  }
+
+  /** What limited the size of the last async job acquisition: {@value #LIMITED_BY_MAX}, {@value #LIMITED_BY_CAPACITY} or {@value #LIMITED_BY_LOCK_EXPIRY}. */
+  public String getLastAsyncJobsLimitedBy() {
+    return lastAsyncJobsLimitedBy;
+  }
+
+  /** Size of the last timer job acquisition. */
+  public int getLastTimerJobsAcquisitionSize() {
+    return lastTimerJobsAcquisitionSize;
+  }
+
+  /** What limited the size of the last timer job acquisition. */
+  public String getLastTimerJobsLimitedBy() {
+    return lastTimerJobsLimitedBy;
+  }
+
+  /** Number of acquisitions made smaller because the executor couldn't take more jobs. */
+  public long getCapacityLimitedCount() {
+    return capacityLimitedCount.get();
+  }
+
+  /** Number of acquisitions made smaller because the jobs couldn't be executed before their lock expires. */
+  public long getLockExpiryLimitedCount() {
+    return lockExpiryLimitedCount.get();
+  }
+
+  /** Number of acquisitions skipped because the executor couldn't take any job. */
+  public long getSkippedAcquisitionCount() {
+    return skippedAcquisitionCount.get();
+  }
+}
@@ -0,0 +1,46 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.asyncexecutor;
+
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.interceptor.CommandExecutor;
+
+/**
+ * Channel through which the async job acquisition is told that new async jobs are available,
+ * so it doesn't need to wait for the next acquisition interval.
+ * 
+ * The {@link LocalAsyncJobNotificationChannel} only notifies acquisition threads in the same JVM.
+ * Implementations for a cluster can deliver the notifications to other nodes 
+ * (for example using a message bus), the {@link DatabaseAsyncJobNotificationChannel} does so through the database.
+ * 
+ * Notifications are hints: the database stays the source of truth and acquisition still polls, 
+ * so a lost notification only delays a job until the next regular acquisition.
+ */
+public interface AsyncJobNotificationChannel {
+  
+  /**
+   * Registers a listener (typically an async job acquisition thread).
+   */
+  void subscribe(AsyncJobNotificationListener listener, CommandExecutor commandExecutor);
+  
+  /**
+   * Unregisters a listener that was previously subscribed.
+   */
+  void unsubscribe(AsyncJobNotificationListener listener);
+  
+  /**
+   * Publishes that jobs are available. Called after the transaction that created or released the jobs is committed.
+   */
+  void publishJobsAvailable(CommandContext commandContext);
+
+}
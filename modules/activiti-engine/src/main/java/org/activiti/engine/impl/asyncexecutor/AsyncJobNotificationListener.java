@@ -0,0 +1,26 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.asyncexecutor;
+
+/**
+ * Receives the notifications of an {@link AsyncJobNotificationChannel}.
+ */
+public interface AsyncJobNotificationListener {
+
+  /**
+   * Called when new async jobs have been committed that can be acquired. 
+   * Implementations should return quickly (e.g. only wake up a waiting thread). 
+   */
+  void onJobsAvailable();
+  
+}
@@ -0,0 +1,141 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.asyncexecutor;
+
+import org.activiti.engine.ActivitiOptimisticLockingException;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandConfig;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.interceptor.CommandExecutor;
+import org.activiti.engine.impl.persistence.entity.PropertyEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link AsyncJobNotificationChannel} that delivers notifications between process engines 
+ * through a counter in the ACT_GE_PROPERTY table: publishing increments the counter, 
+ * and a polling thread per engine notifies its listeners when the counter has changed.
+ * 
+ * Polling a single property row is a lot cheaper than running the job acquisition query, 
+ * but this channel is mainly meant as a stand-in for a real messaging based channel (e.g. in tests).
+ */
+public class DatabaseAsyncJobNotificationChannel extends LocalAsyncJobNotificationChannel {
+  
+  private static final Logger log = LoggerFactory.getLogger(DatabaseAsyncJobNotificationChannel.class);
+  
+  public static final String PROPERTY_NAME = "async.job.notification";
+  
+  protected long pollIntervalInMillis = 250L;
+  
+  protected CommandExecutor commandExecutor;
+  protected Thread pollThread;
+  protected volatile boolean isPolling;
+  protected String lastValue;
+
+  @Override
+  public synchronized void subscribe(AsyncJobNotificationListener listener, CommandExecutor commandExecutor) {
+    super.subscribe(listener, commandExecutor);
+    if (this.commandExecutor == null) {
+      this.commandExecutor = commandExecutor;
+    }
+    if (pollThread == null) {
+      startPolling();
+    }
+  }
+
+  @Override
+  public synchronized void unsubscribe(AsyncJobNotificationListener listener) {
+    super.unsubscribe(listener);
+    if (listeners.isEmpty() && pollThread != null) {
+      stopPolling();
+    }
+  }
+
+  @Override
+  public void publishJobsAvailable(CommandContext commandContext) {
+    // Separate transaction: a concurrent update of the counter must not fail the caller
+    try {
+      commandContext.getProcessEngineConfiguration().getCommandExecutor().execute(new CommandConfig().transactionRequiresNew(), new Command<Void>() {
+        public Void execute(CommandContext commandContext) {
+          PropertyEntity property = commandContext.getPropertyEntityManager().findPropertyById(PROPERTY_NAME);
+          if (property == null) {
+            commandContext.getDbSqlSession().insert(new PropertyEntity(PROPERTY_NAME, "1"));
+          } else {
+            property.setValue(Long.toString(Long.parseLong(property.getValue()) + 1));
+          }
+          return null;
+        }
+      });
+    } catch (ActivitiOptimisticLockingException e) {
+      // Another engine changed the counter concurrently, which notifies the listeners just as well
+      log.debug("Concurrent async job notification: {}", e.getMessage());
+    } catch (RuntimeException e) {
+      // Notifications are only hints: the job will be picked up by the regular acquisition
+      log.warn("Could not publish async job notification: {}", e.getMessage());
+    }
+    notifyListeners();
+  }
+  
+  protected void startPolling() {
+    lastValue = readValue();
+    isPolling = true;
+    pollThread = new Thread(new Runnable() {
+      public void run() {
+        poll();
+      }
+    }, "activiti-async-job-notification-poller");
+    pollThread.setDaemon(true);
+    pollThread.start();
+  }
+  
+  protected void stopPolling() {
+    isPolling = false;
+    pollThread.interrupt();
+    pollThread = null;
+  }
+  
+  protected void poll() {
+    while (isPolling) {
+      try {
+        Thread.sleep(pollIntervalInMillis);
+        String value = readValue();
+        if (value != null && !value.equals(lastValue)) {
+          lastValue = value;
+          notifyListeners();
+        }
+      } catch (InterruptedException e) {
+        // stop polling when requested
+      } catch (RuntimeException e) {
+        log.warn("Could not read async job notification counter: {}", e.getMessage());
+      }
+    }
+  }
+  
+  protected String readValue() {
+    return commandExecutor.execute(new Command<String>() {
+      public String execute(CommandContext commandContext) {
+        PropertyEntity property = commandContext.getPropertyEntityManager().findPropertyById(PROPERTY_NAME);
+        return property != null ? property.getValue() : null;
+      }
+    });
+  }
+
+  public long getPollIntervalInMillis() {
+    return pollIntervalInMillis;
+  }
+
+  public void setPollIntervalInMillis(long pollIntervalInMillis) {
+    this.pollIntervalInMillis = pollIntervalInMillis;
+  }
+  
+}
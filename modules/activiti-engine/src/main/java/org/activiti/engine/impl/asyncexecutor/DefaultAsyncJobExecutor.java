@@ -12,15 +12,20 @@
  */
 package org.activiti.engine.impl.asyncexecutor;
 
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.activiti.engine.impl.interceptor.CommandContext;
 import org.activiti.engine.impl.persistence.entity.JobEntity;
+import org.activiti.engine.runtime.Job;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +52,28 @@ public class DefaultAsyncJobExecutor extends AbstractAsyncJobExecutor {
   /** The executor service used for job execution */
   protected ExecutorService executorService;
   
+  /** 
+   * The number of threads reserved for jobs with a priority of at least {@link #highPriorityThreshold}.
+   * These jobs can still run on the regular threadpool when all reserved threads are busy. Default 0: no reserved threads.
+   */
+  protected int highPriorityPoolSize = 0;
+  
+  /** The priority from which jobs are executed on the reserved threads */
+  protected int highPriorityThreshold = Job.DEFAULT_PRIORITY + 1;
+  
+  /** The executor service of the reserved threads, only created when {@link #highPriorityPoolSize} > 0 */
+  protected ExecutorService highPriorityExecutorService;
+  
+  /** 
+   * The exclusive jobs waiting for a running job of the same process instance, 
+   * only used when {@link #exclusiveJobAffinity} is enabled. A process instance has a lane
+   * as long as one of its exclusive jobs is queued or running on this node. 
+   */
+  protected Map<String, ProcessInstanceLane> processInstanceLanes = new HashMap<String, ProcessInstanceLane>();
+  
+  /** The number of jobs waiting in the process instance lanes, guarded by {@link #processInstanceLanes} */
+  protected int processInstanceLaneBacklog;
+  
   /** The time (in seconds) that is waited to gracefully shut down the threadpool used for job execution */
   protected long secondsToWaitOnShutdown = 60L;
   
@@ -62,6 +89,82 @@ public class DefaultAsyncJobExecutor extends AbstractAsyncJobExecutor {
     }
   }
   
+  @Override
+  protected boolean executeAsyncJob(JobEntity job, Runnable runnable) {
+    if (exclusiveJobAffinity && job.isExclusive() && job.getProcessInstanceId() != null) {
+      return executeInProcessInstanceLane(job, runnable);
+    }
+    return submitAsyncJob(job, runnable);
+  }
+  
+  protected boolean submitAsyncJob(JobEntity job, Runnable runnable) {
+    if (isHighPriority(job.getPriority())) {
+      try {
+        highPriorityExecutorService.execute(runnable);
+        return true;
+      } catch (RejectedExecutionException e) {
+        // All reserved threads are busy, queue the job on the regular threadpool
+      }
+    }
+    return executeAsyncJob(runnable);
+  }
+  
+  /** Whether a job of the given priority is executed on the reserved threads (when one is free) */
+  protected boolean isHighPriority(int priority) {
+    return highPriorityExecutorService != null && priority >= highPriorityThreshold;
+  }
+  
+  /**
+   * Queues the exclusive job behind the exclusive jobs of the same process instance that are already
+   * queued or running on this node, so they don't collide on the process instance lock. 
+   * When the process instance has no lane yet, a new lane is submitted to the threadpool.
+   * Like jobs without lane, a lane runs on the reserved threads while its next job has a high priority,
+   * see {@link ProcessInstanceLane#nextRunnable()}.
+   * 
+   * The jobs waiting in the lanes take places of the threadpool queue: a job is rejected (and unlocked)
+   * when the queue and the lanes together hold {@link #queueSize} jobs, like a job offered to a full queue.
+   */
+  protected boolean executeInProcessInstanceLane(JobEntity job, Runnable runnable) {
+    String processInstanceId = job.getProcessInstanceId();
+    synchronized (processInstanceLanes) {
+      ProcessInstanceLane lane = processInstanceLanes.get(processInstanceId);
+      if (lane != null) {
+        if (isQueueFull()) {
+          return false;
+        }
+        lane.add(job, runnable);
+        processInstanceLaneBacklog++;
+        return true;
+      }
+      
+      // without lane backlog, the threadpool decides whether the new lane can be queued (or gets an extra thread)
+      if (processInstanceLaneBacklog > 0 && isQueueFull()) {
+        return false;
+      }
+      lane = new ProcessInstanceLane(processInstanceId);
+      lane.add(job, runnable);
+      processInstanceLanes.put(processInstanceId, lane);
+      if (!lane.submit(job.getPriority())) {
+        processInstanceLanes.remove(processInstanceId);
+        return false;
+      }
+      return true;
+    }
+  }
+  
+  /** Whether the threadpool queue and the jobs waiting in the lanes take all places of the queue */
+  protected boolean isQueueFull() {
+    BlockingQueue<Runnable> queue = threadPoolQueue;
+    int queuedJobs = queue != null ? queue.size() : 0;
+    return queuedJobs + processInstanceLaneBacklog >= queueSize;
+  }
+  
+  public int getProcessInstanceLaneCount() {
+    synchronized (processInstanceLanes) {
+      return processInstanceLanes.size();
+    }
+  }
+  
   protected Runnable createRunnableForJob(final JobEntity job) {
     return executeAsyncRunnableFactory.createExecuteAsyncRunnable(job, commandExecutor);
   }
@@ -83,6 +186,15 @@ public class DefaultAsyncJobExecutor extends AbstractAsyncJobExecutor {
       executorService = new ThreadPoolExecutor(corePoolSize, maxPoolSize, keepAliveTime, TimeUnit.MILLISECONDS, threadPoolQueue);      
     }
     
+    if (highPriorityExecutorService == null && highPriorityPoolSize > 0) {
+      log.info("Creating executor service with {} threads reserved for jobs with priority {} or higher", 
+          highPriorityPoolSize, highPriorityThreshold);
+      
+      // no queue: a high priority job either gets a reserved thread right away, or is queued on the regular threadpool
+      highPriorityExecutorService = new ThreadPoolExecutor(highPriorityPoolSize, highPriorityPoolSize, keepAliveTime, TimeUnit.MILLISECONDS, 
+          new SynchronousQueue<Runnable>());
+    }
+    
     startJobAcquisitionThread();
   }
     
@@ -104,6 +216,57 @@ public class DefaultAsyncJobExecutor extends AbstractAsyncJobExecutor {
     }
 
     executorService = null;
+    
+    if (highPriorityExecutorService != null) {
+      highPriorityExecutorService.shutdown();
+      try {
+        if (!highPriorityExecutorService.awaitTermination(secondsToWaitOnShutdown, TimeUnit.SECONDS)) {
+          log.warn("Timeout during shutdown of the high priority threads of the async job executor.");
+        }
+      } catch (InterruptedException e) {
+        log.warn("Interrupted while shutting down the high priority threads of the async job executor. ", e);
+      }
+      highPriorityExecutorService = null;
+    }
+  }
+  
+  /** 
+   * The free places in the queue and the threads that can still be started (the reserved high priority threads are not counted). 
+   * Idle threads take their jobs from the queue too.
+   */
+  @Override
+  public int getRemainingCapacity() {
+    ExecutorService executor = executorService;
+    BlockingQueue<Runnable> queue = threadPoolQueue;
+    if (!(executor instanceof ThreadPoolExecutor) || queue == null) {
+      return -1;
+    }
+    ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) executor;
+    int remainingQueueCapacity = Math.max(queue.remainingCapacity() - getProcessInstanceLaneBacklog(), 0);
+    return remainingQueueCapacity + Math.max(threadPoolExecutor.getMaximumPoolSize() - threadPoolExecutor.getPoolSize(), 0);
+  }
+  
+  /** The core threads: threads above the core pool size are only started when the queue is full */
+  @Override
+  public int getConcurrency() {
+    ExecutorService executor = executorService;
+    if (!(executor instanceof ThreadPoolExecutor)) {
+      return -1;
+    }
+    return Math.max(((ThreadPoolExecutor) executor).getCorePoolSize(), 1);
+  }
+  
+  /** The jobs in the threadpool queue and the jobs waiting in the process instance lanes */
+  @Override
+  public int getQueuedJobCount() {
+    BlockingQueue<Runnable> queue = threadPoolQueue;
+    return (queue != null ? queue.size() : 0) + getProcessInstanceLaneBacklog();
+  }
+  
+  public int getProcessInstanceLaneBacklog() {
+    synchronized (processInstanceLanes) {
+      return processInstanceLaneBacklog;
+    }
   }
   
   public int getQueueSize() {
@@ -130,6 +293,30 @@ public class DefaultAsyncJobExecutor extends AbstractAsyncJobExecutor {
     this.maxPoolSize = maxPoolSize;
   }
   
+  public int getHighPriorityPoolSize() {
+    return highPriorityPoolSize;
+  }
+
+  public void setHighPriorityPoolSize(int highPriorityPoolSize) {
+    this.highPriorityPoolSize = highPriorityPoolSize;
+  }
+
+  public int getHighPriorityThreshold() {
+    return highPriorityThreshold;
+  }
+
+  public void setHighPriorityThreshold(int highPriorityThreshold) {
+    this.highPriorityThreshold = highPriorityThreshold;
+  }
+  
+  public ExecutorService getHighPriorityExecutorService() {
+    return highPriorityExecutorService;
+  }
+
+  public void setHighPriorityExecutorService(ExecutorService highPriorityExecutorService) {
+    this.highPriorityExecutorService = highPriorityExecutorService;
+  }
+  
   public long getSecondsToWaitOnShutdown() {
     return secondsToWaitOnShutdown;
   }
@@ -153,4 +340,107 @@ public class DefaultAsyncJobExecutor extends AbstractAsyncJobExecutor {
   public void setExecutorService(ExecutorService executorService) {
     this.executorService = executorService;
   }
+  
+  /**
+   * Runs the queued exclusive jobs of one process instance one after another,
+   * the lane is removed once no jobs of the process instance are left.
+   * The jobs run on the same thread, unless the lane moves between the regular and the reserved threads for the priority of its next job.
+   */
+  protected class ProcessInstanceLane implements Runnable {
+    
+    protected String processInstanceId;
+    
+    // guarded by processInstanceLanes
+    protected LinkedList<Runnable> runnables = new LinkedList<Runnable>();
+    protected LinkedList<Integer> priorities = new LinkedList<Integer>();
+    protected boolean isOnReservedThreads;
+    
+    /** The job the lane was (re)submitted with is counted by the threadpool queue, not by the lane backlog */
+    protected boolean isFirstRunnable = true;
+    
+    public ProcessInstanceLane(String processInstanceId) {
+      this.processInstanceId = processInstanceId;
+    }
+    
+    protected void add(JobEntity job, Runnable runnable) {
+      runnables.add(runnable);
+      priorities.add(job.getPriority());
+    }
+    
+    /** Submits the lane to the threads for the given priority of its next job, returns false when it is rejected */
+    protected boolean submit(int priority) {
+      if (isHighPriority(priority)) {
+        try {
+          isOnReservedThreads = true;
+          highPriorityExecutorService.execute(this);
+          return true;
+        } catch (RejectedExecutionException e) {
+          // All reserved threads are busy, queue the lane on the regular threadpool
+        }
+      }
+      isOnReservedThreads = false;
+      return executeAsyncJob((Runnable) this);
+    }
+    
+    /** 
+     * Moves the lane to the reserved threads when its next job has a high priority, or back to the regular threadpool when not.
+     * Returns false when the lane stays on the current thread, also when the other threads can't take it right now.
+     */
+    protected boolean resubmit(int priority) {
+      boolean isHighPriority = isHighPriority(priority);
+      if (isHighPriority == isOnReservedThreads) {
+        return false;
+      }
+      try {
+        isOnReservedThreads = isHighPriority;
+        if (isHighPriority) {
+          highPriorityExecutorService.execute(this);
+          return true;
+        }
+        if (executeAsyncJob((Runnable) this)) {
+          return true;
+        }
+      } catch (RejectedExecutionException e) {
+        // All reserved threads are busy
+      }
+      isOnReservedThreads = !isHighPriority;
+      return false;
+    }
+    
+    public void run() {
+      Runnable runnable = nextRunnable();
+      while (runnable != null) {
+        try {
+          runnable.run();
+        } catch (Throwable e) {
+          log.error("Exception while executing exclusive job of process instance " + processInstanceId, e);
+        }
+        runnable = nextRunnable();
+      }
+    }
+    
+    /** 
+     * The next job to run on the current thread, or null when the lane is done on this thread:
+     * when no jobs are left, or when the lane was resubmitted for the priority of its next job.
+     */
+    protected Runnable nextRunnable() {
+      synchronized (processInstanceLanes) {
+        if (runnables.isEmpty()) {
+          processInstanceLanes.remove(processInstanceId);
+          return null;
+        }
+        if (!isFirstRunnable) {
+          // the next job leaves the backlog: it either runs now, or is counted by the queue the lane is resubmitted to
+          processInstanceLaneBacklog--;
+          if (resubmit(priorities.peek())) {
+            isFirstRunnable = true;
+            return null;
+          }
+        }
+        isFirstRunnable = false;
+        priorities.poll();
+        return runnables.poll();
+      }
+    }
+  }
 }
@@ -4,9 +4,26 @@ import org.activiti.engine.impl.interceptor.CommandExecutor;
 import org.activiti.engine.impl.persistence.entity.JobEntity;
 
 public class DefaultExecuteAsyncRunnableFactory implements ExecuteAsyncRunnableFactory {
+  
+  protected boolean singleTransactionForExclusiveJobs;
+  
+  public DefaultExecuteAsyncRunnableFactory() {
+  }
+  
+  public DefaultExecuteAsyncRunnableFactory(boolean singleTransactionForExclusiveJobs) {
+    this.singleTransactionForExclusiveJobs = singleTransactionForExclusiveJobs;
+  }
 
   @Override
   public Runnable createExecuteAsyncRunnable(JobEntity jobEntity, CommandExecutor commandExecutor) {
-    return new ExecuteAsyncRunnable(jobEntity, commandExecutor);
+    return new ExecuteAsyncRunnable(jobEntity, commandExecutor, singleTransactionForExclusiveJobs);
+  }
+
+  public boolean isSingleTransactionForExclusiveJobs() {
+    return singleTransactionForExclusiveJobs;
+  }
+
+  public void setSingleTransactionForExclusiveJobs(boolean singleTransactionForExclusiveJobs) {
+    this.singleTransactionForExclusiveJobs = singleTransactionForExclusiveJobs;
   }
 }
@@ -0,0 +1,68 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.asyncexecutor;
+
+import java.util.List;
+
+import org.activiti.engine.impl.cmd.ExecuteAsyncJobsBulkCmd;
+import org.activiti.engine.impl.interceptor.CommandExecutor;
+import org.activiti.engine.impl.persistence.entity.JobEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes a bulk of non exclusive async jobs in one command (see {@link ExecuteAsyncJobsBulkCmd}).
+ * Jobs that failed in the bulk are retried on their own, each in a transaction of its own,
+ * so a failure is handled (retries, exception, events) exactly like without bulk execution.
+ */
+public class ExecuteAsyncJobsBulkRunnable implements Runnable {
+
+  private static Logger log = LoggerFactory.getLogger(ExecuteAsyncJobsBulkRunnable.class);
+
+  protected List<JobEntity> jobs;
+  protected CommandExecutor commandExecutor;
+
+  public ExecuteAsyncJobsBulkRunnable(List<JobEntity> jobs, CommandExecutor commandExecutor) {
+    this.jobs = jobs;
+    this.commandExecutor = commandExecutor;
+  }
+
+  public void run() {
+    ExecuteAsyncJobsBulkCmd executeAsyncJobsBulkCmd = new ExecuteAsyncJobsBulkCmd(jobs);
+    try {
+      commandExecutor.execute(executeAsyncJobsBulkCmd);
+
+    } catch (Throwable exception) {
+      // The whole transaction was rolled back: execute every job on its own
+      if (log.isDebugEnabled()) {
+        log.debug("Bulk execution of {} async jobs failed, executing them one by one: {}", jobs.size(), exception.getMessage());
+      }
+      for (JobEntity job : jobs) {
+        executeIndividually(job);
+      }
+      return;
+    }
+
+    for (JobEntity job : executeAsyncJobsBulkCmd.getFailedJobs().keySet()) {
+      executeIndividually(job);
+    }
+  }
+
+  protected void executeIndividually(JobEntity job) {
+    new ExecuteAsyncRunnable(job, commandExecutor).run();
+  }
+
+  public List<JobEntity> getJobs() {
+    return jobs;
+  }
+}
@@ -16,6 +16,7 @@ import org.activiti.engine.ActivitiOptimisticLockingException;
 import org.activiti.engine.delegate.event.ActivitiEventType;
 import org.activiti.engine.delegate.event.impl.ActivitiEventBuilder;
 import org.activiti.engine.impl.cmd.ExecuteAsyncJobCmd;
+import org.activiti.engine.impl.cmd.ExecuteExclusiveAsyncJobCmd;
 import org.activiti.engine.impl.cmd.LockExclusiveJobCmd;
 import org.activiti.engine.impl.cmd.UnlockExclusiveJobCmd;
 import org.activiti.engine.impl.context.Context;
@@ -38,13 +39,26 @@ public class ExecuteAsyncRunnable implements Runnable {
 
   protected JobEntity job;
   protected CommandExecutor commandExecutor;
+  
+  /** When true, exclusive jobs are locked, executed and unlocked in one transaction */
+  protected boolean singleTransactionForExclusiveJobs;
 
   public ExecuteAsyncRunnable(JobEntity job, CommandExecutor commandExecutor) {
     this.job = job;
     this.commandExecutor = commandExecutor;
   }
+  
+  public ExecuteAsyncRunnable(JobEntity job, CommandExecutor commandExecutor, boolean singleTransactionForExclusiveJobs) {
+    this(job, commandExecutor);
+    this.singleTransactionForExclusiveJobs = singleTransactionForExclusiveJobs;
+  }
 
   public void run() {
+    if (singleTransactionForExclusiveJobs && job.isExclusive()) {
+      executeExclusiveJob();
+      return;
+    }
+    
     boolean lockNotNeededOrSuccess = lockJobIfNeeded();
     if (lockNotNeededOrSuccess) {
       executeJob();
@@ -115,6 +129,36 @@ public class ExecuteAsyncRunnable implements Runnable {
     }
   }
 
+  protected void executeExclusiveJob() {
+    ExecuteExclusiveAsyncJobCmd executeExclusiveAsyncJobCmd = new ExecuteExclusiveAsyncJobCmd(job);
+    try {
+      commandExecutor.execute(executeExclusiveAsyncJobCmd);
+      
+    } catch (Throwable exception) {
+      if (!executeExclusiveAsyncJobCmd.isProcessInstanceLocked()) {
+        if (log.isDebugEnabled()) {
+          log.debug("Could not lock exclusive job. Unlocking job so it can be acquired again. Catched exception: " + exception.getMessage());
+        }
+        
+        // Release the job again so it can be acquired later or by another node
+        unacquireJob();
+        
+      } else if (exception instanceof ActivitiOptimisticLockingException) {
+        handleFailedJob(exception);
+        
+        if (log.isDebugEnabled()) {
+          log.debug("Optimistic locking exception during exclusive job execution. If you have multiple async executors running against the same database, " +
+              "this exception means that this thread tried to execute an exclusive job, which already was changed by another async executor thread." +
+              "Exception message: {}", exception.getMessage());
+        }
+        
+      } else {
+        handleFailedJob(exception);
+        log.error("Job " + job.getId() + " failed", exception);
+      }
+    }
+  }
+
   protected void unlockJobIfNeeded() {
     try {
       if (job.isExclusive()) {
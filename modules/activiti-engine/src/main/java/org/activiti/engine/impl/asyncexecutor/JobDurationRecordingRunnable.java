@@ -0,0 +1,43 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.asyncexecutor;
+
+/**
+ * Executes the runnable of one or more jobs, and records the time it took per job
+ * in the {@link AdaptiveJobAcquisitionSizer}.
+ */
+public class JobDurationRecordingRunnable implements Runnable {
+
+  protected final Runnable runnable;
+  protected final int jobCount;
+  protected final AdaptiveJobAcquisitionSizer acquisitionSizer;
+
+  public JobDurationRecordingRunnable(Runnable runnable, int jobCount, AdaptiveJobAcquisitionSizer acquisitionSizer) {
+    this.runnable = runnable;
+    this.jobCount = jobCount;
+    this.acquisitionSizer = acquisitionSizer;
+  }
+
+  public void run() {
+    long start = System.nanoTime();
+    try {
+      runnable.run();
+    } finally {
+      acquisitionSizer.recordJobDuration((System.nanoTime() - start) / 1000000.0 / jobCount);
+    }
+  }
+
+  public Runnable getRunnable() {
+    return runnable;
+  }
+}
@@ -0,0 +1,222 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.asyncexecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.activiti.engine.impl.cmd.ReleaseJobPartitionLeaseCmd;
+import org.activiti.engine.impl.cmd.RenewJobPartitionLeaseCmd;
+import org.activiti.engine.impl.interceptor.CommandExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Divides the jobs over the async executors of a cluster, so every node only acquires the jobs of its own partitions
+ * instead of all nodes competing for the same jobs.
+ *
+ * Every job gets one of {@link #PARTITION_COUNT} partitions when it is inserted, a hash of its process instance id
+ * (so all jobs of a process instance are in the same partition). Every node holds a lease in the ACT_GE_PROPERTY table,
+ * renewed every third of the lease time. The nodes with a live lease are placed on a consistent hash ring of the partitions,
+ * a partition belongs to the next node on the ring. When a node joins or leaves (or its lease expires),
+ * only the partitions next to its points on the ring move to other nodes.
+ *
+ * Every node computes the ring from the leases it reads, so for at most one renewal interval after a change
+ * two nodes can acquire the same partition (acquisition then falls back to the optimistic locking of the jobs)
+ * or a partition can have no node.
+ */
+public class JobPartitionManager {
+
+  private static Logger log = LoggerFactory.getLogger(JobPartitionManager.class);
+
+  /** The number of partitions, fixed as the partition of a job is stored with the job */
+  public static final int PARTITION_COUNT = 1024;
+
+  public static final String LEASE_PROPERTY_PREFIX = "job.partition.lease.";
+
+  /** Points of every node on the hash ring, more points divide the partitions more evenly */
+  protected static final int RING_POINTS_PER_NODE = 32;
+
+  protected final String nodeId;
+  protected long leaseTimeInMillis = 60 * 1000;
+
+  protected volatile List<String> nodeIds = Collections.emptyList();
+  protected volatile List<JobPartitionRange> partitionRanges;
+  protected volatile long nextRenewalTime;
+
+  protected AtomicLong rebalanceCount = new AtomicLong();
+
+  public JobPartitionManager() {
+    this(UUID.randomUUID().toString());
+  }
+
+  public JobPartitionManager(String nodeId) {
+    this.nodeId = nodeId;
+  }
+
+  /**
+   * The partition of a job with the given key. The bits of the string hash are spread first,
+   * as ids generated one after another only differ in their last characters.
+   */
+  public static int getPartition(String key) {
+    int hash = key.hashCode();
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return (hash & 0x7fffffff) % PARTITION_COUNT;
+  }
+
+  /**
+   * The partitions owned by the given node, when the given nodes have a lease.
+   */
+  public static List<JobPartitionRange> computePartitionRanges(List<String> nodeIds, String nodeId) {
+    TreeMap<Integer, String> ring = new TreeMap<Integer, String>();
+    for (String node : nodeIds) {
+      for (int i = 0; i < RING_POINTS_PER_NODE; i++) {
+        Integer point = getPartition(node + "#" + i);
+        String pointOwner = ring.get(point);
+        // points of different nodes on the same position go to the same node on every node
+        if (pointOwner == null || node.compareTo(pointOwner) < 0) {
+          ring.put(point, node);
+        }
+      }
+    }
+
+    List<JobPartitionRange> ranges = new ArrayList<JobPartitionRange>();
+    if (ring.isEmpty()) {
+      return ranges;
+    }
+    int rangeStart = -1;
+    for (int partition = 0; partition < PARTITION_COUNT; partition++) {
+      Map.Entry<Integer, String> point = ring.ceilingEntry(partition);
+      if (point == null) {
+        point = ring.firstEntry();
+      }
+      boolean owned = point.getValue().equals(nodeId);
+      if (owned && rangeStart < 0) {
+        rangeStart = partition;
+      } else if (!owned && rangeStart >= 0) {
+        ranges.add(new JobPartitionRange(rangeStart, partition));
+        rangeStart = -1;
+      }
+    }
+    if (rangeStart >= 0) {
+      ranges.add(new JobPartitionRange(rangeStart, PARTITION_COUNT));
+    }
+    return ranges;
+  }
+
+  /**
+   * The partitions of this node, renewing the lease first when it is due.
+   * Empty when this node doesn't know its partitions yet (the lease couldn't be renewed).
+   */
+  public synchronized List<JobPartitionRange> getPartitionRanges(CommandExecutor commandExecutor) {
+    if (System.currentTimeMillis() >= nextRenewalTime) {
+      renewLease(commandExecutor);
+    }
+    List<JobPartitionRange> ranges = partitionRanges;
+    return ranges != null ? ranges : Collections.<JobPartitionRange>emptyList();
+  }
+
+  protected void renewLease(CommandExecutor commandExecutor) {
+    try {
+      List<String> liveNodeIds = commandExecutor.execute(new RenewJobPartitionLeaseCmd(nodeId, leaseTimeInMillis));
+      if (partitionRanges == null || !liveNodeIds.equals(nodeIds)) {
+        partitionRanges = computePartitionRanges(liveNodeIds, nodeId);
+        nodeIds = liveNodeIds;
+        rebalanceCount.incrementAndGet();
+        log.info("Job partitions rebalanced over {} nodes, node {} owns {} of {} partitions",
+            liveNodeIds.size(), nodeId, getOwnedPartitionCount(), PARTITION_COUNT);
+      }
+      nextRenewalTime = System.currentTimeMillis() + leaseTimeInMillis / 3;
+
+    } catch (Throwable e) {
+      // another node deleting this lease as expired at the same time, or the database is not reachable
+      log.warn("Could not renew job partition lease of node {}: {}", nodeId, e.getMessage());
+      nextRenewalTime = System.currentTimeMillis() + leaseTimeInMillis / 10;
+    }
+  }
+
+  /** Time until the lease of this node is to be renewed */
+  public long getMillisToNextRenewal() {
+    return Math.max(nextRenewalTime - System.currentTimeMillis(), 0L);
+  }
+
+  /** Whether a job with the given partition is acquired by this node, jobs without partition belong to the owner of partition 0 */
+  public boolean isOwned(Integer partition) {
+    List<JobPartitionRange> ranges = partitionRanges;
+    return ranges == null || JobPartitionRange.containsPartition(ranges, partition != null ? partition : 0);
+  }
+
+  /**
+   * Removes the lease of this node, so the other nodes take over its partitions with their next renewal
+   * instead of after the lease expires.
+   */
+  public synchronized void releaseLease(CommandExecutor commandExecutor) {
+    try {
+      commandExecutor.execute(new ReleaseJobPartitionLeaseCmd(nodeId));
+    } catch (Throwable e) {
+      log.warn("Could not release job partition lease of node {}: {}", nodeId, e.getMessage());
+    }
+    partitionRanges = null;
+    nodeIds = Collections.emptyList();
+    nextRenewalTime = 0;
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  public long getLeaseTimeInMillis() {
+    return leaseTimeInMillis;
+  }
+
+  public void setLeaseTimeInMillis(long leaseTimeInMillis) {
+    this.leaseTimeInMillis = leaseTimeInMillis;
+  }
+
+  // Metrics //////////////////////////////////////////////////////////////////
+
+  /** The nodes with a live lease when this node last renewed its lease. */
+  public List<String> getNodeIds() {
+    return nodeIds;
+  }
+
+  /** The partitions of this node, without renewing the lease (null when not known yet). */
+  public List<JobPartitionRange> getPartitionRanges() {
+    return partitionRanges;
+  }
+
+  public int getOwnedPartitionCount() {
+    List<JobPartitionRange> ranges = partitionRanges;
+    int count = 0;
+    if (ranges != null) {
+      for (JobPartitionRange range : ranges) {
+        count += range.size();
+      }
+    }
+    return count;
+  }
+
+  /** Number of times the partitions of this node were computed, because a node joined or left. */
+  public long getRebalanceCount() {
+    return rebalanceCount.get();
+  }
+}
@@ -0,0 +1,76 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.asyncexecutor;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * A range of job partitions owned by a node: from (inclusive) to (exclusive).
+ */
+public class JobPartitionRange implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  protected final int from;
+  protected final int to;
+
+  public JobPartitionRange(int from, int to) {
+    this.from = from;
+    this.to = to;
+  }
+
+  public int getFrom() {
+    return from;
+  }
+
+  public int getTo() {
+    return to;
+  }
+
+  public int size() {
+    return to - from;
+  }
+
+  public boolean contains(int partition) {
+    return partition >= from && partition < to;
+  }
+
+  public static boolean containsPartition(Collection<JobPartitionRange> partitionRanges, int partition) {
+    for (JobPartitionRange partitionRange : partitionRanges) {
+      if (partitionRange.contains(partition)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof JobPartitionRange)) {
+      return false;
+    }
+    JobPartitionRange other = (JobPartitionRange) obj;
+    return from == other.from && to == other.to;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * from + to;
+  }
+
+  @Override
+  public String toString() {
+    return "[" + from + ", " + to + ")";
+  }
+}
@@ -0,0 +1,48 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.asyncexecutor;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.interceptor.CommandExecutor;
+
+/**
+ * {@link AsyncJobNotificationChannel} that notifies the listeners in the same JVM. 
+ * Sharing one instance between multiple process engines on the same database 
+ * lets an engine that doesn't execute async jobs wake up the ones that do.
+ */
+public class LocalAsyncJobNotificationChannel implements AsyncJobNotificationChannel {
+  
+  protected List<AsyncJobNotificationListener> listeners = new CopyOnWriteArrayList<AsyncJobNotificationListener>();
+
+  public void subscribe(AsyncJobNotificationListener listener, CommandExecutor commandExecutor) {
+    listeners.add(listener);
+  }
+
+  public void unsubscribe(AsyncJobNotificationListener listener) {
+    listeners.remove(listener);
+  }
+
+  public void publishJobsAvailable(CommandContext commandContext) {
+    notifyListeners();
+  }
+  
+  protected void notifyListeners() {
+    for (AsyncJobNotificationListener listener : listeners) {
+      listener.onJobsAvailable();
+    }
+  }
+  
+}
@@ -0,0 +1,285 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.asyncexecutor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.activiti.engine.impl.persistence.entity.JobEntity;
+
+/**
+ * In-memory hashed wheel of the timer jobs that are due within a limited horizon, so they can be
+ * fired on time without polling the ACT_RU_JOB table (see {@link AcquireTimerJobsRunnable}).
+ *
+ * The database stays the source of truth: the wheel is filled by one range query on every reconciliation
+ * ({@link #reconcile(Collection, long, long, long)}), and in between kept up to date with the timers that are
+ * created or deleted on this node. Timers created, changed or deleted by other nodes are picked up
+ * by the next reconciliation, the number of differences found is reported as the reconciliation drift.
+ *
+ * Every timer is kept in the bucket of its tick (the due time divided by {@link #tickMillis}),
+ * buckets are reused every {@link #wheelSize} ticks. Firing the due timers only visits the buckets of
+ * the ticks that passed since the previous call, whatever the number of timers in the wheel.
+ */
+public class TimerWheel {
+
+  /** A timer job in the wheel */
+  protected static class TimerWheelEntry {
+
+    protected String jobId;
+    protected long dueTime;
+    protected long tick;
+    protected long modification;
+
+    public TimerWheelEntry(String jobId, long dueTime, long tick, long modification) {
+      this.jobId = jobId;
+      this.dueTime = dueTime;
+      this.tick = tick;
+      this.modification = modification;
+    }
+  }
+
+  protected final long tickMillis;
+  protected final int wheelSize;
+  protected final List<Map<String, TimerWheelEntry>> buckets;
+  protected final Map<String, TimerWheelEntry> entries = new HashMap<String, TimerWheelEntry>();
+
+  /** The last tick of which all timers were fired, -1 before the first reconciliation */
+  protected long processedTick = -1;
+
+  /** Timers due after this time are not in the wheel (yet), until a reconciliation covers them */
+  protected long horizonTime;
+  
+  /** Incremented on every change, to tell the timers added during a reconciliation query apart */
+  protected long modificationCount;
+  
+  /** The timers removed since the last reconciliation, with the modification that removed them */
+  protected final Map<String, Long> removedJobIds = new HashMap<String, Long>();
+
+  protected long reconciliationCount;
+  protected long lastReconciliationDrift;
+  protected long totalReconciliationDrift;
+
+  public TimerWheel() {
+    this(100L, 512);
+  }
+
+  public TimerWheel(long tickMillis, int wheelSize) {
+    this.tickMillis = tickMillis;
+    this.wheelSize = wheelSize;
+    this.buckets = new ArrayList<Map<String, TimerWheelEntry>>(wheelSize);
+    for (int i = 0; i < wheelSize; i++) {
+      buckets.add(new LinkedHashMap<String, TimerWheelEntry>());
+    }
+  }
+
+  /**
+   * Adds a timer that was created (or rescheduled) on this node, when it is due within the horizon of the last reconciliation.
+   * Returns true when the timer was added.
+   */
+  public synchronized boolean add(String jobId, Date duedate) {
+    if (duedate == null || processedTick < 0 || duedate.getTime() > horizonTime) {
+      return false;
+    }
+    addEntry(jobId, duedate.getTime());
+    return true;
+  }
+
+  /** Removes a timer that was deleted on this node */
+  public synchronized boolean remove(String jobId) {
+    removedJobIds.put(jobId, ++modificationCount);
+    return removeEntry(jobId) != null;
+  }
+
+  /**
+   * Removes and returns the ids of the timers that are due at the given time (in milliseconds).
+   */
+  public synchronized List<String> pollDueJobIds(long now) {
+    List<String> dueJobIds = new ArrayList<String>();
+    if (processedTick < 0) {
+      return dueJobIds;
+    }
+
+    long nowTick = now / tickMillis;
+    long ticksToProcess = Math.min(nowTick - processedTick, wheelSize);
+    for (long i = 0; i < ticksToProcess; i++) {
+      Map<String, TimerWheelEntry> bucket = buckets.get(bucketIndex(nowTick - i));
+      Iterator<TimerWheelEntry> iterator = bucket.values().iterator();
+      while (iterator.hasNext()) {
+        TimerWheelEntry entry = iterator.next();
+        if (entry.dueTime <= now) {
+          iterator.remove();
+          entries.remove(entry.jobId);
+          removedJobIds.put(entry.jobId, ++modificationCount);
+          dueJobIds.add(entry.jobId);
+        }
+      }
+    }
+
+    // the current tick is only processed up to now, it is visited again the next time
+    processedTick = Math.max(processedTick, nowTick - 1);
+    return dueJobIds;
+  }
+
+  /**
+   * The due time of the first timer in the wheel, or {@link Long#MAX_VALUE} when the wheel is empty.
+   */
+  public synchronized long getNextDueTime() {
+    if (entries.isEmpty()) {
+      return Long.MAX_VALUE;
+    }
+
+    // the timers of the next round of ticks are found in their bucket, later ones have to be looked up
+    for (long tick = processedTick + 1; tick <= processedTick + wheelSize; tick++) {
+      long nextDueTime = Long.MAX_VALUE;
+      for (TimerWheelEntry entry : buckets.get(bucketIndex(tick)).values()) {
+        if (entry.tick == tick && entry.dueTime < nextDueTime) {
+          nextDueTime = entry.dueTime;
+        }
+      }
+      if (nextDueTime != Long.MAX_VALUE) {
+        return nextDueTime;
+      }
+    }
+
+    long nextDueTime = Long.MAX_VALUE;
+    for (TimerWheelEntry entry : entries.values()) {
+      nextDueTime = Math.min(nextDueTime, entry.dueTime);
+    }
+    return nextDueTime;
+  }
+
+  /**
+   * Replaces the contents of the wheel by the timers the database returned as due before the given horizon.
+   * Timers added or removed on this node after the query started (after {@link #getModificationCount()} returned 
+   * the given count) are left as they are, as the query may not have seen those changes.
+   * Returns the drift: the number of timers that were missing, deleted or rescheduled compared to the database.
+   */
+  public synchronized long reconcile(Collection<JobEntity> timers, long queryTime, long horizonTime, long modificationCountBeforeQuery) {
+    if (processedTick < 0) {
+      processedTick = queryTime / tickMillis - 1;
+    }
+    this.horizonTime = horizonTime;
+
+    long drift = 0;
+    Map<String, TimerWheelEntry> staleEntries = new HashMap<String, TimerWheelEntry>(entries);
+    for (JobEntity timer : timers) {
+      long dueTime = timer.getDuedate() != null ? timer.getDuedate().getTime() : queryTime;
+      TimerWheelEntry entry = staleEntries.remove(timer.getId());
+      if (entry != null && entry.modification > modificationCountBeforeQuery) {
+        continue;
+      }
+      Long removal = removedJobIds.get(timer.getId());
+      if (entry == null && removal != null && removal > modificationCountBeforeQuery) {
+        continue;
+      }
+      if (entry == null || entry.dueTime != dueTime) {
+        drift++;
+        addEntry(timer.getId(), dueTime);
+      }
+    }
+    removedJobIds.clear();
+
+    for (TimerWheelEntry staleEntry : staleEntries.values()) {
+      if (staleEntry.modification <= modificationCountBeforeQuery) {
+        drift++;
+        removeEntry(staleEntry.jobId);
+      }
+    }
+
+    reconciliationCount++;
+    lastReconciliationDrift = drift;
+    totalReconciliationDrift += drift;
+    return drift;
+  }
+
+  protected void addEntry(String jobId, long dueTime) {
+    removeEntry(jobId);
+    // overdue timers go in the bucket that is processed next
+    long tick = Math.max(dueTime / tickMillis, processedTick + 1);
+    TimerWheelEntry entry = new TimerWheelEntry(jobId, dueTime, tick, ++modificationCount);
+    entries.put(jobId, entry);
+    buckets.get(bucketIndex(tick)).put(jobId, entry);
+  }
+
+  protected TimerWheelEntry removeEntry(String jobId) {
+    TimerWheelEntry entry = entries.remove(jobId);
+    if (entry != null) {
+      buckets.get(bucketIndex(entry.tick)).remove(jobId);
+    }
+    return entry;
+  }
+
+  protected int bucketIndex(long tick) {
+    return (int) (tick % wheelSize);
+  }
+
+  // Metrics //////////////////////////////////////////////////////////////////
+
+  /** Number of timers in the wheel. */
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  /** Number of buckets holding at least one timer. */
+  public synchronized int getOccupiedBucketCount() {
+    int occupiedBuckets = 0;
+    for (Map<String, TimerWheelEntry> bucket : buckets) {
+      if (!bucket.isEmpty()) {
+        occupiedBuckets++;
+      }
+    }
+    return occupiedBuckets;
+  }
+
+  /** Fraction of the buckets holding at least one timer. */
+  public double getOccupancy() {
+    return (double) getOccupiedBucketCount() / wheelSize;
+  }
+
+  /** Number of reconciliations with the database. */
+  public synchronized long getReconciliationCount() {
+    return reconciliationCount;
+  }
+
+  /** Number of timers the last reconciliation found missing, deleted or rescheduled. */
+  public synchronized long getLastReconciliationDrift() {
+    return lastReconciliationDrift;
+  }
+
+  /** Number of timers all reconciliations found missing, deleted or rescheduled. */
+  public synchronized long getTotalReconciliationDrift() {
+    return totalReconciliationDrift;
+  }
+
+  public synchronized long getModificationCount() {
+    return modificationCount;
+  }
+
+  public synchronized long getHorizonTime() {
+    return horizonTime;
+  }
+
+  public long getTickMillis() {
+    return tickMillis;
+  }
+
+  public int getWheelSize() {
+    return wheelSize;
+  }
+}
@@ -338,6 +338,8 @@ public class BpmnDeployer implements Deployer {
         	processDefinition.setId(persistedProcessDefinition.getId());
         	processDefinition.setVersion(persistedProcessDefinition.getVersion());
         	processDefinition.setSuspensionState(persistedProcessDefinition.getSuspensionState());
+        	// the diagram resources aren't loaded when only the resource of the process definition is deployed again
+        	processDefinition.setDiagramResourceName(persistedProcessDefinition.getDiagramResourceName());
         }
       }
 
@@ -352,6 +354,11 @@ public class BpmnDeployer implements Deployer {
       //操作节点缓存
       createLocalizationValues(processDefinition.getId(), bpmnModelMap.get(processDefinition.getKey()).getProcessById(processDefinition.getKey()));
     }
+    
+    // New latest versions: the cached latest process definitions of all engines are outdated
+    if (deployment.isNew() && !processDefinitions.isEmpty()) {
+      processEngineConfiguration.getDeploymentManager().updateDeploymentVersion();
+    }
   }
 
   /**
@@ -438,6 +445,7 @@ public class BpmnDeployer implements Deployer {
         if (timer!=null) {
           //属性填充
           timer.setProcessDefinitionId(processDefinition.getId());
+          timer.setPriority(processDefinition.resolveJobPriority());
 	        
           // Inherit timer (if appliccable)
           if (processDefinition.getTenantId() != null) {
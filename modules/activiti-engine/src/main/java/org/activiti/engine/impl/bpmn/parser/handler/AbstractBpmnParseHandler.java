@@ -30,6 +30,7 @@ import org.activiti.bpmn.model.DataSpec;
 import org.activiti.bpmn.model.EventDefinition;
 import org.activiti.bpmn.model.EventGateway;
 import org.activiti.bpmn.model.FlowElement;
+import org.activiti.bpmn.model.FlowNode;
 import org.activiti.bpmn.model.Gateway;
 import org.activiti.bpmn.model.ImplementationType;
 import org.activiti.bpmn.model.IntermediateCatchEvent;
@@ -46,6 +47,7 @@ import org.activiti.engine.impl.pvm.process.ActivityImpl;
 import org.activiti.engine.impl.pvm.process.ScopeImpl;
 import org.activiti.engine.impl.pvm.process.TransitionImpl;
 import org.activiti.engine.parse.BpmnParseHandler;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,6 +66,8 @@ public abstract class AbstractBpmnParseHandler<T extends BaseElement> implements
   
   public static final String PROPERTYNAME_IS_FOR_COMPENSATION = "isForCompensation";
   
+  public static final String PROPERTYNAME_JOB_PRIORITY = "jobPriority";
+  
   public static final String PROPERTYNAME_EVENT_SUBSCRIPTION_DECLARATION = "eventDefinitions";
   
   public static final String PROPERTYNAME_ERROR_EVENT_DEFINITIONS = "errorEventDefinitions";
@@ -138,6 +142,9 @@ public abstract class AbstractBpmnParseHandler<T extends BaseElement> implements
     } else if (flowElement instanceof Gateway) {//如果元素是 网关类型 则需要设置默认值
       activity.setProperty("default", ((Gateway) flowElement).getDefaultFlow());
     }
+    if (flowElement instanceof FlowNode && StringUtils.isNotEmpty(((FlowNode) flowElement).getJobPriority())) {
+      activity.setProperty(PROPERTYNAME_JOB_PRIORITY, bpmnParse.getExpressionManager().createExpression(((FlowNode) flowElement).getJobPriority()));
+    }
     activity.setProperty("type", xmlLocalName);//向属性集合中添加元素的类型, 也就是元素的名称
     
     return activity;
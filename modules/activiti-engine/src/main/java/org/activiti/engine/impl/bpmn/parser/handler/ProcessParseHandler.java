@@ -26,6 +26,7 @@ import org.activiti.engine.impl.bpmn.parser.BpmnParse;
 import org.activiti.engine.impl.el.ExpressionManager;
 import org.activiti.engine.impl.persistence.entity.ProcessDefinitionEntity;
 import org.activiti.engine.impl.task.TaskDefinition;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -93,6 +94,10 @@ public class ProcessParseHandler extends AbstractBpmnParseHandler<Process> {
     for (String candidateGroup : process.getCandidateStarterGroups()) {
       currentProcessDefinition.addCandidateStarterGroupIdExpression(expressionManager.createExpression(candidateGroup));
     }
+    // default priority of the jobs of this process, activities can override it
+    if (StringUtils.isNotEmpty(process.getJobPriority())) {
+      currentProcessDefinition.setProperty(PROPERTYNAME_JOB_PRIORITY, expressionManager.createExpression(process.getJobPriority()));
+    }
 
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug("Parsing process {}", currentProcessDefinition.getKey());
@@ -68,8 +68,11 @@ import org.activiti.engine.impl.RepositoryServiceImpl;
 import org.activiti.engine.impl.RuntimeServiceImpl;
 import org.activiti.engine.impl.ServiceImpl;
 import org.activiti.engine.impl.TaskServiceImpl;
+import org.activiti.engine.impl.asyncexecutor.AbstractAsyncJobExecutor;
+import org.activiti.engine.impl.asyncexecutor.AsyncJobNotificationChannel;
 import org.activiti.engine.impl.asyncexecutor.DefaultAsyncJobExecutor;
 import org.activiti.engine.impl.asyncexecutor.ExecuteAsyncRunnableFactory;
+import org.activiti.engine.impl.asyncexecutor.VirtualThreadAsyncJobExecutor;
 import org.activiti.engine.impl.bpmn.data.ItemInstance;
 import org.activiti.engine.impl.bpmn.deployer.BpmnDeployer;
 import org.activiti.engine.impl.bpmn.parser.BpmnParseHandlers;
@@ -118,6 +121,7 @@ import org.activiti.engine.impl.cfg.standalone.StandaloneMybatisTransactionConte
 import org.activiti.engine.impl.db.DbIdGenerator;
 import org.activiti.engine.impl.db.DbSqlSessionFactory;
 import org.activiti.engine.impl.db.IbatisVariableTypeHandler;
+import org.activiti.engine.impl.db.StripedDbIdGenerator;
 import org.activiti.engine.impl.delegate.DefaultDelegateInterceptor;
 import org.activiti.engine.impl.el.ExpressionManager;
 import org.activiti.engine.impl.event.CompensationEventHandler;
@@ -134,6 +138,8 @@ import org.activiti.engine.impl.form.JuelFormEngine;
 import org.activiti.engine.impl.form.LongFormType;
 import org.activiti.engine.impl.form.StringFormType;
 import org.activiti.engine.impl.history.HistoryLevel;
+import org.activiti.engine.impl.history.async.AsyncHistoryBuffer;
+import org.activiti.engine.impl.history.async.AsyncHistoryJobHandler;
 import org.activiti.engine.impl.history.parse.FlowNodeHistoryParseHandler;
 import org.activiti.engine.impl.history.parse.ProcessHistoryParseHandler;
 import org.activiti.engine.impl.history.parse.StartEventHistoryParseHandler;
@@ -165,11 +171,15 @@ import org.activiti.engine.impl.persistence.GenericManagerFactory;
 import org.activiti.engine.impl.persistence.GroupEntityManagerFactory;
 import org.activiti.engine.impl.persistence.MembershipEntityManagerFactory;
 import org.activiti.engine.impl.persistence.UserEntityManagerFactory;
+import org.activiti.engine.impl.persistence.deploy.ConcurrentDeploymentCache;
 import org.activiti.engine.impl.persistence.deploy.DefaultDeploymentCache;
 import org.activiti.engine.impl.persistence.deploy.Deployer;
 import org.activiti.engine.impl.persistence.deploy.DeploymentCache;
 import org.activiti.engine.impl.persistence.deploy.DeploymentManager;
+import org.activiti.engine.impl.persistence.deploy.LatestProcessDefinitionCache;
+import org.activiti.engine.impl.persistence.deploy.ProcessDefinitionEntityWeigher;
 import org.activiti.engine.impl.persistence.deploy.ProcessDefinitionInfoCache;
+import org.activiti.engine.impl.persistence.deploy.ProcessDefinitionWarmUp;
 import org.activiti.engine.impl.persistence.entity.AttachmentEntityManager;
 import org.activiti.engine.impl.persistence.entity.ByteArrayEntityManager;
 import org.activiti.engine.impl.persistence.entity.CommentEntityManager;
@@ -226,6 +236,7 @@ import org.activiti.engine.impl.variable.UUIDType;
 import org.activiti.engine.impl.variable.VariableType;
 import org.activiti.engine.impl.variable.VariableTypes;
 import org.activiti.engine.parse.BpmnParseHandler;
+import org.activiti.engine.runtime.Job;
 import org.activiti.image.impl.DefaultProcessDiagramGenerator;
 import org.activiti.validation.ProcessValidator;
 import org.activiti.validation.ProcessValidatorFactory;
@@ -334,6 +345,31 @@ public abstract class ProcessEngineConfigurationImpl extends ProcessEngineConfig
    * */
   protected int processDefinitionCacheLimit = -1; // By default, no limit
   protected DeploymentCache<ProcessDefinitionEntity> processDefinitionCache;
+  
+  /**
+   * When true, the process definition cache is a {@link ConcurrentDeploymentCache} (lock-free reads)
+   * instead of the synchronized {@link DefaultDeploymentCache}.
+   */
+  protected boolean enableConcurrentProcessDefinitionCache;
+  
+  /** Max total weight (see {@link ProcessDefinitionEntityWeigher}) of the concurrent process definition cache. -1 means no limit. */
+  protected long processDefinitionCacheWeightLimit = -1;
+  protected ConcurrentDeploymentCache.EvictionPolicy processDefinitionCacheEvictionPolicy = ConcurrentDeploymentCache.EvictionPolicy.LRU;
+  
+  /**
+   * When true, the ids of the latest process definitions by key are cached, so starting a process instance by key 
+   * (or a call activity) doesn't query the latest version. The cache is invalidated by every deployment change 
+   * on the database, also by other engines, see {@link LatestProcessDefinitionCache}.
+   */
+  protected boolean enableLatestProcessDefinitionCache = true;
+  
+  /**
+   * Keys of the process definitions whose latest version is resolved (parsed and cached) when the engine is built,
+   * using a pool of processDefinitionWarmUpPoolSize threads. See {@link ProcessDefinitionWarmUp}.
+   */
+  protected List<String> processDefinitionWarmUpKeys;
+  protected int processDefinitionWarmUpPoolSize = 4;
+  
   protected int bpmnModelCacheLimit = -1; // By default, no limit
   protected DeploymentCache<BpmnModel> bpmnModelCache;
   protected int processDefinitionInfoCacheLimit = -1; // By default, no limit
@@ -361,6 +397,31 @@ public abstract class ProcessEngineConfigurationImpl extends ProcessEngineConfig
    */
   protected int asyncExecutorMaxPoolSize = 10;
   
+  /**
+   * The number of threads reserved for jobs with a priority of at least {@link #asyncExecutorHighPriorityThreshold},
+   * so these don't wait behind a backlog of lower priority jobs. Default value = 0 (no reserved threads).
+   * (This property is only applicable when using the {@link DefaultAsyncJobExecutor}).
+   */
+  protected int asyncExecutorHighPriorityPoolSize = 0;
+  
+  /**
+   * The job priority from which jobs are executed on the reserved threads. Default value = 51
+   * (any priority above the default job priority).
+   * (This property is only applicable when using the {@link DefaultAsyncJobExecutor}).
+   */
+  protected int asyncExecutorHighPriorityThreshold = Job.DEFAULT_PRIORITY + 1;
+  
+  /**
+   * When true, the async executor runs every job on its own thread (a virtual thread on Java 21 or later) instead of
+   * on a threadpool, see {@link VirtualThreadAsyncJobExecutor}. Meant for jobs that mostly block on I/O. Default value = false.
+   */
+  protected boolean asyncExecutorVirtualThreads;
+  
+  /**
+   * The maximum number of jobs executing at the same time when {@link #asyncExecutorVirtualThreads} is enabled. Default value = 100.
+   */
+  protected int asyncExecutorMaxConcurrentJobs = 100;
+  
   /** 
    * The time (in milliseconds) a thread used for job execution must be kept alive before it is
    * destroyed. Default setting is 5 seconds. Having a setting > 0 takes resources,
@@ -493,6 +554,113 @@ public abstract class ProcessEngineConfigurationImpl extends ProcessEngineConfig
    * (This property is only applicable when using the {@link DefaultAsyncJobExecutor}).
    */
   protected ExecuteAsyncRunnableFactory asyncExecutorExecuteAsyncRunnableFactory;
+  
+  /**
+   * Channel used to notify async job acquisition threads (of this and, depending on the implementation, other engines)
+   * that new async jobs are available, instead of letting them find out at the next acquisition interval.
+   * When set, the acquisition backs off up to {@link #asyncExecutorMaxAsyncJobAcquireWaitTime} when no jobs are found.
+   * 
+   * By default null (no notifications).
+   */
+  protected AsyncJobNotificationChannel asyncExecutorJobNotificationChannel;
+  
+  /**
+   * The maximum time (in milliseconds) the async job acquisition thread waits when backing off while idle.
+   * Only used when an {@link #asyncExecutorJobNotificationChannel} is set. Default value = 60 seconds.
+   * 
+   * (This property is only applicable when using the {@link DefaultAsyncJobExecutor}).
+   */
+  protected int asyncExecutorMaxAsyncJobAcquireWaitTime = 60 * 1000;
+  
+  /**
+   * When true, the async executor locks the jobs it acquires while selecting them ('select ... for update skip locked',
+   * or the 'readpast' hint on MS SQL Server), so acquisition threads of different nodes don't compete for the same jobs.
+   * Requires PostgreSQL 9.5+, MySQL 8+, Oracle or MS SQL Server. On other databases acquisition keeps relying on
+   * optimistic locking. Default value = false.
+   */
+  protected boolean asyncExecutorSkipLockedAcquisition;
+  
+  /**
+   * When true, the process instance lock of an exclusive job is taken, the job is executed and the lock is released
+   * in one transaction, instead of three. The process instance row stays locked in the database while the job runs.
+   * Default value = false.
+   * 
+   * (This property is only applicable when using the {@link DefaultAsyncJobExecutor}).
+   */
+  protected boolean asyncExecutorSingleTransactionForExclusiveJobs;
+  
+  /**
+   * When true, the exclusive jobs of a process instance are executed one after another on the same thread
+   * of this node, and acquisition also acquires the other due exclusive jobs of the process instances it acquired.
+   * This avoids exclusive jobs of one process instance (like the jobs of a parallel gateway or a parallel multi instance)
+   * failing to lock the process instance and being retried. Default value = false.
+   * 
+   * (This property is only applicable when using the {@link DefaultAsyncJobExecutor}).
+   */
+  protected boolean asyncExecutorExclusiveJobAffinity;
+  
+  /**
+   * The maximum number of acquired non exclusive jobs of the same tenant that are executed together in one transaction,
+   * with a savepoint per job: a failing job is rolled back to its savepoint and executed again on its own.
+   * Saves a transaction (and a connection checkout) per job for short jobs. Default value = 1 (every job in its own transaction).
+   * 
+   * (This property is only applicable when using the {@link DefaultAsyncJobExecutor}, 
+   * a failing job only leaves the other jobs of its bulk untouched with the standalone transaction context).
+   */
+  protected int asyncExecutorBulkJobExecutionSize = 1;
+  
+  /**
+   * When true, the timers due within {@link #asyncExecutorTimerWheelHorizonInMillis} are kept in an in-memory timer wheel
+   * and fired when they are due, instead of polling the ACT_RU_JOB table for due timers every 
+   * {@link #asyncExecutorDefaultTimerJobAcquireWaitTime}. The wheel is filled by one range query every
+   * {@link #asyncExecutorTimerWheelReconciliationIntervalInMillis}, and updated with the timers created and deleted on this node
+   * in between: timers created by other nodes can fire up to the reconciliation interval late. Default value = false.
+   * 
+   * (This property is only applicable when using the {@link DefaultAsyncJobExecutor}).
+   */
+  protected boolean asyncExecutorTimerWheelEnabled;
+  
+  /**
+   * The timers due within this time (in milliseconds) are kept in the timer wheel. Default value = 60 seconds.
+   * Should be longer than {@link #asyncExecutorTimerWheelReconciliationIntervalInMillis}.
+   */
+  protected int asyncExecutorTimerWheelHorizonInMillis = 60 * 1000;
+  
+  /**
+   * The time (in milliseconds) between two reconciliations of the timer wheel with the database. Default value = 30 seconds.
+   */
+  protected int asyncExecutorTimerWheelReconciliationIntervalInMillis = 30 * 1000;
+  
+  /**
+   * When true, every job acquisition is sized from the free threads and queue places of the async executor, 
+   * the recent job duration and the lock time, so acquired jobs aren't rejected or left waiting in the queue until 
+   * their lock expires, instead of using {@link #asyncExecutorMaxAsyncJobsDuePerAcquisition} 
+   * and {@link #asyncExecutorMaxTimerJobsPerAcquisition}. Default value = false.
+   * 
+   * (This property is only applicable when using the {@link DefaultAsyncJobExecutor}).
+   */
+  protected boolean asyncExecutorAdaptiveJobAcquisition;
+  
+  /**
+   * The maximum number of jobs acquired at once when {@link #asyncExecutorAdaptiveJobAcquisition} is enabled. Default value = 100.
+   */
+  protected int asyncExecutorMaxJobsPerAdaptiveAcquisition = 100;
+  
+  /**
+   * When true, every job gets a partition and every async executor of the cluster only acquires the jobs 
+   * in its own partitions, instead of all async executors competing for the same jobs. The partitions are divided 
+   * over the async executors with a lease in the database, and moved when an async executor starts or stops
+   * (or its lease expires). Default value = false.
+   * 
+   * (This property is only applicable when using the {@link DefaultAsyncJobExecutor}).
+   */
+  protected boolean asyncExecutorJobPartitioning;
+  
+  /**
+   * The time after which the partitions of an async executor that stopped renewing its lease are moved to the other ones,
+   * when {@link #asyncExecutorJobPartitioning} is enabled. The lease is renewed every third of this time. Default value = 60 seconds.
+   */
+  protected long asyncExecutorJobPartitionLeaseTimeInMillis = 60 * 1000;
 
   // MYBATIS SQL SESSION FACTORY //////////////////////////////////////////////
   
@@ -508,6 +676,12 @@ public abstract class ProcessEngineConfigurationImpl extends ProcessEngineConfig
   protected DataSource idGeneratorDataSource;
   protected String idGeneratorDataSourceJndiName;
   
+  /**
+   * When true, a {@link StripedDbIdGenerator} is used instead of the {@link DbIdGenerator}: 
+   * ids are handed out without a global lock and the next id block is prefetched in the background. 
+   */
+  protected boolean enableStripedIdGenerator;
+  
   // BPMN PARSER //////////////////////////////////////////////////////////////
   
   protected List<BpmnParseHandler> preBpmnParseHandlers;
@@ -534,6 +708,14 @@ public abstract class ProcessEngineConfigurationImpl extends ProcessEngineConfig
   protected VariableTypes variableTypes;
   
   protected ExpressionManager expressionManager;
+  
+  /**
+   * The number of evaluations after which an expression (like a sequence flow condition or a service task expression)
+   * is compiled into evaluators specialized for its operators and literals, instead of interpreting its parse tree.
+   * Default value = 0, expressions are always interpreted.
+   */
+  protected int expressionCompilationThreshold;
+  
   protected List<String> customScriptingEngineClasses;
   protected ScriptingEngines scriptingEngines;
   protected List<ResolverFactory> resolverFactories;
@@ -597,6 +779,52 @@ public abstract class ProcessEngineConfigurationImpl extends ProcessEngineConfig
   */
   protected int maxNrOfStatementsInBulkInsert = 100;
   
+  /**
+   * If set to true, the inserts, updates and deletes of a flush are sent to the database as JDBC batches
+   * instead of one statement at a time. Optimistic locking is still enforced, by verifying the update counts 
+   * reported by the driver. Default false.
+   */
+  protected boolean isBatchFlushEnabled;
+  
+  /**
+   * If set to true, history rows that the runtime never reads back (historic details, comments and activity 
+   * instances that end in the transaction that started them) are not inserted in the runtime transaction. 
+   * They are buffered in a byte array and inserted later by an async job, which makes history queries 
+   * eventually consistent. Requires a running (async) job executor. Default false.
+   */
+  protected boolean asyncHistoryEnabled;
+  protected AsyncHistoryBuffer asyncHistoryBuffer;
+  
+  /**
+   * The minimum number of such history rows a transaction must produce to have them buffered.
+   * A buffer adds a byte array and a job insert, so smaller transactions insert their history directly. Default 10.
+   */
+  protected int asyncHistoryMinBufferedObjects = 10;
+  
+  /**
+   * If set to true, operations that walk a complete execution tree (deleting a process instance, 
+   * delivering an event to an execution, removing a scope execution) first load all executions, tasks, jobs, 
+   * event subscriptions and variables of the process instance with one query per table, instead of 
+   * lazily loading every relation of every execution separately. Default false.
+   */
+  protected boolean enableExecutionTreePrefetch;
+  
+  /**
+   * Approximate number of bytes the entity cache of a single DbSqlSession may use before entities 
+   * that can't be updated anymore in the command (never updated types like deployment resources, 
+   * and entities that are about to be deleted) are evicted from it. 
+   * Keeps commands that load many entities, like a cascading deployment delete, from exhausting the heap. 
+   * Default -1: no limit, and no memory accounting.
+   */
+  protected long sessionCacheMemoryThreshold = -1;
+  
+  /**
+   * Entities that track their own changes (see HasDirtyState, currently the history scope entities) 
+   * are no longer snapshotted when loaded, and at flush only the ones that were changed are compared and updated. 
+   * Saves building and comparing the persistent state of every loaded entity in commands that read a lot of history.
+   */
+  protected boolean isDirtyTrackingEnabled;
+  
   protected boolean enableEventDispatcher = true;
   protected ActivitiEventDispatcher eventDispatcher;
   protected List<ActivitiEventListener> eventListeners;//全局事件监听器
@@ -959,6 +1187,37 @@ public abstract class ProcessEngineConfigurationImpl extends ProcessEngineConfig
     }
   }
   
+  /**
+   * Checks the version of the database server before acquiring jobs with skip locked row locks: 
+   * on a server that doesn't support the statements, acquisition falls back to optimistic locking.
+   */
+  protected boolean isSkipLockedSupportedByDatabase() {
+    Connection connection = null;
+    try {
+      connection = dataSource.getConnection();
+      DatabaseMetaData databaseMetaData = connection.getMetaData();
+      boolean isSupported = DbSqlSessionFactory.isSkipLockedSupported(databaseType, databaseMetaData.getDatabaseProductName(), 
+          databaseMetaData.getDatabaseProductVersion(), databaseMetaData.getDatabaseMajorVersion(), databaseMetaData.getDatabaseMinorVersion());
+      if (!isSupported) {
+        log.warn("Skip locked job acquisition is not supported by {} {}, jobs are acquired with optimistic locking instead", 
+            databaseMetaData.getDatabaseProductName(), databaseMetaData.getDatabaseProductVersion());
+      }
+      return isSupported;
+
+    } catch (SQLException e) {
+      log.warn("Could not check if the database supports skip locked job acquisition, jobs are acquired with optimistic locking instead", e);
+      return false;
+    } finally {
+      try {
+        if (connection!=null) {
+          connection.close();
+        }
+      } catch (SQLException e) {
+          log.error("Exception while closing the Database connection", e);
+      }
+    }
+  }
+  
   // myBatis SqlSessionFactory ////////////////////////////////////////////////
   /*
   * 初始化事务工厂
@@ -1123,6 +1382,18 @@ Activiti中 可以使用的变量类型都是通过 此Handler 进行转换的
       dbSqlSessionFactory.setDatabaseSchema(databaseSchema);
       dbSqlSessionFactory.setBulkInsertEnabled(isBulkInsertEnabled, databaseType);
       dbSqlSessionFactory.setMaxNrOfStatementsInBulkInsert(maxNrOfStatementsInBulkInsert);
+      dbSqlSessionFactory.setBatchFlushEnabled(isBatchFlushEnabled);
+      dbSqlSessionFactory.setSessionCacheMemoryThreshold(sessionCacheMemoryThreshold);
+      dbSqlSessionFactory.setDirtyTrackingEnabled(isDirtyTrackingEnabled);
+      dbSqlSessionFactory.setSkipLockedJobAcquisitionEnabled(asyncExecutorSkipLockedAcquisition 
+          && (!DbSqlSessionFactory.databasesSupportingSkipLocked.contains(databaseType) || isSkipLockedSupportedByDatabase()));
+      if (asyncHistoryEnabled) {
+        if (asyncHistoryBuffer == null) {
+          asyncHistoryBuffer = new AsyncHistoryBuffer();
+          asyncHistoryBuffer.setMinBufferedObjects(asyncHistoryMinBufferedObjects);
+        }
+        dbSqlSessionFactory.setAsyncHistoryBuffer(asyncHistoryBuffer);
+      }
       addSessionFactory(dbSqlSessionFactory);
       //实体管理器 类的添加
       addSessionFactory(new GenericManagerFactory(AttachmentEntityManager.class));
@@ -1309,7 +1580,12 @@ Activiti中 可以使用的变量类型都是通过 此Handler 进行转换的
       //如果流程定义缓存 限制 为空
       if (processDefinitionCache == null) {
         //  processDefinitionCacheLimit 默认-1 表示不开启缓存
-        if (processDefinitionCacheLimit <= 0) {
+        if (enableConcurrentProcessDefinitionCache) {
+          ConcurrentDeploymentCache<ProcessDefinitionEntity> concurrentCache = new ConcurrentDeploymentCache<ProcessDefinitionEntity>(
+              processDefinitionCacheLimit, processDefinitionCacheWeightLimit, new ProcessDefinitionEntityWeigher());
+          concurrentCache.setEvictionPolicy(processDefinitionCacheEvictionPolicy);
+          processDefinitionCache = concurrentCache;
+        } else if (processDefinitionCacheLimit <= 0) {
           processDefinitionCache = new DefaultDeploymentCache<ProcessDefinitionEntity>();
         } else {
           processDefinitionCache = new DefaultDeploymentCache<ProcessDefinitionEntity>(processDefinitionCacheLimit);
@@ -1346,6 +1622,9 @@ Activiti中 可以使用的变量类型都是通过 此Handler 进行转换的
       deploymentManager.setBpmnModelCache(bpmnModelCache);
       deploymentManager.setProcessDefinitionInfoCache(processDefinitionInfoCache);
       deploymentManager.setKnowledgeBaseCache(knowledgeBaseCache);
+      if (enableLatestProcessDefinitionCache) {
+        deploymentManager.setLatestProcessDefinitionCache(new LatestProcessDefinitionCache());
+      }
     }
   }
   /*
@@ -1599,6 +1878,9 @@ Activiti中 可以使用的变量类型都是通过 此Handler 进行转换的
     //激活流程定义处理器
     TimerActivateProcessDefinitionHandler activateProcessDefinitionHandler = new TimerActivateProcessDefinitionHandler();
     jobHandlers.put(activateProcessDefinitionHandler.getType(), activateProcessDefinitionHandler);
+    
+    AsyncHistoryJobHandler asyncHistoryJobHandler = new AsyncHistoryJobHandler();
+    jobHandlers.put(asyncHistoryJobHandler.getType(), asyncHistoryJobHandler);
     //getCustomJobHandlers() 用于获取 customJobHandlers    他是开关属性,  可以通过它 替换引擎默认的作业处理器
     if (getCustomJobHandlers()!=null) {
       for (JobHandler customJobHandler : getCustomJobHandlers()) {
@@ -1643,12 +1925,21 @@ Activiti中 可以使用的变量类型都是通过 此Handler 进行转换的
   protected void initAsyncExecutor() {
     if (isAsyncExecutorEnabled()) {
       if (asyncExecutor == null) {
-        DefaultAsyncJobExecutor defaultAsyncExecutor = new DefaultAsyncJobExecutor();
+        DefaultAsyncJobExecutor defaultAsyncExecutor = null;
+        if (asyncExecutorVirtualThreads) {
+          VirtualThreadAsyncJobExecutor virtualThreadAsyncExecutor = new VirtualThreadAsyncJobExecutor();
+          virtualThreadAsyncExecutor.setMaxConcurrentJobs(asyncExecutorMaxConcurrentJobs);
+          defaultAsyncExecutor = virtualThreadAsyncExecutor;
+        } else {
+          defaultAsyncExecutor = new DefaultAsyncJobExecutor();
+        }
         
         // Thread pool config
         defaultAsyncExecutor.setCorePoolSize(asyncExecutorCorePoolSize);
         defaultAsyncExecutor.setMaxPoolSize(asyncExecutorMaxPoolSize);
         defaultAsyncExecutor.setKeepAliveTime(asyncExecutorThreadKeepAliveTime);
+        defaultAsyncExecutor.setHighPriorityPoolSize(asyncExecutorHighPriorityPoolSize);
+        defaultAsyncExecutor.setHighPriorityThreshold(asyncExecutorHighPriorityThreshold);
         
         // Threadpool queue
         if (asyncExecutorThreadPoolQueue != null) {
@@ -1663,9 +1954,28 @@ Activiti中 可以使用的变量类型都是通过 此Handler 进行转换的
         // Queue full wait time
         defaultAsyncExecutor.setDefaultQueueSizeFullWaitTimeInMillis(asyncExecutorDefaultQueueSizeFullWaitTime);
         
+        // Back off wait time (when notified of new jobs)
+        defaultAsyncExecutor.setMaxAsyncJobAcquireWaitTimeInMillis(asyncExecutorMaxAsyncJobAcquireWaitTime);
+        
         // Job locking
         defaultAsyncExecutor.setTimerLockTimeInMillis(asyncExecutorTimerLockTimeInMillis);
         defaultAsyncExecutor.setAsyncJobLockTimeInMillis(asyncExecutorAsyncJobLockTimeInMillis);
+        defaultAsyncExecutor.setSingleTransactionForExclusiveJobs(asyncExecutorSingleTransactionForExclusiveJobs);
+        defaultAsyncExecutor.setExclusiveJobAffinity(asyncExecutorExclusiveJobAffinity);
+        defaultAsyncExecutor.setBulkJobExecutionSize(asyncExecutorBulkJobExecutionSize);
+        
+        // Timer wheel
+        defaultAsyncExecutor.setTimerWheelEnabled(asyncExecutorTimerWheelEnabled);
+        defaultAsyncExecutor.setTimerWheelHorizonInMillis(asyncExecutorTimerWheelHorizonInMillis);
+        defaultAsyncExecutor.setTimerWheelReconciliationIntervalInMillis(asyncExecutorTimerWheelReconciliationIntervalInMillis);
+        
+        // Adaptive acquisition
+        defaultAsyncExecutor.setAdaptiveJobAcquisition(asyncExecutorAdaptiveJobAcquisition);
+        defaultAsyncExecutor.setMaxJobsPerAdaptiveAcquisition(asyncExecutorMaxJobsPerAdaptiveAcquisition);
+        
+        // Job partitioning
+        defaultAsyncExecutor.setJobPartitioning(asyncExecutorJobPartitioning);
+        defaultAsyncExecutor.setJobPartitionLeaseTimeInMillis(asyncExecutorJobPartitionLeaseTimeInMillis);
         if (asyncExecutorLockOwner != null) {
         	defaultAsyncExecutor.setLockOwner(asyncExecutorLockOwner);
         }
@@ -1681,6 +1991,13 @@ Activiti中 可以使用的变量类型都是通过 此Handler 进行转换的
   
       asyncExecutor.setCommandExecutor(commandExecutor);
       asyncExecutor.setAutoActivate(asyncExecutorActivate);
+      
+      if (asyncExecutorJobNotificationChannel != null && asyncExecutor instanceof AbstractAsyncJobExecutor) {
+        AbstractAsyncJobExecutor abstractAsyncJobExecutor = (AbstractAsyncJobExecutor) asyncExecutor;
+        if (abstractAsyncJobExecutor.getJobNotificationChannel() == null) {
+          abstractAsyncJobExecutor.setJobNotificationChannel(asyncExecutorJobNotificationChannel);
+        }
+      }
     }
   }
   
@@ -1715,7 +2032,7 @@ Activiti中 可以使用的变量类型都是通过 此Handler 进行转换的
         idGeneratorCommandExecutor = getCommandExecutor();
       }
       
-      DbIdGenerator dbIdGenerator = new DbIdGenerator();
+      DbIdGenerator dbIdGenerator = enableStripedIdGenerator ? new StripedDbIdGenerator() : new DbIdGenerator();
       dbIdGenerator.setIdBlockSize(idBlockSize);
       dbIdGenerator.setCommandExecutor(idGeneratorCommandExecutor);
       dbIdGenerator.setCommandConfig(getDefaultCommandConfig().transactionRequiresNew());
@@ -1844,6 +2161,9 @@ Activiti中 可以使用的变量类型都是通过 此Handler 进行转换的
     if (expressionManager==null) {
       expressionManager = new ExpressionManager(beans);
     }
+    if (expressionCompilationThreshold > 0) {
+      expressionManager.setCompilationThreshold(expressionCompilationThreshold);
+    }
   }
 
   protected void initBusinessCalendarManager() {
@@ -2188,6 +2508,15 @@ Activiti中 可以使用的变量类型都是通过 此Handler 进行转换的
     return this;
   }
   
+  public boolean isEnableStripedIdGenerator() {
+    return enableStripedIdGenerator;
+  }
+  
+  public ProcessEngineConfigurationImpl setEnableStripedIdGenerator(boolean enableStripedIdGenerator) {
+    this.enableStripedIdGenerator = enableStripedIdGenerator;
+    return this;
+  }
+  
   public String getWsSyncFactoryClassName() {
     return wsSyncFactoryClassName;
   }
@@ -2270,6 +2599,15 @@ Activiti中 可以使用的变量类型都是通过 此Handler 进行转换的
     return this;
   }
   
+  public int getExpressionCompilationThreshold() {
+    return expressionCompilationThreshold;
+  }
+  
+  public ProcessEngineConfigurationImpl setExpressionCompilationThreshold(int expressionCompilationThreshold) {
+    this.expressionCompilationThreshold = expressionCompilationThreshold;
+    return this;
+  }
+  
   public BusinessCalendarManager getBusinessCalendarManager() {
     return businessCalendarManager;
   }
@@ -2378,6 +2716,42 @@ Activiti中 可以使用的变量类型都是通过 此Handler 进行转换的
 		return this;
 	}
 
+	public int getAsyncExecutorHighPriorityPoolSize() {
+		return asyncExecutorHighPriorityPoolSize;
+	}
+
+	public ProcessEngineConfigurationImpl setAsyncExecutorHighPriorityPoolSize(int asyncExecutorHighPriorityPoolSize) {
+		this.asyncExecutorHighPriorityPoolSize = asyncExecutorHighPriorityPoolSize;
+		return this;
+	}
+
+	public boolean isAsyncExecutorVirtualThreads() {
+		return asyncExecutorVirtualThreads;
+	}
+
+	public ProcessEngineConfigurationImpl setAsyncExecutorVirtualThreads(boolean asyncExecutorVirtualThreads) {
+		this.asyncExecutorVirtualThreads = asyncExecutorVirtualThreads;
+		return this;
+	}
+
+	public int getAsyncExecutorMaxConcurrentJobs() {
+		return asyncExecutorMaxConcurrentJobs;
+	}
+
+	public ProcessEngineConfigurationImpl setAsyncExecutorMaxConcurrentJobs(int asyncExecutorMaxConcurrentJobs) {
+		this.asyncExecutorMaxConcurrentJobs = asyncExecutorMaxConcurrentJobs;
+		return this;
+	}
+
+	public int getAsyncExecutorHighPriorityThreshold() {
+		return asyncExecutorHighPriorityThreshold;
+	}
+
+	public ProcessEngineConfigurationImpl setAsyncExecutorHighPriorityThreshold(int asyncExecutorHighPriorityThreshold) {
+		this.asyncExecutorHighPriorityThreshold = asyncExecutorHighPriorityThreshold;
+		return this;
+	}
+
 	public long getAsyncExecutorThreadKeepAliveTime() {
 		return asyncExecutorThreadKeepAliveTime;
 	}
@@ -2459,6 +2833,123 @@ Activiti中 可以使用的变量类型都是通过 此Handler 进行转换的
     return this;
   }
 
+  public AsyncJobNotificationChannel getAsyncExecutorJobNotificationChannel() {
+    return asyncExecutorJobNotificationChannel;
+  }
+
+  public ProcessEngineConfigurationImpl setAsyncExecutorJobNotificationChannel(AsyncJobNotificationChannel asyncExecutorJobNotificationChannel) {
+    this.asyncExecutorJobNotificationChannel = asyncExecutorJobNotificationChannel;
+    return this;
+  }
+
+  public int getAsyncExecutorMaxAsyncJobAcquireWaitTime() {
+    return asyncExecutorMaxAsyncJobAcquireWaitTime;
+  }
+
+  public ProcessEngineConfigurationImpl setAsyncExecutorMaxAsyncJobAcquireWaitTime(int asyncExecutorMaxAsyncJobAcquireWaitTime) {
+    this.asyncExecutorMaxAsyncJobAcquireWaitTime = asyncExecutorMaxAsyncJobAcquireWaitTime;
+    return this;
+  }
+
+  public boolean isAsyncExecutorSkipLockedAcquisition() {
+    return asyncExecutorSkipLockedAcquisition;
+  }
+
+  public ProcessEngineConfigurationImpl setAsyncExecutorSkipLockedAcquisition(boolean asyncExecutorSkipLockedAcquisition) {
+    this.asyncExecutorSkipLockedAcquisition = asyncExecutorSkipLockedAcquisition;
+    return this;
+  }
+
+  public boolean isAsyncExecutorSingleTransactionForExclusiveJobs() {
+    return asyncExecutorSingleTransactionForExclusiveJobs;
+  }
+
+  public ProcessEngineConfigurationImpl setAsyncExecutorSingleTransactionForExclusiveJobs(boolean asyncExecutorSingleTransactionForExclusiveJobs) {
+    this.asyncExecutorSingleTransactionForExclusiveJobs = asyncExecutorSingleTransactionForExclusiveJobs;
+    return this;
+  }
+
+  public boolean isAsyncExecutorExclusiveJobAffinity() {
+    return asyncExecutorExclusiveJobAffinity;
+  }
+
+  public ProcessEngineConfigurationImpl setAsyncExecutorExclusiveJobAffinity(boolean asyncExecutorExclusiveJobAffinity) {
+    this.asyncExecutorExclusiveJobAffinity = asyncExecutorExclusiveJobAffinity;
+    return this;
+  }
+
+  public int getAsyncExecutorBulkJobExecutionSize() {
+    return asyncExecutorBulkJobExecutionSize;
+  }
+
+  public ProcessEngineConfigurationImpl setAsyncExecutorBulkJobExecutionSize(int asyncExecutorBulkJobExecutionSize) {
+    this.asyncExecutorBulkJobExecutionSize = asyncExecutorBulkJobExecutionSize;
+    return this;
+  }
+
+  public boolean isAsyncExecutorTimerWheelEnabled() {
+    return asyncExecutorTimerWheelEnabled;
+  }
+
+  public ProcessEngineConfigurationImpl setAsyncExecutorTimerWheelEnabled(boolean asyncExecutorTimerWheelEnabled) {
+    this.asyncExecutorTimerWheelEnabled = asyncExecutorTimerWheelEnabled;
+    return this;
+  }
+
+  public int getAsyncExecutorTimerWheelHorizonInMillis() {
+    return asyncExecutorTimerWheelHorizonInMillis;
+  }
+
+  public ProcessEngineConfigurationImpl setAsyncExecutorTimerWheelHorizonInMillis(int asyncExecutorTimerWheelHorizonInMillis) {
+    this.asyncExecutorTimerWheelHorizonInMillis = asyncExecutorTimerWheelHorizonInMillis;
+    return this;
+  }
+
+  public int getAsyncExecutorTimerWheelReconciliationIntervalInMillis() {
+    return asyncExecutorTimerWheelReconciliationIntervalInMillis;
+  }
+
+  public ProcessEngineConfigurationImpl setAsyncExecutorTimerWheelReconciliationIntervalInMillis(int asyncExecutorTimerWheelReconciliationIntervalInMillis) {
+    this.asyncExecutorTimerWheelReconciliationIntervalInMillis = asyncExecutorTimerWheelReconciliationIntervalInMillis;
+    return this;
+  }
+
+  public boolean isAsyncExecutorAdaptiveJobAcquisition() {
+    return asyncExecutorAdaptiveJobAcquisition;
+  }
+
+  public ProcessEngineConfigurationImpl setAsyncExecutorAdaptiveJobAcquisition(boolean asyncExecutorAdaptiveJobAcquisition) {
+    this.asyncExecutorAdaptiveJobAcquisition = asyncExecutorAdaptiveJobAcquisition;
+    return this;
+  }
+
+  public int getAsyncExecutorMaxJobsPerAdaptiveAcquisition() {
+    return asyncExecutorMaxJobsPerAdaptiveAcquisition;
+  }
+
+  public ProcessEngineConfigurationImpl setAsyncExecutorMaxJobsPerAdaptiveAcquisition(int asyncExecutorMaxJobsPerAdaptiveAcquisition) {
+    this.asyncExecutorMaxJobsPerAdaptiveAcquisition = asyncExecutorMaxJobsPerAdaptiveAcquisition;
+    return this;
+  }
+
+  public boolean isAsyncExecutorJobPartitioning() {
+    return asyncExecutorJobPartitioning;
+  }
+
+  public ProcessEngineConfigurationImpl setAsyncExecutorJobPartitioning(boolean asyncExecutorJobPartitioning) {
+    this.asyncExecutorJobPartitioning = asyncExecutorJobPartitioning;
+    return this;
+  }
+
+  public long getAsyncExecutorJobPartitionLeaseTimeInMillis() {
+    return asyncExecutorJobPartitionLeaseTimeInMillis;
+  }
+
+  public ProcessEngineConfigurationImpl setAsyncExecutorJobPartitionLeaseTimeInMillis(long asyncExecutorJobPartitionLeaseTimeInMillis) {
+    this.asyncExecutorJobPartitionLeaseTimeInMillis = asyncExecutorJobPartitionLeaseTimeInMillis;
+    return this;
+  }
+
   public String getAsyncExecutorLockOwner() {
 		return asyncExecutorLockOwner;
 	}
@@ -2778,6 +3269,60 @@ Activiti中 可以使用的变量类型都是通过 此Handler 进行转换的
     return this;
   }
 
+  public boolean isEnableConcurrentProcessDefinitionCache() {
+    return enableConcurrentProcessDefinitionCache;
+  }
+
+  public ProcessEngineConfigurationImpl setEnableConcurrentProcessDefinitionCache(boolean enableConcurrentProcessDefinitionCache) {
+    this.enableConcurrentProcessDefinitionCache = enableConcurrentProcessDefinitionCache;
+    return this;
+  }
+
+  public boolean isEnableLatestProcessDefinitionCache() {
+    return enableLatestProcessDefinitionCache;
+  }
+
+  public ProcessEngineConfigurationImpl setEnableLatestProcessDefinitionCache(boolean enableLatestProcessDefinitionCache) {
+    this.enableLatestProcessDefinitionCache = enableLatestProcessDefinitionCache;
+    return this;
+  }
+
+  public List<String> getProcessDefinitionWarmUpKeys() {
+    return processDefinitionWarmUpKeys;
+  }
+
+  public ProcessEngineConfigurationImpl setProcessDefinitionWarmUpKeys(List<String> processDefinitionWarmUpKeys) {
+    this.processDefinitionWarmUpKeys = processDefinitionWarmUpKeys;
+    return this;
+  }
+
+  public int getProcessDefinitionWarmUpPoolSize() {
+    return processDefinitionWarmUpPoolSize;
+  }
+
+  public ProcessEngineConfigurationImpl setProcessDefinitionWarmUpPoolSize(int processDefinitionWarmUpPoolSize) {
+    this.processDefinitionWarmUpPoolSize = processDefinitionWarmUpPoolSize;
+    return this;
+  }
+
+  public long getProcessDefinitionCacheWeightLimit() {
+    return processDefinitionCacheWeightLimit;
+  }
+
+  public ProcessEngineConfigurationImpl setProcessDefinitionCacheWeightLimit(long processDefinitionCacheWeightLimit) {
+    this.processDefinitionCacheWeightLimit = processDefinitionCacheWeightLimit;
+    return this;
+  }
+
+  public ConcurrentDeploymentCache.EvictionPolicy getProcessDefinitionCacheEvictionPolicy() {
+    return processDefinitionCacheEvictionPolicy;
+  }
+
+  public ProcessEngineConfigurationImpl setProcessDefinitionCacheEvictionPolicy(ConcurrentDeploymentCache.EvictionPolicy processDefinitionCacheEvictionPolicy) {
+    this.processDefinitionCacheEvictionPolicy = processDefinitionCacheEvictionPolicy;
+    return this;
+  }
+
   public int getKnowledgeBaseCacheLimit() {
     return knowledgeBaseCacheLimit;
   }
@@ -2873,6 +3418,69 @@ Activiti中 可以使用的变量类型都是通过 此Handler 进行转换的
 		return this;
 	}
 	
+	public boolean isBatchFlushEnabled() {
+	  return isBatchFlushEnabled;
+	}
+	
+	public ProcessEngineConfigurationImpl setBatchFlushEnabled(boolean isBatchFlushEnabled) {
+	  this.isBatchFlushEnabled = isBatchFlushEnabled;
+	  return this;
+	}
+	
+	public boolean isAsyncHistoryEnabled() {
+	  return asyncHistoryEnabled;
+	}
+	
+	public ProcessEngineConfigurationImpl setAsyncHistoryEnabled(boolean asyncHistoryEnabled) {
+	  this.asyncHistoryEnabled = asyncHistoryEnabled;
+	  return this;
+	}
+	
+	public AsyncHistoryBuffer getAsyncHistoryBuffer() {
+	  return asyncHistoryBuffer;
+	}
+	
+	public int getAsyncHistoryMinBufferedObjects() {
+	  return asyncHistoryMinBufferedObjects;
+	}
+	
+	public ProcessEngineConfigurationImpl setAsyncHistoryMinBufferedObjects(int asyncHistoryMinBufferedObjects) {
+	  this.asyncHistoryMinBufferedObjects = asyncHistoryMinBufferedObjects;
+	  return this;
+	}
+	
+	public ProcessEngineConfigurationImpl setAsyncHistoryBuffer(AsyncHistoryBuffer asyncHistoryBuffer) {
+	  this.asyncHistoryBuffer = asyncHistoryBuffer;
+	  return this;
+	}
+	
+	public boolean isEnableExecutionTreePrefetch() {
+	  return enableExecutionTreePrefetch;
+	}
+	
+	public ProcessEngineConfigurationImpl setEnableExecutionTreePrefetch(boolean enableExecutionTreePrefetch) {
+	  this.enableExecutionTreePrefetch = enableExecutionTreePrefetch;
+	  return this;
+	}
+	
+	public long getSessionCacheMemoryThreshold() {
+	  return sessionCacheMemoryThreshold;
+	}
+	
+	public ProcessEngineConfigurationImpl setSessionCacheMemoryThreshold(long sessionCacheMemoryThreshold) {
+	  this.sessionCacheMemoryThreshold = sessionCacheMemoryThreshold;
+	  return this;
+	}
+	
+	public boolean isDirtyTrackingEnabled() {
+	  return isDirtyTrackingEnabled;
+	}
+	
+	public ProcessEngineConfigurationImpl setDirtyTrackingEnabled(boolean isDirtyTrackingEnabled) {
+	  this.isDirtyTrackingEnabled = isDirtyTrackingEnabled;
+	  return this;
+	}
+	
   public DelegateExpressionFieldInjectionMode getDelegateExpressionFieldInjectionMode() {
     return delegateExpressionFieldInjectionMode;
   }
@@ -59,6 +59,35 @@ public class StandaloneMybatisTransactionContext implements TransactionContext {
     transactionListeners.add(transactionListener);
   }
   
+  /**
+   * The number of listeners registered per transaction state, 
+   * to remove the listeners added afterwards with {@link #removeTransactionListenersAddedAfter(Map)}.
+   */
+  public Map<TransactionState, Integer> getTransactionListenerCounts() {
+    Map<TransactionState, Integer> transactionListenerCounts = new HashMap<TransactionState, Integer>();
+    if (stateTransactionListeners != null) {
+      for (Map.Entry<TransactionState, List<TransactionListener>> entry : stateTransactionListeners.entrySet()) {
+        transactionListenerCounts.put(entry.getKey(), entry.getValue().size());
+      }
+    }
+    return transactionListenerCounts;
+  }
+  
+  /**
+   * Removes the listeners that were added after {@link #getTransactionListenerCounts()} returned the given counts,
+   * for example when the work that added them was rolled back to a savepoint.
+   */
+  public void removeTransactionListenersAddedAfter(Map<TransactionState, Integer> transactionListenerCounts) {
+    if (stateTransactionListeners == null) {
+      return;
+    }
+    for (Map.Entry<TransactionState, List<TransactionListener>> entry : stateTransactionListeners.entrySet()) {
+      Integer count = transactionListenerCounts.get(entry.getKey());
+      List<TransactionListener> transactionListeners = entry.getValue();
+      transactionListeners.subList(count != null ? count : 0, transactionListeners.size()).clear();
+    }
+  }
+  
   public void commit() {
     
     log.debug("firing event committing...");
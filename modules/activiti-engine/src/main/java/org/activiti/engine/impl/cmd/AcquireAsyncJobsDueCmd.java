@@ -13,12 +13,19 @@
 package org.activiti.engine.impl.cmd;
 
 import java.util.Calendar;
+import java.util.ArrayList;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.activiti.engine.impl.Page;
 import org.activiti.engine.impl.asyncexecutor.AcquiredJobEntities;
 import org.activiti.engine.impl.asyncexecutor.AsyncExecutor;
+import org.activiti.engine.impl.asyncexecutor.JobPartitionRange;
 import org.activiti.engine.impl.interceptor.Command;
 import org.activiti.engine.impl.interceptor.CommandContext;
 import org.activiti.engine.impl.persistence.entity.JobEntity;
@@ -29,17 +36,58 @@ import org.activiti.engine.impl.persistence.entity.JobEntity;
  */
 public class AcquireAsyncJobsDueCmd implements Command<AcquiredJobEntities> {
 
+  /** 
+   * Upper bound of the other jobs acquired with the jobs of the acquisition, so a large parallel multi instance 
+   * doesn't keep more jobs locked on one node than it can execute within the lock time. 
+   * The jobs acquired together never exceed the number of jobs to acquire either.
+   */
+  protected static final int MAX_PROCESS_INSTANCE_JOBS_PER_ACQUISITION = 100;
+
   private final AsyncExecutor asyncExecutor;
+  
+  /** When true, the other due exclusive jobs of the process instances of the acquired jobs are acquired too */
+  private final boolean acquireProcessInstanceJobsTogether;
+  
+  private final int maxJobsPerAcquisition;
+  
+  /** When set, only the jobs in these partitions are acquired */
+  private final List<JobPartitionRange> partitionRanges;
 
   public AcquireAsyncJobsDueCmd(AsyncExecutor asyncExecutor) {
+    this(asyncExecutor, false);
+  }
+  
+  public AcquireAsyncJobsDueCmd(AsyncExecutor asyncExecutor, boolean acquireProcessInstanceJobsTogether) {
+    this(asyncExecutor, acquireProcessInstanceJobsTogether, asyncExecutor.getMaxAsyncJobsDuePerAcquisition());
+  }
+  
+  /**
+   * Acquires at most the given number of due jobs (instead of the maxAsyncJobsDuePerAcquisition of the async executor).
+   */
+  public AcquireAsyncJobsDueCmd(AsyncExecutor asyncExecutor, boolean acquireProcessInstanceJobsTogether, int maxJobsPerAcquisition) {
+    this(asyncExecutor, acquireProcessInstanceJobsTogether, maxJobsPerAcquisition, null);
+  }
+  
+  /**
+   * Acquires at most the given number of due jobs in the given partitions (all partitions when null).
+   */
+  public AcquireAsyncJobsDueCmd(AsyncExecutor asyncExecutor, boolean acquireProcessInstanceJobsTogether, int maxJobsPerAcquisition, 
+      List<JobPartitionRange> partitionRanges) {
     this.asyncExecutor = asyncExecutor;
+    this.acquireProcessInstanceJobsTogether = acquireProcessInstanceJobsTogether;
+    this.maxJobsPerAcquisition = maxJobsPerAcquisition;
+    this.partitionRanges = partitionRanges;
   }
   
   public AcquiredJobEntities execute(CommandContext commandContext) {
     AcquiredJobEntities acquiredJobs = new AcquiredJobEntities();
     List<JobEntity> jobs = commandContext
       .getJobEntityManager()
-      .findAsyncJobsDueToExecute(new Page(0, asyncExecutor.getMaxAsyncJobsDuePerAcquisition()));
+      .findAsyncJobsDueToExecute(partitionRanges, new Page(0, maxJobsPerAcquisition));
+    
+    if (acquireProcessInstanceJobsTogether) {
+      jobs = addOtherJobsOfProcessInstances(commandContext, jobs);
+    }
     
     for (JobEntity job: jobs) {
       lockJob(commandContext, job, asyncExecutor.getAsyncJobLockTimeInMillis());
@@ -48,6 +96,66 @@ public class AcquireAsyncJobsDueCmd implements Command<AcquiredJobEntities> {
     
     return acquiredJobs;
   }
+  
+  /**
+   * Exclusive jobs of one process instance can only be executed one after another: acquiring them together
+   * lets one node execute them, instead of several nodes colliding on the process instance lock.
+   * 
+   * The other jobs of a process instance directly follow its first selected job. Only the first 
+   * {@link #maxJobsPerAcquisition} jobs are returned, so the jobs selected last are left for a next acquisition
+   * (only the returned jobs are locked).
+   */
+  protected List<JobEntity> addOtherJobsOfProcessInstances(CommandContext commandContext, List<JobEntity> jobs) {
+    Set<String> processInstanceIds = new LinkedHashSet<String>();
+    for (JobEntity job : jobs) {
+      if (job.isExclusive() && job.getProcessInstanceId() != null) {
+        processInstanceIds.add(job.getProcessInstanceId());
+      }
+    }
+    if (processInstanceIds.isEmpty()) {
+      return jobs;
+    }
+    
+    // the selected jobs are found again, besides the other jobs
+    Page page = new Page(0, jobs.size() + Math.min(maxJobsPerAcquisition, MAX_PROCESS_INSTANCE_JOBS_PER_ACQUISITION));
+    List<JobEntity> processInstanceJobs = commandContext
+      .getJobEntityManager()
+      .findAsyncJobsDueToExecuteByProcessInstanceIds(processInstanceIds, partitionRanges, page);
+    
+    Map<String, List<JobEntity>> jobsPerProcessInstance = new HashMap<String, List<JobEntity>>();
+    for (JobEntity job : processInstanceJobs) {
+      List<JobEntity> jobsOfProcessInstance = jobsPerProcessInstance.get(job.getProcessInstanceId());
+      if (jobsOfProcessInstance == null) {
+        jobsOfProcessInstance = new ArrayList<JobEntity>();
+        jobsPerProcessInstance.put(job.getProcessInstanceId(), jobsOfProcessInstance);
+      }
+      jobsOfProcessInstance.add(job);
+    }
+    
+    Map<String, JobEntity> result = new LinkedHashMap<String, JobEntity>();
+    for (JobEntity job : jobs) {
+      if (result.containsKey(job.getId())) {
+        continue;
+      }
+      if (result.size() >= maxJobsPerAcquisition) {
+        break;
+      }
+      result.put(job.getId(), job);
+      
+      List<JobEntity> jobsOfProcessInstance = job.isExclusive() ? jobsPerProcessInstance.remove(job.getProcessInstanceId()) : null;
+      if (jobsOfProcessInstance != null) {
+        for (JobEntity otherJob : jobsOfProcessInstance) {
+          if (result.size() >= maxJobsPerAcquisition) {
+            break;
+          }
+          if (!result.containsKey(otherJob.getId())) {
+            result.put(otherJob.getId(), otherJob);
+          }
+        }
+      }
+    }
+    return new ArrayList<JobEntity>(result.values());
+  }
 
   protected void lockJob(CommandContext commandContext, JobEntity job, int lockTimeInMillis) {
     GregorianCalendar gregorianCalendar = new GregorianCalendar();
@@ -13,11 +13,13 @@
 package org.activiti.engine.impl.cmd;
 
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.GregorianCalendar;
 import java.util.List;
 
 import org.activiti.engine.impl.Page;
 import org.activiti.engine.impl.asyncexecutor.AcquiredJobEntities;
+import org.activiti.engine.impl.asyncexecutor.JobPartitionRange;
 import org.activiti.engine.impl.interceptor.Command;
 import org.activiti.engine.impl.interceptor.CommandContext;
 import org.activiti.engine.impl.persistence.entity.JobEntity;
@@ -31,18 +33,45 @@ public class AcquireTimerJobsCmd implements Command<AcquiredJobEntities> {
   private final String lockOwner;
   private final int lockTimeInMillis;
   private final int maxJobsPerAcquisition;
+  private final Collection<String> jobIds;
+  private final List<JobPartitionRange> partitionRanges;
 
   public AcquireTimerJobsCmd(String lockOwner, int lockTimeInMillis, int maxJobsPerAcquisition) {
+    this(lockOwner, lockTimeInMillis, maxJobsPerAcquisition, null);
+  }
+  
+  /**
+   * Acquires the due timers in the given partitions (all partitions when null).
+   */
+  public AcquireTimerJobsCmd(String lockOwner, int lockTimeInMillis, int maxJobsPerAcquisition, List<JobPartitionRange> partitionRanges) {
     this.lockOwner = lockOwner;
     this.lockTimeInMillis = lockTimeInMillis;
     this.maxJobsPerAcquisition = maxJobsPerAcquisition;
+    this.jobIds = null;
+    this.partitionRanges = partitionRanges;
+  }
+  
+  /**
+   * Acquires the given timers (fired by the timer wheel) that are still due and not locked.
+   */
+  public AcquireTimerJobsCmd(String lockOwner, int lockTimeInMillis, Collection<String> jobIds) {
+    this.lockOwner = lockOwner;
+    this.lockTimeInMillis = lockTimeInMillis;
+    this.maxJobsPerAcquisition = jobIds.size();
+    this.jobIds = jobIds;
+    this.partitionRanges = null;
   }
   
   public AcquiredJobEntities execute(CommandContext commandContext) {
     AcquiredJobEntities acquiredJobs = new AcquiredJobEntities();
-    List<JobEntity> jobs = commandContext
-      .getJobEntityManager()
-      .findNextTimerJobsToExecute(new Page(0, maxJobsPerAcquisition));
+    List<JobEntity> jobs = null;
+    if (jobIds != null) {
+      jobs = commandContext.getJobEntityManager().findTimerJobsToExecuteByIds(jobIds);
+    } else {
+      jobs = commandContext
+        .getJobEntityManager()
+        .findNextTimerJobsToExecute(partitionRanges, new Page(0, maxJobsPerAcquisition));
+    }
 
     for (JobEntity job: jobs) {
       if (job != null && !acquiredJobs.contains(job.getId())) {
@@ -71,6 +71,9 @@ public class ChangeDeploymentTenantIdCmd implements Command<Void>, Serializable
     
     // Clear process definition cache
     commandContext.getProcessEngineConfiguration().getProcessDefinitionCache().clear();
+    if (!processDefinitions.isEmpty()) {
+      commandContext.getProcessEngineConfiguration().getDeploymentManager().updateDeploymentVersion();
+    }
     
     return null;
     
@@ -0,0 +1,106 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.cmd;
+
+import java.sql.Savepoint;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.ActivitiIllegalArgumentException;
+import org.activiti.engine.impl.cfg.TransactionContext;
+import org.activiti.engine.impl.cfg.TransactionState;
+import org.activiti.engine.impl.cfg.standalone.StandaloneMybatisTransactionContext;
+import org.activiti.engine.impl.db.DbSqlSession;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.JobEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes a number of independent (non exclusive) async jobs in one transaction, instead of one transaction per job.
+ *
+ * The changes of every job are flushed right after it executed, within a savepoint. When a job fails,
+ * the transaction is rolled back to its savepoint and the job is returned by {@link #getFailedJobs()},
+ * so it can be handled (and retried) on its own, while the other jobs are committed.
+ *
+ * Undoing a failed job includes removing the transaction listeners it registered, which is only possible with the
+ * {@link StandaloneMybatisTransactionContext}. With other transaction contexts, a failing job fails the whole command.
+ */
+public class ExecuteAsyncJobsBulkCmd implements Command<Object> {
+
+  private static Logger log = LoggerFactory.getLogger(ExecuteAsyncJobsBulkCmd.class);
+
+  protected List<JobEntity> jobs;
+  protected Map<JobEntity, Throwable> failedJobs = new LinkedHashMap<JobEntity, Throwable>();
+
+  public ExecuteAsyncJobsBulkCmd(List<JobEntity> jobs) {
+    this.jobs = jobs;
+  }
+
+  public Object execute(CommandContext commandContext) {
+    if (jobs == null || jobs.isEmpty()) {
+      throw new ActivitiIllegalArgumentException("jobs is null or empty");
+    }
+
+    if (log.isDebugEnabled()) {
+      log.debug("Executing {} async jobs in one transaction", jobs.size());
+    }
+
+    failedJobs.clear();
+    DbSqlSession dbSqlSession = commandContext.getDbSqlSession();
+    TransactionContext transactionContext = commandContext.getTransactionContext();
+
+    // Nothing was changed yet, but the session must not hold anything a savepoint rollback would get out of sync with
+    dbSqlSession.flush();
+
+    for (JobEntity job : jobs) {
+      Savepoint savepoint = dbSqlSession.setSavepoint();
+      Map<TransactionState, Integer> transactionListenerCounts = null;
+      if (transactionContext instanceof StandaloneMybatisTransactionContext) {
+        transactionListenerCounts = ((StandaloneMybatisTransactionContext) transactionContext).getTransactionListenerCounts();
+      }
+
+      try {
+        new ExecuteAsyncJobCmd(job).execute(commandContext);
+        dbSqlSession.flush();
+
+        // Every job starts with an empty session, like it would in a transaction of its own
+        dbSqlSession.clearSession();
+        dbSqlSession.releaseSavepoint(savepoint);
+
+      } catch (Throwable exception) {
+        if (transactionListenerCounts == null) {
+          throw new ActivitiException("Async job " + job.getId() + " failed in bulk execution: " + exception.getMessage(), exception);
+        }
+
+        if (log.isDebugEnabled()) {
+          log.debug("Async job {} failed in bulk execution, rolling back to its savepoint: {}", job.getId(), exception.getMessage());
+        }
+
+        dbSqlSession.rollbackToSavepoint(savepoint);
+        ((StandaloneMybatisTransactionContext) transactionContext).removeTransactionListenersAddedAfter(transactionListenerCounts);
+        failedJobs.put(job, exception);
+      }
+    }
+
+    return null;
+  }
+
+  /** The jobs that failed (and were rolled back), with the exception they failed with */
+  public Map<JobEntity, Throwable> getFailedJobs() {
+    return failedJobs;
+  }
+}
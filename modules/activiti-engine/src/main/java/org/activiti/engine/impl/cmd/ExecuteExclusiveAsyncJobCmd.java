@@ -0,0 +1,90 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.cmd;
+
+import java.io.Serializable;
+
+import org.activiti.engine.ActivitiIllegalArgumentException;
+import org.activiti.engine.ActivitiOptimisticLockingException;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.JobEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Locks the process instance of an exclusive job, executes the job and unlocks the process instance
+ * in one transaction, instead of the separate {@link LockExclusiveJobCmd}, {@link ExecuteAsyncJobCmd}
+ * and {@link UnlockExclusiveJobCmd} transactions.
+ *
+ * The process instance is locked by the id stored on the job, before anything of the process instance is loaded.
+ * The update that sets the lock time keeps the process instance row locked until the transaction ends,
+ * so other exclusive jobs of the same process instance wait for it. A job that waited for the row lock
+ * is re-read after locking: when another transaction changed or removed it in the meantime, or when the
+ * lock could not be taken, the command reports the process instance as not locked so the job is unacquired
+ * instead of failed. When the job fails, the rollback releases the lock as well.
+ */
+public class ExecuteExclusiveAsyncJobCmd implements Command<Object>, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static Logger log = LoggerFactory.getLogger(ExecuteExclusiveAsyncJobCmd.class);
+
+  protected JobEntity job;
+  protected boolean processInstanceLocked;
+
+  public ExecuteExclusiveAsyncJobCmd(JobEntity job) {
+    this.job = job;
+  }
+
+  public Object execute(CommandContext commandContext) {
+
+    if (job == null) {
+      throw new ActivitiIllegalArgumentException("job is null");
+    }
+
+    if (log.isDebugEnabled()) {
+      log.debug("Executing exclusive async job {} {}", job.getId(), job.getExecutionId());
+    }
+
+    processInstanceLocked = false;
+    String processInstanceId = null;
+    JobEntity lockedJob = job;
+    if (job.isExclusive() && job.getProcessInstanceId() != null) {
+      processInstanceId = job.getProcessInstanceId();
+      commandContext.getExecutionEntityManager().updateProcessInstanceLockTime(processInstanceId);
+      
+      lockedJob = commandContext.getJobEntityManager().findJobById(job.getId());
+      if (lockedJob == null || lockedJob.getRevision() != job.getRevision()) {
+        throw new ActivitiOptimisticLockingException("Job " + job.getId() + " was changed while waiting for the lock of process instance " + processInstanceId);
+      }
+    }
+    processInstanceLocked = true;
+
+    new ExecuteAsyncJobCmd(lockedJob).execute(commandContext);
+
+    if (processInstanceId != null) {
+      commandContext.getExecutionEntityManager().clearProcessInstanceLockTime(processInstanceId);
+    }
+
+    return null;
+  }
+
+  /**
+   * Whether the process instance could be locked (or didn't need a lock),
+   * to tell a failing lock apart from a failing job when the command threw an exception.
+   */
+  public boolean isProcessInstanceLocked() {
+    return processInstanceLocked;
+  }
+}
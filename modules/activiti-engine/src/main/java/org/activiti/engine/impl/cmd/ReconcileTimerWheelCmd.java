@@ -0,0 +1,64 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.cmd;
+
+import java.util.Date;
+import java.util.List;
+
+import org.activiti.engine.impl.asyncexecutor.JobPartitionRange;
+import org.activiti.engine.impl.asyncexecutor.TimerWheel;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.JobEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fills the timer wheel with the timers that are due within its horizon, with one range query.
+ * Returns the current time of the engine clock, which the due times in the wheel are compared with.
+ */
+public class ReconcileTimerWheelCmd implements Command<Date> {
+
+  private static Logger log = LoggerFactory.getLogger(ReconcileTimerWheelCmd.class);
+
+  protected TimerWheel timerWheel;
+  protected long horizonInMillis;
+  protected List<JobPartitionRange> partitionRanges;
+
+  public ReconcileTimerWheelCmd(TimerWheel timerWheel, long horizonInMillis) {
+    this(timerWheel, horizonInMillis, null);
+  }
+  
+  /**
+   * Only fills the wheel with the timers in the given partitions (all partitions when null).
+   */
+  public ReconcileTimerWheelCmd(TimerWheel timerWheel, long horizonInMillis, List<JobPartitionRange> partitionRanges) {
+    this.timerWheel = timerWheel;
+    this.horizonInMillis = horizonInMillis;
+    this.partitionRanges = partitionRanges;
+  }
+
+  public Date execute(CommandContext commandContext) {
+    long modificationCount = timerWheel.getModificationCount();
+    Date now = commandContext.getProcessEngineConfiguration().getClock().getCurrentTime();
+    Date horizon = new Date(now.getTime() + horizonInMillis);
+
+    List<JobEntity> timers = commandContext.getJobEntityManager().findTimerJobsDueBefore(horizon, partitionRanges);
+    long drift = timerWheel.reconcile(timers, now.getTime(), horizon.getTime(), modificationCount);
+
+    if (log.isDebugEnabled()) {
+      log.debug("Reconciled timer wheel with {} timers due before {}, drift {}", timers.size(), horizon, drift);
+    }
+    return now;
+  }
+}
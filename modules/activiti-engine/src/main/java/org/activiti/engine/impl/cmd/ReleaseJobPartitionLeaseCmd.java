@@ -0,0 +1,40 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.cmd;
+
+import org.activiti.engine.impl.asyncexecutor.JobPartitionManager;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.PropertyEntity;
+import org.activiti.engine.impl.persistence.entity.PropertyEntityManager;
+
+/**
+ * Removes the job partition lease of the given node, when the node shuts down.
+ */
+public class ReleaseJobPartitionLeaseCmd implements Command<Void> {
+
+  protected String nodeId;
+
+  public ReleaseJobPartitionLeaseCmd(String nodeId) {
+    this.nodeId = nodeId;
+  }
+
+  public Void execute(CommandContext commandContext) {
+    PropertyEntityManager propertyEntityManager = commandContext.getPropertyEntityManager();
+    PropertyEntity lease = propertyEntityManager.findPropertyById(JobPartitionManager.LEASE_PROPERTY_PREFIX + nodeId);
+    if (lease != null) {
+      propertyEntityManager.deletePropertyIfUnchanged(lease);
+    }
+    return null;
+  }
+}
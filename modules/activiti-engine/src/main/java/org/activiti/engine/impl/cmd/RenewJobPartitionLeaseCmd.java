@@ -0,0 +1,76 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.cmd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.activiti.engine.impl.asyncexecutor.JobPartitionManager;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.PropertyEntity;
+import org.activiti.engine.impl.persistence.entity.PropertyEntityManager;
+
+/**
+ * Extends the job partition lease of the given node, removes the expired leases of other nodes
+ * and returns the (sorted) ids of the nodes with a live lease, including the given node.
+ * A lease is a property with the expiration time as value.
+ */
+public class RenewJobPartitionLeaseCmd implements Command<List<String>> {
+
+  protected String nodeId;
+  protected long leaseTimeInMillis;
+
+  public RenewJobPartitionLeaseCmd(String nodeId, long leaseTimeInMillis) {
+    this.nodeId = nodeId;
+    this.leaseTimeInMillis = leaseTimeInMillis;
+  }
+
+  public List<String> execute(CommandContext commandContext) {
+    long now = commandContext.getProcessEngineConfiguration().getClock().getCurrentTime().getTime();
+    PropertyEntityManager propertyEntityManager = commandContext.getPropertyEntityManager();
+
+    List<String> nodeIds = new ArrayList<String>();
+    PropertyEntity lease = null;
+    for (PropertyEntity property : propertyEntityManager.findPropertiesByNamePrefix(JobPartitionManager.LEASE_PROPERTY_PREFIX)) {
+      String leaseNodeId = property.getName().substring(JobPartitionManager.LEASE_PROPERTY_PREFIX.length());
+      if (leaseNodeId.equals(nodeId)) {
+        lease = property;
+      } else if (getExpirationTime(property) > now) {
+        nodeIds.add(leaseNodeId);
+      } else {
+        propertyEntityManager.deletePropertyIfUnchanged(property);
+      }
+    }
+
+    String expirationTime = String.valueOf(now + leaseTimeInMillis);
+    if (lease == null) {
+      commandContext.getDbSqlSession().insert(new PropertyEntity(JobPartitionManager.LEASE_PROPERTY_PREFIX + nodeId, expirationTime));
+    } else {
+      lease.setValue(expirationTime);
+    }
+
+    nodeIds.add(nodeId);
+    Collections.sort(nodeIds);
+    return nodeIds;
+  }
+
+  protected long getExpirationTime(PropertyEntity lease) {
+    try {
+      return Long.parseLong(lease.getValue());
+    } catch (NumberFormatException e) {
+      return 0L;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.db;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.activiti.engine.impl.persistence.entity.ByteArrayEntity;
+import org.activiti.engine.impl.persistence.entity.ResourceEntity;
+
+/**
+ * Approximates the heap used by an entry of the {@link DbSqlSession} cache: the entity,
+ * the snapshot of its persistent state and the bookkeeping around it.
+ *
+ * The persistent state holds the same field values as the entity, so those are only counted once.
+ * Binary content that is not part of the persistent state (resources, byte arrays) is added separately.
+ * The numbers are rough, they only need to be good enough to compare against a configured threshold.
+ */
+public class CachedObjectSizeEstimator {
+
+  /** cache entry, cached object, entity header and the fields that aren't part of the persistent state */
+  protected static final long ENTRY_OVERHEAD = 160;
+  protected static final long OBJECT_OVERHEAD = 16;
+  protected static final long REFERENCE_SIZE = 8;
+
+  public long estimate(PersistentObject persistentObject, Object persistentState) {
+    long size = ENTRY_OVERHEAD + estimateState(persistentState);
+    if (persistentObject instanceof ResourceEntity) {
+      size += estimateBytes(((ResourceEntity) persistentObject).getBytes());
+    } else if (persistentObject instanceof ByteArrayEntity) {
+      size += estimateBytes(((ByteArrayEntity) persistentObject).getBytes());
+    }
+    return size;
+  }
+
+  protected long estimateState(Object value) {
+    if (value == null || value instanceof Class || value instanceof Enum || value instanceof Boolean) {
+      return 0; // shared instances
+    }
+    if (value instanceof String) {
+      return 2 * OBJECT_OVERHEAD + 2 * ((String) value).length();
+    }
+    if (value instanceof byte[]) {
+      // the persistent state references the same array as the entity, counted on its own
+      return 0;
+    }
+    if (value instanceof Map) {
+      long size = 3 * OBJECT_OVERHEAD;
+      // the keys are constants, shared by all states of the same entity type
+      for (Object entryValue : ((Map<?, ?>) value).values()) {
+        size += 2 * OBJECT_OVERHEAD + estimateState(entryValue);
+      }
+      return size;
+    }
+    if (value instanceof Collection) {
+      long size = 2 * OBJECT_OVERHEAD;
+      for (Object element : (Collection<?>) value) {
+        size += REFERENCE_SIZE + estimateState(element);
+      }
+      return size;
+    }
+    return OBJECT_OVERHEAD + REFERENCE_SIZE;
+  }
+
+  protected long estimateBytes(byte[] bytes) {
+    return bytes != null ? OBJECT_OVERHEAD + bytes.length : 0;
+  }
+
+}
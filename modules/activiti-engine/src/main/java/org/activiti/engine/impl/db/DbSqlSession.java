@@ -20,12 +20,15 @@ import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -55,12 +58,21 @@ import org.activiti.engine.impl.UserQueryImpl;
 import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
 import org.activiti.engine.impl.context.Context;
 import org.activiti.engine.impl.db.upgrade.DbUpgradeStep;
+import org.activiti.engine.impl.history.async.AsyncHistoryBuffer;
+import org.activiti.engine.impl.history.async.AsyncHistoryCloseListener;
+import org.activiti.engine.impl.interceptor.CommandContext;
 import org.activiti.engine.impl.interceptor.Session;
 import org.activiti.engine.impl.persistence.entity.PropertyEntity;
 import org.activiti.engine.impl.util.IoUtil;
 import org.activiti.engine.impl.util.ReflectUtil;
 import org.activiti.engine.impl.variable.DeserializedObject;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -113,6 +125,8 @@ public class DbSqlSession implements Session {
 	  ACTIVITI_VERSIONS.add(new ActivitiVersion("5.20.0.1"));
 	  ACTIVITI_VERSIONS.add(new ActivitiVersion("5.20.0.2"));
 	  ACTIVITI_VERSIONS.add(new ActivitiVersion("5.21.0.0"));
+	  ACTIVITI_VERSIONS.add(new ActivitiVersion("5.22.0.0"));
+	  ACTIVITI_VERSIONS.add(new ActivitiVersion("5.22.0.1"));
 	  
 	  /* Current */
 	  ACTIVITI_VERSIONS.add(new ActivitiVersion(ProcessEngine.VERSION));
@@ -126,6 +140,27 @@ public class DbSqlSession implements Session {
   protected List<DeserializedObject> deserializedObjects = new ArrayList<DeserializedObject>();
   protected String connectionMetadataDefaultCatalog;
   protected String connectionMetadataDefaultSchema;
+  
+  /** The session used to execute the inserts, updates and deletes of a flush. Only differs from the {@link #sqlSession} when batching. */
+  protected SqlSession flushSqlSession;
+  /** Expected row counts of batched statements, keyed by their parameter object, verified when the batch is executed. */
+  protected Map<Object, ExpectedRowCount> expectedRowCounts = new IdentityHashMap<Object, ExpectedRowCount>();
+  /** Number of statements (or JDBC batches) sent to the database during the current flush. */
+  protected int nrOfFlushRoundTrips;
+  /** Set once statements were executed through a batch session, which the regular session doesn't know about when committing or rolling back. */
+  protected boolean flushedInBatch;
+  /** Whether history inserts may be handed over to the {@link AsyncHistoryBuffer}, when one is configured. */
+  protected boolean asyncHistoryBuffered = true;
+  /** Set once the listener that buffers the history inserts before the flush is registered on the command context. */
+  protected boolean asyncHistoryListenerRegistered;
+  /** Number of objects in the cache, and the highest number reached during this session. */
+  protected int cacheSize;
+  protected int peakCacheSize;
+  /** Approximate heap used by the cache, only tracked when a session cache memory threshold is configured. */
+  protected long cacheMemory;
+  protected long peakCacheMemory;
+  /** Cache memory above which the next eviction pass runs. */
+  protected long cacheEvictionWatermark;
   /*
   * 构造()
   * 该() 在完成 DBSqlSession实例化的同时, 又获取到了sqlSession 对象(
@@ -137,6 +172,8 @@ public class DbSqlSession implements Session {
     this.sqlSession = dbSqlSessionFactory
       .getSqlSessionFactory()
       .openSession();//创建SqlSession
+    this.flushSqlSession = sqlSession;
+    this.cacheEvictionWatermark = dbSqlSessionFactory.getSessionCacheMemoryThreshold();
   }
 
   public DbSqlSession(DbSqlSessionFactory dbSqlSessionFactory, Connection connection, String catalog, String schema) {
@@ -144,6 +181,8 @@ public class DbSqlSession implements Session {
     this.sqlSession = dbSqlSessionFactory
       .getSqlSessionFactory()
       .openSession(connection);
+    this.flushSqlSession = sqlSession;
+    this.cacheEvictionWatermark = dbSqlSessionFactory.getSessionCacheMemoryThreshold();
     this.connectionMetadataDefaultCatalog = catalog;
     this.connectionMetadataDefaultSchema = schema;
   }
@@ -169,6 +208,22 @@ public class DbSqlSession implements Session {
     insertedObjects.get(clazz).add(persistentObject);
     //缓存
     cachePut(persistentObject, false);
+    
+    if (asyncHistoryBuffered && !asyncHistoryListenerRegistered && dbSqlSessionFactory.getAsyncHistoryBuffer() != null) {
+      registerAsyncHistoryListener(dbSqlSessionFactory.getAsyncHistoryBuffer());
+    }
+  }
+  
+  /**
+   * The history inserts are handed over to the buffer when the command context closes, before its sessions are flushed, 
+   * so the buffer can create its byte array and job through the regular sessions of the command context.
+   */
+  protected void registerAsyncHistoryListener(AsyncHistoryBuffer asyncHistoryBuffer) {
+    CommandContext commandContext = Context.getCommandContext();
+    if (commandContext != null) {
+      commandContext.addCloseListener(new AsyncHistoryCloseListener(this, asyncHistoryBuffer));
+      asyncHistoryListenerRegistered = true;
+    }
   }
   
   // update ///////////////////////////////////////////////////////////////////
@@ -281,7 +336,8 @@ public class DbSqlSession implements Session {
     
     @Override
     public void execute() {
-      sqlSession.delete(statement, parameter);
+      flushSqlSession.delete(statement, parameter);
+      nrOfFlushRoundTrips++;
     }
     
     @Override
@@ -354,13 +410,16 @@ public class DbSqlSession implements Session {
       * 就直接执行 slqSession删除数据
       * */
       if (persistentObject instanceof HasRevision) {
-        int nrOfRowsDeleted = sqlSession.delete(deleteStatement, persistentObject);
-        if (nrOfRowsDeleted == 0) { //表示并没有删除数据 ,因此程序直接报错
+        int nrOfRowsDeleted = flushSqlSession.delete(deleteStatement, persistentObject);
+        if (isBatchFlush()) {
+          expectedRowCounts.put(persistentObject, new ExpectedRowCount(1, persistentObject + " was updated by another transaction concurrently"));
+        } else if (nrOfRowsDeleted == 0) { //表示并没有删除数据 ,因此程序直接报错
           throw new ActivitiOptimisticLockingException(persistentObject + " was updated by another transaction concurrently");
         }
       } else {
-        sqlSession.delete(deleteStatement, persistentObject);
+        flushSqlSession.delete(deleteStatement, persistentObject);
       }
+      nrOfFlushRoundTrips++;
     }
 
     public PersistentObject getPersistentObject() {
@@ -425,14 +484,18 @@ public class DbSqlSession implements Session {
       
       // It only makes sense to check for optimistic locking exceptions for objects that actually have a revision
       if (persistentObjects.get(0) instanceof HasRevision) {
-        int nrOfRowsDeleted = sqlSession.delete(bulkDeleteStatement, persistentObjects);
-        if (nrOfRowsDeleted < persistentObjects.size()) {
+        int nrOfRowsDeleted = flushSqlSession.delete(bulkDeleteStatement, persistentObjects);
+        if (isBatchFlush()) {
+          expectedRowCounts.put(persistentObjects, new ExpectedRowCount(persistentObjects.size(), "One of the entities " + persistentObjectClass 
+              + " was updated by another transaction concurrently while trying to do a bulk delete"));
+        } else if (nrOfRowsDeleted < persistentObjects.size()) {
           throw new ActivitiOptimisticLockingException("One of the entities " + persistentObjectClass 
           		+ " was updated by another transaction concurrently while trying to do a bulk delete");
         }
       } else {
-        sqlSession.delete(bulkDeleteStatement, persistentObjects);
+        flushSqlSession.delete(bulkDeleteStatement, persistentObjects);
       }
+      nrOfFlushRoundTrips++;
     }
     
     public Class<? extends PersistentObject> getPersistentObjectClass() {
@@ -571,11 +634,87 @@ public class DbSqlSession implements Session {
       classCache = new HashMap<String, CachedObject>();
       cachedObjects.put(persistentObject.getClass(), classCache);
     }
-    CachedObject cachedObject = new CachedObject(persistentObject, storeState);
-    classCache.put(persistentObject.getId(), cachedObject);
+    CachedObject cachedObject;
+    if (storeState && dbSqlSessionFactory.isDirtyTrackingEnabled() && persistentObject instanceof HasDirtyState) {
+      // the setters used while loading marked it dirty, from here on it tracks the changes itself
+      HasDirtyState dirtyStateObject = (HasDirtyState) persistentObject;
+      dirtyStateObject.markClean();
+      cachedObject = new CachedObject(dirtyStateObject);
+    } else {
+      cachedObject = new CachedObject(persistentObject, storeState);
+    }
+    CachedObject replacedObject = classCache.put(persistentObject.getId(), cachedObject);
+    if (replacedObject == null) {
+      cacheSize++;
+      if (cacheSize > peakCacheSize) {
+        peakCacheSize = cacheSize;
+      }
+    }
+    
+    if (dbSqlSessionFactory.getSessionCacheMemoryThreshold() > 0) {
+      cachedObject.estimatedSize = dbSqlSessionFactory.getCachedObjectSizeEstimator().estimate(persistentObject, cachedObject.getPersistentObjectState());
+      cacheMemory += cachedObject.estimatedSize - (replacedObject != null ? replacedObject.estimatedSize : 0);
+      if (cacheMemory > peakCacheMemory) {
+        peakCacheMemory = cacheMemory;
+      }
+      if (cacheMemory > cacheEvictionWatermark) {
+        evictCachedObjects();
+      }
+    }
     return cachedObject;
   }
   
+  /**
+   * Removes the loaded objects from the cache that can't be updated anymore in this session: 
+   * entities that are never updated (their persistent state is constant). Objects with a pending delete stay cached, 
+   * so loading them again returns the same instance, and the delete operation keeps them in memory anyway. 
+   * Runs when the cache memory crosses the configured threshold, and again each time it grew by half the threshold, 
+   * so a cache that can't be shrunk doesn't trigger a pass for every object that is loaded.
+   */
+  protected void evictCachedObjects() {
+    Map<PersistentObject, Boolean> deletedObjects = new IdentityHashMap<PersistentObject, Boolean>();
+    for (DeleteOperation deleteOperation : deleteOperations) {
+      if (deleteOperation instanceof CheckedDeleteOperation) {
+        deletedObjects.put(((CheckedDeleteOperation) deleteOperation).getPersistentObject(), Boolean.TRUE);
+      } else if (deleteOperation instanceof BulkCheckedDeleteOperation) {
+        for (PersistentObject persistentObject : ((BulkCheckedDeleteOperation) deleteOperation).getPersistentObjects()) {
+          deletedObjects.put(persistentObject, Boolean.TRUE);
+        }
+      }
+    }
+    
+    int nrOfEvictedObjects = 0;
+    for (Map<String, CachedObject> classCache : cachedObjects.values()) {
+      Iterator<CachedObject> cachedObjectIterator = classCache.values().iterator();
+      while (cachedObjectIterator.hasNext()) {
+        CachedObject cachedObject = cachedObjectIterator.next();
+        if (isEvictable(cachedObject, deletedObjects)) {
+          cachedObjectIterator.remove();
+          cacheSize--;
+          cacheMemory -= cachedObject.estimatedSize;
+          nrOfEvictedObjects++;
+        }
+      }
+    }
+    
+    long threshold = dbSqlSessionFactory.getSessionCacheMemoryThreshold();
+    cacheEvictionWatermark = Math.max(threshold, cacheMemory + threshold / 2);
+    dbSqlSessionFactory.recordCacheEviction(nrOfEvictedObjects);
+    log.debug("evicted {} objects from the session cache, approximately {} bytes left", nrOfEvictedObjects, cacheMemory);
+  }
+  
+  protected boolean isEvictable(CachedObject cachedObject, Map<PersistentObject, Boolean> deletedObjects) {
+    if (cachedObject.isDirtyTracked()) {
+      return false; // only entities that can change track their dirty state
+    }
+    Object originalState = cachedObject.getPersistentObjectState();
+    if (!(originalState instanceof Class)) {
+      return false; // inserted, explicitly updated or loaded with a state that can change
+    }
+    PersistentObject persistentObject = cachedObject.getPersistentObject();
+    return !deletedObjects.containsKey(persistentObject) && originalState.equals(persistentObject.getPersistentState());
+  }
+  
   /** returns the object in the cache.  if this object was loaded before, 
    * then the original object is returned.  if this is the first time 
    * this object is loaded, then the loadedObject is added to the cache. */
@@ -606,7 +745,11 @@ public class DbSqlSession implements Session {
     if (classCache==null) {
       return;
     }
-    classCache.remove(persistentObjectId);
+    CachedObject removedObject = classCache.remove(persistentObjectId);
+    if (removedObject != null) {
+      cacheSize--;
+      cacheMemory -= removedObject.estimatedSize;
+    }
   }
   
   @SuppressWarnings("unchecked")
@@ -626,9 +769,17 @@ public class DbSqlSession implements Session {
     return cacheGet(entityClass, id);
   }
   
+  /** returns true if the given object was inserted in this session, and thus doesn't exist in the database yet */
+  public boolean isInserted(PersistentObject persistentObject) {
+    List<PersistentObject> insertedObjectsOfSameClass = insertedObjects.get(persistentObject.getClass());
+    return insertedObjectsOfSameClass != null && insertedObjectsOfSameClass.contains(persistentObject);
+  }
+  
   public static class CachedObject {
     protected PersistentObject persistentObject;
     protected Object persistentObjectState;
+    protected long estimatedSize;
+    protected boolean dirtyTracked;
     
     public CachedObject(PersistentObject persistentObject, boolean storeState) {
       this.persistentObject = persistentObject;
@@ -636,6 +787,12 @@ public class DbSqlSession implements Session {
         this.persistentObjectState = persistentObject.getPersistentState();
       }
     }
+    
+    /** a loaded object that tracks its own changes, see {@link HasDirtyState} */
+    public CachedObject(HasDirtyState persistentObject) {
+      this.persistentObject = (PersistentObject) persistentObject;
+      this.dirtyTracked = true;
+    }
 
     public PersistentObject getPersistentObject() {
       return persistentObject;
@@ -644,6 +801,10 @@ public class DbSqlSession implements Session {
     public Object getPersistentObjectState() {
       return persistentObjectState;
     }
+    
+    public boolean isDirtyTracked() {
+      return dirtyTracked;
+    }
   }
 
   // deserialized objects /////////////////////////////////////////////////////
@@ -685,9 +846,195 @@ public class DbSqlSession implements Session {
       log.debug("now executing flush...");
     }
 
-    flushInserts(); //插入
-    flushUpdates(updatedObjects); //更新
-    flushDeletes(removedOperations);//删除
+    nrOfFlushRoundTrips = 0;
+    if (dbSqlSessionFactory.isBatchFlushEnabled() && (!insertedObjects.isEmpty() || !updatedObjects.isEmpty() || !deleteOperations.isEmpty())) {
+      flushInBatch(updatedObjects, removedOperations);
+    } else {
+      flushInserts(); //插入
+      flushUpdates(updatedObjects); //更新
+      flushDeletes(removedOperations);//删除
+    }
+    dbSqlSessionFactory.recordFlush(nrOfFlushRoundTrips);
+  }
+  
+  /**
+   * Hands the history inserts that don't need to be part of this transaction over to the {@link AsyncHistoryBuffer}, 
+   * when there are enough of them to be worth the byte array and job the buffer adds. 
+   * Objects that are deleted again in this transaction are left alone, the flush drops them together with their delete.
+   */
+  public void bufferAsyncHistory(AsyncHistoryBuffer asyncHistoryBuffer, CommandContext commandContext) {
+    if (!asyncHistoryBuffered) {
+      return;
+    }
+    
+    List<PersistentObject> historyObjects = new ArrayList<PersistentObject>();
+    for (List<PersistentObject> insertedObjectList : insertedObjects.values()) {
+      for (PersistentObject insertedObject : insertedObjectList) {
+        if (asyncHistoryBuffer.isBufferable(insertedObject) && !isPersistentObjectDeleted(insertedObject)) {
+          historyObjects.add(insertedObject);
+        }
+      }
+    }
+    
+    if (historyObjects.isEmpty() || historyObjects.size() < asyncHistoryBuffer.getMinBufferedObjects()) {
+      return;
+    }
+    
+    Iterator<List<PersistentObject>> insertedObjectListIterator = insertedObjects.values().iterator();
+    while (insertedObjectListIterator.hasNext()) {
+      List<PersistentObject> insertedObjectList = insertedObjectListIterator.next();
+      Iterator<PersistentObject> insertedObjectIterator = insertedObjectList.iterator();
+      while (insertedObjectIterator.hasNext()) {
+        PersistentObject insertedObject = insertedObjectIterator.next();
+        if (asyncHistoryBuffer.isBufferable(insertedObject) && !isPersistentObjectDeleted(insertedObject)) {
+          insertedObjectIterator.remove();
+          // the flush only leaves out the objects it inserts, anything else in the cache would be updated
+          cacheRemove(insertedObject.getClass(), insertedObject.getId());
+        }
+      }
+      if (insertedObjectList.isEmpty()) {
+        insertedObjectListIterator.remove();
+      }
+    }
+    asyncHistoryBuffer.buffer(historyObjects, commandContext);
+  }
+  
+  public boolean isAsyncHistoryBuffered() {
+    return asyncHistoryBuffered;
+  }
+  
+  public void setAsyncHistoryBuffered(boolean asyncHistoryBuffered) {
+    this.asyncHistoryBuffered = asyncHistoryBuffered;
+  }
+  
+  /**
+   * Executes the inserts, updates and deletes of this flush through a MyBatis {@link ExecutorType#BATCH} session
+   * on the same connection, so consecutive statements of the same type are sent to the database as one JDBC batch.
+   * 
+   * The optimistic locking checks can't be done when a statement is added to the batch, so the expected row counts are
+   * verified against the update counts returned by the driver when the batch is executed.
+   * On databases of which the driver might not report those counts, only the inserts are batched:
+   * the updates and deletes are executed one by one afterwards, checking their row counts as usual.
+   */
+  protected void flushInBatch(List<PersistentObject> updatedObjects, List<DeleteOperation> removedOperations) {
+    SqlSession batchSqlSession = openBatchSqlSession();
+    flushSqlSession = batchSqlSession;
+    flushedInBatch = true;
+    try {
+      flushInserts();
+      if (!dbSqlSessionFactory.isBatchUpdateCountReported()) {
+        nrOfFlushRoundTrips = executeBatch(batchSqlSession);
+        flushSqlSession = sqlSession;
+      }
+      
+      flushUpdates(updatedObjects);
+      flushDeletes(removedOperations);
+      
+      if (isBatchFlush()) {
+        nrOfFlushRoundTrips = executeBatch(batchSqlSession);
+      }
+      
+    } finally {
+      batchSqlSession.close();
+      flushSqlSession = sqlSession;
+      expectedRowCounts.clear();
+    }
+    
+    // The statements didn't pass through the regular session, so its local cache might be stale
+    sqlSession.clearCache();
+  }
+  
+  protected SqlSession openBatchSqlSession() {
+    Configuration configuration = sqlSession.getConfiguration();
+    Executor executor = configuration.newExecutor(new SharedConnectionTransaction(sqlSession.getConnection()), ExecutorType.BATCH);
+    return new DefaultSqlSession(configuration, executor, false);
+  }
+  
+  /**
+   * Sends the statements queued in the batch session to the database and verifies their row counts.
+   * @return the number of JDBC batches that were executed
+   */
+  protected int executeBatch(SqlSession batchSqlSession) {
+    List<BatchResult> batchResults = batchSqlSession.flushStatements();
+    verifyBatchResults(batchResults);
+    return batchResults.size();
+  }
+  
+  protected void verifyBatchResults(List<BatchResult> batchResults) {
+    for (BatchResult batchResult : batchResults) {
+      List<Object> parameterObjects = batchResult.getParameterObjects();
+      int[] updateCounts = batchResult.getUpdateCounts();
+      for (int i = 0; i < parameterObjects.size() && i < updateCounts.length; i++) {
+        ExpectedRowCount expectedRowCount = expectedRowCounts.get(parameterObjects.get(i));
+        if (expectedRowCount == null) {
+          continue;
+        }
+        
+        if (updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+          // Passing would silently skip the optimistic locking check
+          throw new ActivitiException("The driver did not report the row count of batched statement " + batchResult.getMappedStatement().getId() 
+              + ", so concurrent modifications can't be detected. Disable batch flushing for database type '" + dbSqlSessionFactory.getDatabaseType() + "'");
+        } else if (updateCounts[i] < expectedRowCount.getNrOfRows()) {
+          throw new ActivitiOptimisticLockingException(expectedRowCount.getFailureMessage());
+        }
+      }
+    }
+  }
+  
+  protected boolean isBatchFlush() {
+    return flushSqlSession != sqlSession;
+  }
+  
+  /**
+   * The number of rows a batched statement must affect, to detect concurrent modifications after the batch is executed.
+   */
+  public static class ExpectedRowCount {
+    
+    protected int nrOfRows;
+    protected String failureMessage;
+    
+    public ExpectedRowCount(int nrOfRows, String failureMessage) {
+      this.nrOfRows = nrOfRows;
+      this.failureMessage = failureMessage;
+    }
+    
+    public int getNrOfRows() {
+      return nrOfRows;
+    }
+    
+    public String getFailureMessage() {
+      return failureMessage;
+    }
+  }
+  
+  /**
+   * MyBatis {@link Transaction} that hands out the connection of the regular session.
+   * Committing, rolling back and closing is left to the regular session.
+   */
+  public static class SharedConnectionTransaction implements Transaction {
+    
+    protected Connection connection;
+    
+    public SharedConnectionTransaction(Connection connection) {
+      this.connection = connection;
+    }
+    
+    public Connection getConnection() throws SQLException {
+      return connection;
+    }
+    
+    public void commit() throws SQLException {
+    }
+    
+    public void rollback() throws SQLException {
+    }
+    
+    public void close() throws SQLException {
+    }
+    
+    public Integer getTimeout() throws SQLException {
+      return null;
+    }
   }
 
   /**
@@ -871,7 +1218,11 @@ public class DbSqlSession implements Session {
         PersistentObject persistentObject = cachedObject.getPersistentObject();
         //调用 isPersistentObjectDeleted 判断  persistentObject 是否存在于  deleteOperations集合中
 //             //如果存在?? 直接删除,  因为对象马上要删除了 更新已经咩有意义了
-        if (!isPersistentObjectDeleted(persistentObject)) {
+        if (cachedObject.isDirtyTracked()) {
+          if (((HasDirtyState) persistentObject).isDirty() && !isPersistentObjectDeleted(persistentObject)) {
+            updatedObjects.add(persistentObject);
+          }
+        } else if (!isPersistentObjectDeleted(persistentObject)) {
         /*
         *  根据 cachedObject 获取 originalState 帝乡
         * 之前有说过
@@ -980,7 +1331,8 @@ public class DbSqlSession implements Session {
      
      log.debug("inserting: {}", persistentObject);
      //完成入库
-     sqlSession.insert(insertStatement, persistentObject);
+     flushSqlSession.insert(insertStatement, persistentObject);
+     nrOfFlushRoundTrips++;
      
      // See https://activiti.atlassian.net/browse/ACT-1290
     //如果 persistentObject 是 HasRevision 对象   则需要设置 该对象的 revision值 默认为1
@@ -998,13 +1350,15 @@ public class DbSqlSession implements Session {
     }
 
     if (persistentObjectList.size() <= dbSqlSessionFactory.getMaxNrOfStatementsInBulkInsert()) {
-      sqlSession.insert(insertStatement, persistentObjectList);
+      flushSqlSession.insert(insertStatement, persistentObjectList);
+      nrOfFlushRoundTrips++;
     } else {
       
       for (int start = 0; start < persistentObjectList.size(); start += dbSqlSessionFactory.getMaxNrOfStatementsInBulkInsert()) {
         List<PersistentObject> subList = persistentObjectList.subList(start, 
             Math.min(start + dbSqlSessionFactory.getMaxNrOfStatementsInBulkInsert(), persistentObjectList.size()));
-        sqlSession.insert(insertStatement, subList);
+        flushSqlSession.insert(insertStatement, subList);
+        nrOfFlushRoundTrips++;
       }
       
     }
@@ -1026,8 +1380,11 @@ public class DbSqlSession implements Session {
       }
       
       log.debug("updating: {}", updatedObject);
-      int updatedRecords = sqlSession.update(updateStatement, updatedObject);
-      if (updatedRecords!=1) {
+      int updatedRecords = flushSqlSession.update(updateStatement, updatedObject);
+      nrOfFlushRoundTrips++;
+      if (isBatchFlush()) {
+        expectedRowCounts.put(updatedObject, new ExpectedRowCount(1, updatedObject + " was updated by another transaction concurrently"));
+      } else if (updatedRecords!=1) {
         throw new ActivitiOptimisticLockingException(updatedObject + " was updated by another transaction concurrently");
       } 
       
@@ -1055,14 +1412,82 @@ public class DbSqlSession implements Session {
   @Override
   public void close() {
     sqlSession.close();
+    dbSqlSessionFactory.recordCachePeak(peakCacheSize, peakCacheMemory);
+  }
+  
+  /** the highest number of objects that were in the cache of this session at the same time */
+  public int getPeakCacheSize() {
+    return peakCacheSize;
+  }
+  
+  /** the highest approximate heap used by the cache of this session, 0 when no session cache memory threshold is configured */
+  public long getPeakCacheMemory() {
+    return peakCacheMemory;
+  }
+  
+  public long getCacheMemory() {
+    return cacheMemory;
   }
 
   public void commit() {
-    sqlSession.commit();
+    // The regular session only commits when it executed statements itself
+    sqlSession.commit(flushedInBatch);
   }
 
   public void rollback() {
-    sqlSession.rollback();
+    sqlSession.rollback(flushedInBatch);
+  }
+  
+  // savepoints ///////////////////////////////////////////////////////////////
+  
+  /**
+   * Sets a savepoint in the current transaction. Changes of this session have to be flushed before 
+   * setting the savepoint, as only the statements executed after it are undone when rolling back to it.
+   */
+  public Savepoint setSavepoint() {
+    try {
+      return sqlSession.getConnection().setSavepoint();
+    } catch (SQLException e) {
+      throw new ActivitiException("Could not set savepoint: " + e.getMessage(), e);
+    }
+  }
+  
+  /**
+   * Undoes the statements executed after the savepoint, and forgets everything this session cached or didn't flush yet,
+   * as those may be changes that were just undone.
+   */
+  public void rollbackToSavepoint(Savepoint savepoint) {
+    try {
+      sqlSession.getConnection().rollback(savepoint);
+    } catch (SQLException e) {
+      throw new ActivitiException("Could not roll back to savepoint: " + e.getMessage(), e);
+    }
+    clearSession();
+  }
+  
+  public void releaseSavepoint(Savepoint savepoint) {
+    try {
+      sqlSession.getConnection().releaseSavepoint(savepoint);
+    } catch (SQLException e) {
+      // Not supported by all databases (like Oracle), the savepoint is released when the transaction ends
+      log.debug("Could not release savepoint: {}", e.getMessage());
+    }
+  }
+  
+  /**
+   * Forgets all cached entities and the inserts, updates and deletes that weren't flushed yet: the session continues 
+   * as if it was just opened, on the same connection and transaction.
+   */
+  public void clearSession() {
+    insertedObjects.clear();
+    deleteOperations.clear();
+    deserializedObjects.clear();
+    cachedObjects.clear();
+    expectedRowCounts.clear();
+    cacheSize = 0;
+    cacheMemory = 0L;
+    cacheEvictionWatermark = dbSqlSessionFactory.getSessionCacheMemoryThreshold();
+    sqlSession.clearCache();
   }
   
   // schema operations ////////////////////////////////////////////////////////
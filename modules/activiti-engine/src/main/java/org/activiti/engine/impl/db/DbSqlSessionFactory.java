@@ -13,11 +13,16 @@
 
 package org.activiti.engine.impl.db;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.activiti.engine.impl.cfg.IdGenerator;
+import org.activiti.engine.impl.history.async.AsyncHistoryBuffer;
 import org.activiti.engine.impl.interceptor.Session;
 import org.activiti.engine.impl.interceptor.SessionFactory;
 import org.activiti.engine.impl.persistence.entity.EventLogEntryEntity;
@@ -76,6 +81,15 @@ public class DbSqlSessionFactory implements SessionFactory {
   public static final Map<String, String> databaseSpecificOrderByStatements = new HashMap<String, String>();
   public static final Map<String, String> databaseOuterJoinLimitBetweenStatements = new HashMap<String, String>();
   public static final Map<String, String> databaseSpecificLimitBeforeNativeQueryStatements = new HashMap<String, String>();
+  
+  /** Databases on which jobs can be acquired with 'skip locked' row locks, see {@link #isSkipLockedSupported(String, String, String, int, int)} for the server versions */
+  public static final Set<String> databasesSupportingSkipLocked = new HashSet<String>(Arrays.asList("postgres", "mysql", "oracle", "mssql"));
+  
+  /** 
+   * Databases of which the JDBC drivers report the row count of every statement in a batch. 
+   * Others may return {@link java.sql.Statement#SUCCESS_NO_INFO} (Oracle before 12, DB2 and MSSQL depending on the driver settings).
+   */
+  public static final Set<String> databasesReportingBatchUpdateCounts = new HashSet<String>(Arrays.asList("h2", "hsql", "mysql", "postgres"));
 
   static {
     
@@ -152,7 +166,11 @@ public class DbSqlSessionFactory implements SessionFactory {
     databaseOuterJoinLimitBetweenStatements.put("oracle", "");
     databaseSpecificOrderByStatements.put("oracle", defaultOrderBy);
     addDatabaseSpecificStatement("oracle", "selectExclusiveJobsToExecute", "selectExclusiveJobsToExecute_integerBoolean");
+    addDatabaseSpecificStatement("oracle", "selectAsyncJobsDueToExecuteByProcessInstanceIds", "selectAsyncJobsDueToExecuteByProcessInstanceIds_integerBoolean");
     addDatabaseSpecificStatement("oracle", "selectUnlockedTimersByDuedate", "selectUnlockedTimersByDuedate_oracle");
+    addDatabaseSpecificStatement("oracle", "selectNextTimerJobsToExecuteSkipLocked", "selectNextTimerJobsToExecuteSkipLocked_oracle");
+    addDatabaseSpecificStatement("oracle", "selectAsyncJobsDueToExecuteSkipLocked", "selectAsyncJobsDueToExecuteSkipLocked_oracle");
+    addDatabaseSpecificStatement("oracle", "selectAsyncJobsDueToExecuteByProcessInstanceIdsSkipLocked", "selectAsyncJobsDueToExecuteByProcessInstanceIdsSkipLocked_oracle");
     addDatabaseSpecificStatement("oracle", "insertEventLogEntry", "insertEventLogEntry_oracle");
     addDatabaseSpecificStatement("oracle", "bulkInsertVariableInstance", "bulkInsertVariableInstance_oracle");
     addDatabaseSpecificStatement("oracle", "bulkInsertUser", "bulkInsertUser_oracle");
@@ -199,6 +217,7 @@ public class DbSqlSessionFactory implements SessionFactory {
     databaseSpecificOrderByStatements.put("db2", "");
     databaseSpecificLimitBeforeNativeQueryStatements.put("db2", "SELECT SUB.* FROM ( select RES.* , row_number() over (ORDER BY ${orderByColumns}) rnk FROM (");
     addDatabaseSpecificStatement("db2", "selectExclusiveJobsToExecute", "selectExclusiveJobsToExecute_integerBoolean");
+    addDatabaseSpecificStatement("db2", "selectAsyncJobsDueToExecuteByProcessInstanceIds", "selectAsyncJobsDueToExecuteByProcessInstanceIds_integerBoolean");
     addDatabaseSpecificStatement("db2", "selectExecutionByNativeQuery", "selectExecutionByNativeQuery_mssql_or_db2");
     addDatabaseSpecificStatement("db2", "selectHistoricActivityInstanceByNativeQuery", "selectHistoricActivityInstanceByNativeQuery_mssql_or_db2");
     addDatabaseSpecificStatement("db2", "selectHistoricProcessInstanceByNativeQuery", "selectHistoricProcessInstanceByNativeQuery_mssql_or_db2");
@@ -211,10 +230,6 @@ public class DbSqlSessionFactory implements SessionFactory {
     addDatabaseSpecificStatement("db2", "selectModelByNativeQuery", "selectModelByNativeQuery_mssql_or_db2");
     addDatabaseSpecificStatement("db2", "selectHistoricDetailByNativeQuery", "selectHistoricDetailByNativeQuery_mssql_or_db2");
     addDatabaseSpecificStatement("db2", "selectHistoricVariableInstanceByNativeQuery", "selectHistoricVariableInstanceByNativeQuery_mssql_or_db2");
-    addDatabaseSpecificStatement("db2", "selectTaskWithVariablesByQueryCriteria", "selectTaskWithVariablesByQueryCriteria_mssql_or_db2");
-    addDatabaseSpecificStatement("db2", "selectProcessInstanceWithVariablesByQueryCriteria", "selectProcessInstanceWithVariablesByQueryCriteria_mssql_or_db2");
-    addDatabaseSpecificStatement("db2", "selectHistoricProcessInstancesWithVariablesByQueryCriteria", "selectHistoricProcessInstancesWithVariablesByQueryCriteria_mssql_or_db2");
-    addDatabaseSpecificStatement("db2", "selectHistoricTaskInstancesWithVariablesByQueryCriteria", "selectHistoricTaskInstancesWithVariablesByQueryCriteria_mssql_or_db2");
 
     // mssql
     databaseSpecificLimitBeforeStatements.put("mssql", "SELECT SUB.* FROM (");
@@ -224,6 +239,10 @@ public class DbSqlSessionFactory implements SessionFactory {
     databaseSpecificOrderByStatements.put("mssql", "");
     databaseSpecificLimitBeforeNativeQueryStatements.put("mssql", "SELECT SUB.* FROM ( select RES.* , row_number() over (ORDER BY ${orderByColumns}) rnk FROM (");
     addDatabaseSpecificStatement("mssql", "selectExclusiveJobsToExecute", "selectExclusiveJobsToExecute_integerBoolean");
+    addDatabaseSpecificStatement("mssql", "selectAsyncJobsDueToExecuteByProcessInstanceIds", "selectAsyncJobsDueToExecuteByProcessInstanceIds_integerBoolean");
+    addDatabaseSpecificStatement("mssql", "selectNextTimerJobsToExecuteSkipLocked", "selectNextTimerJobsToExecuteSkipLocked_mssql");
+    addDatabaseSpecificStatement("mssql", "selectAsyncJobsDueToExecuteSkipLocked", "selectAsyncJobsDueToExecuteSkipLocked_mssql");
+    addDatabaseSpecificStatement("mssql", "selectAsyncJobsDueToExecuteByProcessInstanceIdsSkipLocked", "selectAsyncJobsDueToExecuteByProcessInstanceIdsSkipLocked_mssql");
     addDatabaseSpecificStatement("mssql", "selectExecutionByNativeQuery", "selectExecutionByNativeQuery_mssql_or_db2");
     addDatabaseSpecificStatement("mssql", "selectHistoricActivityInstanceByNativeQuery", "selectHistoricActivityInstanceByNativeQuery_mssql_or_db2");
     addDatabaseSpecificStatement("mssql", "selectHistoricProcessInstanceByNativeQuery", "selectHistoricProcessInstanceByNativeQuery_mssql_or_db2");
@@ -236,10 +255,6 @@ public class DbSqlSessionFactory implements SessionFactory {
     addDatabaseSpecificStatement("mssql", "selectModelByNativeQuery", "selectModelByNativeQuery_mssql_or_db2");
     addDatabaseSpecificStatement("mssql", "selectHistoricDetailByNativeQuery", "selectHistoricDetailByNativeQuery_mssql_or_db2");
     addDatabaseSpecificStatement("mssql", "selectHistoricVariableInstanceByNativeQuery", "selectHistoricVariableInstanceByNativeQuery_mssql_or_db2");
-    addDatabaseSpecificStatement("mssql", "selectTaskWithVariablesByQueryCriteria", "selectTaskWithVariablesByQueryCriteria_mssql_or_db2");
-    addDatabaseSpecificStatement("mssql", "selectProcessInstanceWithVariablesByQueryCriteria", "selectProcessInstanceWithVariablesByQueryCriteria_mssql_or_db2");
-    addDatabaseSpecificStatement("mssql", "selectHistoricProcessInstancesWithVariablesByQueryCriteria", "selectHistoricProcessInstancesWithVariablesByQueryCriteria_mssql_or_db2");
-    addDatabaseSpecificStatement("mssql", "selectHistoricTaskInstancesWithVariablesByQueryCriteria", "selectHistoricTaskInstancesWithVariablesByQueryCriteria_mssql_or_db2");
   }
   
   
@@ -272,6 +287,18 @@ public class DbSqlSessionFactory implements SessionFactory {
   protected boolean isDbIdentityUsed = true;
   protected boolean isDbHistoryUsed = true;
   protected int maxNrOfStatementsInBulkInsert = 100;
+  protected boolean isBatchFlushEnabled;
+  protected AsyncHistoryBuffer asyncHistoryBuffer;
+  protected long sessionCacheMemoryThreshold = -1;
+  protected boolean isDirtyTrackingEnabled;
+  protected boolean isSkipLockedJobAcquisitionEnabled;
+  protected CachedObjectSizeEstimator cachedObjectSizeEstimator = new CachedObjectSizeEstimator();
+  
+  protected AtomicLong flushCount = new AtomicLong();
+  protected AtomicLong flushRoundTripCount = new AtomicLong();
+  protected AtomicLong maxPeakCacheSize = new AtomicLong();
+  protected AtomicLong maxPeakCacheMemory = new AtomicLong();
+  protected AtomicLong evictedObjectCount = new AtomicLong();
 
 
   public Class< ? > getSessionType() {
@@ -387,6 +414,68 @@ public class DbSqlSessionFactory implements SessionFactory {
 		}
   }
   
+  /**
+   * Called by the {@link DbSqlSession} after each flush, with the number of statements
+   * (or JDBC batches, when batch flushing is enabled) it sent to the database.
+   */
+  public void recordFlush(int nrOfRoundTrips) {
+    flushCount.incrementAndGet();
+    flushRoundTripCount.addAndGet(nrOfRoundTrips);
+  }
+  
+  public long getFlushCount() {
+    return flushCount.get();
+  }
+  
+  public long getFlushRoundTripCount() {
+    return flushRoundTripCount.get();
+  }
+  
+  public void resetFlushStatistics() {
+    flushCount.set(0);
+    flushRoundTripCount.set(0);
+  }
+  
+  /**
+   * Called by the {@link DbSqlSession} when it is closed, with the highest number of cached objects 
+   * and the highest approximate cache memory it reached.
+   */
+  public void recordCachePeak(int peakCacheSize, long peakCacheMemory) {
+    updateMax(maxPeakCacheSize, peakCacheSize);
+    updateMax(maxPeakCacheMemory, peakCacheMemory);
+  }
+  
+  public void recordCacheEviction(int nrOfEvictedObjects) {
+    evictedObjectCount.addAndGet(nrOfEvictedObjects);
+  }
+  
+  protected void updateMax(AtomicLong max, long value) {
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+  
+  /** the highest number of objects that were cached at the same time by a single session */
+  public long getMaxPeakCacheSize() {
+    return maxPeakCacheSize.get();
+  }
+  
+  /** the highest approximate cache memory used by a single session, only tracked when a threshold is configured */
+  public long getMaxPeakCacheMemory() {
+    return maxPeakCacheMemory.get();
+  }
+  
+  public long getEvictedObjectCount() {
+    return evictedObjectCount.get();
+  }
+  
+  public void resetCacheStatistics() {
+    maxPeakCacheSize.set(0);
+    maxPeakCacheMemory.set(0);
+    evictedObjectCount.set(0);
+  }
+  
   public Boolean isBulkInsertable(Class<? extends PersistentObject> persistentObjectClass) {
   	return bulkInsertableMap != null && bulkInsertableMap.containsKey(persistentObjectClass) && bulkInsertableMap.get(persistentObjectClass) == true;
   }
@@ -538,4 +627,88 @@ public class DbSqlSessionFactory implements SessionFactory {
 		this.maxNrOfStatementsInBulkInsert = maxNrOfStatementsInBulkInsert;
 	}
 	
+	public boolean isBatchFlushEnabled() {
+	  return isBatchFlushEnabled;
+	}
+	
+	public void setBatchFlushEnabled(boolean isBatchFlushEnabled) {
+	  this.isBatchFlushEnabled = isBatchFlushEnabled;
+	}
+	
+	/**
+	 * Whether the optimistic locking checks of updates and deletes can be verified from the update counts of a JDBC batch.
+	 * When not, batch flushing only batches the inserts.
+	 */
+	public boolean isBatchUpdateCountReported() {
+	  return databasesReportingBatchUpdateCounts.contains(databaseType);
+	}
+	
+	public AsyncHistoryBuffer getAsyncHistoryBuffer() {
+	  return asyncHistoryBuffer;
+	}
+	
+	public void setAsyncHistoryBuffer(AsyncHistoryBuffer asyncHistoryBuffer) {
+	  this.asyncHistoryBuffer = asyncHistoryBuffer;
+	}
+	
+	public long getSessionCacheMemoryThreshold() {
+	  return sessionCacheMemoryThreshold;
+	}
+	
+	public void setSessionCacheMemoryThreshold(long sessionCacheMemoryThreshold) {
+	  this.sessionCacheMemoryThreshold = sessionCacheMemoryThreshold;
+	}
+	
+	public boolean isDirtyTrackingEnabled() {
+	  return isDirtyTrackingEnabled;
+	}
+	
+	public void setDirtyTrackingEnabled(boolean isDirtyTrackingEnabled) {
+	  this.isDirtyTrackingEnabled = isDirtyTrackingEnabled;
+	}
+	
+	public boolean isSkipLockedJobAcquisitionEnabled() {
+	  return isSkipLockedJobAcquisitionEnabled;
+	}
+	
+	public void setSkipLockedJobAcquisitionEnabled(boolean isSkipLockedJobAcquisitionEnabled) {
+	  this.isSkipLockedJobAcquisitionEnabled = isSkipLockedJobAcquisitionEnabled;
+	}
+	
+	/**
+	 * Whether the async executor acquires jobs with row locks that skip the jobs locked by other nodes:
+	 * only when enabled and supported by the database, otherwise acquisition relies on optimistic locking.
+	 */
+	public boolean isSkipLockedJobAcquisition() {
+	  return isSkipLockedJobAcquisitionEnabled && databasesSupportingSkipLocked.contains(databaseType);
+	}
+	
+	/**
+	 * Whether the database server, as described by its JDBC metadata, supports the skip locked job acquisition statements
+	 * of the given database type. 'for update of ... skip locked' needs MySQL 8.0 or later (MariaDB has no 'of' clause)
+	 * and PostgreSQL 9.5 or later. All supported Oracle and MSSQL versions can run them.
+	 */
+	public static boolean isSkipLockedSupported(String databaseType, String databaseProductName, String databaseProductVersion, 
+	    int databaseMajorVersion, int databaseMinorVersion) {
+	  if (!databasesSupportingSkipLocked.contains(databaseType)) {
+	    return false;
+	  }
+	  if ("mysql".equals(databaseType)) {
+	    boolean isMariaDb = (databaseProductName + " " + databaseProductVersion).toLowerCase().contains("mariadb");
+	    return !isMariaDb && databaseMajorVersion >= 8;
+	  }
+	  if ("postgres".equals(databaseType)) {
+	    return databaseMajorVersion > 9 || (databaseMajorVersion == 9 && databaseMinorVersion >= 5);
+	  }
+	  return true;
+	}
+	
+	public CachedObjectSizeEstimator getCachedObjectSizeEstimator() {
+	  return cachedObjectSizeEstimator;
+	}
+	
+	public void setCachedObjectSizeEstimator(CachedObjectSizeEstimator cachedObjectSizeEstimator) {
+	  this.cachedObjectSizeEstimator = cachedObjectSizeEstimator;
+	}
+	
 }
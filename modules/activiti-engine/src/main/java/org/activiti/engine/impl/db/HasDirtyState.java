@@ -0,0 +1,32 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.db;
+
+/**
+ * Entities that keep track of changes to their persistent state themselves.
+ *
+ * When dirty tracking is enabled, the {@link DbSqlSession} doesn't take a snapshot of the
+ * persistent state of such an entity when it is loaded. At flush it only updates the entities
+ * that are dirty, instead of comparing the persistent state of every loaded entity with its snapshot.
+ *
+ * Every change to a field that is part of the persistent state must mark the entity as dirty.
+ */
+public interface HasDirtyState {
+
+  boolean isDirty();
+
+  void markDirty();
+
+  void markClean();
+
+}
@@ -0,0 +1,286 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.db;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.impl.cmd.GetNextIdBlockCmd;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link DbIdGenerator} that hands out ids without taking a global lock.
+ * 
+ * Every thread takes its ids from one of a number of stripes. A stripe holds a small sub-block 
+ * which is carved out of the current {@link IdBlock} with a single atomic add. 
+ * Only switching to a new {@link IdBlock} is synchronized: when the current block is used 
+ * for more than the prefetch threshold (75% by default), the next block is fetched in the background,
+ * so in the normal case the switch doesn't have to wait for the database.
+ * 
+ * Note that, contrary to the {@link DbIdGenerator}, ids are not handed out in increasing order across threads.
+ */
+public class StripedDbIdGenerator extends DbIdGenerator {
+  
+  private static final Logger logger = LoggerFactory.getLogger(StripedDbIdGenerator.class);
+  
+  protected int stripeCount = 16;
+  protected int stripeBlockSize = 50;
+  protected double prefetchThreshold = 0.75;
+  
+  protected ExecutorService prefetchExecutor;
+  protected boolean ownPrefetchExecutor;
+  
+  protected AtomicReferenceArray<IdRange> stripes;
+  protected volatile IdRange currentBlock;
+  protected volatile FutureTask<IdBlock> prefetchedBlock;
+  protected final Object blockLock = new Object();
+  
+  protected AtomicLong blockFetchCount = new AtomicLong();
+  protected AtomicLong blockFetchTime = new AtomicLong();
+  protected AtomicLong blockWaitCount = new AtomicLong();
+  protected AtomicLong blockWaitTime = new AtomicLong();
+  
+  public String getNextId() {
+    AtomicReferenceArray<IdRange> stripes = getStripes();
+    int stripeIndex = (int) (Thread.currentThread().getId() % stripes.length());
+    while (true) {
+      IdRange stripe = stripes.get(stripeIndex);
+      if (stripe != null) {
+        long id = stripe.next.getAndIncrement();
+        if (id <= stripe.lastId) {
+          return Long.toString(id);
+        }
+      }
+      // When another thread replaced the stripe in the meantime, the carved range is simply not used:
+      // gaps in the ids are harmless (the same happens with unused ids of a block when the engine stops)
+      stripes.compareAndSet(stripeIndex, stripe, carveStripeRange());
+    }
+  }
+  
+  protected AtomicReferenceArray<IdRange> getStripes() {
+    if (stripes == null) {
+      synchronized (blockLock) {
+        if (stripes == null) {
+          stripes = new AtomicReferenceArray<IdRange>(Math.max(1, stripeCount));
+        }
+      }
+    }
+    return stripes;
+  }
+  
+  protected IdRange carveStripeRange() {
+    int rangeSize = Math.max(1, Math.min(stripeBlockSize, idBlockSize));
+    while (true) {
+      IdRange block = currentBlock;
+      if (block != null) {
+        long start = block.next.getAndAdd(rangeSize);
+        if (start <= block.lastId) {
+          long end = Math.min(start + rangeSize - 1, block.lastId);
+          if (prefetchedBlock == null && end >= block.prefetchId) {
+            prefetchNextBlock(block);
+          }
+          return new IdRange(start, end, end);
+        }
+      }
+      switchToNextBlock(block);
+    }
+  }
+  
+  protected void prefetchNextBlock(IdRange block) {
+    synchronized (blockLock) {
+      if (prefetchedBlock != null || currentBlock != block) {
+        return;
+      }
+      FutureTask<IdBlock> future = new FutureTask<IdBlock>(new Callable<IdBlock>() {
+        public IdBlock call() throws Exception {
+          return fetchBlock();
+        }
+      });
+      try {
+        ensurePrefetchExecutor().execute(future);
+        prefetchedBlock = future;
+      } catch (RejectedExecutionException e) {
+        // The block will be fetched synchronously when it is needed
+        logger.debug("Could not prefetch id block: {}", e.getMessage());
+      }
+    }
+  }
+  
+  protected void switchToNextBlock(IdRange exhaustedBlock) {
+    synchronized (blockLock) {
+      if (currentBlock != exhaustedBlock) {
+        return; // another thread switched already
+      }
+      
+      FutureTask<IdBlock> future = prefetchedBlock;
+      prefetchedBlock = null;
+      
+      IdBlock idBlock = null;
+      if (future != null && future.isDone()) {
+        idBlock = getPrefetchedBlock(future);
+      } else {
+        long waitStart = System.nanoTime();
+        if (future != null) {
+          idBlock = getPrefetchedBlock(future);
+        }
+        if (idBlock == null) {
+          idBlock = fetchBlock();
+        }
+        if (exhaustedBlock != null) {
+          blockWaitCount.incrementAndGet();
+          blockWaitTime.addAndGet(System.nanoTime() - waitStart);
+        }
+      }
+      if (idBlock == null) {
+        idBlock = fetchBlock();
+      }
+      
+      long prefetchId = idBlock.getNextId() + (long) ((idBlock.getLastId() - idBlock.getNextId() + 1) * prefetchThreshold);
+      currentBlock = new IdRange(idBlock.getNextId(), idBlock.getLastId(), prefetchId);
+    }
+  }
+  
+  /**
+   * @return the prefetched block, or null if prefetching failed (in which case the block is fetched synchronously).
+   */
+  protected IdBlock getPrefetchedBlock(FutureTask<IdBlock> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ActivitiException("Interrupted while waiting for the next id block", e);
+    } catch (ExecutionException e) {
+      logger.warn("Prefetching the next id block failed, fetching it synchronously", e.getCause());
+      return null;
+    }
+  }
+  
+  protected IdBlock fetchBlock() {
+    long start = System.nanoTime();
+    IdBlock idBlock = commandExecutor.execute(commandConfig, new GetNextIdBlockCmd(idBlockSize));
+    blockFetchCount.incrementAndGet();
+    blockFetchTime.addAndGet(System.nanoTime() - start);
+    return idBlock;
+  }
+  
+  protected ExecutorService ensurePrefetchExecutor() {
+    if (prefetchExecutor == null) {
+      prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "activiti-id-block-prefetch");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      ownPrefetchExecutor = true;
+    }
+    return prefetchExecutor;
+  }
+  
+  /**
+   * Stops the prefetch thread, if it was created by this id generator. 
+   */
+  public void shutdown() {
+    synchronized (blockLock) {
+      if (ownPrefetchExecutor && prefetchExecutor != null) {
+        prefetchExecutor.shutdown();
+        prefetchExecutor = null;
+        ownPrefetchExecutor = false;
+      }
+    }
+  }
+  
+  // Metrics //////////////////////////////////////////////////////////////////
+  
+  /** Number of id blocks fetched from the database. */
+  public long getBlockFetchCount() {
+    return blockFetchCount.get();
+  }
+  
+  /** Total time, in milliseconds, spent fetching id blocks. */
+  public long getBlockFetchTimeInMillis() {
+    return blockFetchTime.get() / 1000000L;
+  }
+  
+  /** Number of times a thread had to wait for an id block that was not (yet) prefetched. */
+  public long getBlockWaitCount() {
+    return blockWaitCount.get();
+  }
+  
+  /** Total time, in milliseconds, threads have been waiting for an id block. */
+  public long getBlockWaitTimeInMillis() {
+    return blockWaitTime.get() / 1000000L;
+  }
+  
+  // Getters and setters //////////////////////////////////////////////////////
+  
+  public int getStripeCount() {
+    return stripeCount;
+  }
+  
+  public void setStripeCount(int stripeCount) {
+    this.stripeCount = stripeCount;
+  }
+  
+  public int getStripeBlockSize() {
+    return stripeBlockSize;
+  }
+  
+  public void setStripeBlockSize(int stripeBlockSize) {
+    this.stripeBlockSize = stripeBlockSize;
+  }
+  
+  public double getPrefetchThreshold() {
+    return prefetchThreshold;
+  }
+  
+  public void setPrefetchThreshold(double prefetchThreshold) {
+    this.prefetchThreshold = prefetchThreshold;
+  }
+  
+  public ExecutorService getPrefetchExecutor() {
+    return prefetchExecutor;
+  }
+  
+  public void setPrefetchExecutor(ExecutorService prefetchExecutor) {
+    this.prefetchExecutor = prefetchExecutor;
+    this.ownPrefetchExecutor = false;
+  }
+  
+  /**
+   * A range of ids, handed out by incrementing 'next' until it passes 'lastId'.
+   */
+  protected static class IdRange {
+    
+    protected final AtomicLong next;
+    protected final long lastId;
+    protected final long prefetchId;
+    
+    public IdRange(long firstId, long lastId, long prefetchId) {
+      this.next = new AtomicLong(firstId);
+      this.lastId = lastId;
+      this.prefetchId = prefetchId;
+    }
+    
+  }
+
+}
@@ -56,6 +56,8 @@ public class ExpressionManager {
   // Default implementation (does nothing)
   protected ELContext parsingElContext = new ParsingElContext();
   protected Map<Object, Object> beans;
+  // The resolvers that don't depend on the variable scope, shared by all el contexts of the engine
+  protected volatile ELResolver sharedElResolver;
   
   
   public ExpressionManager() {
@@ -85,6 +87,16 @@ public class ExpressionManager {
     this.expressionFactory = expressionFactory;
   }
 
+  /**
+   * Compiles the expressions created from now on after the given number of evaluations, 
+   * see {@link ExpressionFactoryImpl#setCompilationThreshold(int)}. Ignored for other expression factories.
+   */
+  public void setCompilationThreshold(int compilationThreshold) {
+    if (expressionFactory instanceof ExpressionFactoryImpl) {
+      ((ExpressionFactoryImpl) expressionFactory).setCompilationThreshold(compilationThreshold);
+    }
+  }
+
   public ELContext getElContext(VariableScope variableScope) {
     ELContext elContext = null;
     if (variableScope instanceof VariableScopeImpl) {
@@ -107,10 +119,29 @@ public class ExpressionManager {
     return new ActivitiElContext(elResolver);
   }
 
+  /**
+   * The resolver of an el context: only the variable scope resolver is created per variable scope,
+   * the other resolvers (and the bean introspection and methods cached by the {@link BeanELResolver}) are shared.
+   */
   protected ELResolver createElResolver(VariableScope variableScope) {
     CompositeELResolver elResolver = new CompositeELResolver();
     elResolver.add(new VariableScopeElResolver(variableScope));
-    
+    elResolver.add(getSharedElResolver());
+    return elResolver;
+  }
+
+  protected ELResolver getSharedElResolver() {
+    ELResolver elResolver = sharedElResolver;
+    if (elResolver == null) {
+      elResolver = createSharedElResolver();
+      sharedElResolver = elResolver;
+    }
+    return elResolver;
+  }
+
+  /** Creates the resolvers shared by all variable scopes, they must not hold any state of an evaluation. */
+  protected ELResolver createSharedElResolver() {
+    CompositeELResolver elResolver = new CompositeELResolver();
     if(beans != null) {
       // ACT-1102: Also expose all beans in configuration when using standalone activiti, not
       // in spring-context
@@ -132,6 +163,7 @@ public class ExpressionManager {
 
 	public void setBeans(Map<Object, Object> beans) {
 		this.beans = beans;
+		this.sharedElResolver = null;
 	}
   
 }
@@ -35,6 +35,8 @@ public abstract class AbstractEventHandler implements EventHandler {
 
     ExecutionEntity execution = eventSubscription.getExecution();
     ActivityImpl activity = eventSubscription.getActivity();
+    
+    commandContext.getExecutionEntityManager().prefetchProcessInstanceTree(execution);
 
     if (activity == null) {
       throw new ActivitiException("Error while sending signal for event subscription '" + eventSubscription.getId() + "': "
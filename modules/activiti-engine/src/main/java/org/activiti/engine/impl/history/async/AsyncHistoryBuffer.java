@@ -0,0 +1,212 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.history.async;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.db.PersistentObject;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.ByteArrayEntity;
+import org.activiti.engine.impl.persistence.entity.CommentEntity;
+import org.activiti.engine.impl.persistence.entity.HistoricActivityInstanceEntity;
+import org.activiti.engine.impl.persistence.entity.HistoricDetailEntity;
+import org.activiti.engine.impl.persistence.entity.MessageEntity;
+import org.activiti.engine.impl.util.IoUtil;
+import org.activiti.engine.impl.util.ReflectUtil;
+import org.activiti.engine.impl.variable.VariableType;
+import org.activiti.engine.impl.variable.VariableTypes;
+
+/**
+ * Moves history inserts out of the transaction that produced them.
+ * 
+ * When the command context closes, before its {@link org.activiti.engine.impl.db.DbSqlSession} is flushed, 
+ * the history rows that are only inserted and never read back by the runtime (historic details, comments and 
+ * activity instances that already ended in the same transaction) are taken out of the flush. They are serialized 
+ * into one {@link ByteArrayEntity} and an {@link AsyncHistoryJobHandler} job is created that inserts them later. 
+ * The byte array and the job are committed together with the runtime changes, so no history is lost 
+ * when the engine goes down.
+ * 
+ * A buffer adds a byte array and a job insert to the transaction, so history is only buffered when a transaction 
+ * produces at least {@link #getMinBufferedObjects()} of these rows. Smaller transactions insert them directly.
+ * 
+ * History queries are eventually consistent: buffered rows show up once the job executor has executed the job.
+ */
+public class AsyncHistoryBuffer {
+  
+  protected AtomicLong bufferedObjectCount = new AtomicLong();
+  protected AtomicLong appliedObjectCount = new AtomicLong();
+  protected AtomicLong skippedObjectCount = new AtomicLong();
+  
+  protected int minBufferedObjects = 10;
+  
+  /**
+   * Whether the given object, about to be inserted, can be inserted asynchronously.
+   */
+  public boolean isBufferable(PersistentObject persistentObject) {
+    if (persistentObject instanceof HistoricDetailEntity || persistentObject instanceof CommentEntity) {
+      return true;
+    }
+    
+    // Unfinished activity instances are looked up again when the activity ends
+    return persistentObject instanceof HistoricActivityInstanceEntity 
+        && ((HistoricActivityInstanceEntity) persistentObject).getEndTime() != null;
+  }
+  
+  /**
+   * Stores the given history objects in a byte array and creates the job that will insert them.
+   */
+  public void buffer(List<PersistentObject> historyObjects, CommandContext commandContext) {
+    ByteArrayEntity byteArray = new ByteArrayEntity("async-history", serialize(historyObjects));
+    commandContext.getDbSqlSession().insert(byteArray);
+    
+    MessageEntity message = new MessageEntity();
+    message.setJobHandlerType(AsyncHistoryJobHandler.TYPE);
+    message.setJobHandlerConfiguration(byteArray.getId());
+    message.setExclusive(false);
+    commandContext.getJobEntityManager().send(message);
+    
+    bufferedObjectCount.addAndGet(historyObjects.size());
+  }
+  
+  public byte[] serialize(List<PersistentObject> historyObjects) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = null;
+    try {
+      oos = new HistoryObjectOutputStream(baos);
+      oos.writeObject(new ArrayList<PersistentObject>(historyObjects));
+    } catch (Exception e) {
+      throw new ActivitiException("Couldn't serialize async history", e);
+    } finally {
+      IoUtil.closeSilently(oos);
+    }
+    return baos.toByteArray();
+  }
+  
+  @SuppressWarnings("unchecked")
+  public List<PersistentObject> deserialize(byte[] bytes) {
+    ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
+    try {
+      ObjectInputStream ois = new HistoryObjectInputStream(bais, Context.getProcessEngineConfiguration().getVariableTypes());
+      return (List<PersistentObject>) ois.readObject();
+    } catch (Exception e) {
+      throw new ActivitiException("Couldn't deserialize async history", e);
+    } finally {
+      IoUtil.closeSilently(bais);
+    }
+  }
+  
+  /**
+   * Keeps the buffer small and independent of the engine's object graph: variable types are written as their 
+   * name, and byte arrays (which are stored in their own rows) and cached variable values are left out.
+   */
+  protected static class HistoryObjectOutputStream extends ObjectOutputStream {
+    
+    public HistoryObjectOutputStream(OutputStream out) throws IOException {
+      super(out);
+      enableReplaceObject(true);
+    }
+    
+    protected Object replaceObject(Object object) throws IOException {
+      if (object instanceof VariableType) {
+        return new VariableTypeReference(((VariableType) object).getTypeName());
+      } else if (object instanceof ByteArrayEntity || !(object instanceof Serializable)) {
+        return null;
+      }
+      return object;
+    }
+  }
+  
+  protected static class HistoryObjectInputStream extends ObjectInputStream {
+    
+    protected VariableTypes variableTypes;
+    
+    public HistoryObjectInputStream(InputStream in, VariableTypes variableTypes) throws IOException {
+      super(in);
+      this.variableTypes = variableTypes;
+      enableResolveObject(true);
+    }
+    
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+      return ReflectUtil.loadClass(desc.getName());
+    }
+    
+    protected Object resolveObject(Object object) throws IOException {
+      if (object instanceof VariableTypeReference) {
+        return variableTypes.getVariableType(((VariableTypeReference) object).typeName);
+      }
+      return object;
+    }
+  }
+  
+  protected static class VariableTypeReference implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    protected String typeName;
+    
+    public VariableTypeReference(String typeName) {
+      this.typeName = typeName;
+    }
+  }
+  
+  /**
+   * @return The minimum number of history objects a transaction must produce to have them buffered.
+   */
+  public int getMinBufferedObjects() {
+    return minBufferedObjects;
+  }
+  
+  public void setMinBufferedObjects(int minBufferedObjects) {
+    this.minBufferedObjects = minBufferedObjects;
+  }
+  
+  public void recordApplied(int nrOfObjects, int nrOfSkippedObjects) {
+    appliedObjectCount.addAndGet(nrOfObjects);
+    skippedObjectCount.addAndGet(nrOfSkippedObjects);
+  }
+  
+  /**
+   * @return The number of history objects that were buffered instead of inserted in their own transaction. 
+   */
+  public long getBufferedObjectCount() {
+    return bufferedObjectCount.get();
+  }
+  
+  /**
+   * @return The number of buffered history objects that were inserted by an {@link AsyncHistoryJobHandler}.
+   */
+  public long getAppliedObjectCount() {
+    return appliedObjectCount.get();
+  }
+  
+  /**
+   * @return The number of buffered history objects that were dropped, because their historic process instance had been deleted.
+   */
+  public long getSkippedObjectCount() {
+    return skippedObjectCount.get();
+  }
+
+}
@@ -0,0 +1,40 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.history.async;
+
+import org.activiti.engine.impl.db.DbSqlSession;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.interceptor.CommandContextCloseListener;
+
+/**
+ * Hands the history inserts of a {@link DbSqlSession} over to the {@link AsyncHistoryBuffer} 
+ * while the command context is closing, before its sessions are flushed.
+ */
+public class AsyncHistoryCloseListener implements CommandContextCloseListener {
+  
+  protected DbSqlSession dbSqlSession;
+  protected AsyncHistoryBuffer asyncHistoryBuffer;
+  
+  public AsyncHistoryCloseListener(DbSqlSession dbSqlSession, AsyncHistoryBuffer asyncHistoryBuffer) {
+    this.dbSqlSession = dbSqlSession;
+    this.asyncHistoryBuffer = asyncHistoryBuffer;
+  }
+
+  public void closing(CommandContext commandContext) {
+    dbSqlSession.bufferAsyncHistory(asyncHistoryBuffer, commandContext);
+  }
+
+  public void closed(CommandContext commandContext) {
+  }
+
+}
@@ -0,0 +1,101 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.history.async;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.activiti.engine.impl.db.DbSqlSession;
+import org.activiti.engine.impl.db.PersistentObject;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.jobexecutor.JobHandler;
+import org.activiti.engine.impl.persistence.entity.ByteArrayEntity;
+import org.activiti.engine.impl.persistence.entity.CommentEntity;
+import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
+import org.activiti.engine.impl.persistence.entity.HistoricDetailEntity;
+import org.activiti.engine.impl.persistence.entity.HistoricProcessInstanceEntity;
+import org.activiti.engine.impl.persistence.entity.HistoricScopeInstanceEntity;
+import org.activiti.engine.impl.persistence.entity.JobEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Inserts the history objects that were buffered by the {@link AsyncHistoryBuffer}.
+ * 
+ * The inserts, the removal of the buffer and the removal of the job happen in one transaction:
+ * a buffer is applied completely or not at all, and a failed attempt is retried like any other job.
+ * Objects of which the historic process instance has been deleted in the meantime are dropped.
+ */
+public class AsyncHistoryJobHandler implements JobHandler {
+  
+  private static final Logger log = LoggerFactory.getLogger(AsyncHistoryJobHandler.class);
+  
+  public static final String TYPE = "async-history";
+  
+  public String getType() {
+    return TYPE;
+  }
+
+  public void execute(JobEntity job, String configuration, ExecutionEntity execution, CommandContext commandContext) {
+    ByteArrayEntity byteArray = commandContext.getByteArrayEntityManager().findById(configuration);
+    if (byteArray == null) {
+      log.warn("Async history buffer {} of job {} not found", configuration, job.getId());
+      return;
+    }
+    
+    AsyncHistoryBuffer asyncHistoryBuffer = commandContext.getProcessEngineConfiguration().getAsyncHistoryBuffer();
+    if (asyncHistoryBuffer == null) {
+      asyncHistoryBuffer = new AsyncHistoryBuffer();
+    }
+    
+    DbSqlSession dbSqlSession = commandContext.getDbSqlSession();
+    dbSqlSession.setAsyncHistoryBuffered(false);
+    
+    List<PersistentObject> historyObjects = asyncHistoryBuffer.deserialize(byteArray.getBytes());
+    Map<String, Boolean> existingProcessInstances = new HashMap<String, Boolean>();
+    int nrOfSkippedObjects = 0;
+    for (PersistentObject historyObject : historyObjects) {
+      String processInstanceId = getProcessInstanceId(historyObject);
+      if (processInstanceId != null && !processInstanceExists(processInstanceId, existingProcessInstances, dbSqlSession)) {
+        nrOfSkippedObjects++;
+      } else {
+        dbSqlSession.insert(historyObject);
+      }
+    }
+    
+    commandContext.getByteArrayEntityManager().deleteByteArray(byteArray);
+    asyncHistoryBuffer.recordApplied(historyObjects.size() - nrOfSkippedObjects, nrOfSkippedObjects);
+  }
+  
+  protected boolean processInstanceExists(String processInstanceId, Map<String, Boolean> existingProcessInstances, DbSqlSession dbSqlSession) {
+    Boolean exists = existingProcessInstances.get(processInstanceId);
+    if (exists == null) {
+      exists = dbSqlSession.selectById(HistoricProcessInstanceEntity.class, processInstanceId) != null;
+      existingProcessInstances.put(processInstanceId, exists);
+    }
+    return exists;
+  }
+  
+  protected String getProcessInstanceId(PersistentObject historyObject) {
+    if (historyObject instanceof HistoricDetailEntity) {
+      return ((HistoricDetailEntity) historyObject).getProcessInstanceId();
+    } else if (historyObject instanceof HistoricScopeInstanceEntity) {
+      return ((HistoricScopeInstanceEntity) historyObject).getProcessInstanceId();
+    } else if (historyObject instanceof CommentEntity) {
+      return ((CommentEntity) historyObject).getProcessInstanceId();
+    }
+    return null;
+  }
+
+}
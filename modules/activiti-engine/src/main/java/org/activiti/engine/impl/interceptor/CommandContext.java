@@ -157,8 +157,9 @@ public class CommandContext {
         	if (exception == null && closeListeners != null) { //
 	        	try {
 	        	  //循环遍历closing()
-	        		for (CommandContextCloseListener listener : closeListeners) {
-	        			listener.closing(this);
+	        	  // Listeners may be added while closing (e.g. by an insert of another listener), those are called as well
+	        		for (int i = 0; i < closeListeners.size(); i++) {
+	        			closeListeners.get(i).closing(this);
 	        		}
 	        	} catch (Throwable exception) {
 	        		exception(exception);
@@ -67,6 +67,11 @@ public class BeanELResolver extends ELResolver {
 
 	protected static final class BeanProperty {
 		private final PropertyDescriptor descriptor;
+		// accessible accessors, looked up on first use as making them accessible can fail
+		private Method readMethod;
+		private volatile boolean readMethodResolved;
+		private Method writeMethod;
+		private volatile boolean writeMethodResolved;
 
 		public BeanProperty(PropertyDescriptor descriptor) {
 			this.descriptor = descriptor;
@@ -77,15 +82,53 @@ public class BeanELResolver extends ELResolver {
 		}
 
 		public Method getReadMethod() {
-			return findAccessibleMethod(descriptor.getReadMethod());
+			if (!readMethodResolved) {
+				readMethod = findAccessibleMethod(descriptor.getReadMethod());
+				readMethodResolved = true;
+			}
+			return readMethod;
 		}
 
 		public Method getWriteMethod() {
-			return findAccessibleMethod(descriptor.getWriteMethod());
+			if (!writeMethodResolved) {
+				writeMethod = findAccessibleMethod(descriptor.getWriteMethod());
+				writeMethodResolved = true;
+			}
+			return writeMethod;
 		}
 
 		public boolean isReadOnly() {
-			return findAccessibleMethod(descriptor.getWriteMethod()) == null;
+			return getWriteMethod() == null;
+		}
+	}
+
+	/**
+	 * Key of a method found by name and number of parameters, as methods are invoked from
+	 * expressions without parameter types.
+	 */
+	protected static final class MethodKey {
+		private final Class<?> baseClass;
+		private final String name;
+		private final int paramCount;
+
+		public MethodKey(Class<?> baseClass, String name, int paramCount) {
+			this.baseClass = baseClass;
+			this.name = name;
+			this.paramCount = paramCount;
+		}
+
+		@Override
+		public int hashCode() {
+			return (baseClass.hashCode() * 31 + name.hashCode()) * 31 + paramCount;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof MethodKey)) {
+				return false;
+			}
+			MethodKey other = (MethodKey) obj;
+			return baseClass == other.baseClass && name.equals(other.name) && paramCount == other.paramCount;
 		}
 	}
 
@@ -128,6 +171,7 @@ public class BeanELResolver extends ELResolver {
 
 	private final boolean readOnly;
 	private final ConcurrentHashMap<Class<?>, BeanProperties> cache;
+	private final ConcurrentHashMap<MethodKey, Method> methodCache;
 	
 	private ExpressionFactory defaultFactory;
 
@@ -144,6 +188,7 @@ public class BeanELResolver extends ELResolver {
 	public BeanELResolver(boolean readOnly) {
 		this.readOnly = readOnly;
 		this.cache = new ConcurrentHashMap<Class<?>, BeanProperties>();
+		this.methodCache = new ConcurrentHashMap<MethodKey, Method>();
 	}
 
 	/**
@@ -501,8 +546,20 @@ public class BeanELResolver extends ELResolver {
 				// try to get a method without a static type search
 			}
 		}
+		MethodKey key = new MethodKey(base.getClass(), name, paramCount);
+		Method method = methodCache.get(key);
+		if (method == null) {
+			method = findMethod(base.getClass(), name, paramCount);
+			if (method != null) {
+				methodCache.putIfAbsent(key, method);
+			}
+		}
+		return method;
+	}
+
+	private Method findMethod(Class<?> baseClass, String name, int paramCount) {
 		Method varArgsMethod = null;
-		for (Method method : base.getClass().getMethods()) {
+		for (Method method : baseClass.getMethods()) {
 			if (method.getName().equals(name)) {
 				int formalParamCount = method.getParameterTypes().length;
 				if (method.isVarArgs() && paramCount >= formalParamCount - 1) {
@@ -647,5 +704,11 @@ public class BeanELResolver extends ELResolver {
 				classes.remove();
 			}
 		}
+		Iterator<MethodKey> methods = methodCache.keySet().iterator();
+		while (methods.hasNext()) {
+			if (loader == methods.next().baseClass.getClassLoader()) {
+				methods.remove();
+			}
+		}
 	}
 }
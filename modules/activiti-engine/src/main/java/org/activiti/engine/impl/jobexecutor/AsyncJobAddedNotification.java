@@ -14,7 +14,10 @@ package org.activiti.engine.impl.jobexecutor;
 
 
 import org.activiti.engine.impl.asyncexecutor.AsyncExecutor;
+import org.activiti.engine.impl.asyncexecutor.AsyncJobNotificationChannel;
 import org.activiti.engine.impl.cfg.TransactionListener;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandConfig;
 import org.activiti.engine.impl.interceptor.CommandContext;
 import org.activiti.engine.impl.persistence.entity.JobEntity;
 import org.slf4j.Logger;
@@ -39,6 +42,30 @@ public class AsyncJobAddedNotification implements TransactionListener {
 
   public void execute(CommandContext commandContext) {
     log.debug("notifying job executor of new job");
-    asyncExecutor.executeAsyncJob(job);
+    
+    AsyncJobNotificationChannel jobNotificationChannel = commandContext.getProcessEngineConfiguration().getAsyncExecutorJobNotificationChannel();
+    if (jobNotificationChannel == null) {
+      asyncExecutor.executeAsyncJob(job);
+      return;
+    }
+    
+    // The other engines are only woken up once the release of the job is committed: 
+    // otherwise they would still find it locked by this engine, and back off
+    boolean jobReleased = commandContext.getProcessEngineConfiguration().getCommandExecutor().execute(
+        new CommandConfig().transactionRequiresNew(), new Command<Boolean>() {
+      public Boolean execute(CommandContext commandContext) {
+        if (!asyncExecutor.isActive()) {
+          // This engine doesn't execute async jobs: make the job available right away
+          commandContext.getJobEntityManager().unacquireJob(job.getId());
+          return true;
+        }
+        // Rejected (queue full) and unlocked: another async executor can pick it up
+        return !asyncExecutor.executeAsyncJob(job);
+      }
+    });
+    
+    if (jobReleased) {
+      jobNotificationChannel.publishJobsAvailable(commandContext);
+    }
   }
 }
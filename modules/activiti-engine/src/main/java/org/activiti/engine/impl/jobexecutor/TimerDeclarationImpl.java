@@ -183,6 +183,7 @@ public class TimerDeclarationImpl implements Serializable {
    		  timer.setExecution(executionEntity);
    		  timer.setProcessDefinitionId(executionEntity.getProcessDefinitionId());
    		  timer.setProcessInstanceId(executionEntity.getProcessInstanceId());
+   		  timer.setPriority(executionEntity.resolveJobPriority(null));
 
    		  // Inherit tenant identifier (if applicable)
    		  if (executionEntity != null && executionEntity.getTenantId() != null) {
@@ -0,0 +1,42 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.jobexecutor;
+
+import org.activiti.engine.impl.asyncexecutor.AbstractAsyncJobExecutor;
+import org.activiti.engine.impl.cfg.TransactionListener;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.TimerEntity;
+
+/**
+ * Adds a committed timer to the timer wheel of the async executor, or removes a deleted one.
+ */
+public class TimerWheelNotification implements TransactionListener {
+
+  protected TimerEntity timer;
+  protected AbstractAsyncJobExecutor asyncExecutor;
+  protected boolean deleted;
+
+  public TimerWheelNotification(TimerEntity timer, AbstractAsyncJobExecutor asyncExecutor, boolean deleted) {
+    this.timer = timer;
+    this.asyncExecutor = asyncExecutor;
+    this.deleted = deleted;
+  }
+
+  public void execute(CommandContext commandContext) {
+    if (deleted) {
+      asyncExecutor.timerDeleted(timer);
+    } else {
+      asyncExecutor.timerScheduled(timer);
+    }
+  }
+}
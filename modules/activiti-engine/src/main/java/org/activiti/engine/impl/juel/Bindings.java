@@ -136,6 +136,14 @@ public class Bindings implements TypeConverter {
 	public <T> T convert(Object value, Class<T> type) {
 		return converter.convert(value, type);
 	}
+
+	/**
+	 * Get the type converter used to convert values.
+	 * @return type converter
+	 */
+	public TypeConverter getTypeConverter() {
+		return converter;
+	}
 	
 	@Override
 	public boolean equals(Object obj) {
@@ -0,0 +1,443 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.juel;
+
+import org.activiti.engine.impl.javax.el.ELContext;
+import org.activiti.engine.impl.javax.el.PropertyNotFoundException;
+
+/**
+ * Compiles the parse tree of a hot expression, together with its bindings, into a tree of evaluators
+ * that are specialized for the nodes they were compiled from. Used by {@link TreeValueExpression} once an
+ * expression was evaluated often enough.
+ *
+ * The compiled evaluators behave exactly like the interpreted nodes, but
+ * <ul>
+ * <li>operators are dispatched when compiling instead of on every evaluation,</li>
+ * <li>subtrees of literals (like <code>-1</code> or <code>60 * 1000</code>) are evaluated once,</li>
+ * <li>identifiers and properties go to the el resolver directly, as the variable bindings are known,</li>
+ * <li>with the default type converter, comparisons of integers and of strings and the boolean coercions
+ * of <code>&amp;&amp;</code>, <code>||</code> and <code>!</code> skip the generic coercion rules.</li>
+ * </ul>
+ * Other nodes (functions, method invocations, bracket properties, composite text and subclasses of the
+ * node types) are evaluated by the interpreter, as part of the compiled tree.
+ */
+public class ExpressionCompiler {
+
+	/**
+	 * A compiled node of a parse tree.
+	 */
+	public static abstract class CompiledNode {
+
+		public abstract Object eval(ELContext context);
+
+		/** Same as {@link AstNode#getValue(Bindings, ELContext, Class)}. */
+		public final Object getValue(Bindings bindings, ELContext context, Class<?> type) {
+			Object value = eval(context);
+			if (type != null) {
+				value = bindings.convert(value, type);
+			}
+			return value;
+		}
+	}
+
+	protected final Bindings bindings;
+	/** Whether the bindings use the default type conversion rules, which the specialized evaluators rely on */
+	protected final boolean defaultConversions;
+
+	public ExpressionCompiler(Bindings bindings) {
+		this.bindings = bindings;
+		this.defaultConversions = bindings.getTypeConverter().getClass() == TypeConverterImpl.class;
+	}
+
+	public CompiledNode compile(ExpressionNode node) {
+		if (!(node instanceof AstNode)) {
+			throw new IllegalArgumentException("Cannot compile " + node);
+		}
+		return compileNode((AstNode) node);
+	}
+
+	protected CompiledNode compileNode(AstNode node) {
+		if (isConstant(node)) {
+			try {
+				return new Constant(node.eval(bindings, null));
+			} catch (RuntimeException e) {
+				// not folded, so the evaluation fails the same way every time
+			}
+		}
+		if (node instanceof AstEval || node instanceof AstNested) {
+			return compileNode((AstNode) node.getChild(0));
+		}
+		if (node.getClass() == AstIdentifier.class) {
+			AstIdentifier identifier = (AstIdentifier) node;
+			if (bindings.getVariable(identifier.getIndex()) == null) {
+				return new Identifier(identifier.getName());
+			}
+		}
+		if (node.getClass() == AstDot.class) {
+			AstDot dot = (AstDot) node;
+			return new Dot(compileNode(dot.getPrefix()), dot.property, dot.strict);
+		}
+		if (node.getClass() == AstBinary.class) {
+			CompiledNode compiled = compileBinary((AstBinary) node);
+			if (compiled != null) {
+				return compiled;
+			}
+		}
+		if (node.getClass() == AstUnary.class) {
+			CompiledNode compiled = compileUnary((AstUnary) node);
+			if (compiled != null) {
+				return compiled;
+			}
+		}
+		if (node.getClass() == AstChoice.class) {
+			return new Choice(compileNode((AstNode) node.getChild(0)), compileNode((AstNode) node.getChild(1)),
+					compileNode((AstNode) node.getChild(2)), bindings, defaultConversions);
+		}
+		return new Interpreted(node, bindings);
+	}
+
+	protected CompiledNode compileBinary(AstBinary binary) {
+		AstBinary.Operator operator = binary.getOperator();
+		CompiledNode left = compileNode((AstNode) binary.getChild(0));
+		CompiledNode right = compileNode((AstNode) binary.getChild(1));
+		if (operator == AstBinary.AND) {
+			return new And(left, right, bindings, defaultConversions);
+		}
+		if (operator == AstBinary.OR) {
+			return new Or(left, right, bindings, defaultConversions);
+		}
+		int comparison = getComparison(operator);
+		if (comparison >= 0) {
+			return new Comparison(comparison, left, right, bindings, defaultConversions);
+		}
+		if (operator instanceof AstBinary.SimpleOperator) {
+			return new SimpleBinary((AstBinary.SimpleOperator) operator, left, right, bindings);
+		}
+		return null;
+	}
+
+	protected CompiledNode compileUnary(AstUnary unary) {
+		CompiledNode child = compileNode((AstNode) unary.getChild(0));
+		if (unary.getOperator() == AstUnary.NOT) {
+			return new Not(child, bindings, defaultConversions);
+		}
+		if (unary.getOperator() instanceof AstUnary.SimpleOperator) {
+			return new SimpleUnary((AstUnary.SimpleOperator) unary.getOperator(), child, bindings);
+		}
+		return null;
+	}
+
+	/**
+	 * Whether the node only consists of literals and operators, and so always evaluates to the same value.
+	 */
+	protected boolean isConstant(AstNode node) {
+		Class<?> type = node.getClass();
+		if (type == AstNumber.class || type == AstString.class || type == AstBoolean.class || type == AstNull.class || type == AstText.class) {
+			return true;
+		}
+		if (type == AstBinary.class || type == AstUnary.class || type == AstChoice.class || type == AstNested.class || type == AstEval.class) {
+			for (int i = 0; i < node.getCardinality(); i++) {
+				if (!isConstant((AstNode) node.getChild(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	protected static final int LT = 0;
+	protected static final int GT = 1;
+	protected static final int LE = 2;
+	protected static final int GE = 3;
+	protected static final int EQ = 4;
+	protected static final int NE = 5;
+
+	protected int getComparison(AstBinary.Operator operator) {
+		if (operator == AstBinary.LT) {
+			return LT;
+		} else if (operator == AstBinary.GT) {
+			return GT;
+		} else if (operator == AstBinary.LE) {
+			return LE;
+		} else if (operator == AstBinary.GE) {
+			return GE;
+		} else if (operator == AstBinary.EQ) {
+			return EQ;
+		} else if (operator == AstBinary.NE) {
+			return NE;
+		}
+		return -1;
+	}
+
+	/**
+	 * Same as {@link TypeConverterImpl#coerceToBoolean(Object)} for booleans,
+	 * the other values are converted with the bindings.
+	 */
+	protected static Boolean toBoolean(Object value, Bindings bindings, boolean defaultConversions) {
+		if (defaultConversions && value instanceof Boolean) {
+			return (Boolean) value;
+		}
+		return bindings.convert(value, Boolean.class);
+	}
+
+	/** Byte, Short, Integer or Long: compared as longs by {@link BooleanOperations} */
+	protected static boolean isSimpleInteger(Object value) {
+		Class<?> type = value.getClass();
+		return type == Integer.class || type == Long.class || type == Short.class || type == Byte.class;
+	}
+
+	// Compiled nodes //////////////////////////////////////////////////////////
+
+	protected static final class Constant extends CompiledNode {
+		private final Object value;
+
+		public Constant(Object value) {
+			this.value = value;
+		}
+
+		@Override
+		public Object eval(ELContext context) {
+			return value;
+		}
+	}
+
+	/** Same as {@link AstIdentifier#eval(Bindings, ELContext)} for an identifier without variable binding */
+	protected static final class Identifier extends CompiledNode {
+		private final String name;
+
+		public Identifier(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Object eval(ELContext context) {
+			context.setPropertyResolved(false);
+			Object result = context.getELResolver().getValue(context, null, name);
+			if (!context.isPropertyResolved()) {
+				throw new PropertyNotFoundException(LocalMessages.get("error.identifier.property.notfound", name));
+			}
+			return result;
+		}
+	}
+
+	/** Same as {@link AstProperty#eval(Bindings, ELContext)} for a property with a fixed name */
+	protected static final class Dot extends CompiledNode {
+		private final CompiledNode prefix;
+		private final String property;
+		private final boolean strict;
+
+		public Dot(CompiledNode prefix, String property, boolean strict) {
+			this.prefix = prefix;
+			this.property = property;
+			this.strict = strict;
+		}
+
+		@Override
+		public Object eval(ELContext context) {
+			Object base = prefix.eval(context);
+			if (base == null) {
+				return null;
+			}
+			if (property == null && strict) {
+				return null;
+			}
+			context.setPropertyResolved(false);
+			Object result = context.getELResolver().getValue(context, base, property);
+			if (!context.isPropertyResolved()) {
+				throw new PropertyNotFoundException(LocalMessages.get("error.property.property.notfound", property, base));
+			}
+			return result;
+		}
+	}
+
+	protected static final class And extends CompiledNode {
+		private final CompiledNode left, right;
+		private final Bindings bindings;
+		private final boolean defaultConversions;
+
+		public And(CompiledNode left, CompiledNode right, Bindings bindings, boolean defaultConversions) {
+			this.left = left;
+			this.right = right;
+			this.bindings = bindings;
+			this.defaultConversions = defaultConversions;
+		}
+
+		@Override
+		public Object eval(ELContext context) {
+			Boolean l = toBoolean(left.eval(context), bindings, defaultConversions);
+			return Boolean.TRUE.equals(l) ? toBoolean(right.eval(context), bindings, defaultConversions) : Boolean.FALSE;
+		}
+	}
+
+	protected static final class Or extends CompiledNode {
+		private final CompiledNode left, right;
+		private final Bindings bindings;
+		private final boolean defaultConversions;
+
+		public Or(CompiledNode left, CompiledNode right, Bindings bindings, boolean defaultConversions) {
+			this.left = left;
+			this.right = right;
+			this.bindings = bindings;
+			this.defaultConversions = defaultConversions;
+		}
+
+		@Override
+		public Object eval(ELContext context) {
+			Boolean l = toBoolean(left.eval(context), bindings, defaultConversions);
+			return Boolean.TRUE.equals(l) ? Boolean.TRUE : toBoolean(right.eval(context), bindings, defaultConversions);
+		}
+	}
+
+	/**
+	 * Relational and equality operators: integers are compared as longs and strings are compared for
+	 * equality directly, as the default type conversion rules would do. Other operands are compared
+	 * by {@link BooleanOperations}.
+	 */
+	protected static final class Comparison extends CompiledNode {
+		private final int comparison;
+		private final CompiledNode left, right;
+		private final Bindings bindings;
+		private final boolean defaultConversions;
+
+		public Comparison(int comparison, CompiledNode left, CompiledNode right, Bindings bindings, boolean defaultConversions) {
+			this.comparison = comparison;
+			this.left = left;
+			this.right = right;
+			this.bindings = bindings;
+			this.defaultConversions = defaultConversions;
+		}
+
+		@Override
+		public Object eval(ELContext context) {
+			Object o1 = left.eval(context);
+			Object o2 = right.eval(context);
+			if (defaultConversions && o1 != null && o2 != null) {
+				if (isSimpleInteger(o1) && isSimpleInteger(o2)) {
+					return compare(((Number) o1).longValue(), ((Number) o2).longValue());
+				}
+				if ((comparison == EQ || comparison == NE) && o1.getClass() == String.class && o2.getClass() == String.class) {
+					return o1.equals(o2) == (comparison == EQ);
+				}
+			}
+			switch (comparison) {
+			case LT: return BooleanOperations.lt(bindings, o1, o2);
+			case GT: return BooleanOperations.gt(bindings, o1, o2);
+			case LE: return BooleanOperations.le(bindings, o1, o2);
+			case GE: return BooleanOperations.ge(bindings, o1, o2);
+			case EQ: return BooleanOperations.eq(bindings, o1, o2);
+			default: return BooleanOperations.ne(bindings, o1, o2);
+			}
+		}
+
+		private Boolean compare(long l1, long l2) {
+			switch (comparison) {
+			case LT: return l1 < l2;
+			case GT: return l1 > l2;
+			case LE: return l1 <= l2;
+			case GE: return l1 >= l2;
+			case EQ: return l1 == l2;
+			default: return l1 != l2;
+			}
+		}
+	}
+
+	/** Arithmetic operators, applied to the operands without dispatching on the operator node */
+	protected static final class SimpleBinary extends CompiledNode {
+		private final AstBinary.SimpleOperator operator;
+		private final CompiledNode left, right;
+		private final Bindings bindings;
+
+		public SimpleBinary(AstBinary.SimpleOperator operator, CompiledNode left, CompiledNode right, Bindings bindings) {
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+			this.bindings = bindings;
+		}
+
+		@Override
+		public Object eval(ELContext context) {
+			return operator.apply(bindings, left.eval(context), right.eval(context));
+		}
+	}
+
+	protected static final class Not extends CompiledNode {
+		private final CompiledNode child;
+		private final Bindings bindings;
+		private final boolean defaultConversions;
+
+		public Not(CompiledNode child, Bindings bindings, boolean defaultConversions) {
+			this.child = child;
+			this.bindings = bindings;
+			this.defaultConversions = defaultConversions;
+		}
+
+		@Override
+		public Object eval(ELContext context) {
+			return !toBoolean(child.eval(context), bindings, defaultConversions);
+		}
+	}
+
+	protected static final class SimpleUnary extends CompiledNode {
+		private final AstUnary.SimpleOperator operator;
+		private final CompiledNode child;
+		private final Bindings bindings;
+
+		public SimpleUnary(AstUnary.SimpleOperator operator, CompiledNode child, Bindings bindings) {
+			this.operator = operator;
+			this.child = child;
+			this.bindings = bindings;
+		}
+
+		@Override
+		public Object eval(ELContext context) {
+			return operator.apply(bindings, child.eval(context));
+		}
+	}
+
+	protected static final class Choice extends CompiledNode {
+		private final CompiledNode question, yes, no;
+		private final Bindings bindings;
+		private final boolean defaultConversions;
+
+		public Choice(CompiledNode question, CompiledNode yes, CompiledNode no, Bindings bindings, boolean defaultConversions) {
+			this.question = question;
+			this.yes = yes;
+			this.no = no;
+			this.bindings = bindings;
+			this.defaultConversions = defaultConversions;
+		}
+
+		@Override
+		public Object eval(ELContext context) {
+			Boolean value = toBoolean(question.eval(context), bindings, defaultConversions);
+			return value.booleanValue() ? yes.eval(context) : no.eval(context);
+		}
+	}
+
+	/** A node that is not compiled, evaluated by the interpreter */
+	protected static final class Interpreted extends CompiledNode {
+		private final AstNode node;
+		private final Bindings bindings;
+
+		public Interpreted(AstNode node, Bindings bindings) {
+			this.node = node;
+			this.bindings = bindings;
+		}
+
+		@Override
+		public Object eval(ELContext context) {
+			return node.eval(bindings, context);
+		}
+	}
+}
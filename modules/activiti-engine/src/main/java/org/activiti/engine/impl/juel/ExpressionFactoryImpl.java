@@ -126,6 +126,7 @@ public class ExpressionFactoryImpl extends ExpressionFactory {
 
 	private final TreeStore store;
 	private final TypeConverter converter;
+	private int compilationThreshold;
 
 	/**
 	 * Create a new expression factory using the default builder and cache implementations. The
@@ -426,7 +427,19 @@ public class ExpressionFactoryImpl extends ExpressionFactory {
 	@Override
 	public final TreeValueExpression createValueExpression(ELContext context, String expression, Class<?> expectedType) {
 		return new TreeValueExpression(store, context.getFunctionMapper(), context.getVariableMapper(), converter,
-				expression, expectedType);
+				expression, expectedType, compilationThreshold);
+	}
+
+	/**
+	 * The number of evaluations after which a value expression created by this factory is compiled by the
+	 * {@link ExpressionCompiler}, 0 (the default) to always interpret the parse tree.
+	 */
+	public int getCompilationThreshold() {
+		return compilationThreshold;
+	}
+
+	public void setCompilationThreshold(int compilationThreshold) {
+		this.compilationThreshold = compilationThreshold;
 	}
 
 	@Override
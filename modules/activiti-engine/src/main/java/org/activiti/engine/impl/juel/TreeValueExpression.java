@@ -48,6 +48,11 @@ public final class TreeValueExpression extends org.activiti.engine.impl.javax.el
 
 	private String structure;
 
+	// Tiered evaluation: the parse tree is interpreted until the expression was evaluated often enough to compile it
+	private final int compilationThreshold;
+	private transient int evaluationCount;
+	private transient volatile ExpressionCompiler.CompiledNode compiledNode;
+
 	/**
 	 * Create a new value expression.
 	 * @param store used to get the parse tree from.
@@ -57,6 +62,14 @@ public final class TreeValueExpression extends org.activiti.engine.impl.javax.el
 	 * @param type the expected type (may be <code>null</code>)
 	 */
 	public TreeValueExpression(TreeStore store, FunctionMapper functions, VariableMapper variables, TypeConverter converter, String expr, Class<?> type) {
+		this(store, functions, variables, converter, expr, type, 0);
+	}
+
+	/**
+	 * Create a new value expression, that is compiled by the {@link ExpressionCompiler} after the given number of evaluations.
+	 * @param compilationThreshold the number of evaluations after which the expression is compiled, 0 to never compile it
+	 */
+	public TreeValueExpression(TreeStore store, FunctionMapper functions, VariableMapper variables, TypeConverter converter, String expr, Class<?> type, int compilationThreshold) {
 		super();
 
 		Tree tree = store.get(expr);
@@ -67,6 +80,7 @@ public final class TreeValueExpression extends org.activiti.engine.impl.javax.el
 		this.type = type;
 		this.node = tree.getRoot();
 		this.deferred = tree.isDeferred();
+		this.compilationThreshold = compilationThreshold;
 		
 		if (type == null) {
 			throw new NullPointerException(LocalMessages.get("error.value.notype"));
@@ -111,9 +125,30 @@ public final class TreeValueExpression extends org.activiti.engine.impl.javax.el
    */
 	@Override
 	public Object getValue(ELContext context) throws ELException {
+		ExpressionCompiler.CompiledNode compiled = compiledNode;
+		if (compiled != null) {
+			return compiled.getValue(bindings, context, type);
+		}
+		if (compilationThreshold > 0 && ++evaluationCount >= compilationThreshold) {
+			return compile().getValue(bindings, context, type);
+		}
 		return node.getValue(bindings, context, type);
 	}
 
+	private synchronized ExpressionCompiler.CompiledNode compile() {
+		if (compiledNode == null) {
+			compiledNode = new ExpressionCompiler(bindings).compile(node);
+		}
+		return compiledNode;
+	}
+
+	/**
+	 * Whether the expression is evaluated by its compiled form instead of by interpreting the parse tree.
+	 */
+	public boolean isCompiled() {
+		return compiledNode != null;
+	}
+
 	/**
    * Evaluates the expression as an lvalue and determines if {@link #setValue(ELContext, Object)}
    * will always fail.
@@ -13,6 +13,10 @@
 
 package org.activiti.engine.impl.persistence;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
 import org.activiti.engine.impl.context.Context;
 import org.activiti.engine.impl.db.DbSqlSession;
@@ -57,6 +61,9 @@ import org.activiti.engine.impl.persistence.entity.VariableInstanceEntityManager
 
 public abstract class AbstractManager implements Session {
   
+  /** the number of ids passed to a single 'in' clause, Oracle doesn't accept more than 1000 */
+  protected static final int MAX_IDS_IN_CLAUSE = 1000;
+  
   public void insert(PersistentObject persistentObject) {
     getDbSqlSession().insert(persistentObject);
   }
@@ -77,6 +84,21 @@ public abstract class AbstractManager implements Session {
   protected DbSqlSession getDbSqlSession() {
     return getSession(DbSqlSession.class);
   }
+  
+  /**
+   * Executes a select with an 'in' clause on the given ids (the statement parameter), 
+   * in as many round trips as needed to stay within {@link #MAX_IDS_IN_CLAUSE}.
+   */
+  @SuppressWarnings("unchecked")
+  protected <T> List<T> selectListByIds(String statement, Collection<String> ids) {
+    List<String> idList = new ArrayList<String>(ids);
+    List<T> result = new ArrayList<T>();
+    for (int fromIndex = 0; fromIndex < idList.size(); fromIndex += MAX_IDS_IN_CLAUSE) {
+      List<String> chunk = new ArrayList<String>(idList.subList(fromIndex, Math.min(fromIndex + MAX_IDS_IN_CLAUSE, idList.size())));
+      result.addAll(getDbSqlSession().selectList(statement, chunk));
+    }
+    return result;
+  }
 
   protected <T> T getSession(Class<T> sessionClass) {
     return Context.getCommandContext().getSession(sessionClass);
@@ -0,0 +1,304 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.persistence.deploy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache implementation that never locks on reads: entries are kept in a {@link ConcurrentHashMap}.
+ * A read doesn't write any state shared by all readers: it stamps the entry as used after the latest add
+ * (and bumps the access count of the entry when the LFU policy is used) and counts the hit on a striped counter.
+ * Every add takes the next number of a sequence of the cache, so the order of adds and reads doesn't depend 
+ * on the resolution of a clock. Reads between the same two adds rank equal: among those, the entry added first is evicted first.
+ * 
+ * When a size limit and/or weight limit is set, the cache is trimmed after every {@link #add(String, Object)}
+ * by evicting the least recently used (or least frequently used) entries. 
+ * Since reads don't reorder anything, eviction is approximate: each victim is picked by a scan over all entries
+ * under the eviction lock. That is O(n) per evicted entry, with n bounded by the size limit when one is set.
+ * Adding happens only on deployment or cache miss and reads never wait for the lock, so this is kept off the hot path.
+ * 
+ * Hit, miss and eviction counters are kept and can be read at any time.
+ */
+public class ConcurrentDeploymentCache<T> implements DeploymentCache<T> {
+  
+  private static final Logger logger = LoggerFactory.getLogger(ConcurrentDeploymentCache.class);
+  
+  public enum EvictionPolicy { LRU, LFU }
+  
+  protected ConcurrentMap<String, CacheEntry<T>> cache = new ConcurrentHashMap<String, CacheEntry<T>>();
+  
+  protected int limit;
+  protected long weightLimit;
+  protected DeploymentCacheWeigher<T> weigher;
+  protected EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+  
+  protected AtomicLong totalWeight = new AtomicLong();
+  
+  /** Numbers the adds; a read stamps its entry with the number of the next add */
+  protected AtomicLong addSequence = new AtomicLong();
+  
+  protected StripedCounter hitCount = new StripedCounter();
+  protected AtomicLong missCount = new AtomicLong();
+  protected AtomicLong evictionCount = new AtomicLong();
+  
+  protected final Object evictionLock = new Object();
+  
+  /** Cache with no limit */
+  public ConcurrentDeploymentCache() {
+    this(-1);
+  }
+  
+  /** Cache which keeps at most 'limit' elements. */
+  public ConcurrentDeploymentCache(int limit) {
+    this(limit, -1, null);
+  }
+  
+  /** 
+   * Cache which keeps at most 'limit' elements and for which the sum of all weights, 
+   * as calculated by the given weigher, doesn't exceed the 'weightLimit'. 
+   * A value smaller than or equal to zero means no limit.
+   */
+  public ConcurrentDeploymentCache(int limit, long weightLimit, DeploymentCacheWeigher<T> weigher) {
+    this.limit = limit;
+    this.weightLimit = weightLimit;
+    this.weigher = weigher;
+  }
+  
+  public T get(String id) {
+    CacheEntry<T> entry = cache.get(id);
+    if (entry == null) {
+      missCount.incrementAndGet();
+      return null;
+    }
+    hitCount.increment();
+    entry.lastAccess = addSequence.get() + 1;
+    if (evictionPolicy == EvictionPolicy.LFU) {
+      entry.accessCount.incrementAndGet();
+    }
+    return entry.value;
+  }
+  
+  public void add(String id, T obj) {
+    CacheEntry<T> entry = new CacheEntry<T>(obj, weigh(id, obj), addSequence.incrementAndGet());
+    CacheEntry<T> previous = cache.put(id, entry);
+    totalWeight.addAndGet(entry.weight);
+    if (previous != null) {
+      totalWeight.addAndGet(-previous.weight);
+    }
+    if (isLimited()) {
+      evictIfNeeded(id);
+    }
+  }
+  
+  public void remove(String id) {
+    CacheEntry<T> previous = cache.remove(id);
+    if (previous != null) {
+      totalWeight.addAndGet(-previous.weight);
+    }
+  }
+  
+  public void clear() {
+    cache.clear();
+    totalWeight.set(0);
+  }
+  
+  protected int weigh(String id, T obj) {
+    if (weigher == null) {
+      return 1;
+    }
+    return Math.max(1, weigher.weigh(id, obj));
+  }
+  
+  protected boolean isLimited() {
+    return limit > 0 || (weightLimit > 0 && weigher != null);
+  }
+  
+  protected boolean isOverLimit() {
+    return (limit > 0 && cache.size() > limit) 
+        || (weightLimit > 0 && weigher != null && totalWeight.get() > weightLimit);
+  }
+  
+  /**
+   * Evicts entries until the cache is within its limits again. 
+   * The entry that was just added is only evicted when it is the last one left, 
+   * which only happens when it is heavier than the weight limit by itself.
+   */
+  protected void evictIfNeeded(String addedId) {
+    synchronized (evictionLock) {
+      while (isOverLimit() && cache.size() > 1) {
+        String victimId = findEvictionCandidate(addedId);
+        if (victimId == null) {
+          break;
+        }
+        CacheEntry<T> victim = cache.remove(victimId);
+        if (victim != null) {
+          totalWeight.addAndGet(-victim.weight);
+          evictionCount.incrementAndGet();
+          logger.trace("Cache limit is reached, {} will be evicted", victimId);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Scans all entries for the least recently (or least frequently) used one. 
+   * Only called from {@link #evictIfNeeded(String)}, while holding the eviction lock.
+   */
+  protected String findEvictionCandidate(String excludedId) {
+    String candidateId = null;
+    CacheEntry<T> candidate = null;
+    for (Map.Entry<String, CacheEntry<T>> mapEntry : cache.entrySet()) {
+      if (mapEntry.getKey().equals(excludedId)) {
+        continue;
+      }
+      CacheEntry<T> entry = mapEntry.getValue();
+      if (candidate == null || isBetterEvictionCandidate(entry, candidate)) {
+        candidateId = mapEntry.getKey();
+        candidate = entry;
+      }
+    }
+    return candidateId;
+  }
+  
+  protected boolean isBetterEvictionCandidate(CacheEntry<T> entry, CacheEntry<T> current) {
+    if (evictionPolicy == EvictionPolicy.LFU) {
+      int entryCount = entry.accessCount.get();
+      int currentCount = current.accessCount.get();
+      if (entryCount != currentCount) {
+        return entryCount < currentCount;
+      }
+    }
+    if (entry.lastAccess != current.lastAccess) {
+      return entry.lastAccess < current.lastAccess;
+    }
+    return entry.added < current.added;
+  }
+  
+  // For testing purposes only
+  public int size() {
+    return cache.size();
+  }
+  
+  // Statistics ///////////////////////////////////////////////////////////////
+  
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+  
+  public long getMissCount() {
+    return missCount.get();
+  }
+  
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+  
+  public long getTotalWeight() {
+    return totalWeight.get();
+  }
+  
+  public void resetStatistics() {
+    hitCount.reset();
+    missCount.set(0);
+    evictionCount.set(0);
+  }
+  
+  // Getters and setters //////////////////////////////////////////////////////
+  
+  public int getLimit() {
+    return limit;
+  }
+  
+  public long getWeightLimit() {
+    return weightLimit;
+  }
+  
+  public DeploymentCacheWeigher<T> getWeigher() {
+    return weigher;
+  }
+  
+  public EvictionPolicy getEvictionPolicy() {
+    return evictionPolicy;
+  }
+  
+  public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+    this.evictionPolicy = evictionPolicy;
+  }
+  
+  /**
+   * Counter that spreads increments over padded slots picked by thread id, 
+   * so concurrent readers don't all write the same cache line. Reading it sums the slots.
+   */
+  protected static class StripedCounter {
+    
+    // one slot per 64 byte cache line
+    protected static final int PADDING = 8;
+    
+    protected final int mask;
+    protected final AtomicLongArray slots;
+    
+    public StripedCounter() {
+      int stripes = 1;
+      while (stripes < Runtime.getRuntime().availableProcessors() * 2) {
+        stripes <<= 1;
+      }
+      this.mask = stripes - 1;
+      this.slots = new AtomicLongArray(stripes * PADDING);
+    }
+    
+    public void increment() {
+      slots.incrementAndGet(((int) Thread.currentThread().getId() & mask) * PADDING);
+    }
+    
+    public long sum() {
+      long sum = 0;
+      for (int i = 0; i < slots.length(); i += PADDING) {
+        sum += slots.get(i);
+      }
+      return sum;
+    }
+    
+    public void reset() {
+      for (int i = 0; i < slots.length(); i += PADDING) {
+        slots.set(i, 0);
+      }
+    }
+    
+  }
+  
+  protected static class CacheEntry<T> {
+    
+    protected final T value;
+    protected final int weight;
+    protected final long added;
+    protected volatile long lastAccess;
+    protected final AtomicInteger accessCount = new AtomicInteger();
+    
+    public CacheEntry(T value, int weight, long added) {
+      this.value = value;
+      this.weight = weight;
+      this.added = added;
+      this.lastAccess = added;
+    }
+    
+  }
+  
+}
@@ -0,0 +1,26 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.persistence.deploy;
+
+/**
+ * Calculates the relative weight of a cached object, 
+ * used by a {@link ConcurrentDeploymentCache} that has a weight limit.
+ */
+public interface DeploymentCacheWeigher<T> {
+
+  /**
+   * @return the weight of the given object, should be at least 1.
+   */
+  int weigh(String id, T object);
+  
+}
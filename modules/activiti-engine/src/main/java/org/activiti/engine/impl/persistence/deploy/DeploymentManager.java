@@ -14,8 +14,10 @@
 package org.activiti.engine.impl.persistence.deploy;
 
 import java.io.InputStream;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.activiti.bpmn.converter.BpmnXMLConverter;
 import org.activiti.bpmn.model.BpmnModel;
@@ -27,10 +29,13 @@ import org.activiti.engine.delegate.event.ActivitiEventType;
 import org.activiti.engine.delegate.event.impl.ActivitiEventBuilder;
 import org.activiti.engine.impl.ProcessDefinitionQueryImpl;
 import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.interceptor.CommandContext;
 import org.activiti.engine.impl.persistence.entity.*;
 import org.activiti.engine.impl.util.io.BytesStreamSource;
 import org.activiti.engine.repository.Deployment;
 import org.activiti.engine.repository.ProcessDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 /**
@@ -40,13 +45,22 @@ import org.activiti.engine.repository.ProcessDefinition;
  * 部署管理器类
  */
 public class DeploymentManager {
+  
+  private static final Logger log = LoggerFactory.getLogger(DeploymentManager.class);
+  
+  protected static final String DEPLOYMENTS_CHANGED_ATTRIBUTE = "deploymentsChanged";
 
   protected DeploymentCache<ProcessDefinitionEntity> processDefinitionCache;
   protected DeploymentCache<BpmnModel> bpmnModelCache;
   protected ProcessDefinitionInfoCache processDefinitionInfoCache;
   protected DeploymentCache<Object> knowledgeBaseCache; // Needs to be object to avoid an import to Drools in this core class
+  protected LatestProcessDefinitionCache latestProcessDefinitionCache;
   protected List<Deployer> deployers;
   
+  /** Process definitions resolved after a cache miss, and the total time spent on that */
+  protected final AtomicLong coldResolveCount = new AtomicLong();
+  protected final AtomicLong coldResolveTimeInNanos = new AtomicLong();
+  
   public void deploy(DeploymentEntity deployment) {
     deploy(deployment, null);
   }
@@ -154,7 +168,13 @@ public class DeploymentManager {
   }
   
   public ProcessDefinitionEntity findDeployedLatestProcessDefinitionByKey(String processDefinitionKey) {
-    ProcessDefinitionEntity processDefinition = Context
+    String deploymentVersion = getCurrentDeploymentVersion();
+    ProcessDefinitionEntity processDefinition = findCachedLatestProcessDefinition(processDefinitionKey, null, deploymentVersion);
+    if (processDefinition != null) {
+      return processDefinition;
+    }
+    
+    processDefinition = Context
       .getCommandContext()
       .getProcessDefinitionEntityManager()
       .findLatestProcessDefinitionByKey(processDefinitionKey);
@@ -163,11 +183,20 @@ public class DeploymentManager {
       throw new ActivitiObjectNotFoundException("no processes deployed with key '"+processDefinitionKey+"'", ProcessDefinition.class);
     }
     processDefinition = resolveProcessDefinition(processDefinition);
+    if (deploymentVersion != null) {
+      latestProcessDefinitionCache.add(processDefinitionKey, null, deploymentVersion, processDefinition.getId());
+    }
     return processDefinition;
   }
 
   public ProcessDefinitionEntity findDeployedLatestProcessDefinitionByKeyAndTenantId(String processDefinitionKey, String tenantId) {
-    ProcessDefinitionEntity processDefinition = Context
+    String deploymentVersion = getCurrentDeploymentVersion();
+    ProcessDefinitionEntity processDefinition = findCachedLatestProcessDefinition(processDefinitionKey, tenantId, deploymentVersion);
+    if (processDefinition != null) {
+      return processDefinition;
+    }
+    
+    processDefinition = Context
       .getCommandContext()
       .getProcessDefinitionEntityManager()
       .findLatestProcessDefinitionByKeyAndTenantId(processDefinitionKey, tenantId);
@@ -175,8 +204,53 @@ public class DeploymentManager {
       throw new ActivitiObjectNotFoundException("no processes deployed with key '"+processDefinitionKey+"' for tenant identifier '" + tenantId + "'", ProcessDefinition.class);
     }
     processDefinition = resolveProcessDefinition(processDefinition);
+    if (deploymentVersion != null) {
+      latestProcessDefinitionCache.add(processDefinitionKey, tenantId, deploymentVersion, processDefinition.getId());
+    }
     return processDefinition;
   }
+  
+  protected ProcessDefinitionEntity findCachedLatestProcessDefinition(String processDefinitionKey, String tenantId, String deploymentVersion) {
+    if (deploymentVersion == null) {
+      return null;
+    }
+    String processDefinitionId = latestProcessDefinitionCache.get(processDefinitionKey, tenantId, deploymentVersion);
+    if (processDefinitionId == null) {
+      return null;
+    }
+    return findDeployedProcessDefinitionById(processDefinitionId);
+  }
+  
+  /** 
+   * The deployment version the latest process definitions can be cached for, 
+   * or null when they can't be taken from the cache, as the deployed process definitions changed in the current transaction
+   * (or the schema has no deployment version).
+   */
+  protected String getCurrentDeploymentVersion() {
+    if (latestProcessDefinitionCache == null) {
+      return null;
+    }
+    CommandContext commandContext = Context.getCommandContext();
+    if (commandContext.getAttribute(DEPLOYMENTS_CHANGED_ATTRIBUTE) != null) {
+      return null;
+    }
+    PropertyEntity property = commandContext.getPropertyEntityManager().findPropertyById(LatestProcessDefinitionCache.DEPLOYMENT_VERSION_PROPERTY);
+    return property != null ? property.getValue() : null;
+  }
+  
+  /**
+   * Writes a new deployment version, so no engine on this database keeps using its cached latest process definitions.
+   * To be called for every change of the deployed process definitions (a deployment, a removal, a tenant change).
+   */
+  public void updateDeploymentVersion() {
+    CommandContext commandContext = Context.getCommandContext();
+    commandContext.addAttribute(DEPLOYMENTS_CHANGED_ATTRIBUTE, Boolean.TRUE);
+    
+    // an update without revision check: concurrent deployments don't fail with an optimistic locking exception
+    PropertyEntity property = new PropertyEntity(LatestProcessDefinitionCache.DEPLOYMENT_VERSION_PROPERTY, 
+        Context.getProcessEngineConfiguration().getIdGenerator().getNextId());
+    commandContext.getDbSqlSession().update("updatePropertyValue", property);
+  }
 
   public ProcessDefinitionEntity findDeployedProcessDefinitionByKeyAndVersion(String processDefinitionKey, Integer processDefinitionVersion) {
     ProcessDefinitionEntity processDefinition = (ProcessDefinitionEntity) Context
@@ -212,8 +286,10 @@ public class DeploymentManager {
     String processDefinitionId = processDefinition.getId();
     String deploymentId = processDefinition.getDeploymentId();
     //根据id 从 缓存中获取值
+    String resourceName = processDefinition.getResourceName();
     processDefinition = processDefinitionCache.get(processDefinitionId);
     if (processDefinition==null) {
+      long start = System.nanoTime();
       //首先获取 CommandContext对象 然后通过该对象获取 DeploymentEntityManager对象
 //      最终通过DeploymentEntityManager 对象 获取 DeploymentEntity对象
 //
@@ -223,8 +299,13 @@ public class DeploymentManager {
         .findDeploymentById(deploymentId);
       //设置 isNew 为fasle
       deployment.setNew(false);
-      //部署流程文档
-      deploy(deployment, null);
+      //部署流程文档: only the resource of the process definition, not the other resources of the deployment
+      deploy(createResourceDeployment(deployment, resourceName), null);
+      
+      long time = System.nanoTime() - start;
+      coldResolveCount.incrementAndGet();
+      coldResolveTimeInNanos.addAndGet(time);
+      log.debug("Resolved process definition {} in {} ms", processDefinitionId, time / 1000000L);
       /*
       为了确保 ProcessDefinitionEntity 对象已经被成功添加到缓存中
       因为流程文档部署涉及了 元素解析 以及对象解析
@@ -239,6 +320,35 @@ public class DeploymentManager {
     return processDefinition;
   }
   
+  /**
+   * A copy of the given deployment with only the given resource, so resolving a process definition 
+   * doesn't parse (and cache) all other process definitions of the deployment.
+   * The deployment itself when the resource isn't known.
+   */
+  protected DeploymentEntity createResourceDeployment(DeploymentEntity deployment, String resourceName) {
+    if (resourceName == null) {
+      return deployment;
+    }
+    ResourceEntity resource = Context.getCommandContext()
+        .getResourceEntityManager()
+        .findResourceByDeploymentIdAndResourceName(deployment.getId(), resourceName);
+    if (resource == null) {
+      return deployment;
+    }
+    
+    DeploymentEntity resourceDeployment = new DeploymentEntity();
+    resourceDeployment.setId(deployment.getId());
+    resourceDeployment.setName(deployment.getName());
+    resourceDeployment.setCategory(deployment.getCategory());
+    resourceDeployment.setTenantId(deployment.getTenantId());
+    resourceDeployment.setDeploymentTime(deployment.getDeploymentTime());
+    resourceDeployment.setNew(false);
+    Map<String, ResourceEntity> resources = new HashMap<String, ResourceEntity>();
+    resources.put(resourceName, resource);
+    resourceDeployment.setResources(resources);
+    return resourceDeployment;
+  }
+  
   public void removeDeployment(String deploymentId, boolean cascade) {
 	  DeploymentEntityManager deploymentEntityManager = Context
 			  .getCommandContext()
@@ -275,6 +385,9 @@ public class DeploymentManager {
     for (ProcessDefinition processDefinition : processDefinitions) {
       processDefinitionCache.remove(processDefinition.getId());
     }
+    if (!processDefinitions.isEmpty()) {
+      updateDeploymentVersion();
+    }
   }
   
   // getters and setters //////////////////////////////////////////////////////
@@ -319,4 +432,22 @@ public class DeploymentManager {
     this.knowledgeBaseCache = knowledgeBaseCache;
   }
   
+  /** The number of process definitions resolved after a cache miss */
+  public long getColdResolveCount() {
+    return coldResolveCount.get();
+  }
+  
+  /** The total time spent on resolving process definitions after a cache miss */
+  public long getColdResolveTimeInMillis() {
+    return coldResolveTimeInNanos.get() / 1000000L;
+  }
+  
+  public LatestProcessDefinitionCache getLatestProcessDefinitionCache() {
+    return latestProcessDefinitionCache;
+  }
+
+  public void setLatestProcessDefinitionCache(LatestProcessDefinitionCache latestProcessDefinitionCache) {
+    this.latestProcessDefinitionCache = latestProcessDefinitionCache;
+  }
+  
 }
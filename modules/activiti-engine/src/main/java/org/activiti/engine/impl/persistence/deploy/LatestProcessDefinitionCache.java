@@ -0,0 +1,93 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.persistence.deploy;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Ids of the latest process definitions by key (and tenant), so process instances can be started by key
+ * without querying the latest version.
+ *
+ * Every change of the deployed process definitions writes a new value in the {@link #DEPLOYMENT_VERSION_PROPERTY} property.
+ * The cached ids are only used while that deployment version is unchanged, which also covers deployments by other engines
+ * on the same database.
+ */
+public class LatestProcessDefinitionCache {
+
+  public static final String DEPLOYMENT_VERSION_PROPERTY = "deployment.version";
+
+  protected volatile Entries entries = new Entries("");
+
+  /** The id of the latest process definition with the given key (and tenant, null when looked up by key only), if cached for the given deployment version */
+  public String get(String processDefinitionKey, String tenantId, String deploymentVersion) {
+    Entries currentEntries = entries;
+    if (!currentEntries.deploymentVersion.equals(deploymentVersion)) {
+      return null;
+    }
+    return currentEntries.processDefinitionIds.get(new Key(processDefinitionKey, tenantId));
+  }
+
+  /** Caches the latest process definition found for the given deployment version, dropping the ids cached for other versions */
+  public void add(String processDefinitionKey, String tenantId, String deploymentVersion, String processDefinitionId) {
+    Entries currentEntries = entries;
+    if (!currentEntries.deploymentVersion.equals(deploymentVersion)) {
+      currentEntries = new Entries(deploymentVersion);
+      entries = currentEntries;
+    }
+    currentEntries.processDefinitionIds.put(new Key(processDefinitionKey, tenantId), processDefinitionId);
+  }
+
+  public void clear() {
+    entries = new Entries("");
+  }
+
+  public int size() {
+    return entries.processDefinitionIds.size();
+  }
+
+  /** The ids cached for one deployment version, replaced as a whole when the version changes */
+  protected static class Entries {
+
+    protected final String deploymentVersion;
+    protected final ConcurrentMap<Key, String> processDefinitionIds = new ConcurrentHashMap<Key, String>();
+
+    public Entries(String deploymentVersion) {
+      this.deploymentVersion = deploymentVersion;
+    }
+  }
+
+  protected static class Key {
+
+    protected final String processDefinitionKey;
+    protected final String tenantId;
+
+    public Key(String processDefinitionKey, String tenantId) {
+      this.processDefinitionKey = processDefinitionKey;
+      this.tenantId = tenantId;
+    }
+
+    public int hashCode() {
+      return 31 * processDefinitionKey.hashCode() + (tenantId != null ? tenantId.hashCode() : 0);
+    }
+
+    public boolean equals(Object object) {
+      if (!(object instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) object;
+      return processDefinitionKey.equals(other.processDefinitionKey)
+          && (tenantId != null ? tenantId.equals(other.tenantId) : other.tenantId == null);
+    }
+  }
+}
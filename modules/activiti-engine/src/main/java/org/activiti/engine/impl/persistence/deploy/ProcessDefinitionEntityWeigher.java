@@ -0,0 +1,39 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.persistence.deploy;
+
+import org.activiti.engine.impl.persistence.entity.ProcessDefinitionEntity;
+import org.activiti.engine.impl.pvm.process.ActivityImpl;
+import org.activiti.engine.impl.pvm.process.ScopeImpl;
+
+/**
+ * Weighs a {@link ProcessDefinitionEntity} by the size of its activity graph:
+ * one unit for the definition itself, plus one for every (nested) activity and every outgoing transition.
+ */
+public class ProcessDefinitionEntityWeigher implements DeploymentCacheWeigher<ProcessDefinitionEntity> {
+
+  @Override
+  public int weigh(String id, ProcessDefinitionEntity processDefinition) {
+    return 1 + weighScope(processDefinition);
+  }
+  
+  protected int weighScope(ScopeImpl scope) {
+    int weight = 0;
+    for (ActivityImpl activity : scope.getActivities()) {
+      weight += 1 + activity.getOutgoingTransitions().size();
+      weight += weighScope(activity);
+    }
+    return weight;
+  }
+  
+}
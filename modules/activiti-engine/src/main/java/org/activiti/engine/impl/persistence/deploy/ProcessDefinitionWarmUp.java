@@ -0,0 +1,105 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.persistence.deploy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.interceptor.CommandExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves the latest process definitions with the given keys in parallel,
+ * so the first process instances started after booting the engine don't have to parse them.
+ * Each process definition is resolved in its own transaction:
+ * a process definition that can't be resolved is logged and doesn't prevent the others from being resolved.
+ */
+public class ProcessDefinitionWarmUp {
+
+  private static final Logger log = LoggerFactory.getLogger(ProcessDefinitionWarmUp.class);
+
+  protected CommandExecutor commandExecutor;
+  protected int poolSize;
+
+  public ProcessDefinitionWarmUp(CommandExecutor commandExecutor, int poolSize) {
+    this.commandExecutor = commandExecutor;
+    this.poolSize = poolSize;
+  }
+
+  /** Returns the number of process definitions that were resolved */
+  public int warmUp(Collection<String> processDefinitionKeys) {
+    if (processDefinitionKeys == null || processDefinitionKeys.isEmpty()) {
+      return 0;
+    }
+
+    long start = System.currentTimeMillis();
+    ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(poolSize, processDefinitionKeys.size())));
+    try {
+      List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+      for (String processDefinitionKey : processDefinitionKeys) {
+        results.add(executorService.submit(new WarmUpTask(processDefinitionKey)));
+      }
+
+      int resolved = 0;
+      for (Future<Boolean> result : results) {
+        if (result.get()) {
+          resolved++;
+        }
+      }
+      log.info("Resolved {} of {} process definitions in {} ms", resolved, processDefinitionKeys.size(), System.currentTimeMillis() - start);
+      return resolved;
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ActivitiException("Interrupted while resolving process definitions", e);
+    } catch (ExecutionException e) {
+      throw new ActivitiException("Could not resolve process definitions", e.getCause());
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  protected class WarmUpTask implements Callable<Boolean> {
+
+    protected String processDefinitionKey;
+
+    public WarmUpTask(String processDefinitionKey) {
+      this.processDefinitionKey = processDefinitionKey;
+    }
+
+    public Boolean call() {
+      try {
+        commandExecutor.execute(new Command<Void>() {
+          public Void execute(CommandContext commandContext) {
+            commandContext.getProcessEngineConfiguration().getDeploymentManager().findDeployedLatestProcessDefinitionByKey(processDefinitionKey);
+            return null;
+          }
+        });
+        return true;
+      } catch (RuntimeException e) {
+        log.warn("Could not resolve process definition with key " + processDefinitionKey, e);
+        return false;
+      }
+    }
+  }
+}
@@ -136,6 +136,7 @@ public class DeploymentEntityManager extends AbstractManager {
     	      for (TimerDeclarationImpl timerDeclaration : timerDeclarations) {
     	        TimerEntity timer = timerDeclaration.prepareTimerEntity(null);
     	        timer.setProcessDefinitionId(previousProcessDefinition.getId());
+    	        timer.setPriority(resolvedProcessDefinition.resolveJobPriority());
     	        
     	        if (previousProcessDefinition.getTenantId() != null) {
     	        	timer.setTenantId(previousProcessDefinition.getTenantId());
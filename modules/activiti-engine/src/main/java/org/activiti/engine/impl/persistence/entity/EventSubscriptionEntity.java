@@ -94,6 +94,9 @@ public abstract class EventSubscriptionEntity implements PersistentObject, HasRe
     message.setJobHandlerType(ProcessEventJobHandler.TYPE);
     message.setJobHandlerConfiguration(id);
     message.setTenantId(getTenantId());
+    if (getExecution() != null) {
+      message.setPriority(getExecution().resolveJobPriority(null));
+    }
     
     GregorianCalendar expireCal = new GregorianCalendar();
     ProcessEngineConfiguration processEngineConfig = Context.getCommandContext().getProcessEngineConfiguration();
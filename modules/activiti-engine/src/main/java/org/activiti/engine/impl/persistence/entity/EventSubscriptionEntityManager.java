@@ -157,6 +157,12 @@ public class EventSubscriptionEntityManager extends AbstractManager {
     return getDbSqlSession().selectList(query, executionId);    
   }
   
+  @SuppressWarnings("unchecked")
+  public List<EventSubscriptionEntity> findEventSubscriptionsByProcessInstance(String processInstanceId) {
+    final String query = "selectEventSubscriptionsByProcessInstance";    
+    return getDbSqlSession().selectList(query, processInstanceId);    
+  }
+  
   public List<EventSubscriptionEntity> findEventSubscriptions(String executionId, String type, String activityId) {
     final String query = "selectEventSubscriptionsByExecutionTypeAndActivity";    
     Map<String,String> params = new HashMap<String, String>();
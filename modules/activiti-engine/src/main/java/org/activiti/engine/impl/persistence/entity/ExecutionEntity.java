@@ -25,12 +25,15 @@ import java.util.Map;
 import org.activiti.engine.ActivitiException;
 import org.activiti.engine.EngineServices;
 import org.activiti.engine.ProcessEngineConfiguration;
+import org.activiti.engine.delegate.Expression;
 import org.activiti.engine.delegate.event.ActivitiEventType;
 import org.activiti.engine.delegate.event.impl.ActivitiEventBuilder;
+import org.activiti.engine.delegate.event.impl.ActivitiEventDispatcherImpl;
 import org.activiti.engine.impl.bpmn.behavior.MultiInstanceActivityBehavior;
 import org.activiti.engine.impl.bpmn.behavior.UserTaskActivityBehavior;
 import org.activiti.engine.impl.bpmn.parser.BpmnParse;
 import org.activiti.engine.impl.bpmn.parser.EventSubscriptionDeclaration;
+import org.activiti.engine.impl.bpmn.parser.handler.AbstractBpmnParseHandler;
 import org.activiti.engine.impl.context.Context;
 import org.activiti.engine.impl.db.DbSqlSession;
 import org.activiti.engine.impl.db.HasRevision;
@@ -434,7 +437,7 @@ public class ExecutionEntity extends VariableScopeImpl implements ActivityExecut
       				&& ((MultiInstanceActivityBehavior) activityBehavior).getInnerActivityBehavior() instanceof UserTaskActivityBehavior);
       
       if(!isUserTask && Context.getProcessEngineConfiguration() != null 
-      		&& Context.getProcessEngineConfiguration().getEventDispatcher().isEnabled()) {
+      		&& ActivitiEventDispatcherImpl.hasListeners(Context.getProcessEngineConfiguration().getEventDispatcher(), ActivitiEventType.ACTIVITY_SIGNALED)) {
       	Context.getProcessEngineConfiguration().getEventDispatcher().dispatchEvent(ActivitiEventBuilder.createSignalEvent(
       		ActivitiEventType.ACTIVITY_SIGNALED, signalledActivityId, signalName, signalData, this.id, this.processInstanceId, this.processDefinitionId));
       }
@@ -622,7 +625,7 @@ public class ExecutionEntity extends VariableScopeImpl implements ActivityExecut
   }
 
 	protected void fireActivityCompletedEvent() {
-	  if(Context.getProcessEngineConfiguration() != null && Context.getProcessEngineConfiguration().getEventDispatcher().isEnabled()) {
+	  if(Context.getProcessEngineConfiguration() != null && ActivitiEventDispatcherImpl.hasListeners(Context.getProcessEngineConfiguration().getEventDispatcher(), ActivitiEventType.ACTIVITY_COMPLETED)) {
     	Context.getProcessEngineConfiguration().getEventDispatcher().dispatchEvent(
     			ActivitiEventBuilder.createActivityEvent(ActivitiEventType.ACTIVITY_COMPLETED, 
     					getActivity() != null ? getActivity().getId() : getActivityId(), 
@@ -700,6 +703,7 @@ public class ExecutionEntity extends VariableScopeImpl implements ActivityExecut
     //填充属性值  executionId ,processInstanceId, processDefinitionId
     message.setExecution(this);
     message.setExclusive(getActivity().isExclusive());
+    message.setPriority(resolveJobPriority(getActivity()));
     message.setJobHandlerType(AsyncContinuationJobHandler.TYPE);
     // At the moment, only AtomicOperationTransitionCreateScope can be performed asynchronously,
     // so there is no need to pass it to the handler
@@ -725,6 +729,21 @@ public class ExecutionEntity extends VariableScopeImpl implements ActivityExecut
       .send(message);
   }
 
+  /**
+   * The priority of a job created for this execution: the activiti:jobPriority of the given activity,
+   * or else the one of the process definition, or else {@link Job#DEFAULT_PRIORITY}.
+   */
+  public int resolveJobPriority(ActivityImpl activity) {
+    Expression jobPriorityExpression = null;
+    if (activity != null) {
+      jobPriorityExpression = (Expression) activity.getProperty(AbstractBpmnParseHandler.PROPERTYNAME_JOB_PRIORITY);
+    }
+    if (jobPriorityExpression == null && getProcessDefinition() != null) {
+      jobPriorityExpression = (Expression) getProcessDefinition().getProperty(AbstractBpmnParseHandler.PROPERTYNAME_JOB_PRIORITY);
+    }
+    return JobEntity.resolvePriority(jobPriorityExpression, this);
+  }
+
   public boolean isActive(String activityId) {
     return findExecution(activityId)!=null;
   }
@@ -755,6 +774,33 @@ public class ExecutionEntity extends VariableScopeImpl implements ActivityExecut
     this.executions = executions;
   }
   
+  /** assigns the relations that were loaded in bulk for the whole process instance, 
+   * leaving the ones that were already initialized untouched. */
+  public void initializePrefetchedRelations(List<ExecutionEntity> childExecutions, List<TaskEntity> prefetchedTasks, 
+          List<JobEntity> prefetchedJobs, List<EventSubscriptionEntity> prefetchedEventSubscriptions, 
+          List<VariableInstanceEntity> prefetchedVariableInstances) {
+    if (executions == null) {
+      executions = childExecutions != null ? childExecutions : new ArrayList<ExecutionEntity>();
+    }
+    if (tasks == null) {
+      tasks = prefetchedTasks != null ? prefetchedTasks : new ArrayList<TaskEntity>();
+    }
+    if (jobs == null) {
+      jobs = prefetchedJobs != null ? prefetchedJobs : new ArrayList<JobEntity>();
+    }
+    if (eventSubscriptions == null) {
+      eventSubscriptions = prefetchedEventSubscriptions != null ? prefetchedEventSubscriptions : new ArrayList<EventSubscriptionEntity>();
+    }
+    if (variableInstances == null) {
+      variableInstances = new HashMap<String, VariableInstanceEntity>();
+      if (prefetchedVariableInstances != null) {
+        for (VariableInstanceEntity variableInstance : prefetchedVariableInstances) {
+          variableInstances.put(variableInstance.getName(), variableInstance);
+        }
+      }
+    }
+  }
+  
   /** searches for an execution positioned in the given activity */
   public ExecutionEntity findExecution(String activityId) {
     if ( (getActivity()!=null)
@@ -1023,6 +1069,9 @@ public class ExecutionEntity extends VariableScopeImpl implements ActivityExecut
   // customized persistence behaviour /////////////////////////////////////////
 
   public void remove() {
+    if (isScope) {
+      Context.getCommandContext().getExecutionEntityManager().prefetchProcessInstanceTree(this);
+    }
     ensureParentInitialized();
     if (parent!=null) {
       parent.ensureExecutionsInitialized();
@@ -1244,7 +1293,7 @@ public class ExecutionEntity extends VariableScopeImpl implements ActivityExecut
     VariableInstanceEntity result = super.createVariableInstance(variableName, value, sourceActivityExecution);
     
     // Dispatch event, if needed
-    if(Context.getProcessEngineConfiguration() != null && Context.getProcessEngineConfiguration().getEventDispatcher().isEnabled()) {
+    if(Context.getProcessEngineConfiguration() != null && ActivitiEventDispatcherImpl.hasListeners(Context.getProcessEngineConfiguration().getEventDispatcher(), ActivitiEventType.VARIABLE_CREATED)) {
   		Context.getProcessEngineConfiguration().getEventDispatcher().dispatchEvent(
   				ActivitiEventBuilder.createVariableEvent(ActivitiEventType.VARIABLE_CREATED, variableName, value, result.getType(), result.getTaskId(), 
   						result.getExecutionId(), getProcessInstanceId(), getProcessDefinitionId()));
@@ -1258,7 +1307,7 @@ public class ExecutionEntity extends VariableScopeImpl implements ActivityExecut
     super.updateVariableInstance(variableInstance, value, sourceActivityExecution);
     
     // Dispatch event, if needed
-    if(Context.getProcessEngineConfiguration() != null && Context.getProcessEngineConfiguration().getEventDispatcher().isEnabled()) {
+    if(Context.getProcessEngineConfiguration() != null && ActivitiEventDispatcherImpl.hasListeners(Context.getProcessEngineConfiguration().getEventDispatcher(), ActivitiEventType.VARIABLE_UPDATED)) {
     	Context.getProcessEngineConfiguration().getEventDispatcher().dispatchEvent(
     			ActivitiEventBuilder.createVariableEvent(ActivitiEventType.VARIABLE_UPDATED, variableInstance.getName(), value, variableInstance.getType(), 
     					variableInstance.getTaskId(), variableInstance.getExecutionId(), getProcessInstanceId(), getProcessDefinitionId()));
@@ -1321,6 +1370,7 @@ public class ExecutionEntity extends VariableScopeImpl implements ActivityExecut
   }
   
   public void deleteCascade(String deleteReason) {
+    Context.getCommandContext().getExecutionEntityManager().prefetchProcessInstanceTree(this);
     this.deleteReason = deleteReason;
     this.deleteRoot = true;
     performOperation(AtomicOperation.DELETE_CASCADE);
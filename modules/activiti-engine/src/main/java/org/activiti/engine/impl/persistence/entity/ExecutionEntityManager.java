@@ -13,13 +13,16 @@
 
 package org.activiti.engine.impl.persistence.entity;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.activiti.engine.ActivitiObjectNotFoundException;
 import org.activiti.engine.ActivitiOptimisticLockingException;
@@ -27,6 +30,7 @@ import org.activiti.engine.delegate.event.impl.ActivitiEventBuilder;
 import org.activiti.engine.impl.ExecutionQueryImpl;
 import org.activiti.engine.impl.Page;
 import org.activiti.engine.impl.ProcessInstanceQueryImpl;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
 import org.activiti.engine.impl.context.Context;
 import org.activiti.engine.impl.interceptor.CommandContext;
 import org.activiti.engine.impl.persistence.AbstractManager;
@@ -39,6 +43,8 @@ import org.activiti.engine.runtime.ProcessInstance;
  */
 public class ExecutionEntityManager extends AbstractManager {
   
+  protected static final String PREFETCHED_PROCESS_INSTANCES_ATTRIBUTE = "prefetchedProcessInstances";
+  
   @SuppressWarnings("unchecked")
   public void deleteProcessInstancesByProcessDefinition(String processDefinitionId, String deleteReason, boolean cascade) {
     List<String> processInstanceIds = getDbSqlSession()
@@ -73,6 +79,8 @@ public class ExecutionEntityManager extends AbstractManager {
   private void deleteProcessInstanceCascade(ExecutionEntity execution, String deleteReason, boolean deleteHistory) {
     CommandContext commandContext = Context.getCommandContext();
     
+    prefetchProcessInstanceTree(execution);
+    
     ProcessInstanceQueryImpl processInstanceQuery = new ProcessInstanceQueryImpl(commandContext);
     List<ProcessInstance> subProcesses = processInstanceQuery.superProcessInstanceId(execution.getProcessInstanceId()).list();
     for (ProcessInstance subProcess : subProcesses) {
@@ -122,6 +130,87 @@ public class ExecutionEntityManager extends AbstractManager {
     return getDbSqlSession().selectById(ExecutionEntity.class, executionId);
   }
   
+  /**
+   * Loads all executions of the process instance of the given execution, together with their tasks, jobs, 
+   * event subscriptions and variables, with one query per table. The loaded entities end up in the 
+   * session cache and every execution that did not initialize a relation yet gets it assigned, 
+   * so walking the execution tree afterwards doesn't need a query per execution and relation.
+   * 
+   * Does nothing unless {@link ProcessEngineConfigurationImpl#isEnableExecutionTreePrefetch()} is set, 
+   * and a process instance is only prefetched once per command context.
+   */
+  public void prefetchProcessInstanceTree(ExecutionEntity execution) {
+    CommandContext commandContext = Context.getCommandContext();
+    if (!commandContext.getProcessEngineConfiguration().isEnableExecutionTreePrefetch()) {
+      return;
+    }
+    
+    // a process instance that was started in this command has nothing in the database yet
+    ExecutionEntity processInstance = execution.getProcessInstance();
+    if (processInstance == null || getDbSqlSession().isInserted(processInstance)) {
+      return;
+    }
+    String processInstanceId = processInstance.getId();
+    
+    @SuppressWarnings("unchecked")
+    Set<String> prefetchedProcessInstanceIds = (Set<String>) commandContext.getAttribute(PREFETCHED_PROCESS_INSTANCES_ATTRIBUTE);
+    if (prefetchedProcessInstanceIds == null) {
+      prefetchedProcessInstanceIds = new HashSet<String>();
+      commandContext.addAttribute(PREFETCHED_PROCESS_INSTANCES_ATTRIBUTE, prefetchedProcessInstanceIds);
+    }
+    if (!prefetchedProcessInstanceIds.add(processInstanceId)) {
+      return;
+    }
+    
+    List<ExecutionEntity> executions = findChildExecutionsByProcessInstanceId(processInstanceId);
+    if (executions.isEmpty()) {
+      return;
+    }
+    
+    Map<String, List<ExecutionEntity>> childExecutions = new HashMap<String, List<ExecutionEntity>>();
+    for (ExecutionEntity prefetchedExecution : executions) {
+      groupByExecutionId(childExecutions, prefetchedExecution.getParentId(), prefetchedExecution);
+    }
+    
+    Map<String, List<TaskEntity>> tasks = new HashMap<String, List<TaskEntity>>();
+    for (TaskEntity task : commandContext.getTaskEntityManager().findTasksByProcessInstanceId(processInstanceId)) {
+      groupByExecutionId(tasks, task.getExecutionId(), task);
+    }
+    
+    Map<String, List<JobEntity>> jobs = new HashMap<String, List<JobEntity>>();
+    for (JobEntity job : commandContext.getJobEntityManager().findJobsByProcessInstanceId(processInstanceId)) {
+      groupByExecutionId(jobs, job.getExecutionId(), job);
+    }
+    
+    Map<String, List<EventSubscriptionEntity>> eventSubscriptions = new HashMap<String, List<EventSubscriptionEntity>>();
+    for (EventSubscriptionEntity eventSubscription : commandContext.getEventSubscriptionEntityManager().findEventSubscriptionsByProcessInstance(processInstanceId)) {
+      groupByExecutionId(eventSubscriptions, eventSubscription.getExecutionId(), eventSubscription);
+    }
+    
+    Map<String, List<VariableInstanceEntity>> variableInstances = new HashMap<String, List<VariableInstanceEntity>>();
+    for (VariableInstanceEntity variableInstance : commandContext.getVariableInstanceEntityManager().findVariableInstancesByProcessInstanceId(processInstanceId)) {
+      groupByExecutionId(variableInstances, variableInstance.getExecutionId(), variableInstance);
+    }
+    
+    for (ExecutionEntity prefetchedExecution : executions) {
+      String executionId = prefetchedExecution.getId();
+      prefetchedExecution.initializePrefetchedRelations(childExecutions.get(executionId), tasks.get(executionId), 
+              jobs.get(executionId), eventSubscriptions.get(executionId), variableInstances.get(executionId));
+    }
+  }
+  
+  protected <T> void groupByExecutionId(Map<String, List<T>> entitiesByExecutionId, String executionId, T entity) {
+    if (executionId == null) {
+      return;
+    }
+    List<T> entities = entitiesByExecutionId.get(executionId);
+    if (entities == null) {
+      entities = new ArrayList<T>();
+      entitiesByExecutionId.put(executionId, entities);
+    }
+    entities.add(entity);
+  }
+  
   public long findExecutionCountByQueryCriteria(ExecutionQueryImpl executionQuery) {
     return (Long) getDbSqlSession().selectOne("selectExecutionCountByQueryCriteria", executionQuery);
   }
@@ -142,39 +231,23 @@ public class ExecutionEntityManager extends AbstractManager {
   
   @SuppressWarnings("unchecked")
   public List<ProcessInstance> findProcessInstanceAndVariablesByQueryCriteria(ProcessInstanceQueryImpl executionQuery) {
-    // paging doesn't work for combining process instances and variables due to an outer join, so doing it in-memory
+    // paging can't be done on the outer join with the variables, so the process instances are paged first and their variables fetched afterwards
     if (executionQuery.getFirstResult() < 0 || executionQuery.getMaxResults() <= 0) {
       return Collections.EMPTY_LIST;
     }
     
-    int firstResult = executionQuery.getFirstResult();
-    int maxResults = executionQuery.getMaxResults();
-    
-    // setting max results, limit to 20000 results for performance reasons
-    if (executionQuery.getProcessInstanceVariablesLimit() != null) {
-      executionQuery.setMaxResults(executionQuery.getProcessInstanceVariablesLimit());
-    } else {
-      executionQuery.setMaxResults(Context.getProcessEngineConfiguration().getExecutionQueryLimit());
+    // limit to 20000 results for performance reasons
+    int limit = executionQuery.getProcessInstanceVariablesLimit() != null ? executionQuery.getProcessInstanceVariablesLimit() 
+        : Context.getProcessEngineConfiguration().getExecutionQueryLimit();
+    if (executionQuery.getMaxResults() > limit) {
+      executionQuery.setMaxResults(limit);
     }
-    executionQuery.setFirstResult(0);
-    
-    List<ProcessInstance> instanceList = getDbSqlSession().selectListWithRawParameterWithoutFilter("selectProcessInstanceWithVariablesByQueryCriteria", 
-        executionQuery, executionQuery.getFirstResult(), executionQuery.getMaxResults());
     
-    if (instanceList != null && !instanceList.isEmpty()) {
-      if (firstResult > 0) {
-        if (firstResult <= instanceList.size()) {
-          int toIndex = firstResult + Math.min(maxResults, instanceList.size() - firstResult);
-          return instanceList.subList(firstResult, toIndex);
-        } else {
-          return Collections.EMPTY_LIST;
-        }
-      } else {
-        int toIndex = Math.min(maxResults, instanceList.size());
-        return instanceList.subList(0, toIndex);
-      }
+    List<ProcessInstance> processInstances = findProcessInstanceByQueryCriteria(executionQuery);
+    if (!processInstances.isEmpty()) {
+      getVariableInstanceManager().initializeQueryVariables(processInstances);
     }
-    return Collections.EMPTY_LIST;
+    return processInstances;
   }
 
   @SuppressWarnings("unchecked")
@@ -60,6 +60,7 @@ public class HistoricActivityInstanceEntity extends HistoricScopeInstanceEntity
   }
   public void setActivityId(String activityId) {
     this.activityId = activityId;
+    markDirty();
   }
 
   public String getActivityName() {
@@ -67,6 +68,7 @@ public class HistoricActivityInstanceEntity extends HistoricScopeInstanceEntity
   }
   public void setActivityName(String activityName) {
     this.activityName = activityName;
+    markDirty();
   }
 
   public String getActivityType() {
@@ -74,6 +76,7 @@ public class HistoricActivityInstanceEntity extends HistoricScopeInstanceEntity
   }
   public void setActivityType(String activityType) {
     this.activityType = activityType;
+    markDirty();
   }
   
   public String getExecutionId() {
@@ -81,6 +84,7 @@ public class HistoricActivityInstanceEntity extends HistoricScopeInstanceEntity
   }
   public void setExecutionId(String executionId) {
     this.executionId = executionId;
+    markDirty();
   }
   
   public String getAssignee() {
@@ -88,6 +92,7 @@ public class HistoricActivityInstanceEntity extends HistoricScopeInstanceEntity
   }
   public void setAssignee(String assignee) {
     this.assignee = assignee;
+    markDirty();
   }
 
   public String getTaskId() {
@@ -95,6 +100,7 @@ public class HistoricActivityInstanceEntity extends HistoricScopeInstanceEntity
   }
   public void setTaskId(String taskId) {
     this.taskId = taskId;
+    markDirty();
   }
 
   public String getCalledProcessInstanceId() {
@@ -102,6 +108,7 @@ public class HistoricActivityInstanceEntity extends HistoricScopeInstanceEntity
   }
   public void setCalledProcessInstanceId(String calledProcessInstanceId) {
     this.calledProcessInstanceId = calledProcessInstanceId;
+    markDirty();
   }
 
   public String getTenantId() {
@@ -110,6 +117,7 @@ public class HistoricActivityInstanceEntity extends HistoricScopeInstanceEntity
 
 	public void setTenantId(String tenantId) {
 		this.tenantId = tenantId;
+		markDirty();
 	}
 	
 	public Date getTime() {
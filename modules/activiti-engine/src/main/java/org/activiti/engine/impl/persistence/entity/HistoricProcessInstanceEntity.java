@@ -95,6 +95,7 @@ public class HistoricProcessInstanceEntity extends HistoricScopeInstanceEntity i
   }
   public void setEndActivityId(String endActivityId) {
     this.endActivityId = endActivityId;
+    markDirty();
   }
 
   public String getBusinessKey() {
@@ -102,6 +103,7 @@ public class HistoricProcessInstanceEntity extends HistoricScopeInstanceEntity i
   }
   public void setBusinessKey(String businessKey) {
     this.businessKey = businessKey;
+    markDirty();
   }
   
   public String getStartUserId() {
@@ -109,6 +111,7 @@ public class HistoricProcessInstanceEntity extends HistoricScopeInstanceEntity i
   }
   public void setStartUserId(String startUserId) {
     this.startUserId = startUserId;
+    markDirty();
   }
   
   public String getStartActivityId() {
@@ -116,6 +119,7 @@ public class HistoricProcessInstanceEntity extends HistoricScopeInstanceEntity i
   }
   public void setStartActivityId(String startUserId) {
     this.startActivityId = startUserId;
+    markDirty();
   }
   
   public String getSuperProcessInstanceId() {
@@ -123,6 +127,7 @@ public class HistoricProcessInstanceEntity extends HistoricScopeInstanceEntity i
   }
   public void setSuperProcessInstanceId(String superProcessInstanceId) {
     this.superProcessInstanceId = superProcessInstanceId;
+    markDirty();
   }
   
   public String getTenantId() {
@@ -131,6 +136,7 @@ public class HistoricProcessInstanceEntity extends HistoricScopeInstanceEntity i
 
 	public void setTenantId(String tenantId) {
 		this.tenantId = tenantId;
+		markDirty();
 	}
 	
 	public String getName() {
@@ -143,6 +149,7 @@ public class HistoricProcessInstanceEntity extends HistoricScopeInstanceEntity i
 
   public void setName(String name) {
     this.name = name;
+    markDirty();
   }
 
   public String getLocalizedName() {
@@ -163,6 +170,7 @@ public class HistoricProcessInstanceEntity extends HistoricScopeInstanceEntity i
   
   public void setDescription(String description) {
     this.description = description;
+    markDirty();
   }
   
   public String getLocalizedDescription() {
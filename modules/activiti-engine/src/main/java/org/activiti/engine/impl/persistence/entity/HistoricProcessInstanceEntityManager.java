@@ -110,38 +110,23 @@ public class HistoricProcessInstanceEntityManager extends AbstractManager {
   @SuppressWarnings("unchecked")
   public List<HistoricProcessInstance> findHistoricProcessInstancesAndVariablesByQueryCriteria(HistoricProcessInstanceQueryImpl historicProcessInstanceQuery) {
     if (getHistoryManager().isHistoryEnabled()) {
-      // paging doesn't work for combining process instances and variables due to an outer join, so doing it in-memory
+      // paging can't be done on the outer join with the variables, so the process instances are paged first and their variables fetched afterwards
       if (historicProcessInstanceQuery.getFirstResult() < 0 || historicProcessInstanceQuery.getMaxResults() <= 0) {
         return Collections.EMPTY_LIST;
       }
       
-      int firstResult = historicProcessInstanceQuery.getFirstResult();
-      int maxResults = historicProcessInstanceQuery.getMaxResults();
-      
-      // setting max results, limit to 20000 results for performance reasons
-      if (historicProcessInstanceQuery.getProcessInstanceVariablesLimit() != null) {
-        historicProcessInstanceQuery.setMaxResults(historicProcessInstanceQuery.getProcessInstanceVariablesLimit());
-      } else {
-        historicProcessInstanceQuery.setMaxResults(Context.getProcessEngineConfiguration().getHistoricProcessInstancesQueryLimit());
+      // limit to 20000 results for performance reasons
+      int limit = historicProcessInstanceQuery.getProcessInstanceVariablesLimit() != null ? historicProcessInstanceQuery.getProcessInstanceVariablesLimit() 
+          : Context.getProcessEngineConfiguration().getHistoricProcessInstancesQueryLimit();
+      if (historicProcessInstanceQuery.getMaxResults() > limit) {
+        historicProcessInstanceQuery.setMaxResults(limit);
       }
-      historicProcessInstanceQuery.setFirstResult(0);
-      
-      List<HistoricProcessInstance> instanceList = getDbSqlSession().selectListWithRawParameterWithoutFilter("selectHistoricProcessInstancesWithVariablesByQueryCriteria", 
-          historicProcessInstanceQuery, historicProcessInstanceQuery.getFirstResult(), historicProcessInstanceQuery.getMaxResults());
       
-      if (instanceList != null && !instanceList.isEmpty()) {
-        if (firstResult > 0) {
-          if (firstResult <= instanceList.size()) {
-            int toIndex = firstResult + Math.min(maxResults, instanceList.size() - firstResult);
-            return instanceList.subList(firstResult, toIndex);
-          } else {
-            return Collections.EMPTY_LIST;
-          }
-        } else {
-          int toIndex = Math.min(maxResults, instanceList.size());
-          return instanceList.subList(0, toIndex);
-        }
+      List<HistoricProcessInstance> historicProcessInstances = findHistoricProcessInstancesByQueryCriteria(historicProcessInstanceQuery);
+      if (!historicProcessInstances.isEmpty()) {
+        getHistoricVariableInstanceManager().initializeQueryVariables(historicProcessInstances);
       }
+      return historicProcessInstances;
     }
     return Collections.EMPTY_LIST;
   }
@@ -15,6 +15,7 @@
 package org.activiti.engine.impl.persistence.entity;
 
 import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.db.HasDirtyState;
 import org.activiti.engine.impl.db.PersistentObject;
 
 import java.io.Serializable;
@@ -36,7 +37,7 @@ import java.util.Date;
  * 换言之 只要 以上 3个类 中 getPersistentState() 定义的任意一个属性值发生了 变化
  * 则命令上下文CommandContext 中的close() 执行刷新会话缓存操作的同时 会将变化的数据更新到DB
  */
-public abstract class HistoricScopeInstanceEntity implements PersistentObject, Serializable {
+public abstract class HistoricScopeInstanceEntity implements PersistentObject, HasDirtyState, Serializable {
 
   private static final long serialVersionUID = 1L;
   
@@ -51,6 +52,7 @@ public abstract class HistoricScopeInstanceEntity implements PersistentObject, S
   protected Date endTime;
   protected Long durationInMillis;
   protected String deleteReason;
+  protected boolean dirty;
   /*
   * 更新历史数据
   * */
@@ -58,6 +60,19 @@ public abstract class HistoricScopeInstanceEntity implements PersistentObject, S
     this.deleteReason = deleteReason;
     this.endTime = Context.getProcessEngineConfiguration().getClock().getCurrentTime();
     this.durationInMillis = endTime.getTime() - startTime.getTime();
+    markDirty();
+  }
+  
+  public boolean isDirty() {
+    return dirty;
+  }
+  
+  public void markDirty() {
+    dirty = true;
+  }
+  
+  public void markClean() {
+    dirty = false;
   }
   
   // getters and setters //////////////////////////////////////////////////////
@@ -97,36 +112,46 @@ public abstract class HistoricScopeInstanceEntity implements PersistentObject, S
   }
   public void setProcessInstanceId(String processInstanceId) {
     this.processInstanceId = processInstanceId;
+    markDirty();
   }
   public void setProcessDefinitionId(String processDefinitionId) {
     this.processDefinitionId = processDefinitionId;
+    markDirty();
   }
   public void setProcessDefinitionKey(String processDefinitionKey) {
     this.processDefinitionKey = processDefinitionKey;
+    markDirty();
   }
   public void setProcessDefinitionName(String processDefinitionName) {
     this.processDefinitionName = processDefinitionName;
+    markDirty();
   }
   public void setProcessDefinitionVersion(Integer processDefinitionVersion) {
     this.processDefinitionVersion = processDefinitionVersion;
+    markDirty();
   }
   public void setDeploymentId(String deploymentId) {
     this.deploymentId = deploymentId;
+    markDirty();
   }
   public void setStartTime(Date startTime) {
     this.startTime = startTime;
+    markDirty();
   }
   public void setEndTime(Date endTime) {
     this.endTime = endTime;
+    markDirty();
   }
   public void setDurationInMillis(Long durationInMillis) {
     this.durationInMillis = durationInMillis;
+    markDirty();
   }
   public String getDeleteReason() {
     return deleteReason;
   }
   public void setDeleteReason(String deleteReason) {
     this.deleteReason = deleteReason;
+    markDirty();
   }
 }
 
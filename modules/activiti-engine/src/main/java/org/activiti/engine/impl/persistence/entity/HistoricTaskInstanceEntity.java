@@ -113,6 +113,7 @@ public class HistoricTaskInstanceEntity extends HistoricScopeInstanceEntity impl
   }
   public void setExecutionId(String executionId) {
     this.executionId = executionId;
+    markDirty();
   }
   public String getName() {
     if (localizedName != null && localizedName.length() > 0) {
@@ -123,6 +124,7 @@ public class HistoricTaskInstanceEntity extends HistoricScopeInstanceEntity impl
   }
   public void setName(String name) {
     this.name = name;
+    markDirty();
   }
   public void setLocalizedName(String name) {
     this.localizedName = name;
@@ -136,6 +138,7 @@ public class HistoricTaskInstanceEntity extends HistoricScopeInstanceEntity impl
   }
   public void setDescription(String description) {
     this.description = description;
+    markDirty();
   }
   public void setLocalizedDescription(String description) {
     this.localizedDescription = description;
@@ -145,12 +148,14 @@ public class HistoricTaskInstanceEntity extends HistoricScopeInstanceEntity impl
   }
   public void setAssignee(String assignee) {
     this.assignee = assignee;
+    markDirty();
   }
   public String getTaskDefinitionKey() {
     return taskDefinitionKey;
   }
   public void setTaskDefinitionKey(String taskDefinitionKey) {
     this.taskDefinitionKey = taskDefinitionKey;
+    markDirty();
   }
   @Override
   public Date getCreateTime() {
@@ -161,48 +166,56 @@ public class HistoricTaskInstanceEntity extends HistoricScopeInstanceEntity impl
   }
   public void setFormKey(String formKey) {
     this.formKey = formKey;
+    markDirty();
   }
   public int getPriority() {
     return priority;
   }
   public void setPriority(int priority) {
     this.priority = priority;
+    markDirty();
   }
   public Date getDueDate() {
     return dueDate;
   }
   public void setDueDate(Date dueDate) {
     this.dueDate = dueDate;
+    markDirty();
   }
   public String getCategory() {
 		return category;
 	}
 	public void setCategory(String category) {
 		this.category = category;
+		markDirty();
 	}
 	public String getOwner() {
     return owner;
   }
   public void setOwner(String owner) {
     this.owner = owner;
+    markDirty();
   }
   public String getParentTaskId() {
     return parentTaskId;
   }
   public void setParentTaskId(String parentTaskId) {
     this.parentTaskId = parentTaskId;
+    markDirty();
   }
   public Date getClaimTime() {
     return claimTime;
   }
   public void setClaimTime(Date claimTime) {
     this.claimTime = claimTime;
+    markDirty();
   }
   public String getTenantId() {
 		return tenantId;
 	}
 	public void setTenantId(String tenantId) {
 		this.tenantId = tenantId;
+		markDirty();
 	}
 	public Date getTime() {
 		return getStartTime();
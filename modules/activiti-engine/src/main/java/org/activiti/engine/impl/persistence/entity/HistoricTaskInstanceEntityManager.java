@@ -59,38 +59,24 @@ public class HistoricTaskInstanceEntityManager extends AbstractManager {
   @SuppressWarnings("unchecked")
   public List<HistoricTaskInstance> findHistoricTaskInstancesAndVariablesByQueryCriteria(HistoricTaskInstanceQueryImpl historicTaskInstanceQuery) {
     if (getHistoryManager().isHistoryEnabled()) {
-      // paging doesn't work for combining task instances and variables due to an outer join, so doing it in-memory
+      // paging can't be done on the outer join with the variables, so the tasks are paged first and their variables fetched afterwards
       if (historicTaskInstanceQuery.getFirstResult() < 0 || historicTaskInstanceQuery.getMaxResults() <= 0) {
         return Collections.EMPTY_LIST;
       }
       
-      int firstResult = historicTaskInstanceQuery.getFirstResult();
-      int maxResults = historicTaskInstanceQuery.getMaxResults();
-      
-      // setting max results, limit to 20000 results for performance reasons
-      if (historicTaskInstanceQuery.getTaskVariablesLimit() != null) {
-        historicTaskInstanceQuery.setMaxResults(historicTaskInstanceQuery.getTaskVariablesLimit());
-      } else {
-        historicTaskInstanceQuery.setMaxResults(Context.getProcessEngineConfiguration().getHistoricTaskQueryLimit());
+      // limit to 20000 results for performance reasons
+      int limit = historicTaskInstanceQuery.getTaskVariablesLimit() != null ? historicTaskInstanceQuery.getTaskVariablesLimit() 
+          : Context.getProcessEngineConfiguration().getHistoricTaskQueryLimit();
+      if (historicTaskInstanceQuery.getMaxResults() > limit) {
+        historicTaskInstanceQuery.setMaxResults(limit);
       }
-      historicTaskInstanceQuery.setFirstResult(0);
-      
-      List<HistoricTaskInstance> instanceList = getDbSqlSession().selectListWithRawParameterWithoutFilter("selectHistoricTaskInstancesWithVariablesByQueryCriteria", 
-          historicTaskInstanceQuery, historicTaskInstanceQuery.getFirstResult(), historicTaskInstanceQuery.getMaxResults());
       
-      if (instanceList != null && !instanceList.isEmpty()) {
-        if (firstResult > 0) {
-          if (firstResult <= instanceList.size()) {
-            int toIndex = firstResult + Math.min(maxResults, instanceList.size() - firstResult);
-            return instanceList.subList(firstResult, toIndex);
-          } else {
-            return Collections.EMPTY_LIST;
-          }
-        } else {
-          int toIndex = Math.min(maxResults, instanceList.size());
-          return instanceList.subList(0, toIndex);
-        }
+      List<HistoricTaskInstance> historicTasks = findHistoricTaskInstancesByQueryCriteria(historicTaskInstanceQuery);
+      if (!historicTasks.isEmpty()) {
+        getHistoricVariableInstanceManager().initializeQueryVariables(historicTasks, 
+            historicTaskInstanceQuery.isIncludeTaskLocalVariables(), historicTaskInstanceQuery.isIncludeProcessVariables());
       }
+      return historicTasks;
     }
     return Collections.EMPTY_LIST;
   }
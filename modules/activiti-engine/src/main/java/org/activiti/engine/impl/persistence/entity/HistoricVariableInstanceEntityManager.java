@@ -13,9 +13,15 @@
 
 package org.activiti.engine.impl.persistence.entity;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.activiti.engine.history.HistoricProcessInstance;
+import org.activiti.engine.history.HistoricTaskInstance;
 import org.activiti.engine.history.HistoricVariableInstance;
 import org.activiti.engine.impl.HistoricVariableInstanceQueryImpl;
 import org.activiti.engine.impl.Page;
@@ -67,6 +73,80 @@ public class HistoricVariableInstanceEntityManager extends AbstractManager {
     return (HistoricVariableInstanceEntity) getDbSqlSession().selectOne("selectHistoricVariableInstanceByVariableInstanceId", variableInstanceId);
   }
 
+  /**
+   * Sets the task local and/or process variables as query variables on the given historic tasks. 
+   * The variables are fetched by id after the historic tasks are queried, so the task query itself can be paged by the database.
+   */
+  public void initializeQueryVariables(List<HistoricTaskInstance> historicTasks, boolean includeTaskLocalVariables, boolean includeProcessVariables) {
+    Set<String> taskIds = new HashSet<String>();
+    Set<String> processInstanceIds = new HashSet<String>();
+    for (HistoricTaskInstance historicTask : historicTasks) {
+      taskIds.add(historicTask.getId());
+      if (historicTask.getProcessInstanceId() != null) {
+        processInstanceIds.add(historicTask.getProcessInstanceId());
+      }
+    }
+    
+    Map<String, List<HistoricVariableInstanceEntity>> variablesByTaskId = new HashMap<String, List<HistoricVariableInstanceEntity>>();
+    if (includeTaskLocalVariables && !taskIds.isEmpty()) {
+      for (HistoricVariableInstanceEntity variableInstance : this.<HistoricVariableInstanceEntity>selectListByIds("selectHistoricVariableInstancesByTaskIds", taskIds)) {
+        addVariable(variablesByTaskId, variableInstance.getTaskId(), variableInstance);
+      }
+    }
+    Map<String, List<HistoricVariableInstanceEntity>> variablesByExecutionId = new HashMap<String, List<HistoricVariableInstanceEntity>>();
+    if (includeProcessVariables && !processInstanceIds.isEmpty()) {
+      for (HistoricVariableInstanceEntity variableInstance : this.<HistoricVariableInstanceEntity>selectListByIds("selectHistoricVariableInstancesByExecutionIds", processInstanceIds)) {
+        addVariable(variablesByExecutionId, variableInstance.getExecutionId(), variableInstance);
+      }
+    }
+    
+    for (HistoricTaskInstance historicTask : historicTasks) {
+      List<HistoricVariableInstanceEntity> queryVariables = new HistoricVariableInitializingList();
+      if (variablesByTaskId.containsKey(historicTask.getId())) {
+        queryVariables.addAll(variablesByTaskId.get(historicTask.getId()));
+      }
+      if (historicTask.getProcessInstanceId() != null && variablesByExecutionId.containsKey(historicTask.getProcessInstanceId())) {
+        queryVariables.addAll(variablesByExecutionId.get(historicTask.getProcessInstanceId()));
+      }
+      ((HistoricTaskInstanceEntity) historicTask).setQueryVariables(queryVariables);
+    }
+  }
+  
+  /**
+   * Sets the process variables as query variables on the given historic process instances, 
+   * fetched by id after the historic process instances are queried.
+   */
+  public void initializeQueryVariables(List<HistoricProcessInstance> historicProcessInstances) {
+    Set<String> processInstanceIds = new HashSet<String>();
+    for (HistoricProcessInstance historicProcessInstance : historicProcessInstances) {
+      processInstanceIds.add(historicProcessInstance.getId());
+    }
+    
+    Map<String, List<HistoricVariableInstanceEntity>> variablesByExecutionId = new HashMap<String, List<HistoricVariableInstanceEntity>>();
+    if (!processInstanceIds.isEmpty()) {
+      for (HistoricVariableInstanceEntity variableInstance : this.<HistoricVariableInstanceEntity>selectListByIds("selectHistoricVariableInstancesByExecutionIds", processInstanceIds)) {
+        addVariable(variablesByExecutionId, variableInstance.getExecutionId(), variableInstance);
+      }
+    }
+    
+    for (HistoricProcessInstance historicProcessInstance : historicProcessInstances) {
+      List<HistoricVariableInstanceEntity> queryVariables = new HistoricVariableInitializingList();
+      if (variablesByExecutionId.containsKey(historicProcessInstance.getId())) {
+        queryVariables.addAll(variablesByExecutionId.get(historicProcessInstance.getId()));
+      }
+      ((HistoricProcessInstanceEntity) historicProcessInstance).setQueryVariables(queryVariables);
+    }
+  }
+  
+  protected void addVariable(Map<String, List<HistoricVariableInstanceEntity>> variablesById, String id, HistoricVariableInstanceEntity variableInstance) {
+    List<HistoricVariableInstanceEntity> variables = variablesById.get(id);
+    if (variables == null) {
+      variables = new ArrayList<HistoricVariableInstanceEntity>();
+      variablesById.put(id, variables);
+    }
+    variables.add(variableInstance);
+  }
+  
   public void deleteHistoricVariableInstancesByTaskId(String taskId) {
     if (getHistoryManager().isHistoryLevelAtLeast(HistoryLevel.ACTIVITY)) {
       List<HistoricVariableInstance> historicProcessVariables = 
@@ -19,9 +19,13 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.activiti.engine.ActivitiException;
+import org.activiti.engine.ActivitiIllegalArgumentException;
 import org.activiti.engine.ProcessEngineConfiguration;
+import org.activiti.engine.delegate.Expression;
+import org.activiti.engine.delegate.VariableScope;
 import org.activiti.engine.delegate.event.ActivitiEventType;
 import org.activiti.engine.delegate.event.impl.ActivitiEventBuilder;
+import org.activiti.engine.impl.asyncexecutor.JobPartitionManager;
 import org.activiti.engine.impl.context.Context;
 import org.activiti.engine.impl.db.BulkDeleteable;
 import org.activiti.engine.impl.db.HasRevision;
@@ -63,6 +67,11 @@ public abstract class JobEntity implements Job, PersistentObject, HasRevision, B
   protected boolean isExclusive = DEFAULT_EXCLUSIVE;
 
   protected int retries = DEFAULT_RETRIES;
+  
+  protected int priority = DEFAULT_PRIORITY;
+  
+  /** Hash bucket of the job, see {@link JobPartitionManager} */
+  protected Integer partition;
 
   protected String jobHandlerType = null;
   protected String jobHandlerConfiguration = null;
@@ -97,6 +106,11 @@ public abstract class JobEntity implements Job, PersistentObject, HasRevision, B
 //            this 是JobEntity 对线
       .insert(this);
     
+    // the jobs of a process instance share a partition, so they are acquired by the same node
+    if (partition == null) {
+      partition = JobPartitionManager.getPartition(processInstanceId != null ? processInstanceId : id);
+    }
+    
     // add link to execution
     if (executionId != null) {
       ExecutionEntity execution = Context.getCommandContext()
@@ -182,6 +196,7 @@ public abstract class JobEntity implements Job, PersistentObject, HasRevision, B
     persistentState.put("lockOwner", lockOwner);
     persistentState.put("lockExpirationTime", lockExpirationTime);
     persistentState.put("retries", retries);
+    persistentState.put("priority", priority);
     persistentState.put("duedate", duedate);
     persistentState.put("exceptionMessage", exceptionMessage);
     persistentState.put("exceptionByteArrayId", exceptionByteArrayRef.getId());      
@@ -272,6 +287,41 @@ public abstract class JobEntity implements Job, PersistentObject, HasRevision, B
   public void setExceptionMessage(String exceptionMessage) {
     this.exceptionMessage = StringUtils.abbreviate(exceptionMessage, MAX_EXCEPTION_MESSAGE_LENGTH);
   }
+  /**
+   * The value of a job priority expression, or {@link Job#DEFAULT_PRIORITY} when there is no expression.
+   */
+  public static int resolvePriority(Expression jobPriorityExpression, VariableScope variableScope) {
+    if (jobPriorityExpression == null) {
+      return DEFAULT_PRIORITY;
+    }
+    
+    Object priority = jobPriorityExpression.getValue(variableScope);
+    if (priority instanceof Number) {
+      return ((Number) priority).intValue();
+    }
+    if (priority instanceof String) {
+      try {
+        return Integer.parseInt(((String) priority).trim());
+      } catch (NumberFormatException e) {
+        // handled below
+      }
+    }
+    throw new ActivitiIllegalArgumentException("Job priority expression " + jobPriorityExpression.getExpressionText() 
+        + " doesn't resolve to an integer: " + priority);
+  }
+  
+  public int getPriority() {
+    return priority;
+  }
+  public void setPriority(int priority) {
+    this.priority = priority;
+  }
+  public Integer getPartition() {
+    return partition;
+  }
+  public void setPartition(Integer partition) {
+    this.partition = partition;
+  }
   public String getJobType() {
     return jobType;
   }
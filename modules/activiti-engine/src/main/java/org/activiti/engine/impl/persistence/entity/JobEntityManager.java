@@ -13,6 +13,8 @@
 
 package org.activiti.engine.impl.persistence.entity;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -24,14 +26,18 @@ import org.activiti.engine.delegate.event.ActivitiEventType;
 import org.activiti.engine.delegate.event.impl.ActivitiEventBuilder;
 import org.activiti.engine.impl.JobQueryImpl;
 import org.activiti.engine.impl.Page;
+import org.activiti.engine.impl.asyncexecutor.AbstractAsyncJobExecutor;
 import org.activiti.engine.impl.asyncexecutor.AsyncExecutor;
+import org.activiti.engine.impl.asyncexecutor.JobPartitionRange;
 import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
 import org.activiti.engine.impl.cfg.TransactionListener;
 import org.activiti.engine.impl.cfg.TransactionState;
 import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.db.ListQueryParameterObject;
 import org.activiti.engine.impl.jobexecutor.AsyncJobAddedNotification;
 import org.activiti.engine.impl.jobexecutor.JobAddedNotification;
 import org.activiti.engine.impl.jobexecutor.JobExecutor;
+import org.activiti.engine.impl.jobexecutor.TimerWheelNotification;
 import org.activiti.engine.impl.persistence.AbstractManager;
 import org.activiti.engine.runtime.Job;
 
@@ -42,6 +48,9 @@ import org.activiti.engine.runtime.Job;
  * @author Joram Barrez
  */
 public class JobEntityManager extends AbstractManager {
+  
+  protected static final String JOB_ACQUISITION_ORDER = "RES.PRIORITY_ desc";
+  
     /*
     *
     * */
@@ -96,6 +105,10 @@ public class JobEntityManager extends AbstractManager {
 
       hintJobExecutor(timer);
     }
+    
+    if (engineConfiguration.isAsyncExecutorEnabled()) {
+      hintTimerWheel(timer, false);
+    }
   }
   
   /*"Not used anymore. Will be removed in a future release." */
@@ -132,6 +145,20 @@ public class JobEntityManager extends AbstractManager {
   /*
 
    */
+  /**
+   * Keeps the timer wheel of the async executor (when used) up to date with the timers
+   * created or deleted on this node, once the transaction is committed.
+   */
+  public void hintTimerWheel(TimerEntity timer, boolean deleted) {
+    AsyncExecutor asyncExecutor = Context.getProcessEngineConfiguration().getAsyncExecutor();
+    if (asyncExecutor instanceof AbstractAsyncJobExecutor && ((AbstractAsyncJobExecutor) asyncExecutor).getTimerWheel() != null) {
+      TransactionListener transactionListener = new TimerWheelNotification(timer, (AbstractAsyncJobExecutor) asyncExecutor, deleted);
+      Context.getCommandContext()
+        .getTransactionContext()
+        .addTransactionListener(TransactionState.COMMITTED, transactionListener);
+    }
+  }
+  
   protected void hintJobExecutor(JobEntity job) {
     //获取作业执行器 对象
     JobExecutor jobExecutor = Context.getProcessEngineConfiguration().getJobExecutor();
@@ -166,21 +193,114 @@ public class JobEntityManager extends AbstractManager {
   public List<JobEntity> findNextJobsToExecute(Page page) {
     ProcessEngineConfiguration processEngineConfig = Context.getProcessEngineConfiguration();
     Date now = processEngineConfig.getClock().getCurrentTime();
-    return getDbSqlSession().selectList("selectNextJobsToExecute", now, page);
+    return getDbSqlSession().selectList("selectNextJobsToExecute", createJobAcquisitionParameter(now), page);
   }
   
-  @SuppressWarnings("unchecked")
   public List<JobEntity> findNextTimerJobsToExecute(Page page) {
-    ProcessEngineConfiguration processEngineConfig = Context.getProcessEngineConfiguration();
-    Date now = processEngineConfig.getClock().getCurrentTime();
-    return getDbSqlSession().selectList("selectNextTimerJobsToExecute", now, page);
+    return findNextTimerJobsToExecute(null, page);
   }
   
+  /**
+   * The due timers in the given partition ranges, or in all partitions when the ranges are null.
+   */
   @SuppressWarnings("unchecked")
+  public List<JobEntity> findNextTimerJobsToExecute(List<JobPartitionRange> partitionRanges, Page page) {
+    if (isNoPartitionOwned(partitionRanges)) {
+      return Collections.emptyList();
+    }
+    Map<String, Object> params = createJobAcquisitionParameterMap(partitionRanges);
+    if (getDbSqlSession().getDbSqlSessionFactory().isSkipLockedJobAcquisition()) {
+      return getDbSqlSession().selectList("selectNextTimerJobsToExecuteSkipLocked", params, page);
+    }
+    return getDbSqlSession().selectList("selectNextTimerJobsToExecute", createJobAcquisitionParameter(params), page);
+  }
+  
   public List<JobEntity> findAsyncJobsDueToExecute(Page page) {
-    ProcessEngineConfiguration processEngineConfig = Context.getProcessEngineConfiguration();
-    Date now = processEngineConfig.getClock().getCurrentTime();
-    return getDbSqlSession().selectList("selectAsyncJobsDueToExecute", now, page);
+    return findAsyncJobsDueToExecute(null, page);
+  }
+  
+  /**
+   * The due async jobs in the given partition ranges, or in all partitions when the ranges are null.
+   */
+  @SuppressWarnings("unchecked")
+  public List<JobEntity> findAsyncJobsDueToExecute(List<JobPartitionRange> partitionRanges, Page page) {
+    if (isNoPartitionOwned(partitionRanges)) {
+      return Collections.emptyList();
+    }
+    Map<String, Object> params = createJobAcquisitionParameterMap(partitionRanges);
+    if (getDbSqlSession().getDbSqlSessionFactory().isSkipLockedJobAcquisition()) {
+      return getDbSqlSession().selectList("selectAsyncJobsDueToExecuteSkipLocked", params, page);
+    }
+    return getDbSqlSession().selectList("selectAsyncJobsDueToExecute", createJobAcquisitionParameter(params), page);
+  }
+  
+  public List<JobEntity> findTimerJobsDueBefore(Date horizon) {
+    return findTimerJobsDueBefore(horizon, null);
+  }
+  
+  /**
+   * The timers that are due before the given horizon and not locked, to fill the timer wheel of the async executor.
+   * Only the timers in the given partition ranges, or in all partitions when the ranges are null.
+   */
+  @SuppressWarnings("unchecked")
+  public List<JobEntity> findTimerJobsDueBefore(Date horizon, List<JobPartitionRange> partitionRanges) {
+    if (isNoPartitionOwned(partitionRanges)) {
+      return Collections.emptyList();
+    }
+    Map<String, Object> params = createJobAcquisitionParameterMap(partitionRanges);
+    params.put("horizon", horizon);
+    return getDbSqlSession().selectList("selectTimerJobsDueBefore", params);
+  }
+  
+  /**
+   * The given timers that are due and not locked, used to acquire the timers fired by the timer wheel of the async executor.
+   */
+  @SuppressWarnings("unchecked")
+  public List<JobEntity> findTimerJobsToExecuteByIds(Collection<String> jobIds) {
+    Map<String, Object> params = new HashMap<String, Object>();
+    params.put("now", Context.getProcessEngineConfiguration().getClock().getCurrentTime());
+    params.put("jobIds", jobIds);
+    return getDbSqlSession().selectList("selectTimerJobsToExecuteByIds", params);
+  }
+  
+  /**
+   * The due exclusive async jobs of the given process instances, used to acquire the jobs of a process instance together.
+   * Only the jobs in the given partition ranges, or in all partitions when the ranges are null.
+   */
+  @SuppressWarnings("unchecked")
+  public List<JobEntity> findAsyncJobsDueToExecuteByProcessInstanceIds(Collection<String> processInstanceIds, List<JobPartitionRange> partitionRanges, Page page) {
+    if (isNoPartitionOwned(partitionRanges)) {
+      return Collections.emptyList();
+    }
+    Map<String, Object> params = createJobAcquisitionParameterMap(partitionRanges);
+    params.put("processInstanceIds", processInstanceIds);
+    if (getDbSqlSession().getDbSqlSessionFactory().isSkipLockedJobAcquisition()) {
+      return getDbSqlSession().selectList("selectAsyncJobsDueToExecuteByProcessInstanceIdsSkipLocked", params, page);
+    }
+    return getDbSqlSession().selectList("selectAsyncJobsDueToExecuteByProcessInstanceIds", createJobAcquisitionParameter(params), page);
+  }
+  
+  /** A node that doesn't own any partition (yet) doesn't acquire any job */
+  protected boolean isNoPartitionOwned(List<JobPartitionRange> partitionRanges) {
+    return partitionRanges != null && partitionRanges.isEmpty();
+  }
+  
+  protected Map<String, Object> createJobAcquisitionParameterMap(List<JobPartitionRange> partitionRanges) {
+    Map<String, Object> params = new HashMap<String, Object>();
+    params.put("now", Context.getProcessEngineConfiguration().getClock().getCurrentTime());
+    params.put("partitionRanges", partitionRanges);
+    params.put("includeUnpartitioned", partitionRanges != null && JobPartitionRange.containsPartition(partitionRanges, 0));
+    return params;
+  }
+  
+  /**
+   * Jobs are acquired in order of priority, so a backlog of low priority jobs
+   * doesn't delay the acquisition of high priority ones.
+   */
+  protected ListQueryParameterObject createJobAcquisitionParameter(Object parameterObject) {
+    ListQueryParameterObject parameter = new ListQueryParameterObject(parameterObject, 0, Integer.MAX_VALUE);
+    parameter.setOrderByColumns(JOB_ACQUISITION_ORDER);
+    return parameter;
   }
   
   @SuppressWarnings("unchecked")
@@ -193,6 +313,11 @@ public class JobEntityManager extends AbstractManager {
     return getDbSqlSession().selectList("selectJobsByExecutionId", executionId);
   }
   
+  @SuppressWarnings("unchecked")
+  public List<JobEntity> findJobsByProcessInstanceId(String processInstanceId) {
+    return getDbSqlSession().selectList("selectJobsByProcessInstanceId", processInstanceId);
+  }
+  
   @SuppressWarnings("unchecked")
   public List<JobEntity> findExclusiveJobsToExecute(String processInstanceId) {
     Map<String,Object> params = new HashMap<String, Object>();
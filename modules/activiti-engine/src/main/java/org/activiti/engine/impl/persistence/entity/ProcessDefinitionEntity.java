@@ -27,9 +27,11 @@ import org.activiti.engine.delegate.event.ActivitiEventType;
 import org.activiti.engine.delegate.event.impl.ActivitiEventBuilder;
 import org.activiti.engine.delegate.event.impl.ActivitiEventSupport;
 import org.activiti.engine.impl.bpmn.parser.BpmnParse;
+import org.activiti.engine.impl.bpmn.parser.handler.AbstractBpmnParseHandler;
 import org.activiti.engine.impl.context.Context;
 import org.activiti.engine.impl.db.HasRevision;
 import org.activiti.engine.impl.db.PersistentObject;
+import org.activiti.engine.impl.el.NoExecutionVariableScope;
 import org.activiti.engine.impl.form.StartFormHandler;
 import org.activiti.engine.impl.identity.Authentication;
 import org.activiti.engine.impl.pvm.process.ActivityImpl;
@@ -227,6 +229,15 @@ public class ProcessDefinitionEntity extends ProcessDefinitionImpl implements Pr
     return definitionIdentityLinkEntities;
   }
 
+  /**
+   * The priority of a job created without an execution, like a timer start event: 
+   * the activiti:jobPriority of the process, evaluated without variables, or else {@link org.activiti.engine.runtime.Job#DEFAULT_PRIORITY}.
+   */
+  public int resolveJobPriority() {
+    Expression jobPriorityExpression = (Expression) getProperty(AbstractBpmnParseHandler.PROPERTYNAME_JOB_PRIORITY);
+    return JobEntity.resolvePriority(jobPriorityExpression, NoExecutionVariableScope.getSharedInstance());
+  }
+
   public String toString() {
     return "ProcessDefinitionEntity["+id+"]";
   }
@@ -13,6 +13,10 @@
 
 package org.activiti.engine.impl.persistence.entity;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.activiti.engine.impl.persistence.AbstractManager;
 
 
@@ -24,5 +28,20 @@ public class PropertyEntityManager extends AbstractManager {
   public PropertyEntity findPropertyById(String propertyId) {
     return getDbSqlSession().selectById(PropertyEntity.class, propertyId);
   }
+  
+  @SuppressWarnings("unchecked")
+  public List<PropertyEntity> findPropertiesByNamePrefix(String namePrefix) {
+    return getDbSqlSession().selectList("selectPropertiesByNamePrefix", namePrefix + "%");
+  }
+  
+  /**
+   * Deletes the property, unless its value was changed in the meantime.
+   */
+  public void deletePropertyIfUnchanged(PropertyEntity property) {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("name", property.getName());
+    params.put("value", property.getValue());
+    getDbSqlSession().delete("deletePropertyByNameAndValue", params);
+  }
 
 }
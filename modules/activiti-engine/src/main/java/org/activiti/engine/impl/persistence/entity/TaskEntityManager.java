@@ -137,39 +137,22 @@ public class TaskEntityManager extends AbstractManager {
   
   @SuppressWarnings("unchecked")
   public List<Task> findTasksAndVariablesByQueryCriteria(TaskQueryImpl taskQuery) {
-    final String query = "selectTaskWithVariablesByQueryCriteria";
-    // paging doesn't work for combining task instances and variables due to an outer join, so doing it in-memory
+    // paging can't be done on the outer join with the variables, so the tasks are paged first and their variables fetched afterwards
     if (taskQuery.getFirstResult() < 0 || taskQuery.getMaxResults() <= 0) {
       return Collections.EMPTY_LIST;
     }
     
-    int firstResult = taskQuery.getFirstResult();
-    int maxResults = taskQuery.getMaxResults();
-    
-    // setting max results, limit to 20000 results for performance reasons
-    if (taskQuery.getTaskVariablesLimit() != null) {
-      taskQuery.setMaxResults(taskQuery.getTaskVariablesLimit());
-    } else {
-      taskQuery.setMaxResults(Context.getProcessEngineConfiguration().getTaskQueryLimit());
+    // limit to 20000 results for performance reasons
+    int limit = taskQuery.getTaskVariablesLimit() != null ? taskQuery.getTaskVariablesLimit() : Context.getProcessEngineConfiguration().getTaskQueryLimit();
+    if (taskQuery.getMaxResults() > limit) {
+      taskQuery.setMaxResults(limit);
     }
-    taskQuery.setFirstResult(0);
-    
-    List<Task> instanceList = getDbSqlSession().selectListWithRawParameterWithoutFilter(query, taskQuery, taskQuery.getFirstResult(), taskQuery.getMaxResults());
     
-    if (instanceList != null && !instanceList.isEmpty()) {
-      if (firstResult > 0) {
-        if (firstResult <= instanceList.size()) {
-          int toIndex = firstResult + Math.min(maxResults, instanceList.size() - firstResult);
-          return instanceList.subList(firstResult, toIndex);
-        } else {
-          return Collections.EMPTY_LIST;
-        }
-      } else {
-        int toIndex = Math.min(maxResults, instanceList.size());
-        return instanceList.subList(0, toIndex);
-      }
+    List<Task> tasks = findTasksByQueryCriteria(taskQuery);
+    if (!tasks.isEmpty()) {
+      getVariableInstanceManager().initializeQueryVariables(tasks, taskQuery.isIncludeTaskLocalVariables(), taskQuery.isIncludeProcessVariables());
     }
-    return Collections.EMPTY_LIST;
+    return tasks;
   }
 
   public long findTaskCountByQueryCriteria(TaskQueryImpl taskQuery) {
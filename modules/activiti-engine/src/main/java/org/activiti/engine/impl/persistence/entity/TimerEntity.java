@@ -69,6 +69,7 @@ public class TimerEntity extends JobEntity {
     isExclusive = te.isExclusive;
     repeat = te.repeat;
     retries = te.retries;
+    priority = te.priority;
     endDate = te.endDate;
     executionId = te.executionId;
     processInstanceId = te.processInstanceId;
@@ -117,6 +118,12 @@ public class TimerEntity extends JobEntity {
     }
   }
 
+  @Override
+  public void delete() {
+    super.delete();
+    Context.getCommandContext().getJobEntityManager().hintTimerWheel(this, true);
+  }
+
   protected void restoreExtraData(CommandContext commandContext, String jobHandlerConfiguration) {
     String embededActivityId = jobHandlerConfiguration;
 
@@ -13,13 +13,17 @@
 
 package org.activiti.engine.impl.persistence.entity;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.activiti.engine.impl.persistence.AbstractManager;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
 
 
 /**
@@ -44,6 +48,11 @@ public class VariableInstanceEntityManager extends AbstractManager {
     return getDbSqlSession().selectList("selectVariablesByExecutionId", executionId);
   }
   
+  @SuppressWarnings("unchecked")
+  public List<VariableInstanceEntity> findVariableInstancesByProcessInstanceId(String processInstanceId) {
+    return getDbSqlSession().selectList("selectVariablesByProcessInstanceId", processInstanceId);
+  }
+  
   @SuppressWarnings("unchecked")
   public List<VariableInstanceEntity> findVariableInstancesByExecutionIds(Set<String> executionIds) {
     return getDbSqlSession().selectList("selectVariablesByExecutionIds", executionIds);
@@ -79,6 +88,80 @@ public class VariableInstanceEntityManager extends AbstractManager {
 		return getDbSqlSession().selectList("selectVariableInstancesByTaskAndNames", params);
 	}
 	
+  /**
+   * Sets the task local and/or process variables as query variables on the given tasks. 
+   * The variables are fetched by id after the tasks are queried, so the task query itself can be paged by the database.
+   */
+  public void initializeQueryVariables(List<Task> tasks, boolean includeTaskLocalVariables, boolean includeProcessVariables) {
+    Set<String> taskIds = new HashSet<String>();
+    Set<String> processInstanceIds = new HashSet<String>();
+    for (Task task : tasks) {
+      taskIds.add(task.getId());
+      if (task.getProcessInstanceId() != null) {
+        processInstanceIds.add(task.getProcessInstanceId());
+      }
+    }
+    
+    Map<String, List<VariableInstanceEntity>> variablesByTaskId = new HashMap<String, List<VariableInstanceEntity>>();
+    if (includeTaskLocalVariables && !taskIds.isEmpty()) {
+      for (VariableInstanceEntity variableInstance : this.<VariableInstanceEntity>selectListByIds("selectVariablesByTaskIds", taskIds)) {
+        addVariable(variablesByTaskId, variableInstance.getTaskId(), variableInstance);
+      }
+    }
+    Map<String, List<VariableInstanceEntity>> variablesByExecutionId = new HashMap<String, List<VariableInstanceEntity>>();
+    if (includeProcessVariables && !processInstanceIds.isEmpty()) {
+      for (VariableInstanceEntity variableInstance : this.<VariableInstanceEntity>selectListByIds("selectVariablesByExecutionIds", processInstanceIds)) {
+        addVariable(variablesByExecutionId, variableInstance.getExecutionId(), variableInstance);
+      }
+    }
+    
+    for (Task task : tasks) {
+      List<VariableInstanceEntity> queryVariables = new VariableInitializingList();
+      if (variablesByTaskId.containsKey(task.getId())) {
+        queryVariables.addAll(variablesByTaskId.get(task.getId()));
+      }
+      if (task.getProcessInstanceId() != null && variablesByExecutionId.containsKey(task.getProcessInstanceId())) {
+        queryVariables.addAll(variablesByExecutionId.get(task.getProcessInstanceId()));
+      }
+      ((TaskEntity) task).setQueryVariables(queryVariables);
+    }
+  }
+  
+  /**
+   * Sets the process variables as query variables on the given process instances, 
+   * fetched by id after the process instances are queried.
+   */
+  public void initializeQueryVariables(List<ProcessInstance> processInstances) {
+    Set<String> processInstanceIds = new HashSet<String>();
+    for (ProcessInstance processInstance : processInstances) {
+      processInstanceIds.add(processInstance.getId());
+    }
+    
+    Map<String, List<VariableInstanceEntity>> variablesByExecutionId = new HashMap<String, List<VariableInstanceEntity>>();
+    if (!processInstanceIds.isEmpty()) {
+      for (VariableInstanceEntity variableInstance : this.<VariableInstanceEntity>selectListByIds("selectVariablesByExecutionIds", processInstanceIds)) {
+        addVariable(variablesByExecutionId, variableInstance.getExecutionId(), variableInstance);
+      }
+    }
+    
+    for (ProcessInstance processInstance : processInstances) {
+      List<VariableInstanceEntity> queryVariables = new VariableInitializingList();
+      if (variablesByExecutionId.containsKey(processInstance.getId())) {
+        queryVariables.addAll(variablesByExecutionId.get(processInstance.getId()));
+      }
+      ((ExecutionEntity) processInstance).setQueryVariables(queryVariables);
+    }
+  }
+  
+  protected void addVariable(Map<String, List<VariableInstanceEntity>> variablesById, String id, VariableInstanceEntity variableInstance) {
+    List<VariableInstanceEntity> variables = variablesById.get(id);
+    if (variables == null) {
+      variables = new ArrayList<VariableInstanceEntity>();
+      variablesById.put(id, variables);
+    }
+    variables.add(variableInstance);
+  }
+  
   public void deleteVariableInstanceByTask(TaskEntity task) {
     Map<String, VariableInstanceEntity> variableInstances = task.getVariableInstanceEntities();
     if (variableInstances!=null) {
@@ -17,6 +17,7 @@ import java.util.List;
 
 import org.activiti.engine.delegate.event.ActivitiEventType;
 import org.activiti.engine.delegate.event.impl.ActivitiEventBuilder;
+import org.activiti.engine.delegate.event.impl.ActivitiEventDispatcherImpl;
 import org.activiti.engine.impl.context.Context;
 import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
 import org.activiti.engine.impl.pvm.delegate.ActivityBehavior;
@@ -48,7 +49,7 @@ public class AtomicOperationActivityEnd extends AbstractEventAtomicOperation {
     ActivityImpl activity = (ActivityImpl) execution.getActivity();
     ActivityImpl parentActivity = activity.getParentActivity();
     
-  	if(Context.getProcessEngineConfiguration() != null && Context.getProcessEngineConfiguration().getEventDispatcher().isEnabled()) {
+  	if(Context.getProcessEngineConfiguration() != null && ActivitiEventDispatcherImpl.hasListeners(Context.getProcessEngineConfiguration().getEventDispatcher(), ActivitiEventType.ACTIVITY_COMPLETED)) {
   		if (execution instanceof ExecutionEntity) {
 	  		ExecutionEntity executionEntity = (ExecutionEntity) execution;
 	    	Context.getProcessEngineConfiguration().getEventDispatcher().dispatchEvent(
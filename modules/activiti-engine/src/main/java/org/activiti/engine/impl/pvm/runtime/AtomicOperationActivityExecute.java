@@ -14,6 +14,7 @@ package org.activiti.engine.impl.pvm.runtime;
 
 import org.activiti.engine.delegate.event.ActivitiEventType;
 import org.activiti.engine.delegate.event.impl.ActivitiEventBuilder;
+import org.activiti.engine.delegate.event.impl.ActivitiEventDispatcherImpl;
 import org.activiti.engine.impl.context.Context;
 import org.activiti.engine.impl.pvm.PvmException;
 import org.activiti.engine.impl.pvm.delegate.ActivityBehavior;
@@ -50,7 +51,7 @@ public class AtomicOperationActivityExecute implements AtomicOperation {
     log.debug("{} executes {}: {}", execution, activity, activityBehavior.getClass().getName());
     
     try {
-    	if(Context.getProcessEngineConfiguration() != null && Context.getProcessEngineConfiguration().getEventDispatcher().isEnabled()) {
+    	if(Context.getProcessEngineConfiguration() != null && ActivitiEventDispatcherImpl.hasListeners(Context.getProcessEngineConfiguration().getEventDispatcher(), ActivitiEventType.ACTIVITY_STARTED)) {
       	Context.getProcessEngineConfiguration().getEventDispatcher().dispatchEvent(
       			ActivitiEventBuilder.createActivityEvent(ActivitiEventType.ACTIVITY_STARTED, 
       					execution.getActivity().getId(),
@@ -17,6 +17,7 @@ import java.util.List;
 import org.activiti.engine.delegate.ExecutionListener;
 import org.activiti.engine.delegate.event.ActivitiEventType;
 import org.activiti.engine.delegate.event.impl.ActivitiEventBuilder;
+import org.activiti.engine.delegate.event.impl.ActivitiEventDispatcherImpl;
 import org.activiti.engine.impl.context.Context;
 import org.activiti.engine.impl.pvm.PvmException;
 import org.activiti.engine.impl.pvm.process.ActivityImpl;
@@ -72,7 +73,7 @@ public class AtomicOperationTransitionNotifyListenerTake implements AtomicOperat
       execution.setActivity(nextScope);
       
       // Firing event that transition is being taken     	
-      if(Context.getProcessEngineConfiguration() != null && Context.getProcessEngineConfiguration().getEventDispatcher().isEnabled()) {
+      if(Context.getProcessEngineConfiguration() != null && ActivitiEventDispatcherImpl.hasListeners(Context.getProcessEngineConfiguration().getEventDispatcher(), ActivitiEventType.SEQUENCEFLOW_TAKEN)) {
       	Context.getProcessEngineConfiguration().getEventDispatcher().dispatchEvent(
     			ActivitiEventBuilder.createSequenceFlowTakenEvent(ActivitiEventType.SEQUENCEFLOW_TAKEN, transition.getId(),
     					activity.getId(), (String) activity.getProperties().get("name") ,(String) activity.getProperties().get("type"), activity.getActivityBehavior().getClass().getCanonicalName(),
@@ -12,11 +12,16 @@
  */
 package org.activiti.engine.impl.scripting;
 
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineFactory;
@@ -41,6 +46,16 @@ public class ScriptingEngines {
   
   protected boolean cacheScriptingEngines = true;
   protected Map<String, ScriptEngine> cachedEngines;
+  
+  /**
+   * Scripts of cached, {@link Compilable} engines are compiled once and kept in this cache, 
+   * so they don't need to be parsed again on every evaluation.
+   */
+  protected boolean cacheCompiledScripts = true;
+  protected int compiledScriptCacheLimit = 1000;
+  protected ConcurrentMap<CompiledScriptKey, CompiledScript> compiledScripts = new ConcurrentHashMap<CompiledScriptKey, CompiledScript>();
+  protected AtomicLong compiledScriptCacheHitCount = new AtomicLong();
+  protected AtomicLong compiledScriptCacheMissCount = new AtomicLong();
 
   public ScriptingEngines(ScriptBindingsFactory scriptBindingsFactory) {
     this(new ScriptEngineManager());
@@ -49,7 +64,7 @@ public class ScriptingEngines {
 
   public ScriptingEngines(ScriptEngineManager scriptEngineManager) {
     this.scriptEngineManager = scriptEngineManager;
-    cachedEngines = new HashMap<String, ScriptEngine>();
+    cachedEngines = new ConcurrentHashMap<String, ScriptEngine>();
   }
 
   public ScriptingEngines addScriptEngineFactory(ScriptEngineFactory scriptEngineFactory) {
@@ -81,14 +96,101 @@ public class ScriptingEngines {
 	  return cacheScriptingEngines;
   }
   
+  public void setCacheCompiledScripts(boolean cacheCompiledScripts) {
+    this.cacheCompiledScripts = cacheCompiledScripts;
+  }
+  
+  public boolean isCacheCompiledScripts() {
+    return cacheCompiledScripts;
+  }
+  
+  public void setCompiledScriptCacheLimit(int compiledScriptCacheLimit) {
+    this.compiledScriptCacheLimit = compiledScriptCacheLimit;
+  }
+  
+  public int getCompiledScriptCacheLimit() {
+    return compiledScriptCacheLimit;
+  }
+  
+  public long getCompiledScriptCacheHitCount() {
+    return compiledScriptCacheHitCount.get();
+  }
+  
+  public long getCompiledScriptCacheMissCount() {
+    return compiledScriptCacheMissCount.get();
+  }
+  
+  public int getCompiledScriptCacheSize() {
+    return compiledScripts.size();
+  }
+  
+  public void clearCompiledScriptCache() {
+    compiledScripts.clear();
+  }
+  
   protected Object evaluate(String script, String language, Bindings bindings) {
     ScriptEngine scriptEngine = getEngineByName(language);
     try {
+      CompiledScript compiledScript = getCompiledScript(script, language, scriptEngine);
+      if (compiledScript != null) {
+        return evaluateCompiledScript(compiledScript, language, bindings);
+      }
       return scriptEngine.eval(script, bindings);
     } catch (ScriptException e) {
       throw new ActivitiException("problem evaluating script: " + e.getMessage(), e);
     }
   }
+  
+  protected Object evaluateCompiledScript(CompiledScript compiledScript, String language, Bindings bindings) throws ScriptException {
+    try {
+      return compiledScript.eval(bindings);
+    } catch (ScriptException e) {
+      // Groovy wraps failures of scripts evaluated from source in one more ScriptException:
+      // keep the exception (and the job exception message) the same as without the compiled script cache
+      if (GROOVY_SCRIPTING_LANGUAGE.equals(language)) {
+        throw new ScriptException(e);
+      }
+      throw e;
+    }
+  }
+  
+  /**
+   * @return the compiled version of the script, or null when the script should be evaluated directly:
+   * when compiled scripts are not cached, when the engine is not {@link Compilable} or 
+   * when the engine itself isn't cached (a compiled script is bound to the engine that compiled it).
+   */
+  protected CompiledScript getCompiledScript(String script, String language, ScriptEngine scriptEngine) throws ScriptException {
+    if (!cacheCompiledScripts || !(scriptEngine instanceof Compilable) || cachedEngines.get(language) != scriptEngine) {
+      return null;
+    }
+    
+    // The JUEL engine resolves variables when the expression is parsed, 
+    // so a compiled expression can't be shared between evaluations with different bindings
+    if (scriptEngine instanceof JuelScriptEngine) {
+      return null;
+    }
+    
+    CompiledScriptKey key = new CompiledScriptKey(language, script);
+    CompiledScript compiledScript = compiledScripts.get(key);
+    if (compiledScript != null) {
+      compiledScriptCacheHitCount.incrementAndGet();
+      return compiledScript;
+    }
+    
+    compiledScriptCacheMissCount.incrementAndGet();
+    compiledScript = ((Compilable) scriptEngine).compile(script);
+    
+    if (compiledScriptCacheLimit > 0 && compiledScripts.size() >= compiledScriptCacheLimit) {
+      // Make room by dropping an arbitrary entry: cheap, and good enough as the cache normally holds all scripts
+      Iterator<CompiledScriptKey> iterator = compiledScripts.keySet().iterator();
+      if (iterator.hasNext()) {
+        iterator.next();
+        iterator.remove();
+      }
+    }
+    compiledScripts.put(key, compiledScript);
+    return compiledScript;
+  }
 
   protected ScriptEngine getEngineByName(String language) {
   	ScriptEngine scriptEngine = null;
@@ -142,4 +244,39 @@ public class ScriptingEngines {
   public void setScriptBindingsFactory(ScriptBindingsFactory scriptBindingsFactory) {
     this.scriptBindingsFactory = scriptBindingsFactory;
   }
+  
+  /**
+   * Key of the compiled script cache. The hashcode of the script String is cached by the String itself, 
+   * so looking up the same script (which comes from the parsed process definition) is cheap.
+   */
+  protected static class CompiledScriptKey {
+    
+    protected final String language;
+    protected final String script;
+    protected final int hashCode;
+    
+    public CompiledScriptKey(String language, String script) {
+      this.language = language;
+      this.script = script;
+      this.hashCode = 31 * language.hashCode() + script.hashCode();
+    }
+    
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+    
+    @Override
+    public boolean equals(Object object) {
+      if (this == object) {
+        return true;
+      }
+      if (!(object instanceof CompiledScriptKey)) {
+        return false;
+      }
+      CompiledScriptKey other = (CompiledScriptKey) object;
+      return hashCode == other.hashCode && language.equals(other.language) && script.equals(other.script);
+    }
+    
+  }
 }
@@ -25,6 +25,8 @@ import org.activiti.engine.ManagementService;
  */
 public interface Job {
   
+  int DEFAULT_PRIORITY = 50;
+  
   /**
    * Returns the unique identifier for this job.
    */
@@ -58,6 +60,13 @@ public interface Job {
    */
   int getRetries();
   
+  /**
+   * Returns the priority of this job, jobs with a higher priority are acquired first.
+   * Defaults to {@link #DEFAULT_PRIORITY}, set with the activiti:jobPriority attribute
+   * of the activity or process in the process definition.
+   */
+  int getPriority();
+  
   /**
    * Returns the message of the exception that occurred, the last time the job was
    * executed. Returns null when no exception occurred.
@@ -56,6 +56,15 @@ public interface JobQuery extends Query<JobQuery, Job> {
    * Cannot be used together with {@link #timers()} */
   JobQuery messages();
   
+  /** Only select jobs with the given priority. */
+  JobQuery jobPriority(Integer priority);
+  
+  /** Only select jobs with the given priority or higher. */
+  JobQuery jobMinPriority(Integer minPriority);
+  
+  /** Only select jobs with the given priority or lower. */
+  JobQuery jobMaxPriority(Integer maxPriority);
+  
   /** Only select jobs where the duedate is lower than the given date. */
   JobQuery duedateLowerThan(Date date);
   
@@ -113,6 +122,9 @@ public interface JobQuery extends Query<JobQuery, Job> {
   
   /** Order by retries (needs to be followed by {@link #asc()} or {@link #desc()}). */
   JobQuery orderByJobRetries();
+  
+  /** Order by priority (needs to be followed by {@link #asc()} or {@link #desc()}). */
+  JobQuery orderByJobPriority();
 
   /** Order by process instance id (needs to be followed by {@link #asc()} or {@link #desc()}). */
   JobQuery orderByProcessInstanceId();
@@ -13,9 +13,7 @@
 
 package org.activiti.engine.test.mock;
 
-import org.activiti.engine.delegate.VariableScope;
 import org.activiti.engine.impl.el.ExpressionManager;
-import org.activiti.engine.impl.el.VariableScopeElResolver;
 import org.activiti.engine.impl.javax.el.ArrayELResolver;
 import org.activiti.engine.impl.javax.el.BeanELResolver;
 import org.activiti.engine.impl.javax.el.CompositeELResolver;
@@ -26,9 +24,8 @@ import org.activiti.engine.impl.javax.el.MapELResolver;
 public class MockExpressionManager extends ExpressionManager {
 
   @Override
-  protected ELResolver createElResolver(VariableScope variableScope) {
+  protected ELResolver createSharedElResolver() {
     CompositeELResolver compositeElResolver = new CompositeELResolver();
-    compositeElResolver.add(new VariableScopeElResolver(variableScope));
     compositeElResolver.add(new MockElResolver());
     compositeElResolver.add(new ArrayELResolver());
     compositeElResolver.add(new ListELResolver());
@@ -14,6 +14,7 @@ drop table if exists ACT_PROCDEF_INFO cascade constraints;
 
 drop index if exists ACT_IDX_EXEC_BUSKEY;
 drop index if exists ACT_IDX_TASK_CREATE;
+drop index if exists ACT_IDX_JOB_PRIORITY;
 drop index if exists ACT_IDX_IDENT_LNK_USER;
 drop index if exists ACT_IDX_IDENT_LNK_GROUP;
 drop index if exists ACT_IDX_VARIABLE_TASK_ID;
@@ -0,0 +1,9 @@
+alter table ACT_RU_JOB
+    add PARTITION_ integer;
+
+Call Sysproc.admin_cmd ('REORG TABLE ACT_RU_JOB');
+
+insert into ACT_GE_PROPERTY
+values ('deployment.version', '0', 1);
+
+update ACT_GE_PROPERTY set VALUE_ = '5.22.0.2' where NAME_ = 'schema.version';
@@ -0,0 +1,8 @@
+alter table ACT_RU_JOB
+    add PRIORITY_ INTEGER DEFAULT 50;
+
+update ACT_RU_JOB set PRIORITY_ = 50;
+
+create index ACT_IDX_JOB_PRIORITY on ACT_RU_JOB(PRIORITY_);
+
+update ACT_GE_PROPERTY set VALUE_ = '5.22.0.1' where NAME_ = 'schema.version';
@@ -0,0 +1,7 @@
+alter table ACT_RU_JOB
+    add PARTITION_ INTEGER;
+
+insert into ACT_GE_PROPERTY
+values ('deployment.version', '0', 1);
+
+update ACT_GE_PROPERTY set VALUE_ = '5.22.0.2' where NAME_ = 'schema.version';
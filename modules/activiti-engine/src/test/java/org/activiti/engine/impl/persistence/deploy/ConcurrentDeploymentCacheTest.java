@@ -0,0 +1,115 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.impl.persistence.deploy;
+
+import junit.framework.TestCase;
+
+public class ConcurrentDeploymentCacheTest extends TestCase {
+
+  public void testNoLimit() {
+    ConcurrentDeploymentCache<String> cache = new ConcurrentDeploymentCache<String>();
+    for (int i = 0; i < 100; i++) {
+      cache.add("id" + i, "value" + i);
+    }
+    assertEquals(100, cache.size());
+    assertEquals("value42", cache.get("id42"));
+    assertNull(cache.get("unexisting"));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(0, cache.getEvictionCount());
+    
+    cache.remove("id42");
+    assertNull(cache.get("id42"));
+    assertEquals(99, cache.size());
+    
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getTotalWeight());
+  }
+  
+  public void testLruEviction() {
+    ConcurrentDeploymentCache<String> cache = new ConcurrentDeploymentCache<String>(3);
+    cache.add("a", "a");
+    cache.add("b", "b");
+    cache.add("c", "c");
+    
+    // 'a' becomes the most recently used, so 'b' is evicted
+    cache.get("a");
+    cache.add("d", "d");
+    
+    assertEquals(3, cache.size());
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("a"));
+    assertNotNull(cache.get("c"));
+    assertNotNull(cache.get("d"));
+    assertEquals(1, cache.getEvictionCount());
+  }
+  
+  public void testLruEvictionOfEntriesAddedBackToBack() {
+    ConcurrentDeploymentCache<String> cache = new ConcurrentDeploymentCache<String>(3);
+    for (int i = 0; i < 1000; i++) {
+      cache.add("id" + i, "value" + i);
+      
+      // reading the entry added before doesn't make it outlive the one just added
+      cache.get("id" + (i - 1));
+    }
+    
+    assertEquals(3, cache.size());
+    assertNotNull(cache.get("id997"));
+    assertNotNull(cache.get("id998"));
+    assertNotNull(cache.get("id999"));
+  }
+  
+  public void testLfuEviction() {
+    ConcurrentDeploymentCache<String> cache = new ConcurrentDeploymentCache<String>(2);
+    cache.setEvictionPolicy(ConcurrentDeploymentCache.EvictionPolicy.LFU);
+    cache.add("a", "a");
+    cache.add("b", "b");
+    
+    cache.get("a");
+    cache.get("a");
+    cache.get("b");
+    cache.add("c", "c");
+    
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("a"));
+    assertNotNull(cache.get("c"));
+  }
+  
+  public void testWeightLimit() {
+    DeploymentCacheWeigher<String> lengthWeigher = new DeploymentCacheWeigher<String>() {
+      public int weigh(String id, String object) {
+        return object.length();
+      }
+    };
+    ConcurrentDeploymentCache<String> cache = new ConcurrentDeploymentCache<String>(-1, 10, lengthWeigher);
+    cache.add("a", "aaaa");
+    cache.add("b", "bbbb");
+    assertEquals(8, cache.getTotalWeight());
+    
+    cache.add("c", "cccc");
+    assertEquals(2, cache.size());
+    assertEquals(8, cache.getTotalWeight());
+    assertNull(cache.get("a"));
+    
+    // Replacing an entry adjusts the total weight
+    cache.add("c", "cc");
+    assertEquals(6, cache.getTotalWeight());
+    
+    // An entry heavier than the limit only pushes out the others
+    cache.add("d", "dddddddddddd");
+    assertEquals(1, cache.size());
+    assertEquals("dddddddddddd", cache.get("d"));
+  }
+  
+}
@@ -0,0 +1,101 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.test.api.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.activiti.engine.delegate.event.ActivitiEvent;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.delegate.event.impl.ActivitiEntityEventImpl;
+import org.activiti.engine.delegate.event.impl.ActivitiEventDispatcherImpl;
+import org.activiti.engine.delegate.event.impl.ActivitiEventSupport;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+import org.activiti.engine.impl.test.PluggableActivitiTestCase;
+import org.activiti.engine.test.Deployment;
+
+public class ActivitiEventSupportTest extends PluggableActivitiTestCase {
+
+  public void testListenersPerType() {
+    ActivitiEventSupport eventSupport = new ActivitiEventSupport();
+    assertFalse(eventSupport.hasListeners(ActivitiEventType.ENTITY_CREATED));
+
+    TestActivitiEventListener typedListener = new TestActivitiEventListener();
+    eventSupport.addEventListener(typedListener, ActivitiEventType.ENTITY_CREATED);
+    assertTrue(eventSupport.hasListeners(ActivitiEventType.ENTITY_CREATED));
+    assertFalse(eventSupport.hasListeners(ActivitiEventType.ENTITY_DELETED));
+
+    TestActivitiEventListener globalListener = new TestActivitiEventListener();
+    eventSupport.addEventListener(globalListener);
+    for (ActivitiEventType type : ActivitiEventType.values()) {
+      assertTrue(eventSupport.hasListeners(type));
+    }
+
+    eventSupport.removeEventListener(globalListener);
+    assertTrue(eventSupport.hasListeners(ActivitiEventType.ENTITY_CREATED));
+    assertFalse(eventSupport.hasListeners(ActivitiEventType.ENTITY_DELETED));
+
+    eventSupport.removeEventListener(typedListener);
+    assertFalse(eventSupport.hasListeners(ActivitiEventType.ENTITY_CREATED));
+  }
+
+  public void testGlobalListenersAreNotifiedBeforeTypedListeners() {
+    final List<String> notified = new ArrayList<String>();
+    ActivitiEventSupport eventSupport = new ActivitiEventSupport();
+    eventSupport.addEventListener(new TestActivitiEventListener() {
+      public void onEvent(ActivitiEvent event) {
+        notified.add("typed");
+      }
+    }, ActivitiEventType.ENTITY_CREATED);
+    eventSupport.addEventListener(new TestActivitiEventListener() {
+      public void onEvent(ActivitiEvent event) {
+        notified.add("global");
+      }
+    });
+
+    eventSupport.dispatchEvent(new ActivitiEntityEventImpl(new TaskEntity(), ActivitiEventType.ENTITY_CREATED));
+    eventSupport.dispatchEvent(new ActivitiEntityEventImpl(new TaskEntity(), ActivitiEventType.ENTITY_DELETED));
+
+    assertEquals(3, notified.size());
+    assertEquals("global", notified.get(0));
+    assertEquals("typed", notified.get(1));
+    assertEquals("global", notified.get(2));
+  }
+
+  public void testDisabledDispatcherHasNoListeners() {
+    ActivitiEventDispatcherImpl dispatcher = new ActivitiEventDispatcherImpl();
+    dispatcher.addEventListener(new TestActivitiEventListener());
+    assertTrue(dispatcher.hasListeners(ActivitiEventType.ACTIVITY_STARTED));
+
+    dispatcher.setEnabled(false);
+    assertFalse(dispatcher.hasListeners(ActivitiEventType.ACTIVITY_STARTED));
+  }
+
+  @Deployment(resources = "org/activiti/engine/test/api/runtime/oneTaskProcess.bpmn20.xml")
+  public void testOnlyListenedEventTypesAreDispatched() {
+    TestActivitiEventListener listener = new TestActivitiEventListener();
+    processEngineConfiguration.getEventDispatcher().addEventListener(listener, ActivitiEventType.ACTIVITY_STARTED);
+    try {
+      runtimeService.startProcessInstanceByKey("oneTaskProcess");
+
+      // the start event and the user task
+      assertEquals(2, listener.getEventsReceived().size());
+      for (ActivitiEvent event : listener.getEventsReceived()) {
+        assertEquals(ActivitiEventType.ACTIVITY_STARTED, event.getType());
+      }
+    } finally {
+      processEngineConfiguration.getEventDispatcher().removeEventListener(listener);
+    }
+  }
+
+}
@@ -19,6 +19,7 @@ import java.util.Map;
 
 import org.activiti.engine.history.HistoricProcessInstance;
 import org.activiti.engine.history.HistoricProcessInstanceQuery;
+import org.activiti.engine.impl.HistoricProcessInstanceQueryImpl;
 import org.activiti.engine.impl.history.HistoryLevel;
 import org.activiti.engine.impl.test.PluggableActivitiTestCase;
 import org.activiti.engine.task.Task;
@@ -200,6 +201,24 @@ public class HistoricProcessInstanceAndVariablesQueryTest extends PluggableActiv
     }
   }
   
+  public void testQueryWithExplicitOrder() {
+    if (processEngineConfiguration.getHistoryLevel().isAtLeast(HistoryLevel.ACTIVITY)) {
+      HistoricProcessInstanceQueryImpl query = (HistoricProcessInstanceQueryImpl) historyService.createHistoricProcessInstanceQuery()
+          .includeProcessVariables()
+          .processDefinitionKey(PROCESS_DEFINITION_KEY)
+          .orderByProcessInstanceBusinessKey()
+          .desc();
+      List<HistoricProcessInstance> instanceList = query.listPage(0, 2);
+      assertEquals(2, instanceList.size());
+      assertEquals("3", instanceList.get(0).getBusinessKey());
+      assertEquals("2", instanceList.get(1).getBusinessKey());
+      assertEquals(2, instanceList.get(0).getProcessVariables().size());
+      
+      // the start time order is only added when no order was given
+      assertEquals("RES.BUSINESS_KEY_ desc", query.getOrderBy());
+    }
+  }
+  
   public void testQueryByprocessDefinition() {
     if (processEngineConfiguration.getHistoryLevel().isAtLeast(HistoryLevel.ACTIVITY)) {
         // DeploymentId
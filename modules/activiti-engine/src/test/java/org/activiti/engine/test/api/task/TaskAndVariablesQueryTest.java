@@ -241,6 +241,29 @@ public class TaskAndVariablesQueryTest extends PluggableActivitiTestCase {
     }
   }
 
+  public void testQueryWithPagingBeyondVariablesLimit() throws Exception {
+    try {
+      multipleTaskIds = generateMultipleTestTasks();
+
+      // the tasks are paged by the database, the limit caps the page size and not the number of variable rows
+      List<Task> tasks = taskService.createTaskQuery()
+          .includeTaskLocalVariables()
+          .limitTaskVariables(10)
+          .orderByTaskPriority()
+          .asc()
+          .listPage(90, 20);
+      assertEquals(10, tasks.size());
+      for (Task task : tasks) {
+        if (multipleTaskIds.contains(task.getId())) {
+          assertEquals(2, task.getTaskLocalVariables().size());
+          assertEquals("test", task.getTaskLocalVariables().get("test"));
+        }
+      }
+    } finally {
+      taskService.deleteTasks(multipleTaskIds, true);
+    }
+  }
+
   @Deployment
   public void testOrQuery() {
     Map<String, Object> startMap = new HashMap<String, Object>();
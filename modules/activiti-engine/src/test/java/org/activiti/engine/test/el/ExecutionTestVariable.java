@@ -30,5 +30,13 @@ public class ExecutionTestVariable implements Serializable{
   public void testMethod(DelegateExecution delegateExecution) {
     delegateExecution.setVariable("testVar", "myValue");
   }
+  
+  public String join(String first) {
+    return first;
+  }
+  
+  public String join(String first, String second) {
+    return first + "-" + second;
+  }
 
 }
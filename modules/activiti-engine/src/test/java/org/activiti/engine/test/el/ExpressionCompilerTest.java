@@ -0,0 +1,167 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.test.el;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.activiti.engine.impl.juel.ExpressionFactoryImpl;
+import org.activiti.engine.impl.juel.SimpleContext;
+import org.activiti.engine.impl.juel.TreeValueExpression;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compiled expressions evaluating to the same values, and failing with the same exceptions, as the interpreted ones.
+ */
+public class ExpressionCompilerTest {
+
+  protected static final String[] EXPRESSIONS = {
+    "${a > b}", "${a >= b}", "${a < b}", "${a <= b}", "${a == b}", "${a != b}",
+    "${a gt 100}", "${a == 'open'}", "${a eq b && b ne 0}", "${a > 1 || b < 1}", "${!a}", "${not (a == b)}",
+    "${a ? b : 'no'}", "${empty a}", "${-a}", "${a + b}", "${a - 1}", "${a * b}", "${a / b}", "${a % b}",
+    "${(a + 1) * (b - 1)}", "${60 * 1000}", "${-1}", "${1 / 0}", "${'a' + 1}", "${true ? 1 : 2}",
+    "${bean.amount > a}", "${bean.status == 'open' && bean.amount >= b}", "${bean.missing}", "${map.key == a}",
+    "${map[a]}", "${list[0] + a}", "${missing}", "${missing.amount}", "${bean.describe(a)}",
+    "${fn:max(a, b)}", "text", "a${a}b", "${a}${b}"
+  };
+
+  protected static final Object[] VALUES = {
+    null, 0, 1, 150, -7L, 100L, (short) 3, (byte) 2, 2.5d, 1.5f, new BigDecimal("100.0"), new BigInteger("150"),
+    "", "0", "150", "open", "true", "abc", Boolean.TRUE, Boolean.FALSE, TimeUnit.SECONDS
+  };
+
+  @Test
+  public void testCompiledExpressionsBehaveAsInterpreted() throws Exception {
+    ExpressionFactoryImpl interpretingFactory = new ExpressionFactoryImpl();
+    ExpressionFactoryImpl compilingFactory = new ExpressionFactoryImpl();
+    compilingFactory.setCompilationThreshold(1);
+
+    int compared = 0;
+    for (String expression : EXPRESSIONS) {
+      for (Object a : VALUES) {
+        for (Object b : VALUES) {
+          SimpleContext context = createContext(a, b);
+          TreeValueExpression interpreted = interpretingFactory.createValueExpression(context, expression, Object.class);
+          TreeValueExpression compiled = compilingFactory.createValueExpression(context, expression, Object.class);
+
+          String description = expression + " with a=" + describe(a) + ", b=" + describe(b);
+          Assert.assertEquals(description, evaluate(interpreted, context), evaluate(compiled, context));
+          Assert.assertFalse(interpreted.isCompiled());
+          Assert.assertTrue(compiled.isCompiled());
+          compared++;
+        }
+      }
+    }
+    Assert.assertEquals(EXPRESSIONS.length * VALUES.length * VALUES.length, compared);
+  }
+
+  @Test
+  public void testCompiledWithExpectedType() throws Exception {
+    ExpressionFactoryImpl compilingFactory = new ExpressionFactoryImpl();
+    compilingFactory.setCompilationThreshold(1);
+    SimpleContext context = createContext(150, "100");
+
+    Assert.assertEquals(Boolean.TRUE, compilingFactory.createValueExpression(context, "${a > b}", Boolean.class).getValue(context));
+    Assert.assertEquals("250", compilingFactory.createValueExpression(context, "${a + b}", String.class).getValue(context));
+    Assert.assertEquals(Boolean.FALSE, compilingFactory.createValueExpression(context, "${b}", Boolean.class).getValue(context));
+  }
+
+  @Test
+  public void testCompiledAfterThreshold() {
+    ExpressionFactoryImpl factory = new ExpressionFactoryImpl();
+    factory.setCompilationThreshold(3);
+    SimpleContext context = createContext(150, 100);
+    TreeValueExpression expression = factory.createValueExpression(context, "${a > b}", Object.class);
+
+    for (int i = 0; i < 2; i++) {
+      Assert.assertEquals(Boolean.TRUE, expression.getValue(context));
+      Assert.assertFalse(expression.isCompiled());
+    }
+    Assert.assertEquals(Boolean.TRUE, expression.getValue(context));
+    Assert.assertTrue(expression.isCompiled());
+
+    // the compiled expression keeps evaluating against the given context
+    SimpleContext otherContext = createContext(50, 100);
+    Assert.assertEquals(Boolean.FALSE, expression.getValue(otherContext));
+  }
+
+  protected SimpleContext createContext(Object a, Object b) {
+    SimpleContext context = new SimpleContext();
+    try {
+      context.setFunction("fn", "max", Math.class.getMethod("max", long.class, long.class));
+    } catch (NoSuchMethodException e) {
+      throw new RuntimeException(e);
+    }
+    setRootProperty(context, "a", a);
+    setRootProperty(context, "b", b);
+    setRootProperty(context, "bean", new Bean(150, "open"));
+    Map<Object, Object> map = new HashMap<Object, Object>();
+    map.put("key", "open");
+    map.put(a, "byA");
+    setRootProperty(context, "map", map);
+    setRootProperty(context, "list", new ArrayList<Object>(Collections.singletonList(b)));
+    return context;
+  }
+
+  protected void setRootProperty(SimpleContext context, String name, Object value) {
+    context.getELResolver().setValue(context, null, name, value);
+  }
+
+  /** The result of the evaluation, or the type and message of the exception */
+  protected List<Object> evaluate(TreeValueExpression expression, SimpleContext context) {
+    try {
+      Object value = expression.getValue(context);
+      return Arrays.asList(value, value != null ? value.getClass() : null);
+    } catch (RuntimeException e) {
+      return Arrays.<Object>asList(e.getClass(), e.getMessage());
+    }
+  }
+
+  protected String describe(Object value) {
+    return value != null ? value + " (" + value.getClass().getSimpleName() + ")" : "null";
+  }
+
+  protected enum TimeUnit {
+    SECONDS
+  }
+
+  public static class Bean {
+
+    protected int amount;
+    protected String status;
+
+    public Bean(int amount, String status) {
+      this.amount = amount;
+      this.status = status;
+    }
+
+    public int getAmount() {
+      return amount;
+    }
+
+    public String getStatus() {
+      return status;
+    }
+
+    public String describe(Object value) {
+      return status + " " + value;
+    }
+  }
+}
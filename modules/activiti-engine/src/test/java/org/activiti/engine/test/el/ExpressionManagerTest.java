@@ -56,6 +56,21 @@ public class ExpressionManagerTest extends PluggableActivitiTestCase {
     assertEquals("myValue", value);
   }
   
+  @Deployment
+  public void testMethodsResolvedPerVariableScope() {
+    // The resolved methods are shared by all process instances, the variables are not 
+    for (String first : new String[] {"a", "b"}) {
+      Map<String, Object> vars = new HashMap<String, Object>();
+      vars.put("myVar", new ExecutionTestVariable());
+      vars.put("first", first);
+      vars.put("second", "c");
+      ProcessInstance processInstance = runtimeService.startProcessInstanceByKey("methodsResolvedPerVariableScopeProcess", vars);
+      
+      assertEquals(first, runtimeService.getVariable(processInstance.getId(), "one"));
+      assertEquals(first + "-c", runtimeService.getVariable(processInstance.getId(), "two"));
+    }
+  }
+  
   @Deployment
   public void testAuthenticatedUserIdAvailable() {
     try {
@@ -0,0 +1,172 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.test.jobexecutor;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.delegate.DelegateExecution;
+import org.activiti.engine.delegate.JavaDelegate;
+import org.activiti.engine.impl.asyncexecutor.AdaptiveJobAcquisitionSizer;
+import org.activiti.engine.impl.asyncexecutor.DefaultAsyncJobExecutor;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Job acquisitions sized from the free capacity of the async executor, the job duration and the lock time.
+ */
+public class AdaptiveJobAcquisitionTest {
+
+  private static final String JDBC_URL = "jdbc:h2:mem:activiti-AdaptiveJobAcquisitionTest";
+
+  private static final int NR_OF_JOBS = 40;
+
+  @Test
+  public void testAcquisitionSize() {
+    FixedLoadAsyncJobExecutor asyncExecutor = new FixedLoadAsyncJobExecutor();
+    asyncExecutor.setAsyncJobLockTimeInMillis(1000);
+    AdaptiveJobAcquisitionSizer sizer = new AdaptiveJobAcquisitionSizer(asyncExecutor);
+    sizer.setMaxJobsPerAcquisition(50);
+
+    // idle executor, no job executed yet
+    asyncExecutor.remainingCapacity = 100;
+    Assert.assertEquals(50, sizer.getAsyncJobsAcquisitionSize());
+    Assert.assertEquals(AdaptiveJobAcquisitionSizer.LIMITED_BY_MAX, sizer.getLastAsyncJobsLimitedBy());
+
+    // 2 threads execute 5 jobs of 100 ms each in half the lock time, 4 of which are queued already
+    sizer.recordJobDuration(100);
+    asyncExecutor.concurrency = 2;
+    asyncExecutor.queuedJobCount = 4;
+    Assert.assertEquals(6, sizer.getAsyncJobsAcquisitionSize());
+    Assert.assertEquals(AdaptiveJobAcquisitionSizer.LIMITED_BY_LOCK_EXPIRY, sizer.getLastAsyncJobsLimitedBy());
+
+    // slower jobs
+    sizer.recordJobDuration(600);
+    Assert.assertEquals(200.0, sizer.getAverageJobDurationInMillis(), 0.001);
+    Assert.assertEquals(1, sizer.getAsyncJobsAcquisitionSize());
+
+    asyncExecutor.queuedJobCount = 0;
+    asyncExecutor.remainingCapacity = 3;
+    Assert.assertEquals(3, sizer.getAsyncJobsAcquisitionSize());
+    Assert.assertEquals(AdaptiveJobAcquisitionSizer.LIMITED_BY_CAPACITY, sizer.getLastAsyncJobsLimitedBy());
+
+    // full executor: skip the acquisition, try again when a job is likely finished
+    asyncExecutor.remainingCapacity = 0;
+    Assert.assertEquals(0, sizer.getAsyncJobsAcquisitionSize());
+    Assert.assertEquals(1, sizer.getSkippedAcquisitionCount());
+    Assert.assertEquals(200, sizer.getFullExecutorWaitTime(10000));
+    Assert.assertEquals(50, sizer.getFullExecutorWaitTime(50));
+  }
+
+  @Test
+  public void testJobsAcquiredWithinCapacity() throws Exception {
+    RejectionCountingAsyncJobExecutor asyncExecutor = new RejectionCountingAsyncJobExecutor();
+    asyncExecutor.setCorePoolSize(2);
+    asyncExecutor.setMaxPoolSize(2);
+    asyncExecutor.setQueueSize(4);
+    asyncExecutor.setDefaultAsyncJobAcquireWaitTimeInMillis(1000);
+    asyncExecutor.setAdaptiveJobAcquisition(true);
+
+    ProcessEngineConfigurationImpl processEngineConfiguration = new StandaloneInMemProcessEngineConfiguration();
+    processEngineConfiguration.setJdbcUrl(JDBC_URL);
+    processEngineConfiguration.setDatabaseSchemaUpdate("true");
+    processEngineConfiguration.setJobExecutorActivate(false);
+    processEngineConfiguration.setAsyncExecutorEnabled(true);
+    processEngineConfiguration.setAsyncExecutorActivate(false);
+    processEngineConfiguration.setAsyncExecutor(asyncExecutor);
+    ProcessEngine processEngine = processEngineConfiguration.buildProcessEngine();
+    try {
+      processEngine.getRepositoryService().createDeployment()
+        .addClasspathResource("org/activiti/engine/test/jobexecutor/AdaptiveJobAcquisitionTest.bpmn20.xml").deploy();
+
+      // the jobs are created on another node without async executor: due right away, and only found by acquiring them
+      ProcessEngineConfigurationImpl otherNodeConfiguration = new StandaloneInMemProcessEngineConfiguration();
+      otherNodeConfiguration.setProcessEngineName("otherNode");
+      otherNodeConfiguration.setJdbcUrl(JDBC_URL);
+      otherNodeConfiguration.setDatabaseSchemaUpdate("false");
+      otherNodeConfiguration.setJobExecutorActivate(false);
+      ProcessEngine otherNode = otherNodeConfiguration.buildProcessEngine();
+      try {
+        for (int i = 0; i < NR_OF_JOBS; i++) {
+          otherNode.getRuntimeService().startProcessInstanceByKey("adaptiveAcquisition");
+        }
+      } finally {
+        otherNode.close();
+      }
+      asyncExecutor.start();
+
+      // the duration of a job is recorded right after its transaction committed
+      AdaptiveJobAcquisitionSizer sizer = asyncExecutor.getAcquisitionSizer();
+      long start = System.currentTimeMillis();
+      while (processEngine.getTaskService().createTaskQuery().count() < NR_OF_JOBS || sizer.getExecutedJobCount() < NR_OF_JOBS) {
+        Assert.assertTrue("Jobs were not executed", System.currentTimeMillis() - start < 30000L);
+        Thread.sleep(50L);
+      }
+
+      // a batch of the default 100 jobs would have been rejected for the most part
+      Assert.assertEquals(0, asyncExecutor.rejectedJobs);
+      Assert.assertTrue(sizer.getCapacityLimitedCount() > 0);
+      Assert.assertEquals(NR_OF_JOBS, sizer.getExecutedJobCount());
+      Assert.assertTrue(sizer.getAverageJobDurationInMillis() >= SleepingDelegate.SLEEP_TIME);
+
+    } finally {
+      asyncExecutor.shutdown();
+      for (org.activiti.engine.repository.Deployment deployment : processEngine.getRepositoryService().createDeploymentQuery().list()) {
+        processEngine.getRepositoryService().deleteDeployment(deployment.getId(), true);
+      }
+      processEngine.close();
+    }
+  }
+
+  static class FixedLoadAsyncJobExecutor extends DefaultAsyncJobExecutor {
+
+    int remainingCapacity = -1;
+    int concurrency = -1;
+    int queuedJobCount = 0;
+
+    public int getRemainingCapacity() {
+      return remainingCapacity;
+    }
+
+    public int getConcurrency() {
+      return concurrency;
+    }
+
+    public int getQueuedJobCount() {
+      return queuedJobCount;
+    }
+  }
+
+  static class RejectionCountingAsyncJobExecutor extends DefaultAsyncJobExecutor {
+
+    volatile int rejectedJobs;
+
+    protected boolean executeAsyncJob(Runnable runnable) {
+      boolean result = super.executeAsyncJob(runnable);
+      if (!result) {
+        rejectedJobs++;
+      }
+      return result;
+    }
+  }
+
+  public static class SleepingDelegate implements JavaDelegate {
+
+    static final long SLEEP_TIME = 20L;
+
+    public void execute(DelegateExecution execution) throws Exception {
+      Thread.sleep(SLEEP_TIME);
+    }
+  }
+
+}
@@ -0,0 +1,114 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.test.jobexecutor;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.asyncexecutor.AcquireAsyncJobsDueRunnable;
+import org.activiti.engine.impl.asyncexecutor.AsyncJobNotificationChannel;
+import org.activiti.engine.impl.asyncexecutor.DatabaseAsyncJobNotificationChannel;
+import org.activiti.engine.impl.asyncexecutor.DefaultAsyncJobExecutor;
+import org.activiti.engine.impl.asyncexecutor.LocalAsyncJobNotificationChannel;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link AsyncJobNotificationChannel}: an engine that doesn't execute async jobs 
+ * wakes up the acquisition of another engine, which otherwise would only look for jobs after a minute.
+ */
+public class AsyncJobNotificationChannelTest {
+  
+  @Test
+  public void testLocalNotificationChannel() throws Exception {
+    LocalAsyncJobNotificationChannel channel = new LocalAsyncJobNotificationChannel();
+    runAsyncJobOnOtherEngine(channel, channel);
+  }
+  
+  @Test
+  public void testDatabaseNotificationChannel() throws Exception {
+    DatabaseAsyncJobNotificationChannel executingChannel = new DatabaseAsyncJobNotificationChannel();
+    executingChannel.setPollIntervalInMillis(100L);
+    runAsyncJobOnOtherEngine(new DatabaseAsyncJobNotificationChannel(), executingChannel);
+  }
+  
+  protected void runAsyncJobOnOtherEngine(AsyncJobNotificationChannel publishingChannel, AsyncJobNotificationChannel executingChannel) throws Exception {
+    ProcessEngine publishingEngine = null;
+    ProcessEngine executingEngine = null;
+    try {
+      publishingEngine = createProcessEngine(false, publishingChannel);
+      executingEngine = createProcessEngine(true, executingChannel);
+      
+      publishingEngine.getRepositoryService().createDeployment()
+        .addClasspathResource("org/activiti/engine/test/jobexecutor/AsyncJobNotificationChannelTest.bpmn20.xml").deploy();
+      
+      // Let the acquisition thread do its first (empty) acquisition and go to sleep
+      AcquireAsyncJobsDueRunnable acquireRunnable = getAcquireRunnable(executingEngine);
+      waitUntil(acquireRunnable, 1, 5000L);
+      
+      publishingEngine.getRuntimeService().startProcessInstanceByKey("asyncNotification");
+      
+      // Without notification, this would take the full acquire wait time (60 seconds).
+      // So would a notification that arrives while the job is still locked by the publishing engine.
+      long start = System.currentTimeMillis();
+      while (publishingEngine.getTaskService().createTaskQuery().taskName("Task after service").count() == 0) {
+        Assert.assertTrue("Async job was not executed after notification", System.currentTimeMillis() - start < 10000L);
+        Thread.sleep(100L);
+      }
+      
+      Assert.assertEquals(0, publishingEngine.getManagementService().createJobQuery().count());
+      Assert.assertTrue(acquireRunnable.getNotificationCount() > 0);
+      Assert.assertTrue(acquireRunnable.getNotifiedAcquisitionCount() > 0);
+      Assert.assertTrue(acquireRunnable.getEmptyAcquisitionCount() > 0);
+      
+    } finally {
+      cleanup(executingEngine);
+      cleanup(publishingEngine);
+    }
+  }
+  
+  protected ProcessEngine createProcessEngine(boolean activateAsyncExecutor, AsyncJobNotificationChannel channel) {
+    ProcessEngineConfigurationImpl processEngineConfiguration = new StandaloneInMemProcessEngineConfiguration();
+    // With MVCC, the acquisition doesn't wait for the transaction that releases the job, like on most databases
+    processEngineConfiguration.setJdbcUrl("jdbc:h2:mem:activiti-AsyncJobNotificationChannelTest;DB_CLOSE_DELAY=1000;MVCC=TRUE");
+    processEngineConfiguration.setDatabaseSchemaUpdate("true");
+    processEngineConfiguration.setJobExecutorActivate(false);
+    processEngineConfiguration.setAsyncExecutorEnabled(true);
+    processEngineConfiguration.setAsyncExecutorActivate(activateAsyncExecutor);
+    processEngineConfiguration.setAsyncExecutorDefaultAsyncJobAcquireWaitTime(60 * 1000);
+    processEngineConfiguration.setAsyncExecutorDefaultTimerJobAcquireWaitTime(60 * 1000);
+    processEngineConfiguration.setAsyncExecutorJobNotificationChannel(channel);
+    return processEngineConfiguration.buildProcessEngine();
+  }
+  
+  protected AcquireAsyncJobsDueRunnable getAcquireRunnable(ProcessEngine processEngine) {
+    return ((DefaultAsyncJobExecutor) processEngine.getProcessEngineConfiguration().getAsyncExecutor()).getAsyncJobsDueRunnable();
+  }
+  
+  protected void waitUntil(AcquireAsyncJobsDueRunnable acquireRunnable, long acquisitions, long maxWaitTime) throws InterruptedException {
+    long start = System.currentTimeMillis();
+    while (acquireRunnable.getAcquisitionCount() < acquisitions && System.currentTimeMillis() - start < maxWaitTime) {
+      Thread.sleep(50L);
+    }
+  }
+  
+  protected void cleanup(ProcessEngine processEngine) {
+    if (processEngine != null) {
+      for (org.activiti.engine.repository.Deployment deployment : processEngine.getRepositoryService().createDeploymentQuery().list()) {
+        processEngine.getRepositoryService().deleteDeployment(deployment.getId(), true);
+      }
+      processEngine.close();
+    }
+  }
+
+}
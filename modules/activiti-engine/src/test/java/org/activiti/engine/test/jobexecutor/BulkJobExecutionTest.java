@@ -0,0 +1,145 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.test.jobexecutor;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.delegate.DelegateExecution;
+import org.activiti.engine.delegate.JavaDelegate;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.runtime.Job;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Executes non exclusive async jobs in bulks of 10 jobs per transaction, some of which fail.
+ */
+public class BulkJobExecutionTest {
+
+  private static final int NR_OF_JOBS = 30;
+
+  protected static Set<CommandContext> commandContexts = Collections.synchronizedSet(
+      Collections.newSetFromMap(new IdentityHashMap<CommandContext, Boolean>()));
+  protected static AtomicInteger executions = new AtomicInteger();
+
+  protected ProcessEngineConfigurationImpl processEngineConfiguration;
+  protected ProcessEngine processEngine;
+
+  @Before
+  public void setUp() {
+    commandContexts.clear();
+    executions.set(0);
+    processEngineConfiguration = new StandaloneInMemProcessEngineConfiguration();
+    processEngineConfiguration.setJdbcUrl("jdbc:h2:mem:activiti-BulkJobExecutionTest");
+    processEngineConfiguration.setDatabaseSchemaUpdate("true");
+    processEngineConfiguration.setJobExecutorActivate(false);
+    processEngineConfiguration.setAsyncExecutorEnabled(true);
+    processEngineConfiguration.setAsyncExecutorActivate(false);
+    processEngineConfiguration.setAsyncExecutorCorePoolSize(2);
+    processEngineConfiguration.setAsyncExecutorMaxPoolSize(2);
+    processEngineConfiguration.setAsyncExecutorThreadPoolQueueSize(NR_OF_JOBS);
+    processEngineConfiguration.setAsyncExecutorMaxAsyncJobsDuePerAcquisition(NR_OF_JOBS);
+    processEngineConfiguration.setAsyncExecutorBulkJobExecutionSize(10);
+    processEngine = processEngineConfiguration.buildProcessEngine();
+    processEngine.getRepositoryService().createDeployment()
+      .addClasspathResource("org/activiti/engine/test/jobexecutor/BulkJobExecutionTest.bpmn20.xml").deploy();
+  }
+
+  @After
+  public void tearDown() {
+    processEngineConfiguration.getAsyncExecutor().shutdown();
+    for (org.activiti.engine.repository.Deployment deployment : processEngine.getRepositoryService().createDeploymentQuery().list()) {
+      processEngine.getRepositoryService().deleteDeployment(deployment.getId(), true);
+    }
+    processEngine.close();
+  }
+
+  @Test
+  public void testBulkJobExecution() throws Exception {
+    for (int i = 0; i < NR_OF_JOBS; i++) {
+      processEngine.getRuntimeService().startProcessInstanceByKey("bulkAsyncService", 
+          Collections.<String, Object>singletonMap("fail", false));
+    }
+
+    processEngineConfiguration.getAsyncExecutor().start();
+    waitForJobs(NR_OF_JOBS, 0);
+
+    Assert.assertEquals(NR_OF_JOBS, processEngine.getTaskService().createTaskQuery().count());
+    Assert.assertEquals(0, processEngine.getManagementService().createJobQuery().count());
+    Assert.assertEquals(NR_OF_JOBS, executions.get());
+    // one transaction per bulk of 10 jobs
+    Assert.assertTrue(commandContexts.size() < NR_OF_JOBS / 2);
+  }
+
+  @Test
+  public void testFailingJobsAreRolledBackAndRetriedIndividually() throws Exception {
+    for (int i = 0; i < NR_OF_JOBS; i++) {
+      processEngine.getRuntimeService().startProcessInstanceByKey("bulkAsyncService", 
+          Collections.<String, Object>singletonMap("fail", i % 5 == 0));
+    }
+    int nrOfFailingJobs = NR_OF_JOBS / 5;
+
+    processEngineConfiguration.getAsyncExecutor().start();
+    waitForJobs(NR_OF_JOBS - nrOfFailingJobs, nrOfFailingJobs);
+
+    // the jobs that didn't fail are committed, even when sharing a transaction with a failing job
+    Assert.assertEquals(NR_OF_JOBS - nrOfFailingJobs, processEngine.getTaskService().createTaskQuery().count());
+
+    // failing jobs are rolled back, executed again on their own and then fail like any other job
+    List<Job> failedJobs = processEngine.getManagementService().createJobQuery().withException().list();
+    Assert.assertEquals(nrOfFailingJobs, failedJobs.size());
+    for (Job job : failedJobs) {
+      Assert.assertEquals(2, job.getRetries());
+      Assert.assertTrue(job.getExceptionMessage().contains("Failing on purpose"));
+      Map<String, Object> variables = processEngine.getRuntimeService().getVariables(job.getProcessInstanceId());
+      Assert.assertEquals(Boolean.TRUE, variables.get("fail"));
+      Assert.assertNull(variables.get("executed"));
+    }
+    Assert.assertEquals(nrOfFailingJobs, processEngine.getManagementService().createJobQuery().count());
+  }
+
+  protected void waitForJobs(int nrOfTasks, int nrOfFailedJobs) throws Exception {
+    long start = System.currentTimeMillis();
+    while (processEngine.getTaskService().createTaskQuery().count() < nrOfTasks
+        || processEngine.getManagementService().createJobQuery().withException().count() < nrOfFailedJobs) {
+      Assert.assertTrue("Jobs were not executed", System.currentTimeMillis() - start < 30000L);
+      Thread.sleep(50L);
+    }
+  }
+
+  public static class RecordingDelegate implements JavaDelegate {
+
+    public void execute(DelegateExecution execution) throws Exception {
+      commandContexts.add(Context.getCommandContext());
+      // a change that has to be rolled back when the job fails
+      execution.setVariable("executed", true);
+      if (Boolean.TRUE.equals(execution.getVariable("fail"))) {
+        throw new ActivitiException("Failing on purpose");
+      }
+      executions.incrementAndGet();
+    }
+  }
+
+}
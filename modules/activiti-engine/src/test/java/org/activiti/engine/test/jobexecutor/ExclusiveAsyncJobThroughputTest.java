@@ -0,0 +1,161 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.test.jobexecutor;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.asyncexecutor.ExecuteAsyncRunnable;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.activiti.engine.impl.db.DbSqlSessionFactory;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.JobEntity;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the same number of short exclusive async jobs with the lock, execute and unlock
+ * in separate transactions and in one transaction, and compares the number of transactions
+ * and the throughput of both.
+ */
+public class ExclusiveAsyncJobThroughputTest {
+
+  private static final Logger log = LoggerFactory.getLogger(ExclusiveAsyncJobThroughputTest.class);
+
+  private static final int NR_OF_JOBS = 200;
+
+  @Test
+  public void testSingleTransactionForExclusiveJobs() throws Exception {
+    // warm up both engines' code paths before measuring
+    runExclusiveJobs(false, 20);
+    runExclusiveJobs(true, 20);
+
+    long[] separateTransactions = runExclusiveJobs(false, NR_OF_JOBS);
+    long[] singleTransaction = runExclusiveJobs(true, NR_OF_JOBS);
+
+    log.info("{} exclusive jobs in separate transactions: {} ms, {} transactions", NR_OF_JOBS, separateTransactions[0], separateTransactions[1]);
+    log.info("{} exclusive jobs in a single transaction: {} ms, {} transactions", NR_OF_JOBS, singleTransaction[0], singleTransaction[1]);
+
+    // lock, execute and unlock: three transactions per job instead of one
+    Assert.assertTrue(separateTransactions[1] >= 3 * NR_OF_JOBS);
+    Assert.assertTrue(singleTransaction[1] <= NR_OF_JOBS + 10);
+  }
+
+  @Test
+  public void testLockedProcessInstanceUnacquiresJob() throws Exception {
+    final ProcessEngineConfigurationImpl processEngineConfiguration = createProcessEngineConfiguration(true, 1);
+    ProcessEngine processEngine = processEngineConfiguration.buildProcessEngine();
+    try {
+      processEngine.getRepositoryService().createDeployment()
+        .addClasspathResource("org/activiti/engine/test/jobexecutor/ExclusiveAsyncJobThroughputTest.bpmn20.xml").deploy();
+      final String processInstanceId = processEngine.getRuntimeService().startProcessInstanceByKey("exclusiveAsyncService").getId();
+
+      // another node holds the lock of the process instance
+      processEngineConfiguration.getCommandExecutor().execute(new Command<Void>() {
+        public Void execute(CommandContext commandContext) {
+          commandContext.getExecutionEntityManager().updateProcessInstanceLockTime(processInstanceId);
+          return null;
+        }
+      });
+
+      JobEntity job = (JobEntity) processEngine.getManagementService().createJobQuery().singleResult();
+      new ExecuteAsyncRunnable(job, processEngineConfiguration.getCommandExecutor(), true).run();
+
+      // the job is released again without using up a retry
+      job = (JobEntity) processEngine.getManagementService().createJobQuery().singleResult();
+      Assert.assertEquals(JobEntity.DEFAULT_RETRIES, job.getRetries());
+      Assert.assertNull(job.getExceptionMessage());
+      Assert.assertNull(job.getLockOwner());
+      Assert.assertEquals(1, processEngine.getRuntimeService().createProcessInstanceQuery().count());
+
+      // the job was changed by another transaction while this one waited for the lock
+      processEngineConfiguration.getCommandExecutor().execute(new Command<Void>() {
+        public Void execute(CommandContext commandContext) {
+          commandContext.getExecutionEntityManager().clearProcessInstanceLockTime(processInstanceId);
+          return null;
+        }
+      });
+      processEngine.getManagementService().setJobRetries(job.getId(), 5);
+      new ExecuteAsyncRunnable(job, processEngineConfiguration.getCommandExecutor(), true).run();
+
+      job = (JobEntity) processEngine.getManagementService().createJobQuery().singleResult();
+      Assert.assertEquals(5, job.getRetries());
+      Assert.assertNull(job.getExceptionMessage());
+      Assert.assertEquals(1, processEngine.getRuntimeService().createProcessInstanceQuery().count());
+
+    } finally {
+      for (org.activiti.engine.repository.Deployment deployment : processEngine.getRepositoryService().createDeploymentQuery().list()) {
+        processEngine.getRepositoryService().deleteDeployment(deployment.getId(), true);
+      }
+      processEngine.close();
+    }
+  }
+
+  protected ProcessEngineConfigurationImpl createProcessEngineConfiguration(boolean singleTransactionForExclusiveJobs, int nrOfJobs) {
+    ProcessEngineConfigurationImpl processEngineConfiguration = new StandaloneInMemProcessEngineConfiguration();
+    processEngineConfiguration.setJdbcUrl("jdbc:h2:file:target/activiti-ExclusiveAsyncJobThroughputTest-" + singleTransactionForExclusiveJobs + ";WRITE_DELAY=0");
+    processEngineConfiguration.setDatabaseSchemaUpdate("true");
+    processEngineConfiguration.setHistory("none");
+    processEngineConfiguration.setJobExecutorActivate(false);
+    processEngineConfiguration.setAsyncExecutorEnabled(true);
+    processEngineConfiguration.setAsyncExecutorActivate(false);
+    processEngineConfiguration.setAsyncExecutorCorePoolSize(1);
+    processEngineConfiguration.setAsyncExecutorMaxPoolSize(1);
+    processEngineConfiguration.setAsyncExecutorThreadPoolQueueSize(nrOfJobs);
+    processEngineConfiguration.setAsyncExecutorSingleTransactionForExclusiveJobs(singleTransactionForExclusiveJobs);
+    return processEngineConfiguration;
+  }
+
+  /**
+   * Returns the time it took to execute the jobs and the number of transactions used.
+   */
+  protected long[] runExclusiveJobs(boolean singleTransactionForExclusiveJobs, int nrOfJobs) throws Exception {
+    ProcessEngineConfigurationImpl processEngineConfiguration = createProcessEngineConfiguration(singleTransactionForExclusiveJobs, nrOfJobs);
+    ProcessEngine processEngine = processEngineConfiguration.buildProcessEngine();
+    try {
+      processEngine.getRepositoryService().createDeployment()
+        .addClasspathResource("org/activiti/engine/test/jobexecutor/ExclusiveAsyncJobThroughputTest.bpmn20.xml").deploy();
+      for (int i = 0; i < nrOfJobs; i++) {
+        processEngine.getRuntimeService().startProcessInstanceByKey("exclusiveAsyncService");
+      }
+
+      DbSqlSessionFactory dbSqlSessionFactory = processEngineConfiguration.getDbSqlSessionFactory();
+      dbSqlSessionFactory.resetFlushStatistics();
+      long start = System.currentTimeMillis();
+
+      // the jobs created while the async executor wasn't running are executed when it starts
+      processEngineConfiguration.getAsyncExecutor().start();
+      long nrOfPolls = 1;
+      while (processEngine.getRuntimeService().createProcessInstanceQuery().count() > 0) {
+        Assert.assertTrue("Exclusive jobs were not executed", System.currentTimeMillis() - start < 60000L);
+        Thread.sleep(10L);
+        nrOfPolls++;
+      }
+      long duration = System.currentTimeMillis() - start;
+
+      // the polling queries of this test are transactions as well
+      long transactions = dbSqlSessionFactory.getFlushCount() - nrOfPolls;
+      processEngineConfiguration.getAsyncExecutor().shutdown();
+      return new long[] {duration, transactions};
+
+    } finally {
+      for (org.activiti.engine.repository.Deployment deployment : processEngine.getRepositoryService().createDeploymentQuery().list()) {
+        processEngine.getRepositoryService().deleteDeployment(deployment.getId(), true);
+      }
+      processEngine.close();
+    }
+  }
+
+}
@@ -0,0 +1,317 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.test.jobexecutor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.impl.asyncexecutor.AcquiredJobEntities;
+import org.activiti.engine.impl.asyncexecutor.DefaultAsyncJobExecutor;
+import org.activiti.engine.impl.asyncexecutor.ExecuteAsyncRunnable;
+import org.activiti.engine.impl.asyncexecutor.ExecuteAsyncRunnableFactory;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.activiti.engine.impl.cmd.AcquireAsyncJobsDueCmd;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.interceptor.CommandExecutor;
+import org.activiti.engine.impl.persistence.entity.JobEntity;
+import org.activiti.engine.impl.persistence.entity.MessageEntity;
+import org.activiti.engine.runtime.Job;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exclusive jobs of a parallel gateway fan-out, executed with and without routing them to a lane per process instance.
+ */
+public class ExclusiveJobAffinityTest {
+
+  private static final Logger log = LoggerFactory.getLogger(ExclusiveJobAffinityTest.class);
+
+  private static final int NR_OF_PROCESS_INSTANCES = 20;
+
+  @Test
+  public void testNoLockFailuresWithExclusiveJobAffinity() throws Exception {
+    int lockFailuresWithoutAffinity = runParallelExclusiveJobs(false);
+    int lockFailuresWithAffinity = runParallelExclusiveJobs(true);
+
+    log.info("Exclusive job lock failures without affinity: {}, with affinity: {}", lockFailuresWithoutAffinity, lockFailuresWithAffinity);
+    Assert.assertEquals(0, lockFailuresWithAffinity);
+  }
+
+  @Test
+  public void testAcquireJobsOfProcessInstanceTogether() {
+    ProcessEngineConfigurationImpl processEngineConfiguration = createProcessEngineConfiguration(true);
+    ProcessEngine processEngine = processEngineConfiguration.buildProcessEngine();
+    try {
+      deploy(processEngine);
+      processEngine.getRuntimeService().startProcessInstanceByKey("parallelExclusiveJobs");
+      processEngine.getRuntimeService().startProcessInstanceByKey("parallelExclusiveJobs");
+
+      // the jobs were locked for the (inactive) async executor, acquire them after the lock expired
+      processEngineConfiguration.getClock().setCurrentTime(new Date(System.currentTimeMillis() + 60L * 60L * 1000L));
+      DefaultAsyncJobExecutor asyncExecutor = (DefaultAsyncJobExecutor) processEngineConfiguration.getAsyncExecutor();
+      asyncExecutor.setMaxAsyncJobsDuePerAcquisition(1);
+
+      // the other four jobs of the process instance of the first job take the places of the jobs of the other process instance
+      AcquiredJobEntities acquiredJobs = processEngineConfiguration.getCommandExecutor().execute(new AcquireAsyncJobsDueCmd(asyncExecutor, true, 5));
+      Assert.assertEquals(5, acquiredJobs.size());
+      String processInstanceId = acquiredJobs.getJobs().iterator().next().getProcessInstanceId();
+      for (JobEntity job : acquiredJobs.getJobs()) {
+        Assert.assertEquals(processInstanceId, job.getProcessInstanceId());
+      }
+
+      // without it, only one job of the other process instance is acquired
+      acquiredJobs = processEngineConfiguration.getCommandExecutor().execute(new AcquireAsyncJobsDueCmd(asyncExecutor));
+      Assert.assertEquals(1, acquiredJobs.size());
+      Assert.assertFalse(processInstanceId.equals(acquiredJobs.getJobs().iterator().next().getProcessInstanceId()));
+
+    } finally {
+      processEngineConfiguration.getClock().reset();
+      cleanup(processEngine);
+    }
+  }
+
+  @Test
+  public void testProcessInstanceLanesTakePlacesOfTheQueue() throws Exception {
+    ArrayBlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>(2);
+    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, queue);
+    LaneOfferingAsyncJobExecutor asyncExecutor = new LaneOfferingAsyncJobExecutor();
+    asyncExecutor.setExclusiveJobAffinity(true);
+    asyncExecutor.setQueueSize(2);
+    asyncExecutor.setThreadPoolQueue(queue);
+    asyncExecutor.setExecutorService(threadPoolExecutor);
+    try {
+      final CountDownLatch runningJob = new CountDownLatch(1);
+      Runnable blockingJob = new Runnable() {
+        public void run() {
+          try {
+            runningJob.await(10L, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      };
+      Runnable job = new Runnable() {
+        public void run() {
+        }
+      };
+
+      // the lane of process instance 1 runs its first job, the next two jobs wait in the lane
+      Assert.assertTrue(asyncExecutor.offerJob(createExclusiveJob("1"), blockingJob));
+      Assert.assertTrue(asyncExecutor.offerJob(createExclusiveJob("1"), job));
+      Assert.assertTrue(asyncExecutor.offerJob(createExclusiveJob("1"), job));
+      Assert.assertEquals(2, asyncExecutor.getQueuedJobCount());
+      Assert.assertEquals(0, asyncExecutor.getRemainingCapacity());
+
+      // the waiting jobs fill the queue: no more jobs for the lane or for new lanes
+      Assert.assertFalse(asyncExecutor.offerJob(createExclusiveJob("1"), job));
+      Assert.assertFalse(asyncExecutor.offerJob(createExclusiveJob("2"), job));
+
+      runningJob.countDown();
+      long start = System.currentTimeMillis();
+      while (asyncExecutor.getProcessInstanceLaneCount() > 0) {
+        Assert.assertTrue("Lane was not emptied", System.currentTimeMillis() - start < 10000L);
+        Thread.sleep(10L);
+      }
+      Assert.assertEquals(0, asyncExecutor.getQueuedJobCount());
+      Assert.assertTrue(asyncExecutor.offerJob(createExclusiveJob("2"), job));
+
+    } finally {
+      threadPoolExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testProcessInstanceLaneMovesToTheThreadsOfTheJobPriority() throws Exception {
+    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, 
+        new ArrayBlockingQueue<Runnable>(10), new NamedThreadFactory("regular"));
+    ThreadPoolExecutor highPriorityThreadPoolExecutor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS, 
+        new SynchronousQueue<Runnable>(), new NamedThreadFactory("reserved"));
+    LaneOfferingAsyncJobExecutor asyncExecutor = new LaneOfferingAsyncJobExecutor();
+    asyncExecutor.setExclusiveJobAffinity(true);
+    asyncExecutor.setQueueSize(10);
+    asyncExecutor.setThreadPoolQueue(threadPoolExecutor.getQueue());
+    asyncExecutor.setExecutorService(threadPoolExecutor);
+    asyncExecutor.setHighPriorityExecutorService(highPriorityThreadPoolExecutor);
+    try {
+      final CountDownLatch runningJob = new CountDownLatch(1);
+      final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+      Runnable blockingJob = new Runnable() {
+        public void run() {
+          threads.add(Thread.currentThread().getName());
+          try {
+            runningJob.await(10L, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      };
+      Runnable job = new Runnable() {
+        public void run() {
+          threads.add(Thread.currentThread().getName());
+        }
+      };
+      
+      // a high priority job opens the lane on a reserved thread, the jobs after it run on the threads of their own priority
+      Assert.assertTrue(asyncExecutor.offerJob(createExclusiveJob("1", Job.DEFAULT_PRIORITY + 10), blockingJob));
+      Assert.assertTrue(asyncExecutor.offerJob(createExclusiveJob("1", Job.DEFAULT_PRIORITY), job));
+      Assert.assertTrue(asyncExecutor.offerJob(createExclusiveJob("1", Job.DEFAULT_PRIORITY), job));
+      Assert.assertTrue(asyncExecutor.offerJob(createExclusiveJob("1", Job.DEFAULT_PRIORITY + 10), job));
+      
+      runningJob.countDown();
+      long start = System.currentTimeMillis();
+      while (asyncExecutor.getProcessInstanceLaneCount() > 0) {
+        Assert.assertTrue("Lane was not emptied", System.currentTimeMillis() - start < 10000L);
+        Thread.sleep(10L);
+      }
+      Assert.assertEquals(Arrays.asList("reserved", "regular", "regular", "reserved"), threads);
+      Assert.assertEquals(0, asyncExecutor.getQueuedJobCount());
+      
+    } finally {
+      threadPoolExecutor.shutdownNow();
+      highPriorityThreadPoolExecutor.shutdownNow();
+    }
+  }
+
+  protected JobEntity createExclusiveJob(String processInstanceId, int priority) {
+    JobEntity job = createExclusiveJob(processInstanceId);
+    job.setPriority(priority);
+    return job;
+  }
+
+  protected JobEntity createExclusiveJob(String processInstanceId) {
+    JobEntity job = new MessageEntity();
+    job.setExclusive(true);
+    job.setProcessInstanceId(processInstanceId);
+    return job;
+  }
+
+  /**
+   * Returns the number of exclusive jobs that failed to lock their process instance.
+   */
+  protected int runParallelExclusiveJobs(boolean exclusiveJobAffinity) throws Exception {
+    ProcessEngineConfigurationImpl processEngineConfiguration = createProcessEngineConfiguration(exclusiveJobAffinity);
+    ProcessEngine processEngine = processEngineConfiguration.buildProcessEngine();
+    DefaultAsyncJobExecutor asyncExecutor = (DefaultAsyncJobExecutor) processEngineConfiguration.getAsyncExecutor();
+    LockFailureCountingRunnableFactory runnableFactory = new LockFailureCountingRunnableFactory();
+    asyncExecutor.setExecuteAsyncRunnableFactory(runnableFactory);
+    try {
+      deploy(processEngine);
+      asyncExecutor.start();
+      
+      // one transaction, so starting the process instances doesn't deadlock with the jobs of the ones started before
+      final RuntimeService runtimeService = processEngine.getRuntimeService();
+      processEngineConfiguration.getCommandExecutor().execute(new Command<Void>() {
+        public Void execute(CommandContext commandContext) {
+          for (int i = 0; i < NR_OF_PROCESS_INSTANCES; i++) {
+            runtimeService.startProcessInstanceByKey("parallelExclusiveJobs");
+          }
+          return null;
+        }
+      });
+
+      long start = System.currentTimeMillis();
+      while (processEngine.getRuntimeService().createProcessInstanceQuery().count() > 0) {
+        Assert.assertTrue("Exclusive jobs were not executed", System.currentTimeMillis() - start < 60000L);
+        Thread.sleep(50L);
+      }
+      asyncExecutor.shutdown();
+      Assert.assertEquals(0, asyncExecutor.getProcessInstanceLaneCount());
+
+      return runnableFactory.lockFailures.get();
+
+    } finally {
+      cleanup(processEngine);
+    }
+  }
+
+  protected ProcessEngineConfigurationImpl createProcessEngineConfiguration(boolean exclusiveJobAffinity) {
+    ProcessEngineConfigurationImpl processEngineConfiguration = new StandaloneInMemProcessEngineConfiguration();
+    processEngineConfiguration.setJdbcUrl("jdbc:h2:mem:activiti-ExclusiveJobAffinityTest-" + exclusiveJobAffinity);
+    processEngineConfiguration.setDatabaseSchemaUpdate("true");
+    processEngineConfiguration.setHistory("none");
+    processEngineConfiguration.setJobExecutorActivate(false);
+    processEngineConfiguration.setAsyncExecutorEnabled(true);
+    processEngineConfiguration.setAsyncExecutorActivate(false);
+    processEngineConfiguration.setAsyncExecutorCorePoolSize(4);
+    processEngineConfiguration.setAsyncExecutorMaxPoolSize(4);
+    processEngineConfiguration.setAsyncExecutorDefaultAsyncJobAcquireWaitTime(100);
+    processEngineConfiguration.setAsyncExecutorExclusiveJobAffinity(exclusiveJobAffinity);
+    return processEngineConfiguration;
+  }
+
+  protected void deploy(ProcessEngine processEngine) {
+    processEngine.getRepositoryService().createDeployment()
+      .addClasspathResource("org/activiti/engine/test/jobexecutor/ExclusiveJobAffinityTest.bpmn20.xml").deploy();
+  }
+
+  protected void cleanup(ProcessEngine processEngine) {
+    for (org.activiti.engine.repository.Deployment deployment : processEngine.getRepositoryService().createDeploymentQuery().list()) {
+      processEngine.getRepositoryService().deleteDeployment(deployment.getId(), true);
+    }
+    processEngine.close();
+  }
+
+  static class LaneOfferingAsyncJobExecutor extends DefaultAsyncJobExecutor {
+
+    public boolean offerJob(JobEntity job, Runnable runnable) {
+      return executeAsyncJob(job, runnable);
+    }
+  }
+
+  static class NamedThreadFactory implements ThreadFactory {
+    
+    protected String name;
+    
+    public NamedThreadFactory(String name) {
+      this.name = name;
+    }
+    
+    public Thread newThread(Runnable runnable) {
+      return new Thread(runnable, name);
+    }
+  }
+
+  static class LockFailureCountingRunnableFactory implements ExecuteAsyncRunnableFactory {
+
+    protected AtomicInteger lockFailures = new AtomicInteger();
+
+    public Runnable createExecuteAsyncRunnable(JobEntity jobEntity, CommandExecutor commandExecutor) {
+      return new ExecuteAsyncRunnable(jobEntity, commandExecutor) {
+        protected boolean lockJobIfNeeded() {
+          boolean locked = super.lockJobIfNeeded();
+          if (!locked) {
+            lockFailures.incrementAndGet();
+          }
+          return locked;
+        }
+      };
+    }
+  }
+
+}
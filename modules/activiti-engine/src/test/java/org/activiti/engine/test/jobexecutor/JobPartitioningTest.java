@@ -0,0 +1,245 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.test.jobexecutor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.delegate.DelegateExecution;
+import org.activiti.engine.delegate.JavaDelegate;
+import org.activiti.engine.impl.asyncexecutor.AbstractAsyncJobExecutor;
+import org.activiti.engine.impl.asyncexecutor.JobPartitionManager;
+import org.activiti.engine.impl.asyncexecutor.JobPartitionRange;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.activiti.engine.impl.cmd.RenewJobPartitionLeaseCmd;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.repository.Deployment;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Async executors of a cluster only acquiring the jobs in their own partitions,
+ * with several engines on one in-memory database.
+ */
+public class JobPartitioningTest {
+
+  private static final String JDBC_URL = "jdbc:h2:mem:activiti-JobPartitioningTest";
+
+  private static final long LEASE_TIME = 1500L;
+
+  private static final int NR_OF_JOBS = 60;
+
+  /** The engine that executed the job of every process instance */
+  static final Map<String, String> executingEngines = new ConcurrentHashMap<String, String>();
+
+  protected List<ProcessEngine> processEngines = new ArrayList<ProcessEngine>();
+
+  @After
+  public void closeProcessEngines() {
+    for (ProcessEngine processEngine : processEngines) {
+      processEngine.getProcessEngineConfiguration().getAsyncExecutor().shutdown();
+    }
+    if (!processEngines.isEmpty()) {
+      ProcessEngine processEngine = processEngines.get(0);
+      for (Deployment deployment : processEngine.getRepositoryService().createDeploymentQuery().list()) {
+        processEngine.getRepositoryService().deleteDeployment(deployment.getId(), true);
+      }
+    }
+    for (ProcessEngine processEngine : processEngines) {
+      processEngine.close();
+    }
+    executingEngines.clear();
+  }
+
+  @Test
+  public void testPartitionRanges() {
+    List<String> nodeIds = Arrays.asList("node-a", "node-b", "node-c");
+    List<JobPartitionRange> rangesOfA = JobPartitionManager.computePartitionRanges(nodeIds, "node-a");
+    List<JobPartitionRange> rangesOfB = JobPartitionManager.computePartitionRanges(nodeIds, "node-b");
+    List<JobPartitionRange> rangesOfC = JobPartitionManager.computePartitionRanges(nodeIds, "node-c");
+
+    // every partition belongs to exactly one node
+    for (int partition = 0; partition < JobPartitionManager.PARTITION_COUNT; partition++) {
+      int owners = 0;
+      for (List<JobPartitionRange> ranges : Arrays.asList(rangesOfA, rangesOfB, rangesOfC)) {
+        if (JobPartitionRange.containsPartition(ranges, partition)) {
+          owners++;
+        }
+      }
+      Assert.assertEquals("owners of partition " + partition, 1, owners);
+    }
+    assertRoughlyAThird(rangesOfA);
+    assertRoughlyAThird(rangesOfB);
+    assertRoughlyAThird(rangesOfC);
+
+    // when node c leaves, only its partitions move
+    List<String> remainingNodeIds = Arrays.asList("node-a", "node-b");
+    List<JobPartitionRange> newRangesOfA = JobPartitionManager.computePartitionRanges(remainingNodeIds, "node-a");
+    List<JobPartitionRange> newRangesOfB = JobPartitionManager.computePartitionRanges(remainingNodeIds, "node-b");
+    for (int partition = 0; partition < JobPartitionManager.PARTITION_COUNT; partition++) {
+      if (JobPartitionRange.containsPartition(rangesOfA, partition)) {
+        Assert.assertTrue(JobPartitionRange.containsPartition(newRangesOfA, partition));
+      }
+      if (JobPartitionRange.containsPartition(rangesOfB, partition)) {
+        Assert.assertTrue(JobPartitionRange.containsPartition(newRangesOfB, partition));
+      }
+    }
+
+    Assert.assertEquals(JobPartitionManager.getPartition("12345"), JobPartitionManager.getPartition("12345"));
+  }
+
+  @Test
+  public void testJobsAcquiredInOwnPartitions() throws Exception {
+    ProcessEngine firstNode = createProcessEngine("partitionedNode1", "true");
+    firstNode.getRepositoryService().createDeployment()
+      .addClasspathResource("org/activiti/engine/test/jobexecutor/JobPartitioningTest.bpmn20.xml").deploy();
+    ProcessEngine secondNode = createProcessEngine("partitionedNode2", "false");
+    ProcessEngine thirdNode = createProcessEngine("partitionedNode3", "false");
+    waitForNodes(3, firstNode, secondNode, thirdNode);
+
+    // the partitions are divided over the nodes
+    int ownedPartitions = 0;
+    for (ProcessEngine processEngine : Arrays.asList(firstNode, secondNode, thirdNode)) {
+      int owned = getPartitionManager(processEngine).getOwnedPartitionCount();
+      Assert.assertTrue(owned > 0);
+      ownedPartitions += owned;
+    }
+    Assert.assertEquals(JobPartitionManager.PARTITION_COUNT, ownedPartitions);
+
+    startProcessInstances();
+    waitForJobsExecuted(firstNode, NR_OF_JOBS);
+    assertJobsExecutedByOwnerOfPartition(firstNode, secondNode, thirdNode);
+
+    // the nodes don't compete for the same jobs
+    for (ProcessEngine processEngine : Arrays.asList(firstNode, secondNode, thirdNode)) {
+      AbstractAsyncJobExecutor asyncExecutor = (AbstractAsyncJobExecutor) processEngine.getProcessEngineConfiguration().getAsyncExecutor();
+      Assert.assertEquals(0, asyncExecutor.getAsyncJobsDueRunnable().getCollisionCount());
+    }
+
+    // a node leaving: its lease is released and its partitions move to the other nodes
+    processEngines.remove(thirdNode);
+    thirdNode.close();
+    waitForNodes(2, firstNode, secondNode);
+    Assert.assertEquals(JobPartitionManager.PARTITION_COUNT,
+        getPartitionManager(firstNode).getOwnedPartitionCount() + getPartitionManager(secondNode).getOwnedPartitionCount());
+
+    executingEngines.clear();
+    startProcessInstances();
+    waitForJobsExecuted(firstNode, 2 * NR_OF_JOBS);
+    assertJobsExecutedByOwnerOfPartition(firstNode, secondNode);
+
+    // a node that stops renewing its lease is removed when the lease expires
+    firstNode.getManagementService().executeCommand(new RenewJobPartitionLeaseCmd("crashedNode", LEASE_TIME));
+    waitForNodes(3, firstNode, secondNode);
+    waitForNodes(2, firstNode, secondNode);
+    Assert.assertTrue(getPartitionManager(firstNode).getRebalanceCount() >= 3);
+  }
+
+  protected ProcessEngine createProcessEngine(String name, String databaseSchemaUpdate) {
+    ProcessEngineConfigurationImpl processEngineConfiguration = new StandaloneInMemProcessEngineConfiguration();
+    processEngineConfiguration.setProcessEngineName(name);
+    processEngineConfiguration.setJdbcUrl(JDBC_URL);
+    processEngineConfiguration.setDatabaseSchemaUpdate(databaseSchemaUpdate);
+    processEngineConfiguration.setJobExecutorActivate(false);
+    processEngineConfiguration.setAsyncExecutorEnabled(true);
+    processEngineConfiguration.setAsyncExecutorActivate(true);
+    processEngineConfiguration.setAsyncExecutorDefaultAsyncJobAcquireWaitTime(100);
+    processEngineConfiguration.setAsyncExecutorJobPartitioning(true);
+    processEngineConfiguration.setAsyncExecutorJobPartitionLeaseTimeInMillis(LEASE_TIME);
+    ProcessEngine processEngine = processEngineConfiguration.buildProcessEngine();
+    processEngines.add(processEngine);
+    return processEngine;
+  }
+
+  /** 
+   * The jobs are created on a node without async executor: only found by acquiring them.
+   * In one transaction, as H2 locks whole tables and would detect deadlocks with the jobs being executed.
+   */
+  protected void startProcessInstances() {
+    ProcessEngineConfigurationImpl processEngineConfiguration = new StandaloneInMemProcessEngineConfiguration();
+    processEngineConfiguration.setProcessEngineName("unpartitionedNode");
+    processEngineConfiguration.setJdbcUrl(JDBC_URL);
+    processEngineConfiguration.setDatabaseSchemaUpdate("false");
+    processEngineConfiguration.setJobExecutorActivate(false);
+    final ProcessEngine processEngine = processEngineConfiguration.buildProcessEngine();
+    try {
+      processEngineConfiguration.getCommandExecutor().execute(new Command<Void>() {
+        public Void execute(CommandContext commandContext) {
+          for (int i = 0; i < NR_OF_JOBS; i++) {
+            processEngine.getRuntimeService().startProcessInstanceByKey("jobPartitioning");
+          }
+          return null;
+        }
+      });
+    } finally {
+      processEngine.close();
+    }
+  }
+
+  protected void waitForNodes(int nrOfNodes, ProcessEngine... processEngines) throws InterruptedException {
+    long start = System.currentTimeMillis();
+    for (ProcessEngine processEngine : processEngines) {
+      while (getPartitionManager(processEngine).getNodeIds().size() != nrOfNodes) {
+        Assert.assertTrue("Nodes didn't rebalance", System.currentTimeMillis() - start < 10 * LEASE_TIME);
+        Thread.sleep(50L);
+      }
+    }
+  }
+
+  protected void waitForJobsExecuted(ProcessEngine processEngine, int nrOfJobs) throws InterruptedException {
+    long start = System.currentTimeMillis();
+    while (processEngine.getHistoryService().createHistoricProcessInstanceQuery().finished().count() < nrOfJobs) {
+      Assert.assertTrue("Jobs were not executed", System.currentTimeMillis() - start < 30000L);
+      Thread.sleep(50L);
+    }
+  }
+
+  protected void assertJobsExecutedByOwnerOfPartition(ProcessEngine... processEngines) {
+    Assert.assertEquals(NR_OF_JOBS, executingEngines.size());
+    for (Map.Entry<String, String> executingEngine : executingEngines.entrySet()) {
+      int partition = JobPartitionManager.getPartition(executingEngine.getKey());
+      for (ProcessEngine processEngine : processEngines) {
+        boolean owner = JobPartitionRange.containsPartition(getPartitionManager(processEngine).getPartitionRanges(), partition);
+        Assert.assertEquals(owner, processEngine.getName().equals(executingEngine.getValue()));
+      }
+    }
+  }
+
+  protected JobPartitionManager getPartitionManager(ProcessEngine processEngine) {
+    return ((AbstractAsyncJobExecutor) processEngine.getProcessEngineConfiguration().getAsyncExecutor()).getPartitionManager();
+  }
+
+  protected void assertRoughlyAThird(List<JobPartitionRange> ranges) {
+    int owned = 0;
+    for (JobPartitionRange range : ranges) {
+      owned += range.size();
+    }
+    Assert.assertTrue("owned " + owned, owned > JobPartitionManager.PARTITION_COUNT / 6 && owned < JobPartitionManager.PARTITION_COUNT / 2);
+  }
+
+  public static class RecordingDelegate implements JavaDelegate {
+
+    public void execute(DelegateExecution execution) throws Exception {
+      executingEngines.put(execution.getProcessInstanceId(), Context.getProcessEngineConfiguration().getProcessEngineName());
+    }
+  }
+
+}
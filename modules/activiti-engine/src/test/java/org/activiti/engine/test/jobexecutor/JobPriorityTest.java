@@ -0,0 +1,96 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.test.jobexecutor;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.activiti.engine.impl.Page;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.JobEntity;
+import org.activiti.engine.impl.test.PluggableActivitiTestCase;
+import org.activiti.engine.runtime.Job;
+import org.activiti.engine.test.Deployment;
+
+/**
+ * Job priorities from the activiti:jobPriority attribute of activities and processes,
+ * querying them and acquiring jobs in priority order.
+ */
+public class JobPriorityTest extends PluggableActivitiTestCase {
+
+  @Deployment(resources = "org/activiti/engine/test/jobexecutor/JobPriorityTest.bpmn20.xml")
+  public void testJobPriorityOfActivityAndProcess() {
+    runtimeService.startProcessInstanceByKey("prioritizedJobs", Collections.<String, Object>singletonMap("priority", 80));
+    runtimeService.startProcessInstanceByKey("defaultPriorityJob");
+
+    assertEquals(3, managementService.createJobQuery().count());
+    assertEquals(1, managementService.createJobQuery().jobPriority(80).count());
+    assertEquals(1, managementService.createJobQuery().jobPriority(20).count());
+    assertEquals(1, managementService.createJobQuery().jobPriority(Job.DEFAULT_PRIORITY).count());
+    assertEquals(2, managementService.createJobQuery().jobMinPriority(50).count());
+    assertEquals(2, managementService.createJobQuery().jobMaxPriority(50).count());
+    assertEquals(1, managementService.createJobQuery().jobMinPriority(21).jobMaxPriority(79).count());
+
+    List<Job> jobs = managementService.createJobQuery().orderByJobPriority().desc().list();
+    assertEquals(80, jobs.get(0).getPriority());
+    assertEquals(Job.DEFAULT_PRIORITY, jobs.get(1).getPriority());
+    assertEquals(20, jobs.get(2).getPriority());
+
+    executeAllJobs();
+    assertEquals(0, runtimeService.createProcessInstanceQuery().count());
+  }
+
+  @Deployment
+  public void testTimerStartEventPriority() {
+    // timer start events have no execution, they get the default priority of the process
+    Job timer = managementService.createJobQuery().timers().singleResult();
+    assertEquals(70, timer.getPriority());
+  }
+
+  @Deployment(resources = "org/activiti/engine/test/jobexecutor/JobPriorityTest.bpmn20.xml")
+  public void testAcquisitionInPriorityOrder() {
+    for (int i = 0; i < 3; i++) {
+      runtimeService.startProcessInstanceByKey("defaultPriorityJob");
+    }
+    runtimeService.startProcessInstanceByKey("prioritizedJobs", Collections.<String, Object>singletonMap("priority", 90));
+
+    // the jobs were locked for the (inactive) async executor, acquire them after the lock expired
+    processEngineConfiguration.getClock().setCurrentTime(new Date(System.currentTimeMillis() + 60L * 60L * 1000L));
+    try {
+      List<JobEntity> acquiredJobs = processEngineConfiguration.getCommandExecutor().execute(new Command<List<JobEntity>>() {
+        public List<JobEntity> execute(CommandContext commandContext) {
+          return commandContext.getJobEntityManager().findAsyncJobsDueToExecute(new Page(0, 2));
+        }
+      });
+      assertEquals(2, acquiredJobs.size());
+      assertEquals(90, acquiredJobs.get(0).getPriority());
+      assertEquals(Job.DEFAULT_PRIORITY, acquiredJobs.get(1).getPriority());
+
+    } finally {
+      processEngineConfiguration.getClock().reset();
+    }
+
+    executeAllJobs();
+  }
+
+  protected void executeAllJobs() {
+    List<Job> jobs = managementService.createJobQuery().listPage(0, 1);
+    while (!jobs.isEmpty()) {
+      managementService.executeJob(jobs.get(0).getId());
+      jobs = managementService.createJobQuery().listPage(0, 1);
+    }
+  }
+
+}
@@ -0,0 +1,193 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.test.jobexecutor;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.asyncexecutor.AcquireAsyncJobsDueRunnable;
+import org.activiti.engine.impl.asyncexecutor.DefaultAsyncJobExecutor;
+import org.activiti.engine.impl.asyncexecutor.LocalAsyncJobNotificationChannel;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.activiti.engine.impl.db.DbSqlSessionFactory;
+import org.activiti.engine.impl.db.ListQueryParameterObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Skip locked job acquisition is only used on databases that support it,
+ * on the others (like the H2 database of the test suite) acquisition falls back to optimistic locking.
+ */
+public class SkipLockedJobAcquisitionTest {
+
+  @Test
+  public void testSkipLockedOnlyOnSupportingDatabases() {
+    DbSqlSessionFactory dbSqlSessionFactory = new DbSqlSessionFactory();
+    dbSqlSessionFactory.setDatabaseType("postgres");
+    Assert.assertFalse(dbSqlSessionFactory.isSkipLockedJobAcquisition());
+
+    dbSqlSessionFactory.setSkipLockedJobAcquisitionEnabled(true);
+    Assert.assertTrue(dbSqlSessionFactory.isSkipLockedJobAcquisition());
+    Assert.assertEquals("selectAsyncJobsDueToExecuteSkipLocked", dbSqlSessionFactory.mapStatement("selectAsyncJobsDueToExecuteSkipLocked"));
+
+    dbSqlSessionFactory.setDatabaseType("oracle");
+    Assert.assertTrue(dbSqlSessionFactory.isSkipLockedJobAcquisition());
+    Assert.assertEquals("selectAsyncJobsDueToExecuteSkipLocked_oracle", dbSqlSessionFactory.mapStatement("selectAsyncJobsDueToExecuteSkipLocked"));
+
+    dbSqlSessionFactory.setDatabaseType("mssql");
+    Assert.assertEquals("selectNextTimerJobsToExecuteSkipLocked_mssql", dbSqlSessionFactory.mapStatement("selectNextTimerJobsToExecuteSkipLocked"));
+
+    dbSqlSessionFactory.setDatabaseType("h2");
+    Assert.assertFalse(dbSqlSessionFactory.isSkipLockedJobAcquisition());
+  }
+
+  @Test
+  public void testSkipLockedOnlyOnSupportingServerVersions() {
+    Assert.assertFalse(DbSqlSessionFactory.isSkipLockedSupported("mysql", "MySQL", "5.7.40", 5, 7));
+    Assert.assertTrue(DbSqlSessionFactory.isSkipLockedSupported("mysql", "MySQL", "8.0.33", 8, 0));
+    // MariaDB supports skip locked, but not 'for update of'
+    Assert.assertFalse(DbSqlSessionFactory.isSkipLockedSupported("mysql", "MySQL", "5.5.5-10.6.12-MariaDB", 5, 5));
+    Assert.assertFalse(DbSqlSessionFactory.isSkipLockedSupported("mysql", "MariaDB", "10.11.2-MariaDB", 10, 11));
+    
+    Assert.assertFalse(DbSqlSessionFactory.isSkipLockedSupported("postgres", "PostgreSQL", "9.4.26", 9, 4));
+    Assert.assertTrue(DbSqlSessionFactory.isSkipLockedSupported("postgres", "PostgreSQL", "9.5.25", 9, 5));
+    Assert.assertTrue(DbSqlSessionFactory.isSkipLockedSupported("postgres", "PostgreSQL", "15.2", 15, 2));
+    
+    Assert.assertTrue(DbSqlSessionFactory.isSkipLockedSupported("oracle", "Oracle", "Oracle Database 11g", 11, 2));
+    Assert.assertTrue(DbSqlSessionFactory.isSkipLockedSupported("mssql", "Microsoft SQL Server", "11.00.2100", 11, 0));
+    Assert.assertFalse(DbSqlSessionFactory.isSkipLockedSupported("h2", "H2", "1.3.176", 1, 3));
+  }
+  
+  @Test
+  public void testSkipLockedStatements() {
+    String postgresSql = "select RES.* from ACT_RU_JOB RES LEFT OUTER JOIN ACT_RU_EXECUTION PI ON PI.ID_ = RES.PROCESS_INSTANCE_ID_ "
+        + "where RES.RETRIES_ > 0 and ( (RES.DUEDATE_ is not null and RES.DUEDATE_ <= ? and RES.LOCK_EXP_TIME_ is null) "
+        + "or (RES.LOCK_EXP_TIME_ is not null and RES.LOCK_EXP_TIME_ <= ?) ) and TYPE_ = 'message' "
+        + "and ( (RES.EXECUTION_ID_ is null) or (PI.SUSPENSION_STATE_ = 1) ) "
+        + "order by RES.PRIORITY_ desc LIMIT ? OFFSET ? for update of RES skip locked";
+    Assert.assertEquals(postgresSql, renderSql("postgres", "selectAsyncJobsDueToExecuteSkipLocked"));
+    Assert.assertEquals(postgresSql, renderSql("mysql", "selectAsyncJobsDueToExecuteSkipLocked"));
+    
+    for (String databaseType : new String[] {"postgres", "mysql"}) {
+      assertSkipLockedStatements(databaseType, "select RES.* from ACT_RU_JOB RES LEFT OUTER JOIN", 
+          "order by RES.PRIORITY_ desc LIMIT ? OFFSET ? for update of RES skip locked", "RES.EXCLUSIVE_ = TRUE");
+    }
+    // Oracle applies the row limit before ordering, and doesn't allow 'for update' in a subquery
+    assertSkipLockedStatements("oracle", "select RES.* from ACT_RU_JOB RES LEFT OUTER JOIN", 
+        "and ROWNUM <= ? for update of RES.ID_ skip locked", "RES.EXCLUSIVE_ = 1");
+    assertSkipLockedStatements("mssql", "select top (?) RES.* from ACT_RU_JOB RES with (updlock, rowlock, readpast) LEFT OUTER JOIN", 
+        "order by RES.PRIORITY_ desc", "RES.EXCLUSIVE_ = 1");
+  }
+  
+  protected void assertSkipLockedStatements(String databaseType, String expectedStart, String expectedEnd, String expectedExclusiveCondition) {
+    for (String statement : new String[] {"selectNextTimerJobsToExecuteSkipLocked", "selectAsyncJobsDueToExecuteSkipLocked", 
+        "selectAsyncJobsDueToExecuteByProcessInstanceIdsSkipLocked"}) {
+      String sql = renderSql(databaseType, statement);
+      Assert.assertTrue(databaseType + " " + statement + ": " + sql, sql.startsWith(expectedStart));
+      Assert.assertTrue(databaseType + " " + statement + ": " + sql, sql.endsWith(expectedEnd));
+    }
+    String sql = renderSql(databaseType, "selectAsyncJobsDueToExecuteByProcessInstanceIdsSkipLocked");
+    Assert.assertTrue(sql, sql.contains(expectedExclusiveCondition + " and PI.SUSPENSION_STATE_ = 1 and RES.PROCESS_INSTANCE_ID_ in ( ? , ? )"));
+  }
+
+  @Test
+  public void testAcquisitionFallsBackToOptimisticLocking() throws Exception {
+    ProcessEngine publishingEngine = null;
+    ProcessEngine executingEngine = null;
+    try {
+      // jobs created by an engine without running async executor are unlocked (when publishing notifications),
+      // so they have to be acquired by the other engine
+      publishingEngine = createProcessEngine(false);
+      executingEngine = createProcessEngine(true);
+      ProcessEngineConfigurationImpl processEngineConfiguration = (ProcessEngineConfigurationImpl) executingEngine.getProcessEngineConfiguration();
+      Assert.assertFalse(processEngineConfiguration.getDbSqlSessionFactory().isSkipLockedJobAcquisition());
+
+      publishingEngine.getRepositoryService().createDeployment()
+        .addClasspathResource("org/activiti/engine/test/jobexecutor/AsyncJobNotificationChannelTest.bpmn20.xml").deploy();
+      publishingEngine.getRuntimeService().startProcessInstanceByKey("asyncNotification");
+
+      long start = System.currentTimeMillis();
+      while (publishingEngine.getTaskService().createTaskQuery().taskName("Task after service").count() == 0) {
+        Assert.assertTrue("Async job was not executed", System.currentTimeMillis() - start < 10000L);
+        Thread.sleep(100L);
+      }
+
+      AcquireAsyncJobsDueRunnable acquireRunnable = ((DefaultAsyncJobExecutor) processEngineConfiguration.getAsyncExecutor()).getAsyncJobsDueRunnable();
+      Assert.assertEquals(1, acquireRunnable.getAcquiredJobCount());
+      Assert.assertTrue(acquireRunnable.getAverageAcquiredJobsPerAcquisition() > 0.0);
+      Assert.assertEquals(0, acquireRunnable.getCollisionCount());
+      Assert.assertEquals(0.0, acquireRunnable.getCollisionRate(), 0.0);
+
+    } finally {
+      cleanup(executingEngine);
+      cleanup(publishingEngine);
+    }
+  }
+
+  /** The SQL of the given job acquisition statement on the given database type, with its whitespace collapsed */
+  protected String renderSql(String databaseType, String statement) {
+    SqlRenderingProcessEngineConfiguration processEngineConfiguration = new SqlRenderingProcessEngineConfiguration(databaseType);
+    DbSqlSessionFactory dbSqlSessionFactory = new DbSqlSessionFactory();
+    dbSqlSessionFactory.setDatabaseType(databaseType);
+    
+    Map<String, Object> params = new HashMap<String, Object>();
+    params.put("now", new Date());
+    params.put("includeUnpartitioned", false);
+    params.put("processInstanceIds", Arrays.asList("1", "2"));
+    String sql = processEngineConfiguration.getSqlSessionFactory().getConfiguration()
+        .getMappedStatement(dbSqlSessionFactory.mapStatement(statement))
+        .getBoundSql(new ListQueryParameterObject(params, 0, 10)).getSql();
+    return sql.replaceAll("\\s+", " ").trim();
+  }
+
+  protected ProcessEngine createProcessEngine(boolean activateAsyncExecutor) {
+    ProcessEngineConfigurationImpl processEngineConfiguration = new StandaloneInMemProcessEngineConfiguration();
+    processEngineConfiguration.setJdbcUrl("jdbc:h2:mem:activiti-SkipLockedJobAcquisitionTest;DB_CLOSE_DELAY=1000");
+    processEngineConfiguration.setDatabaseSchemaUpdate("true");
+    processEngineConfiguration.setJobExecutorActivate(false);
+    processEngineConfiguration.setAsyncExecutorEnabled(true);
+    processEngineConfiguration.setAsyncExecutorActivate(activateAsyncExecutor);
+    processEngineConfiguration.setAsyncExecutorDefaultAsyncJobAcquireWaitTime(100);
+    processEngineConfiguration.setAsyncExecutorSkipLockedAcquisition(true);
+    if (!activateAsyncExecutor) {
+      processEngineConfiguration.setAsyncExecutorJobNotificationChannel(new LocalAsyncJobNotificationChannel());
+    }
+    return processEngineConfiguration.buildProcessEngine();
+  }
+
+  protected void cleanup(ProcessEngine processEngine) {
+    if (processEngine != null) {
+      for (org.activiti.engine.repository.Deployment deployment : processEngine.getRepositoryService().createDeploymentQuery().list()) {
+        processEngine.getRepositoryService().deleteDeployment(deployment.getId(), true);
+      }
+      processEngine.close();
+    }
+  }
+
+  /** Only builds the MyBatis mappings of a database type, without connecting to a database of that type */
+  protected static class SqlRenderingProcessEngineConfiguration extends StandaloneInMemProcessEngineConfiguration {
+    
+    public SqlRenderingProcessEngineConfiguration(String databaseType) {
+      setDatabaseType(databaseType);
+      initDataSource();
+      initTransactionFactory();
+      initSqlSessionFactory();
+    }
+    
+  }
+
+}
@@ -0,0 +1,151 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.test.jobexecutor;
+
+import java.util.Collections;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.asyncexecutor.AbstractAsyncJobExecutor;
+import org.activiti.engine.impl.asyncexecutor.TimerWheel;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.activiti.engine.task.Task;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Fires timers from the in-memory timer wheel of the async executor, while the timer
+ * acquisition only polls the database (to reconcile the wheel) every second.
+ */
+public class TimerWheelTest {
+
+  private static final String JDBC_URL = "jdbc:h2:mem:activiti-TimerWheelTest;DB_CLOSE_DELAY=1000";
+
+  protected ProcessEngineConfigurationImpl processEngineConfiguration;
+  protected ProcessEngine processEngine;
+  protected TimerWheel timerWheel;
+
+  @Before
+  public void setUp() throws Exception {
+    processEngineConfiguration = new StandaloneInMemProcessEngineConfiguration();
+    processEngineConfiguration.setJdbcUrl(JDBC_URL);
+    processEngineConfiguration.setDatabaseSchemaUpdate("true");
+    processEngineConfiguration.setJobExecutorActivate(false);
+    processEngineConfiguration.setAsyncExecutorEnabled(true);
+    processEngineConfiguration.setAsyncExecutorActivate(true);
+    processEngineConfiguration.setAsyncExecutorTimerWheelEnabled(true);
+    processEngineConfiguration.setAsyncExecutorTimerWheelReconciliationIntervalInMillis(1000);
+    processEngine = processEngineConfiguration.buildProcessEngine();
+    processEngine.getRepositoryService().createDeployment()
+      .addClasspathResource("org/activiti/engine/test/jobexecutor/TimerWheelTest.bpmn20.xml").deploy();
+    timerWheel = ((AbstractAsyncJobExecutor) processEngineConfiguration.getAsyncExecutor()).getTimerWheel();
+    Assert.assertNotNull(timerWheel);
+
+    // the first reconciliation fills the wheel
+    waitFor(new Condition() {
+      public boolean isMet() {
+        return timerWheel.getReconciliationCount() > 0;
+      }
+    });
+  }
+
+  @After
+  public void tearDown() {
+    processEngineConfiguration.getAsyncExecutor().shutdown();
+    for (org.activiti.engine.repository.Deployment deployment : processEngine.getRepositoryService().createDeploymentQuery().list()) {
+      processEngine.getRepositoryService().deleteDeployment(deployment.getId(), true);
+    }
+    processEngine.close();
+  }
+
+  @Test
+  public void testTimerFiresWithoutPolling() throws Exception {
+    long acquireWaitTime = processEngineConfiguration.getAsyncExecutorTimerJobAcquireWaitTime();
+    long start = System.currentTimeMillis();
+    processEngine.getRuntimeService().startProcessInstanceByKey("timerWheel", 
+        Collections.<String, Object>singletonMap("duration", "PT1S"));
+    Assert.assertEquals(1, timerWheel.getSize());
+
+    waitFor(new Condition() {
+      public boolean isMet() {
+        return processEngine.getTaskService().createTaskQuery().taskDefinitionKey("escalatedTask").count() == 1;
+      }
+    });
+
+    // fired about when due, instead of at the next poll
+    long latency = System.currentTimeMillis() - start - 1000L;
+    Assert.assertTrue("Timer fired " + latency + " ms late", latency < acquireWaitTime / 2);
+    Assert.assertEquals(0, timerWheel.getSize());
+  }
+
+  @Test
+  public void testDeletedTimersLeaveTheWheel() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      processEngine.getRuntimeService().startProcessInstanceByKey("timerWheel", 
+          Collections.<String, Object>singletonMap("duration", "PT30S"));
+    }
+    Assert.assertEquals(10, timerWheel.getSize());
+    Assert.assertTrue(timerWheel.getOccupiedBucketCount() >= 1);
+
+    // completing the task deletes its boundary timer
+    for (Task task : processEngine.getTaskService().createTaskQuery().list()) {
+      processEngine.getTaskService().complete(task.getId());
+    }
+    Assert.assertEquals(0, timerWheel.getSize());
+    Assert.assertEquals(0, processEngine.getManagementService().createJobQuery().count());
+  }
+
+  @Test
+  public void testTimersOfOtherNodesAreReconciled() throws Exception {
+    // another engine on the same database, which doesn't execute jobs itself
+    ProcessEngineConfigurationImpl otherNodeConfiguration = new StandaloneInMemProcessEngineConfiguration();
+    otherNodeConfiguration.setProcessEngineName("otherNode");
+    otherNodeConfiguration.setJdbcUrl(JDBC_URL);
+    otherNodeConfiguration.setDatabaseSchemaUpdate("false");
+    otherNodeConfiguration.setJobExecutorActivate(false);
+    otherNodeConfiguration.setAsyncExecutorEnabled(true);
+    otherNodeConfiguration.setAsyncExecutorActivate(false);
+    ProcessEngine otherNode = otherNodeConfiguration.buildProcessEngine();
+    try {
+      final long totalDrift = timerWheel.getTotalReconciliationDrift();
+      otherNode.getRuntimeService().startProcessInstanceByKey("timerWheel", 
+          Collections.<String, Object>singletonMap("duration", "PT1S"));
+      Assert.assertEquals(0, timerWheel.getSize());
+
+      waitFor(new Condition() {
+        public boolean isMet() {
+          return processEngine.getTaskService().createTaskQuery().taskDefinitionKey("escalatedTask").count() == 1;
+        }
+      });
+      Assert.assertTrue(timerWheel.getTotalReconciliationDrift() > totalDrift);
+
+    } finally {
+      otherNode.close();
+    }
+  }
+
+  protected void waitFor(Condition condition) throws Exception {
+    long start = System.currentTimeMillis();
+    while (!condition.isMet()) {
+      Assert.assertTrue("Condition not met in time", System.currentTimeMillis() - start < 10000L);
+      Thread.sleep(20L);
+    }
+  }
+
+  protected interface Condition {
+    boolean isMet();
+  }
+
+}
@@ -0,0 +1,160 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.engine.test.jobexecutor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.delegate.DelegateExecution;
+import org.activiti.engine.delegate.JavaDelegate;
+import org.activiti.engine.impl.asyncexecutor.VirtualThreadAsyncJobExecutor;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.activiti.engine.impl.context.Context;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the same async jobs that block (like a service task calling a slow HTTP service) on the pooled async executor 
+ * and on the {@link VirtualThreadAsyncJobExecutor}, at the same concurrency. The platform threads and the heap taken by 
+ * the blocked jobs, and the time it took to execute all jobs, are logged. This is not a benchmark, 
+ * see the {@link VirtualThreadAsyncJobExecutor} javadoc for measured numbers.
+ */
+public class VirtualThreadAsyncJobExecutorTest {
+
+  private static final Logger log = LoggerFactory.getLogger(VirtualThreadAsyncJobExecutorTest.class);
+
+  private static final int NR_OF_JOBS = 100;
+  
+  private static final int CONCURRENCY = 20;
+
+  protected static Set<Thread> jobThreads = Collections.synchronizedSet(new HashSet<Thread>());
+  protected static AtomicInteger jobsWithoutCommandContext = new AtomicInteger();
+  protected static AtomicInteger executingJobs = new AtomicInteger();
+  protected static AtomicInteger maxExecutingJobs = new AtomicInteger();
+  
+  /** Keeps the jobs blocked until the memory they take is measured */
+  protected static volatile CountDownLatch jobsReleased;
+
+  @Test
+  public void testBlockingJobsOnVirtualThreads() throws Exception {
+    runBlockingJobs(false);
+    Assert.assertTrue(jobThreads.size() <= CONCURRENCY);
+    Assert.assertEquals(CONCURRENCY, maxExecutingJobs.get());
+
+    runBlockingJobs(true);
+    Assert.assertEquals(NR_OF_JOBS, jobThreads.size());
+    Assert.assertEquals(CONCURRENCY, maxExecutingJobs.get());
+
+    Assert.assertEquals(0, jobsWithoutCommandContext.get());
+  }
+
+  protected void runBlockingJobs(boolean virtualThreads) throws Exception {
+    jobThreads.clear();
+    maxExecutingJobs.set(0);
+    jobsReleased = new CountDownLatch(1);
+    ProcessEngineConfigurationImpl processEngineConfiguration = new StandaloneInMemProcessEngineConfiguration();
+    processEngineConfiguration.setJdbcUrl("jdbc:h2:mem:activiti-VirtualThreadAsyncJobExecutorTest-" + virtualThreads);
+    processEngineConfiguration.setDatabaseSchemaUpdate("true");
+    processEngineConfiguration.setHistory("none");
+    // every executing job holds a connection while it blocks
+    processEngineConfiguration.setJdbcMaxActiveConnections(CONCURRENCY + 10);
+    processEngineConfiguration.setJobExecutorActivate(false);
+    processEngineConfiguration.setAsyncExecutorEnabled(true);
+    processEngineConfiguration.setAsyncExecutorActivate(false);
+    processEngineConfiguration.setAsyncExecutorCorePoolSize(CONCURRENCY);
+    processEngineConfiguration.setAsyncExecutorMaxPoolSize(CONCURRENCY);
+    processEngineConfiguration.setAsyncExecutorThreadPoolQueueSize(NR_OF_JOBS);
+    processEngineConfiguration.setAsyncExecutorVirtualThreads(virtualThreads);
+    processEngineConfiguration.setAsyncExecutorMaxConcurrentJobs(CONCURRENCY);
+    ProcessEngine processEngine = processEngineConfiguration.buildProcessEngine();
+    try {
+      processEngine.getRepositoryService().createDeployment()
+        .addClasspathResource("org/activiti/engine/test/jobexecutor/VirtualThreadAsyncJobExecutorTest.bpmn20.xml").deploy();
+      for (int i = 0; i < NR_OF_JOBS; i++) {
+        processEngine.getRuntimeService().startProcessInstanceByKey("blockingAsyncService");
+      }
+
+      ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+      int threadsBefore = threadMXBean.getThreadCount();
+      long usedMemoryBefore = getUsedMemory();
+      long start = System.currentTimeMillis();
+
+      // the jobs created while the async executor wasn't running are executed when it starts
+      processEngineConfiguration.getAsyncExecutor().start();
+      while (executingJobs.get() < CONCURRENCY) {
+        Assert.assertTrue("Blocking jobs were not executed", System.currentTimeMillis() - start < 60000L);
+        Thread.sleep(10L);
+      }
+      int blockedJobs = executingJobs.get();
+      int threadsOfBlockedJobs = threadMXBean.getThreadCount() - threadsBefore;
+      long memoryOfBlockedJobs = getUsedMemory() - usedMemoryBefore;
+      jobsReleased.countDown();
+
+      while (processEngine.getRuntimeService().createProcessInstanceQuery().count() > 0) {
+        Assert.assertTrue("Blocking jobs were not executed", System.currentTimeMillis() - start < 60000L);
+        Thread.sleep(10L);
+      }
+      long duration = System.currentTimeMillis() - start;
+
+      log.info("{} blocked jobs {}: {} more platform threads, {} KB more heap. All {} jobs: {} ms", blockedJobs, 
+          virtualThreads ? "each on its own thread" : "on a threadpool", threadsOfBlockedJobs, memoryOfBlockedJobs / 1024, 
+          NR_OF_JOBS, duration);
+
+      processEngineConfiguration.getAsyncExecutor().shutdown();
+
+    } finally {
+      jobsReleased.countDown();
+      for (org.activiti.engine.repository.Deployment deployment : processEngine.getRepositoryService().createDeploymentQuery().list()) {
+        processEngine.getRepositoryService().deleteDeployment(deployment.getId(), true);
+      }
+      processEngine.close();
+    }
+  }
+  
+  protected long getUsedMemory() {
+    System.gc();
+    return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+  }
+
+  public static class BlockingDelegate implements JavaDelegate {
+
+    public void execute(DelegateExecution execution) throws Exception {
+      jobThreads.add(Thread.currentThread());
+      if (Context.getCommandContext() == null) {
+        jobsWithoutCommandContext.incrementAndGet();
+      }
+      int executing = executingJobs.incrementAndGet();
+      try {
+        int max = maxExecutingJobs.get();
+        while (executing > max && !maxExecutingJobs.compareAndSet(max, executing)) {
+          max = maxExecutingJobs.get();
+        }
+        jobsReleased.await(60L, TimeUnit.SECONDS);
+        Thread.sleep(100L);
+      } finally {
+        executingJobs.decrementAndGet();
+      }
+    }
+  }
+
+}
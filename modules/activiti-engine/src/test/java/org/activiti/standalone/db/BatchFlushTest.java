@@ -0,0 +1,137 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.standalone.db;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.activiti.engine.ActivitiOptimisticLockingException;
+import org.activiti.engine.impl.db.DbSqlSessionFactory;
+import org.activiti.engine.impl.test.ResourceActivitiTestCase;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
+import org.activiti.engine.test.Deployment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class BatchFlushTest extends ResourceActivitiTestCase {
+  
+  private static final Logger logger = LoggerFactory.getLogger(BatchFlushTest.class);
+  
+  private static final int NR_OF_VARIABLES = 50;
+  
+  public BatchFlushTest() {
+    super("org/activiti/standalone/db/batchflush.activiti.cfg.xml");
+  }
+  
+  @Deployment(resources = "org/activiti/standalone/db/BatchFlushTest.bpmn20.xml")
+  public void testRoundTripsPerTransaction() {
+    DbSqlSessionFactory dbSqlSessionFactory = processEngineConfiguration.getDbSqlSessionFactory();
+    try {
+      dbSqlSessionFactory.setBatchFlushEnabled(false);
+      long regularRoundTrips = runProcessInstance(dbSqlSessionFactory);
+      
+      dbSqlSessionFactory.setBatchFlushEnabled(true);
+      long batchRoundTrips = runProcessInstance(dbSqlSessionFactory);
+      
+      logger.info("Round trips for updating and deleting {} variables: {} regular, {} batched", NR_OF_VARIABLES, regularRoundTrips, batchRoundTrips);
+      
+      // Every variable (and its historic counterpart) is updated and deleted with a separate statement, 
+      // while batching groups them per statement type
+      assertTrue(regularRoundTrips >= 2 * NR_OF_VARIABLES);
+      assertTrue(batchRoundTrips < regularRoundTrips / 5);
+      
+    } finally {
+      dbSqlSessionFactory.setBatchFlushEnabled(true);
+    }
+  }
+  
+  @Deployment(resources = "org/activiti/standalone/db/BatchFlushTest.bpmn20.xml")
+  public void testOptimisticLockingOnBatchedUpdate() {
+    runtimeService.startProcessInstanceByKey("batchFlush");
+    
+    Task task1 = taskService.createTaskQuery().singleResult();
+    Task task2 = taskService.createTaskQuery().singleResult();
+    
+    task1.setName("first update");
+    taskService.saveTask(task1);
+    
+    task2.setName("concurrent update");
+    try {
+      taskService.saveTask(task2);
+      fail("Expected optimistic locking exception");
+    } catch (ActivitiOptimisticLockingException e) {
+      // expected
+    }
+    
+    assertEquals("first update", taskService.createTaskQuery().singleResult().getName());
+  }
+  
+  @Deployment(resources = "org/activiti/standalone/db/BatchFlushTest.bpmn20.xml")
+  public void testOptimisticLockingWithoutBatchUpdateCounts() {
+    DbSqlSessionFactory dbSqlSessionFactory = processEngineConfiguration.getDbSqlSessionFactory();
+    String databaseType = dbSqlSessionFactory.getDatabaseType();
+    DbSqlSessionFactory.databasesReportingBatchUpdateCounts.remove(databaseType);
+    try {
+      assertFalse(dbSqlSessionFactory.isBatchUpdateCountReported());
+      
+      // Only the inserts are batched, the updates are still checked one by one
+      long roundTrips = runProcessInstance(dbSqlSessionFactory);
+      assertTrue(roundTrips >= NR_OF_VARIABLES);
+      
+      runtimeService.startProcessInstanceByKey("batchFlush");
+      Task task1 = taskService.createTaskQuery().singleResult();
+      Task task2 = taskService.createTaskQuery().singleResult();
+      
+      task1.setName("first update");
+      taskService.saveTask(task1);
+      
+      task2.setName("concurrent update");
+      try {
+        taskService.saveTask(task2);
+        fail("Expected optimistic locking exception");
+      } catch (ActivitiOptimisticLockingException e) {
+        // expected
+      }
+      
+    } finally {
+      DbSqlSessionFactory.databasesReportingBatchUpdateCounts.add(databaseType);
+    }
+  }
+  
+  /**
+   * Returns the number of database round trips needed to update all variables of a process instance and to complete it.
+   */
+  protected long runProcessInstance(DbSqlSessionFactory dbSqlSessionFactory) {
+    Map<String, Object> variables = new HashMap<String, Object>();
+    for (int i = 0; i < NR_OF_VARIABLES; i++) {
+      variables.put("var" + i, "value" + i);
+    }
+    ProcessInstance processInstance = runtimeService.startProcessInstanceByKey("batchFlush", variables);
+    
+    for (int i = 0; i < NR_OF_VARIABLES; i++) {
+      variables.put("var" + i, "updated value" + i);
+    }
+    Task task = taskService.createTaskQuery().processInstanceId(processInstance.getId()).singleResult();
+    
+    dbSqlSessionFactory.resetFlushStatistics();
+    runtimeService.setVariables(processInstance.getId(), variables);
+    taskService.complete(task.getId());
+    long roundTrips = dbSqlSessionFactory.getFlushRoundTripCount();
+    
+    assertTrue(dbSqlSessionFactory.getFlushCount() >= 2);
+    assertEquals(0, runtimeService.createProcessInstanceQuery().processInstanceId(processInstance.getId()).count());
+    return roundTrips;
+  }
+
+}
@@ -0,0 +1,86 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.standalone.db;
+
+import java.util.List;
+
+import org.activiti.engine.history.HistoricActivityInstance;
+import org.activiti.engine.history.HistoricTaskInstance;
+import org.activiti.engine.impl.db.DbSqlSession;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.HistoricActivityInstanceEntity;
+import org.activiti.engine.impl.persistence.entity.HistoricTaskInstanceEntity;
+import org.activiti.engine.impl.test.ResourceActivitiTestCase;
+import org.activiti.engine.task.Task;
+import org.activiti.engine.test.Deployment;
+
+public class DirtyTrackingTest extends ResourceActivitiTestCase {
+
+  public DirtyTrackingTest() {
+    super("org/activiti/standalone/db/dirtytracking.activiti.cfg.xml");
+  }
+
+  @Deployment(resources = "org/activiti/engine/test/api/oneTaskProcess.bpmn20.xml")
+  public void testLoadedEntitiesAreNotUpdated() {
+    for (int i = 0; i < 5; i++) {
+      runtimeService.startProcessInstanceByKey("oneTaskProcess");
+    }
+
+    managementService.executeCommand(new Command<Void>() {
+      public Void execute(CommandContext commandContext) {
+        List<HistoricActivityInstance> activityInstances = historyService.createHistoricActivityInstanceQuery().list();
+        assertEquals(10, activityInstances.size());
+
+        DbSqlSession dbSqlSession = commandContext.getDbSqlSession();
+        List<HistoricActivityInstanceEntity> cachedActivityInstances = dbSqlSession.findInCache(HistoricActivityInstanceEntity.class);
+        assertEquals(10, cachedActivityInstances.size());
+        for (HistoricActivityInstanceEntity activityInstance : cachedActivityInstances) {
+          assertFalse(activityInstance.isDirty());
+        }
+        assertTrue(dbSqlSession.getUpdatedObjects().isEmpty());
+        return null;
+      }
+    });
+  }
+
+  @Deployment(resources = "org/activiti/engine/test/api/oneTaskProcess.bpmn20.xml")
+  public void testChangedEntityIsUpdated() {
+    String processInstanceId = runtimeService.startProcessInstanceByKey("oneTaskProcess").getId();
+    final String taskId = taskService.createTaskQuery().singleResult().getId();
+
+    managementService.executeCommand(new Command<Void>() {
+      public Void execute(CommandContext commandContext) {
+        HistoricTaskInstanceEntity historicTask = commandContext.getHistoricTaskInstanceEntityManager().findHistoricTaskInstanceById(taskId);
+        historyService.createHistoricActivityInstanceQuery().list();
+        historicTask.setDescription("changed");
+
+        List<?> updatedObjects = commandContext.getDbSqlSession().getUpdatedObjects();
+        assertEquals(1, updatedObjects.size());
+        assertSame(historicTask, updatedObjects.get(0));
+        return null;
+      }
+    });
+
+    HistoricTaskInstance historicTask = historyService.createHistoricTaskInstanceQuery().taskId(taskId).singleResult();
+    assertEquals("changed", historicTask.getDescription());
+
+    // the end of the task and the process instance are written through the history entities
+    Task task = taskService.createTaskQuery().singleResult();
+    taskService.complete(task.getId());
+    assertNotNull(historyService.createHistoricTaskInstanceQuery().taskId(taskId).singleResult().getEndTime());
+    assertNotNull(historyService.createHistoricProcessInstanceQuery().processInstanceId(processInstanceId).singleResult().getEndTime());
+    assertEquals(3, historyService.createHistoricActivityInstanceQuery().finished().count());
+  }
+
+}
@@ -0,0 +1,144 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.standalone.db;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.activiti.engine.impl.EventSubscriptionQueryImpl;
+import org.activiti.engine.impl.db.DbSqlSession;
+import org.activiti.engine.impl.db.PersistentObject;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
+import org.activiti.engine.impl.persistence.entity.ExecutionEntityManager;
+import org.activiti.engine.impl.persistence.entity.SignalEventSubscriptionEntity;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+import org.activiti.engine.impl.persistence.entity.TimerEntity;
+import org.activiti.engine.impl.persistence.entity.VariableInstanceEntity;
+import org.activiti.engine.impl.test.ResourceActivitiTestCase;
+import org.activiti.engine.runtime.Job;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
+import org.activiti.engine.test.Deployment;
+
+public class ExecutionTreePrefetchTest extends ResourceActivitiTestCase {
+
+  public ExecutionTreePrefetchTest() {
+    super("org/activiti/standalone/db/executionprefetch.activiti.cfg.xml");
+  }
+
+  @Deployment(resources = "org/activiti/standalone/db/ExecutionTreePrefetchTest.bpmn20.xml")
+  public void testPrefetchLoadsProcessInstanceTree() {
+    final String processInstanceId = startProcessInstance();
+    final int nrOfExecutions = (int) runtimeService.createExecutionQuery().processInstanceId(processInstanceId).count();
+
+    managementService.executeCommand(new Command<Void>() {
+      public Void execute(CommandContext commandContext) {
+        ExecutionEntityManager executionEntityManager = commandContext.getExecutionEntityManager();
+        executionEntityManager.prefetchProcessInstanceTree(executionEntityManager.findExecutionById(processInstanceId));
+
+        // all entities of the process instance are in the session cache now
+        DbSqlSession dbSqlSession = commandContext.getDbSqlSession();
+        assertEquals(nrOfExecutions, dbSqlSession.findInCache(ExecutionEntity.class).size());
+        assertEquals(3, dbSqlSession.findInCache(TaskEntity.class).size());
+        assertEquals(1, dbSqlSession.findInCache(TimerEntity.class).size());
+        assertEquals(1, dbSqlSession.findInCache(SignalEventSubscriptionEntity.class).size());
+        assertEquals(2, dbSqlSession.findInCache(VariableInstanceEntity.class).size());
+
+        // and every execution sees the same relations as it would have loaded lazily
+        for (ExecutionEntity execution : dbSqlSession.findInCache(ExecutionEntity.class)) {
+          String executionId = execution.getId();
+          assertEquals(idsOf(executionEntityManager.findChildExecutionsByParentExecutionId(executionId)), idsOf(execution.getExecutions()));
+          assertEquals(idsOf(commandContext.getTaskEntityManager().findTasksByExecutionId(executionId)), idsOf(execution.getTasks()));
+          assertEquals(idsOf(commandContext.getJobEntityManager().findJobsByExecutionId(executionId)), idsOf(execution.getJobs()));
+          assertEquals(idsOf(commandContext.getEventSubscriptionEntityManager().findEventSubscriptionsByExecution(executionId)),
+                  idsOf(execution.getEventSubscriptions()));
+          assertEquals(idsOf(commandContext.getVariableInstanceEntityManager().findVariableInstancesByExecutionId(executionId)),
+                  idsOf(execution.getVariableInstancesLocal().values()));
+        }
+        return null;
+      }
+    });
+  }
+
+  @Deployment(resources = "org/activiti/standalone/db/ExecutionTreePrefetchTest.bpmn20.xml")
+  public void testDeleteProcessInstance() {
+    String processInstanceId = startProcessInstance();
+
+    runtimeService.deleteProcessInstance(processInstanceId, "test");
+
+    assertEquals(0, runtimeService.createExecutionQuery().count());
+    assertEquals(0, taskService.createTaskQuery().count());
+    assertEquals(0, managementService.createJobQuery().count());
+    assertEquals(0, createEventSubscriptionQuery().count());
+    assertEquals("test", historyService.createHistoricProcessInstanceQuery().singleResult().getDeleteReason());
+  }
+
+  @Deployment(resources = "org/activiti/standalone/db/ExecutionTreePrefetchTest.bpmn20.xml")
+  public void testSignalAndCompleteSubProcessTree() {
+    String processInstanceId = startProcessInstance();
+
+    runtimeService.signalEventReceived("cancelSignal");
+    assertEquals(0, createEventSubscriptionQuery().count());
+    assertEquals(0, taskService.createTaskQuery().taskName("Signal task").count());
+
+    for (Task task : taskService.createTaskQuery().list()) {
+      taskService.complete(task.getId());
+    }
+
+    assertEquals(0, runtimeService.createProcessInstanceQuery().count());
+    assertEquals(0, managementService.createJobQuery().count());
+    assertNotNull(historyService.createHistoricProcessInstanceQuery().processInstanceId(processInstanceId).singleResult().getEndTime());
+  }
+
+  @Deployment(resources = "org/activiti/standalone/db/ExecutionTreePrefetchTest.bpmn20.xml")
+  public void testTimerCancelsSubProcessTree() {
+    String processInstanceId = startProcessInstance();
+
+    Job timer = managementService.createJobQuery().timers().singleResult();
+    managementService.executeJob(timer.getId());
+
+    Task signalTask = taskService.createTaskQuery().singleResult();
+    assertEquals("Signal task", signalTask.getName());
+    assertEquals("value", runtimeService.getVariable(processInstanceId, "var"));
+
+    taskService.complete(signalTask.getId());
+    assertEquals(0, runtimeService.createProcessInstanceQuery().count());
+  }
+
+  protected String startProcessInstance() {
+    Map<String, Object> variables = new HashMap<String, Object>();
+    variables.put("var", "value");
+    variables.put("counter", 1);
+    ProcessInstance processInstance = runtimeService.startProcessInstanceByKey("prefetchTree", variables);
+    assertEquals(3, taskService.createTaskQuery().count());
+    return processInstance.getId();
+  }
+
+  protected EventSubscriptionQueryImpl createEventSubscriptionQuery() {
+    return new EventSubscriptionQueryImpl(processEngineConfiguration.getCommandExecutor());
+  }
+
+  protected Set<String> idsOf(Collection<?> entities) {
+    Set<String> ids = new HashSet<String>();
+    for (Object entity : entities) {
+      ids.add(((PersistentObject) entity).getId());
+    }
+    return ids;
+  }
+
+}
@@ -0,0 +1,150 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.standalone.db;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.activiti.engine.impl.db.DbSqlSession;
+import org.activiti.engine.impl.db.DbSqlSessionFactory;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.ResourceEntity;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+import org.activiti.engine.impl.test.ResourceActivitiTestCase;
+import org.activiti.engine.repository.DeploymentBuilder;
+import org.activiti.engine.task.Task;
+
+public class SessionCacheEvictionTest extends ResourceActivitiTestCase {
+
+  private static final int NR_OF_RESOURCES = 50;
+  private static final int RESOURCE_SIZE = 10000;
+
+  protected String deploymentId;
+
+  public SessionCacheEvictionTest() {
+    super("org/activiti/standalone/db/sessioncache.activiti.cfg.xml");
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    StringBuilder content = new StringBuilder(RESOURCE_SIZE);
+    for (int i = 0; i < RESOURCE_SIZE; i++) {
+      content.append((char) ('a' + i % 26));
+    }
+    DeploymentBuilder deploymentBuilder = repositoryService.createDeployment()
+        .addClasspathResource("org/activiti/engine/test/api/runtime/oneTaskProcess.bpmn20.xml");
+    for (int i = 0; i < NR_OF_RESOURCES; i++) {
+      deploymentBuilder.addString("resource-" + i + ".txt", content.toString());
+    }
+    deploymentId = deploymentBuilder.deploy().getId();
+    processEngineConfiguration.getDbSqlSessionFactory().resetCacheStatistics();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    if (deploymentId != null) {
+      repositoryService.deleteDeployment(deploymentId, true);
+    }
+    super.tearDown();
+  }
+
+  public void testResourcesAreEvicted() {
+    final long threshold = processEngineConfiguration.getSessionCacheMemoryThreshold();
+
+    managementService.executeCommand(new Command<Void>() {
+      public Void execute(CommandContext commandContext) {
+        List<ResourceEntity> resources = commandContext.getResourceEntityManager().findResourcesByDeploymentId(deploymentId);
+        assertEquals(NR_OF_RESOURCES + 1, resources.size());
+
+        // loading the resources would use about 5 times the threshold
+        DbSqlSession dbSqlSession = commandContext.getDbSqlSession();
+        assertTrue(dbSqlSession.getCacheMemory() <= threshold);
+        assertTrue(dbSqlSession.getPeakCacheMemory() <= threshold + 2 * RESOURCE_SIZE);
+        return null;
+      }
+    });
+
+    DbSqlSessionFactory dbSqlSessionFactory = processEngineConfiguration.getDbSqlSessionFactory();
+    assertTrue(dbSqlSessionFactory.getEvictedObjectCount() > 0);
+    assertTrue(dbSqlSessionFactory.getMaxPeakCacheSize() > 0);
+    assertTrue(dbSqlSessionFactory.getMaxPeakCacheMemory() <= threshold + 2 * RESOURCE_SIZE);
+  }
+
+  public void testUpdatedObjectsAreNotEvicted() {
+    runtimeService.startProcessInstanceByKey("oneTaskProcess");
+    final String taskId = taskService.createTaskQuery().singleResult().getId();
+
+    managementService.executeCommand(new Command<Void>() {
+      public Void execute(CommandContext commandContext) {
+        TaskEntity task = commandContext.getTaskEntityManager().findTaskById(taskId);
+        task.setDescription("changed before eviction");
+
+        commandContext.getResourceEntityManager().findResourcesByDeploymentId(deploymentId);
+        assertSame(task, commandContext.getDbSqlSession().findInCache(TaskEntity.class, taskId));
+        return null;
+      }
+    });
+
+    assertTrue(processEngineConfiguration.getDbSqlSessionFactory().getEvictedObjectCount() > 0);
+    assertEquals("changed before eviction", taskService.createTaskQuery().singleResult().getDescription());
+  }
+
+  public void testObjectsWithPendingDeleteAreNotEvicted() {
+    try {
+      managementService.executeCommand(new Command<Void>() {
+        public Void execute(CommandContext commandContext) {
+          DbSqlSession dbSqlSession = commandContext.getDbSqlSession();
+          List<ResourceEntity> resources = commandContext.getResourceEntityManager().findResourcesByDeploymentId(deploymentId);
+          ResourceEntity deletedResource = resources.get(0);
+          dbSqlSession.delete(deletedResource);
+
+          // loading the resources again runs an eviction pass, the deleted one must keep its identity
+          commandContext.getResourceEntityManager().findResourcesByDeploymentId(deploymentId);
+          assertSame(deletedResource, dbSqlSession.findInCache(ResourceEntity.class, deletedResource.getId()));
+
+          // resources are only deleted together with their deployment, so roll back instead of flushing
+          throw new IllegalStateException("rollback");
+        }
+      });
+      fail("exception expected");
+    } catch (IllegalStateException e) {
+      assertEquals("rollback", e.getMessage());
+    }
+
+    assertTrue(processEngineConfiguration.getDbSqlSessionFactory().getEvictedObjectCount() > 0);
+  }
+
+  public void testDeleteWithLargeVariables() {
+    Map<String, Object> variables = new HashMap<String, Object>();
+    for (int i = 0; i < 20; i++) {
+      variables.put("var" + i, new byte[RESOURCE_SIZE]);
+    }
+    for (int i = 0; i < 5; i++) {
+      runtimeService.startProcessInstanceByKey("oneTaskProcess", variables);
+    }
+
+    for (Task task : taskService.createTaskQuery().list()) {
+      assertEquals(20, taskService.getVariables(task.getId()).size());
+    }
+
+    repositoryService.deleteDeployment(deploymentId, true);
+    deploymentId = null;
+
+    assertEquals(0, runtimeService.createProcessInstanceQuery().count());
+    assertEquals(0, historyService.createHistoricVariableInstanceQuery().count());
+  }
+
+}
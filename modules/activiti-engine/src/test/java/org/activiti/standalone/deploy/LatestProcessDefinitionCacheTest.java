@@ -0,0 +1,174 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.standalone.deploy;
+
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.activiti.engine.ActivitiObjectNotFoundException;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.activiti.engine.impl.interceptor.Session;
+import org.activiti.engine.impl.interceptor.SessionFactory;
+import org.activiti.engine.impl.persistence.entity.ProcessDefinitionEntity;
+import org.activiti.engine.impl.persistence.entity.ProcessDefinitionEntityManager;
+import org.activiti.engine.repository.Deployment;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Process instances started by key with the latest process definition ids cached,
+ * with two engines on one in-memory database.
+ */
+public class LatestProcessDefinitionCacheTest {
+
+  private static final String JDBC_URL = "jdbc:h2:mem:activiti-LatestProcessDefinitionCacheTest";
+
+  /** The number of latest process definition queries */
+  static final AtomicInteger latestQueryCount = new AtomicInteger();
+
+  protected String processDefinitionTemplate;
+
+  protected ProcessEngine deployingEngine;
+  protected ProcessEngine startingEngine;
+
+  @Before
+  public void createProcessEngines() {
+    processDefinitionTemplate = DeploymentCacheTestUtil.readTemplateFile("/org/activiti/standalone/deploy/deploymentCacheTest.bpmn20.xml");
+    deployingEngine = createProcessEngine("latestCacheDeployingNode", "true");
+    startingEngine = createProcessEngine("latestCacheStartingNode", "false");
+    latestQueryCount.set(0);
+  }
+
+  @After
+  public void closeProcessEngines() {
+    for (Deployment deployment : deployingEngine.getRepositoryService().createDeploymentQuery().list()) {
+      deployingEngine.getRepositoryService().deleteDeployment(deployment.getId(), true);
+    }
+    startingEngine.close();
+    deployingEngine.close();
+  }
+
+  @Test
+  public void testLatestProcessDefinitionCached() {
+    deploy(deployingEngine, null);
+    assertStartedVersion(1, startingEngine.getRuntimeService().startProcessInstanceByKey("myProcess1"));
+    Assert.assertEquals(1, latestQueryCount.get());
+
+    // starting again doesn't query the latest version
+    for (int i = 0; i < 5; i++) {
+      assertStartedVersion(1, startingEngine.getRuntimeService().startProcessInstanceByKey("myProcess1"));
+    }
+    Assert.assertEquals(1, latestQueryCount.get());
+
+    // a new version deployed by the other engine
+    deploy(deployingEngine, null);
+    assertStartedVersion(2, startingEngine.getRuntimeService().startProcessInstanceByKey("myProcess1"));
+    assertStartedVersion(2, startingEngine.getRuntimeService().startProcessInstanceByKey("myProcess1"));
+    Assert.assertEquals(1, latestQueryCount.get());
+
+    // the latest version removed by the other engine
+    Deployment latestDeployment = deployingEngine.getRepositoryService().createDeploymentQuery().orderByDeploymenTime().desc().list().get(0);
+    deployingEngine.getRepositoryService().deleteDeployment(latestDeployment.getId(), true);
+    latestQueryCount.set(0);
+    assertStartedVersion(1, startingEngine.getRuntimeService().startProcessInstanceByKey("myProcess1"));
+    assertStartedVersion(1, startingEngine.getRuntimeService().startProcessInstanceByKey("myProcess1"));
+    Assert.assertEquals(1, latestQueryCount.get());
+
+    // a new version deployed by the same engine
+    deploy(startingEngine, null);
+    assertStartedVersion(2, startingEngine.getRuntimeService().startProcessInstanceByKey("myProcess1"));
+    Assert.assertEquals(1, latestQueryCount.get());
+  }
+
+  @Test
+  public void testLatestProcessDefinitionCachedPerTenant() {
+    deploy(deployingEngine, "tenantA");
+    deploy(deployingEngine, "tenantA");
+    deploy(deployingEngine, "tenantB");
+    deploy(deployingEngine, null);
+
+    for (int i = 0; i < 3; i++) {
+      assertStartedVersion(2, startingEngine.getRuntimeService().startProcessInstanceByKeyAndTenantId("myProcess1", "tenantA"));
+      assertStartedVersion(1, startingEngine.getRuntimeService().startProcessInstanceByKeyAndTenantId("myProcess1", "tenantB"));
+      assertStartedVersion(1, startingEngine.getRuntimeService().startProcessInstanceByKey("myProcess1"));
+    }
+    Assert.assertEquals(3, latestQueryCount.get());
+
+    // moving a deployment to another tenant
+    String tenantBDeploymentId = deployingEngine.getRepositoryService().createDeploymentQuery().deploymentTenantId("tenantB").singleResult().getId();
+    deployingEngine.getRepositoryService().changeDeploymentTenantId(tenantBDeploymentId, "tenantC");
+    try {
+      startingEngine.getRuntimeService().startProcessInstanceByKeyAndTenantId("myProcess1", "tenantB");
+      Assert.fail();
+    } catch (ActivitiObjectNotFoundException e) {
+      // expected
+    }
+    assertStartedVersion(1, startingEngine.getRuntimeService().startProcessInstanceByKeyAndTenantId("myProcess1", "tenantC"));
+  }
+
+  protected ProcessEngine createProcessEngine(String name, String databaseSchemaUpdate) {
+    ProcessEngineConfigurationImpl processEngineConfiguration = new StandaloneInMemProcessEngineConfiguration();
+    processEngineConfiguration.setProcessEngineName(name);
+    processEngineConfiguration.setJdbcUrl(JDBC_URL);
+    processEngineConfiguration.setDatabaseSchemaUpdate(databaseSchemaUpdate);
+    processEngineConfiguration.setJobExecutorActivate(false);
+    processEngineConfiguration.setCustomSessionFactories(Collections.<SessionFactory>singletonList(new SessionFactory() {
+
+      public Class<?> getSessionType() {
+        return ProcessDefinitionEntityManager.class;
+      }
+
+      public Session openSession() {
+        return new CountingProcessDefinitionEntityManager();
+      }
+    }));
+    return processEngineConfiguration.buildProcessEngine();
+  }
+
+  /** Deploys a new version and restarts counting, as deploying queries the latest versions too */
+  protected void deploy(ProcessEngine processEngine, String tenantId) {
+    processEngine.getRepositoryService().createDeployment()
+      .addString("process.bpmn20.xml", MessageFormat.format(processDefinitionTemplate, 1))
+      .tenantId(tenantId)
+      .deploy();
+    latestQueryCount.set(0);
+  }
+
+  protected void assertStartedVersion(int version, ProcessInstance processInstance) {
+    Assert.assertEquals(version, startingEngine.getRepositoryService()
+        .createProcessDefinitionQuery()
+        .processDefinitionId(processInstance.getProcessDefinitionId())
+        .singleResult()
+        .getVersion());
+  }
+
+  public static class CountingProcessDefinitionEntityManager extends ProcessDefinitionEntityManager {
+
+    public ProcessDefinitionEntity findLatestProcessDefinitionByKey(String processDefinitionKey) {
+      latestQueryCount.incrementAndGet();
+      return super.findLatestProcessDefinitionByKey(processDefinitionKey);
+    }
+
+    public ProcessDefinitionEntity findLatestProcessDefinitionByKeyAndTenantId(String processDefinitionKey, String tenantId) {
+      latestQueryCount.incrementAndGet();
+      return super.findLatestProcessDefinitionByKeyAndTenantId(processDefinitionKey, tenantId);
+    }
+  }
+
+}
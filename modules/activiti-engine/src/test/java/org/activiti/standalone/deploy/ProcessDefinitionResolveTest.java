@@ -0,0 +1,118 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.standalone.deploy;
+
+import java.io.ByteArrayInputStream;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.List;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.activiti.engine.impl.persistence.deploy.DeploymentCache;
+import org.activiti.engine.impl.persistence.deploy.DeploymentManager;
+import org.activiti.engine.impl.persistence.entity.ProcessDefinitionEntity;
+import org.activiti.engine.repository.Deployment;
+import org.activiti.engine.repository.DeploymentBuilder;
+import org.activiti.engine.repository.ProcessDefinition;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Process definitions resolved after a cache miss (or at engine boot) without parsing the other resources of their deployment.
+ */
+public class ProcessDefinitionResolveTest {
+
+  private static final String JDBC_URL = "jdbc:h2:mem:activiti-ProcessDefinitionResolveTest";
+
+  protected ProcessEngine processEngine;
+  protected ProcessEngine warmedUpProcessEngine;
+
+  @Before
+  public void deployProcesses() {
+    processEngine = createProcessEngine("resolvingNode", "true", null);
+
+    String processDefinitionTemplate = DeploymentCacheTestUtil.readTemplateFile("/org/activiti/standalone/deploy/deploymentCacheTest.bpmn20.xml");
+    DeploymentBuilder deploymentBuilder = processEngine.getRepositoryService().createDeployment();
+    for (int i = 1; i <= 5; i++) {
+      deploymentBuilder.addString("process" + i + ".bpmn20.xml", MessageFormat.format(processDefinitionTemplate, i));
+    }
+    deploymentBuilder.addInputStream("process2.png", new ByteArrayInputStream(new byte[] { 1, 2, 3 }));
+    deploymentBuilder.deploy();
+  }
+
+  @After
+  public void closeProcessEngines() {
+    for (Deployment deployment : processEngine.getRepositoryService().createDeploymentQuery().list()) {
+      processEngine.getRepositoryService().deleteDeployment(deployment.getId(), true);
+    }
+    if (warmedUpProcessEngine != null) {
+      warmedUpProcessEngine.close();
+    }
+    processEngine.close();
+  }
+
+  @Test
+  public void testOnlyMissingProcessDefinitionResolved() {
+    ProcessEngineConfigurationImpl processEngineConfiguration = (ProcessEngineConfigurationImpl) processEngine.getProcessEngineConfiguration();
+    DeploymentCache<ProcessDefinitionEntity> processDefinitionCache = processEngineConfiguration.getProcessDefinitionCache();
+    DeploymentManager deploymentManager = processEngineConfiguration.getDeploymentManager();
+    processDefinitionCache.clear();
+    long coldResolveCount = deploymentManager.getColdResolveCount();
+
+    processEngine.getRuntimeService().startProcessInstanceByKey("myProcess2");
+    ProcessDefinition processDefinition = processEngine.getRepositoryService().createProcessDefinitionQuery().processDefinitionKey("myProcess2").singleResult();
+    Assert.assertNotNull(processDefinitionCache.get(processDefinition.getId()));
+    for (String processDefinitionKey : Arrays.asList("myProcess1", "myProcess3", "myProcess4", "myProcess5")) {
+      String processDefinitionId = processEngine.getRepositoryService().createProcessDefinitionQuery().processDefinitionKey(processDefinitionKey).singleResult().getId();
+      Assert.assertNull(processDefinitionCache.get(processDefinitionId));
+    }
+    Assert.assertEquals(coldResolveCount + 1, deploymentManager.getColdResolveCount());
+    Assert.assertTrue(deploymentManager.getColdResolveTimeInMillis() >= 0);
+
+    // the resolved process definition is complete, also without the other resources of the deployment
+    ProcessDefinitionEntity resolvedProcessDefinition = processDefinitionCache.get(processDefinition.getId());
+    Assert.assertEquals("process2.png", resolvedProcessDefinition.getDiagramResourceName());
+    Assert.assertEquals("process2.bpmn20.xml", resolvedProcessDefinition.getResourceName());
+    Assert.assertEquals(1, resolvedProcessDefinition.getVersion());
+    Assert.assertNotNull(resolvedProcessDefinition.findActivity("theTask"));
+    Assert.assertEquals(1, processEngine.getTaskService().createTaskQuery().processDefinitionId(processDefinition.getId()).count());
+  }
+
+  @Test
+  public void testWarmUp() {
+    warmedUpProcessEngine = createProcessEngine("warmedUpNode", "false", Arrays.asList("myProcess1", "myProcess3", "unknownProcess"));
+
+    ProcessEngineConfigurationImpl processEngineConfiguration = (ProcessEngineConfigurationImpl) warmedUpProcessEngine.getProcessEngineConfiguration();
+    DeploymentCache<ProcessDefinitionEntity> processDefinitionCache = processEngineConfiguration.getProcessDefinitionCache();
+    Assert.assertEquals(2, processEngineConfiguration.getDeploymentManager().getColdResolveCount());
+    for (int i = 1; i <= 5; i++) {
+      String processDefinitionId = warmedUpProcessEngine.getRepositoryService().createProcessDefinitionQuery().processDefinitionKey("myProcess" + i).singleResult().getId();
+      Assert.assertEquals(i == 1 || i == 3, processDefinitionCache.get(processDefinitionId) != null);
+    }
+  }
+
+  protected ProcessEngine createProcessEngine(String name, String databaseSchemaUpdate, List<String> processDefinitionWarmUpKeys) {
+    ProcessEngineConfigurationImpl processEngineConfiguration = new StandaloneInMemProcessEngineConfiguration();
+    processEngineConfiguration.setProcessEngineName(name);
+    processEngineConfiguration.setJdbcUrl(JDBC_URL);
+    processEngineConfiguration.setDatabaseSchemaUpdate(databaseSchemaUpdate);
+    processEngineConfiguration.setJobExecutorActivate(false);
+    processEngineConfiguration.setProcessDefinitionWarmUpKeys(processDefinitionWarmUpKeys);
+    return processEngineConfiguration.buildProcessEngine();
+  }
+
+}
@@ -0,0 +1,116 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.standalone.history;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.activiti.engine.impl.history.async.AsyncHistoryBuffer;
+import org.activiti.engine.impl.test.ResourceActivitiTestCase;
+import org.activiti.engine.runtime.Job;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
+import org.activiti.engine.test.Deployment;
+
+public class AsyncHistoryTest extends ResourceActivitiTestCase {
+  
+  public AsyncHistoryTest() {
+    super("org/activiti/standalone/history/asynchistory.activiti.cfg.xml");
+  }
+  
+  @Deployment(resources = "org/activiti/standalone/history/AsyncHistoryTest.bpmn20.xml")
+  public void testHistoryInsertedByJob() {
+    AsyncHistoryBuffer asyncHistoryBuffer = processEngineConfiguration.getAsyncHistoryBuffer();
+    long appliedBefore = asyncHistoryBuffer.getAppliedObjectCount();
+    
+    Map<String, Object> variables = new HashMap<String, Object>();
+    variables.put("var1", "value1");
+    variables.put("var2", "value2");
+    ProcessInstance processInstance = runtimeService.startProcessInstanceByKey("asyncHistory", variables);
+    
+    // Only the rows needed by the runtime are inserted in the runtime transaction
+    assertEquals(1, historyService.createHistoricProcessInstanceQuery().processInstanceId(processInstance.getId()).count());
+    assertEquals(3, historyService.createHistoricVariableInstanceQuery().processInstanceId(processInstance.getId()).count());
+    assertEquals(0, historyService.createHistoricDetailQuery().processInstanceId(processInstance.getId()).count());
+    assertEquals(1, historyService.createHistoricActivityInstanceQuery().processInstanceId(processInstance.getId()).count());
+    assertEquals(1, historyService.createHistoricActivityInstanceQuery().processInstanceId(processInstance.getId()).unfinished().count());
+    
+    executeAsyncHistoryJobs(1);
+    
+    assertEquals(3, historyService.createHistoricDetailQuery().processInstanceId(processInstance.getId()).variableUpdates().count());
+    assertEquals(3, historyService.createHistoricActivityInstanceQuery().processInstanceId(processInstance.getId()).count());
+    assertEquals(2, historyService.createHistoricActivityInstanceQuery().processInstanceId(processInstance.getId()).finished().count());
+    
+    Task task = taskService.createTaskQuery().processInstanceId(processInstance.getId()).singleResult();
+    taskService.addComment(task.getId(), processInstance.getId(), "comment");
+    taskService.complete(task.getId());
+    
+    assertEquals(0, taskService.getProcessInstanceComments(processInstance.getId()).size());
+    assertEquals(3, historyService.createHistoricActivityInstanceQuery().processInstanceId(processInstance.getId()).count());
+    
+    executeAsyncHistoryJobs(2);
+    
+    assertEquals(1, taskService.getProcessInstanceComments(processInstance.getId()).size());
+    assertEquals(4, historyService.createHistoricActivityInstanceQuery().processInstanceId(processInstance.getId()).finished().count());
+    assertNotNull(historyService.createHistoricProcessInstanceQuery().processInstanceId(processInstance.getId()).singleResult().getEndTime());
+    assertTrue(asyncHistoryBuffer.getAppliedObjectCount() - appliedBefore >= 7);
+  }
+  
+  @Deployment(resources = "org/activiti/standalone/history/AsyncHistoryTest.bpmn20.xml")
+  public void testBufferOfDeletedProcessInstanceIsDropped() {
+    AsyncHistoryBuffer asyncHistoryBuffer = processEngineConfiguration.getAsyncHistoryBuffer();
+    long skippedBefore = asyncHistoryBuffer.getSkippedObjectCount();
+    
+    Map<String, Object> variables = new HashMap<String, Object>();
+    variables.put("var1", "value1");
+    ProcessInstance processInstance = runtimeService.startProcessInstanceByKey("asyncHistory", variables);
+    taskService.complete(taskService.createTaskQuery().processInstanceId(processInstance.getId()).singleResult().getId());
+    historyService.deleteHistoricProcessInstance(processInstance.getId());
+    
+    executeAsyncHistoryJobs(2);
+    
+    assertEquals(0, historyService.createHistoricDetailQuery().processInstanceId(processInstance.getId()).count());
+    assertEquals(0, historyService.createHistoricActivityInstanceQuery().processInstanceId(processInstance.getId()).count());
+    assertTrue(asyncHistoryBuffer.getSkippedObjectCount() - skippedBefore >= 5);
+  }
+  
+  @Deployment(resources = "org/activiti/standalone/history/AsyncHistoryTest.bpmn20.xml")
+  public void testSmallTransactionInsertsHistoryDirectly() {
+    AsyncHistoryBuffer asyncHistoryBuffer = processEngineConfiguration.getAsyncHistoryBuffer();
+    int minBufferedObjects = asyncHistoryBuffer.getMinBufferedObjects();
+    asyncHistoryBuffer.setMinBufferedObjects(10);
+    try {
+      Map<String, Object> variables = new HashMap<String, Object>();
+      variables.put("var1", "value1");
+      ProcessInstance processInstance = runtimeService.startProcessInstanceByKey("asyncHistory", variables);
+      
+      assertEquals(0, managementService.createJobQuery().count());
+      assertEquals(2, historyService.createHistoricDetailQuery().processInstanceId(processInstance.getId()).variableUpdates().count());
+      assertEquals(2, historyService.createHistoricActivityInstanceQuery().processInstanceId(processInstance.getId()).finished().count());
+      
+      runtimeService.deleteProcessInstance(processInstance.getId(), null);
+      
+    } finally {
+      asyncHistoryBuffer.setMinBufferedObjects(minBufferedObjects);
+    }
+  }
+  
+  protected void executeAsyncHistoryJobs(int expectedNrOfJobs) {
+    assertEquals(expectedNrOfJobs, managementService.createJobQuery().count());
+    for (Job job : managementService.createJobQuery().list()) {
+      managementService.executeJob(job.getId());
+    }
+    assertEquals(0, managementService.createJobQuery().count());
+  }
+
+}
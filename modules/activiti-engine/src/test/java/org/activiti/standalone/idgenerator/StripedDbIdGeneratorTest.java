@@ -0,0 +1,88 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.standalone.idgenerator;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.activiti.engine.impl.db.StripedDbIdGenerator;
+import org.activiti.engine.impl.test.ResourceActivitiTestCase;
+import org.activiti.engine.task.Task;
+import org.activiti.engine.test.Deployment;
+
+public class StripedDbIdGeneratorTest extends ResourceActivitiTestCase {
+  
+  public StripedDbIdGeneratorTest() throws Exception {
+    super("org/activiti/standalone/idgenerator/stripedidgenerator.test.activiti.cfg.xml");
+  }
+  
+  public void testUniqueIdsAcrossThreads() throws Exception {
+    final StripedDbIdGenerator idGenerator = (StripedDbIdGenerator) processEngineConfiguration.getIdGenerator();
+    final Set<String> ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    final AtomicInteger duplicates = new AtomicInteger();
+    
+    ExecutorService executorService = Executors.newFixedThreadPool(10);
+    for (int i = 0; i < 10; i++) {
+      executorService.execute(new Runnable() {
+        public void run() {
+          for (int j = 0; j < 1000; j++) {
+            if (!ids.add(idGenerator.getNextId())) {
+              duplicates.incrementAndGet();
+            }
+          }
+        }
+      });
+    }
+    executorService.shutdown();
+    assertTrue(executorService.awaitTermination(1, TimeUnit.MINUTES));
+    
+    assertEquals(0, duplicates.get());
+    assertEquals(10000, ids.size());
+    
+    // 10000 ids with blocks of 100 ids need at least 100 block fetches
+    assertTrue(idGenerator.getBlockFetchCount() >= 100);
+  }
+  
+  @Deployment
+  public void testStripedIdGeneratorUsage() throws Exception {
+    ExecutorService executorService = Executors.newFixedThreadPool(10);
+    for (int i=0; i<50; i++) {
+      executorService.execute(new Runnable() {
+        public void run() {
+          runtimeService.startProcessInstanceByKey("simpleProcess");
+        }
+      });
+    }
+    executorService.shutdown();
+    assertTrue(executorService.awaitTermination(1, TimeUnit.MINUTES));
+    
+    assertEquals(50, runtimeService.createProcessInstanceQuery().count());
+    
+    List<Task> tasks = taskService.createTaskQuery().list();
+    while (!tasks.isEmpty()) {
+      for (Task task : tasks) {
+        taskService.complete(task.getId());
+      }
+      tasks = taskService.createTaskQuery().list();
+    }
+    
+    assertEquals(50, historyService.createHistoricProcessInstanceQuery().finished().count());
+  }
+  
+}
@@ -0,0 +1,73 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.standalone.scripting;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.history.HistoricVariableInstance;
+import org.activiti.engine.impl.scripting.ScriptingEngines;
+import org.activiti.engine.impl.test.ResourceActivitiTestCase;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.test.Deployment;
+
+public class CompiledScriptCacheTest extends ResourceActivitiTestCase {
+
+  public CompiledScriptCacheTest() {
+    super("org/activiti/standalone/scripting/activiti.cfg.xml");
+  }
+
+  @Deployment
+  public void testCompiledScriptReuse() {
+    ScriptingEngines scriptingEngines = processEngineConfiguration.getScriptingEngines();
+    scriptingEngines.clearCompiledScriptCache();
+    long hitCount = scriptingEngines.getCompiledScriptCacheHitCount();
+    long missCount = scriptingEngines.getCompiledScriptCacheMissCount();
+    
+    for (int i = 1; i <= 3; i++) {
+      Map<String, Object> variables = new HashMap<String, Object>();
+      variables.put("counter", 0);
+      variables.put("input", i);
+      ProcessInstance processInstance = runtimeService.startProcessInstanceByKey("compiledScriptProcess", variables);
+      
+      // Each evaluation must see its own bindings, even though the compiled script is shared
+      HistoricVariableInstance counter = historyService.createHistoricVariableInstanceQuery()
+          .processInstanceId(processInstance.getId()).variableName("counter").singleResult();
+      assertEquals(5 * i, counter.getValue());
+    }
+    
+    // 15 evaluations of the same script: compiled once
+    assertEquals(1, scriptingEngines.getCompiledScriptCacheMissCount() - missCount);
+    assertEquals(14, scriptingEngines.getCompiledScriptCacheHitCount() - hitCount);
+  }
+  
+  @Deployment
+  public void testCompiledScriptFailureMessage() {
+    ScriptingEngines scriptingEngines = processEngineConfiguration.getScriptingEngines();
+    scriptingEngines.clearCompiledScriptCache();
+    
+    // The first run compiles the script, the second one takes it from the cache: 
+    // both fail with the message of a script evaluated from source
+    for (int i = 0; i < 2; i++) {
+      try {
+        runtimeService.startProcessInstanceByKey("failingScriptProcess");
+        fail("ActivitiException expected");
+      } catch (ActivitiException e) {
+        assertEquals("problem evaluating script: javax.script.ScriptException: java.lang.RuntimeException: "
+            + "This is an exception thrown from a compiled script", e.getMessage());
+      }
+    }
+  }
+  
+}
@@ -0,0 +1,106 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.management.jmx.mbeans;
+
+import org.activiti.engine.ProcessEngineConfiguration;
+import org.activiti.engine.impl.asyncexecutor.AbstractAsyncJobExecutor;
+import org.activiti.engine.impl.asyncexecutor.AdaptiveJobAcquisitionSizer;
+import org.activiti.engine.impl.asyncexecutor.AsyncExecutor;
+import org.activiti.management.jmx.annotations.ManagedAttribute;
+import org.activiti.management.jmx.annotations.ManagedResource;
+
+/**
+ * The load of the async executor, and the job acquisition sizes chosen from it when adaptive job acquisition is enabled.
+ */
+@ManagedResource(description = "Async executor MBean")
+public class AsyncExecutorMBean {
+
+  AsyncExecutor asyncExecutor;
+
+  public AsyncExecutorMBean(ProcessEngineConfiguration processEngineConfig) {
+    asyncExecutor = processEngineConfig.getAsyncExecutor();
+  }
+
+  @ManagedAttribute(description = "check if the async executor is activated")
+  public boolean isAsyncExecutorActivated() {
+    return asyncExecutor != null && asyncExecutor.isActive();
+  }
+
+  @ManagedAttribute(description = "jobs the async executor can take without rejecting them, -1 when unknown")
+  public int getRemainingCapacity() {
+    return asyncExecutor instanceof AbstractAsyncJobExecutor ? ((AbstractAsyncJobExecutor) asyncExecutor).getRemainingCapacity() : -1;
+  }
+
+  @ManagedAttribute(description = "jobs waiting for a thread")
+  public int getQueuedJobCount() {
+    return asyncExecutor instanceof AbstractAsyncJobExecutor ? ((AbstractAsyncJobExecutor) asyncExecutor).getQueuedJobCount() : 0;
+  }
+
+  @ManagedAttribute(description = "check if the job acquisitions are sized from the load of the async executor")
+  public boolean isAdaptiveJobAcquisition() {
+    return getAcquisitionSizer() != null;
+  }
+
+  @ManagedAttribute(description = "recent average job duration in milliseconds, -1 when unknown")
+  public double getAverageJobDurationInMillis() {
+    AdaptiveJobAcquisitionSizer sizer = getAcquisitionSizer();
+    return sizer != null ? sizer.getAverageJobDurationInMillis() : -1;
+  }
+
+  @ManagedAttribute(description = "size of the last async job acquisition")
+  public int getLastAsyncJobsAcquisitionSize() {
+    AdaptiveJobAcquisitionSizer sizer = getAcquisitionSizer();
+    return sizer != null ? sizer.getLastAsyncJobsAcquisitionSize() : 0;
+  }
+
+  @ManagedAttribute(description = "what limited the size of the last async job acquisition (max, capacity or lockExpiry)")
+  public String getLastAsyncJobsLimitedBy() {
+    AdaptiveJobAcquisitionSizer sizer = getAcquisitionSizer();
+    return sizer != null ? sizer.getLastAsyncJobsLimitedBy() : null;
+  }
+
+  @ManagedAttribute(description = "size of the last timer job acquisition")
+  public int getLastTimerJobsAcquisitionSize() {
+    AdaptiveJobAcquisitionSizer sizer = getAcquisitionSizer();
+    return sizer != null ? sizer.getLastTimerJobsAcquisitionSize() : 0;
+  }
+
+  @ManagedAttribute(description = "what limited the size of the last timer job acquisition (max, capacity or lockExpiry)")
+  public String getLastTimerJobsLimitedBy() {
+    AdaptiveJobAcquisitionSizer sizer = getAcquisitionSizer();
+    return sizer != null ? sizer.getLastTimerJobsLimitedBy() : null;
+  }
+
+  @ManagedAttribute(description = "acquisitions made smaller because the async executor couldn't take more jobs")
+  public long getCapacityLimitedCount() {
+    AdaptiveJobAcquisitionSizer sizer = getAcquisitionSizer();
+    return sizer != null ? sizer.getCapacityLimitedCount() : 0;
+  }
+
+  @ManagedAttribute(description = "acquisitions made smaller because the jobs couldn't be executed before their lock expires")
+  public long getLockExpiryLimitedCount() {
+    AdaptiveJobAcquisitionSizer sizer = getAcquisitionSizer();
+    return sizer != null ? sizer.getLockExpiryLimitedCount() : 0;
+  }
+
+  @ManagedAttribute(description = "acquisitions skipped because the async executor couldn't take any job")
+  public long getSkippedAcquisitionCount() {
+    AdaptiveJobAcquisitionSizer sizer = getAcquisitionSizer();
+    return sizer != null ? sizer.getSkippedAcquisitionCount() : 0;
+  }
+
+  protected AdaptiveJobAcquisitionSizer getAcquisitionSizer() {
+    return asyncExecutor instanceof AbstractAsyncJobExecutor ? ((AbstractAsyncJobExecutor) asyncExecutor).getAcquisitionSizer() : null;
+  }
+
+}